@@ -0,0 +1,112 @@
+package newBoite.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import newBoite.AStarPathFinder;
+import newBoite.BatchPathFinder;
+import newBoite.GameMap;
+import newBoite.PathQuery;
+import newBoite.UnitMover;
+
+/**
+ * Measures the throughput of BatchPathFinder on a batch of tank orders, with
+ * a pool of 1 thread up to the number of available processors. Part of the
+ * batch is made of squads, units sharing a start location, so that the grouped
+ * searches are exercised too.
+ * 
+ * Usage: BatchBenchmark [size] [queries] [iterations]
+ */
+public class BatchBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles, the number of queries per batch and the number of timed batches
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 256;
+		int count = argv.length > 1 ? Integer.parseInt(argv[1]) : 512;
+		int iterations = argv.length > 2 ? Integer.parseInt(argv[2]) : 5;
+		
+		GameMap map = new GameMap(size, size);
+		AStarPathFinder finder = new AStarPathFinder(map, size * size, false);
+		List<PathQuery> queries = createQueries(size, count);
+		
+		long sequential = 0;
+		for (int i=0;i<=iterations;i++) {
+			long start = System.nanoTime();
+			for (PathQuery q : queries) {
+				finder.findPath(q.getMover(), q.getStartX(), q.getStartY(), q.getTargetX(), q.getTargetY());
+			}
+			if (i > 0) {
+				sequential += System.nanoTime() - start;
+			}
+		}
+		report("findPath loop", count, iterations, sequential);
+		
+		int processors = Runtime.getRuntime().availableProcessors();
+		for (int threads=1;threads<=processors;threads*=2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			BatchPathFinder batch = new BatchPathFinder(finder, pool);
+			long total = 0;
+			for (int i=0;i<=iterations;i++) {
+				long start = System.nanoTime();
+				batch.findPaths(queries);
+				if (i > 0) {
+					total += System.nanoTime() - start;
+				}
+			}
+			pool.shutdown();
+			report("findPaths, " + threads + " thread(s)", count, iterations, total);
+		}
+	}
+	
+	/**
+	 * Print the throughput of a run
+	 * 
+	 * @param name The name of the run
+	 * @param count The number of queries in a batch
+	 * @param iterations The number of timed batches
+	 * @param nanos The total time of the timed batches
+	 */
+	private static void report(String name, int count, int iterations, long nanos) {
+		double perSecond = (count * (double) iterations) / (nanos / 1000000000.0);
+		System.err.println(name + ": " + Math.round(perSecond) + " queries/s");
+	}
+	
+	/**
+	 * Create a batch of tank queries. One query in two belongs to a squad of
+	 * eight units leaving from the same tile towards targets close to each other.
+	 * 
+	 * @param size The size of the map
+	 * @param count The number of queries to create
+	 * @return The queries
+	 */
+	private static List<PathQuery> createQueries(int size, int count) {
+		Random random = new Random(1);
+		List<PathQuery> queries = new ArrayList<PathQuery>();
+		int sx = 0;
+		int sy = 0;
+		int cx = 0;
+		int cy = 0;
+		for (int i=0;i<count;i++) {
+			if ((i % 16) == 0 || (i % 16) >= 8) {
+				sx = random.nextInt(size);
+				sy = random.nextInt(size / 3);
+				cx = random.nextInt(size);
+				cy = random.nextInt(size);
+			}
+			if ((i % 16) < 8) {
+				int tx = Math.max(0, Math.min(size - 1, cx + random.nextInt(17) - 8));
+				int ty = Math.max(0, Math.min(size - 1, cy + random.nextInt(17) - 8));
+				queries.add(new PathQuery(new UnitMover(GameMap.TANK), sx, sy, tx, ty));
+			} else {
+				queries.add(new PathQuery(new UnitMover(GameMap.TANK), sx, sy, cx, cy));
+			}
+		}
+		return queries;
+	}
+}
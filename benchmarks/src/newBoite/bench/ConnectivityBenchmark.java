@@ -0,0 +1,82 @@
+package newBoite.bench;
+
+import newBoite.AStarPathFinder;
+import newBoite.ConnectivityIndex;
+import newBoite.GameMap;
+import newBoite.UnitMover;
+
+/**
+ * Measures the queries for a target a tank can't reach, an island of grass
+ * ringed with water, with and without a connectivity index. Also measures
+ * building the index and keeping it up to date as the ring is opened and
+ * closed again, and as units move.
+ * 
+ * Usage: ConnectivityBenchmark [size] [queries]
+ */
+public class ConnectivityBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles and the number of queries
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 512;
+		int count = argv.length > 1 ? Integer.parseInt(argv[1]) : 20;
+		
+		GameMap map = new GameMap(size, size);
+		int island = size - 30;
+		for (int i=0;i<20;i++) {
+			map.setTerrain(island + i, island, GameMap.WATER);
+			map.setTerrain(island + i, island + 19, GameMap.WATER);
+			map.setTerrain(island, island + i, GameMap.WATER);
+			map.setTerrain(island + 19, island + i, GameMap.WATER);
+		}
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		AStarPathFinder finder = new AStarPathFinder(map, size * size, false);
+		
+		for (int round=0;round<2;round++) {
+			long start = System.nanoTime();
+			for (int i=0;i<count;i++) {
+				finder.findPath(tank, i, 0, island + 10, island + 10);
+			}
+			long time = System.nanoTime() - start;
+			if (round == 1) {
+				System.err.println("without index: " + (time / count / 1000000.0) + " ms/unreachable query");
+			}
+		}
+		
+		long start = System.nanoTime();
+		ConnectivityIndex index = new ConnectivityIndex(map, false);
+		System.err.println("index build: " + ((System.nanoTime() - start) / 1000000.0) + " ms");
+		finder.setConnectivityIndex(index);
+		
+		int queries = count * 100000;
+		start = System.nanoTime();
+		for (int i=0;i<queries;i++) {
+			finder.findPath(tank, i % size, 0, island + 10, island + 10);
+		}
+		System.err.println("with index: " + ((System.nanoTime() - start) / queries) + " ns/unreachable query");
+		
+		// opening the ring merges the island into the land, closing it splits it again
+		int edits = 1000;
+		start = System.nanoTime();
+		for (int i=0;i<edits;i++) {
+			map.setTerrain(island + 10, island, (i % 2 == 0) ? GameMap.GRASS : GameMap.WATER);
+		}
+		System.err.println("ring opened/closed: " + ((System.nanoTime() - start) / edits / 1000.0) + " us/edit");
+		
+		// a tree on open land can't split anything, the tiles around it stay connected
+		start = System.nanoTime();
+		for (int i=0;i<edits;i++) {
+			map.setTerrain(size / 2, 2, (i % 2 == 0) ? GameMap.TREES : GameMap.GRASS);
+		}
+		System.err.println("tree placed/removed: " + ((System.nanoTime() - start) / edits / 1000.0) + " us/edit");
+		
+		start = System.nanoTime();
+		for (int i=0;i<edits;i++) {
+			map.setUnit(size / 2, 2, (i % 2 == 0) ? GameMap.BOAT : 0);
+		}
+		System.err.println("unit moved: " + ((System.nanoTime() - start) / edits / 1000.0) + " us/edit");
+	}
+}
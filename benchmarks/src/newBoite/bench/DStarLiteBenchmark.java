@@ -0,0 +1,82 @@
+package newBoite.bench;
+
+import newBoite.AStarPathFinder;
+import newBoite.DStarLitePathFinder;
+import newBoite.GameMap;
+import newBoite.Path;
+import newBoite.PathFinder;
+import newBoite.UnitMover;
+
+/**
+ * Compares replanning with D* Lite against searching again from scratch with
+ * A*. A tank walks from the top of the game map to the bottom. Every few steps
+ * another unit moves onto its route a little way ahead, and the route is
+ * planned again from the tank's current location. Both finders see the same
+ * sequence of maps and the same replans.
+ * 
+ * Usage: DStarLiteBenchmark [size] [stepsBetweenBlocks] [diagonal]
+ */
+public class DStarLiteBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles, the steps walked between blocks and true for diagonal movement
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 512;
+		int every = argv.length > 1 ? Integer.parseInt(argv[1]) : 4;
+		boolean diagonal = argv.length > 2 && Boolean.parseBoolean(argv[2]);
+		
+		// the first round warms up the JIT
+		for (int round=0;round<2;round++) {
+			GameMap map = new GameMap(size, size);
+			walk(map, new AStarPathFinder(map, size * size, diagonal), every, size, round == 1);
+			map = new GameMap(size, size);
+			walk(map, new DStarLitePathFinder(map, size * size, diagonal), every, size, round == 1);
+		}
+	}
+	
+	/**
+	 * Walk the tank down the map, blocking its route and replanning as it goes
+	 * 
+	 * @param map The map to walk across, it must be the one the finder searches
+	 * @param finder The finder replanning the route
+	 * @param every The number of steps walked between blocks
+	 * @param size The size of the map
+	 * @param report True to print the figures of the walk
+	 */
+	private static void walk(GameMap map, PathFinder finder, int every, int size, boolean report) {
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		int x = size / 2;
+		int y = 0;
+		int tx = size / 2;
+		int ty = size - 1;
+		
+		long start = System.nanoTime();
+		Path path = finder.findPath(tank, x, y, tx, ty);
+		long first = System.nanoTime() - start;
+		long firstExpanded = finder.getClosedListSize();
+		
+		int replans = 0;
+		long time = 0;
+		long expanded = 0;
+		while ((path != null) && (path.getLength() > every + 10)) {
+			x = path.getX(every);
+			y = path.getY(every);
+			map.setUnit(path.getX(every + 10), path.getY(every + 10), GameMap.BOAT);
+			
+			start = System.nanoTime();
+			path = finder.findPath(tank, x, y, tx, ty);
+			time += System.nanoTime() - start;
+			expanded += finder.getClosedListSize();
+			replans++;
+		}
+		
+		if (report) {
+			System.err.println(finder.getClass().getSimpleName() + ": first search " + (first / 1000000.0) + " ms, " + firstExpanded 
+					+ " nodes expanded; " + replans + " replans, " + (time / Math.max(1, replans) / 1000000.0) + " ms/replan, " 
+					+ (expanded / Math.max(1, replans)) + " nodes expanded/replan");
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package newBoite.bench;
+
+import java.util.Random;
+
+import newBoite.AStarPathFinder;
+import newBoite.FlowField;
+import newBoite.FlowFieldEngine;
+import newBoite.GameMap;
+import newBoite.Path;
+import newBoite.UnitMover;
+
+/**
+ * Compares a group order resolved with a flow field against one A* search per
+ * unit. A group of tanks spread over the top of the map is ordered to one tile
+ * at the bottom. The flow field is timed both when built and when answered
+ * from the cache, and each unit then walks its whole path through the field,
+ * so both sides produce every step of every path.
+ * 
+ * Usage: FlowFieldBenchmark [size] [units] [diagonal] [layout]
+ */
+public class FlowFieldBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles, the number of units, true for diagonal movement and C or MAZE for the layout
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 256;
+		int units = argv.length > 1 ? Integer.parseInt(argv[1]) : 64;
+		boolean diagonal = argv.length > 2 && Boolean.parseBoolean(argv[2]);
+		int layout = (argv.length > 3) && argv[3].equals("MAZE") ? GameMap.LAYOUT_MAZE : GameMap.LAYOUT_C;
+		
+		GameMap map = new GameMap(size, size, layout);
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		int[] sx = new int[units];
+		int[] sy = new int[units];
+		Random random = new Random(1);
+		for (int i=0;i<units;i++) {
+			do {
+				sx[i] = random.nextInt(size);
+				sy[i] = random.nextInt(size / 4);
+			} while (map.blocked(tank, sx[i], sy[i]));
+		}
+		int tx = size / 2;
+		int ty = size - 1;
+		while (map.blocked(tank, tx, ty)) {
+			tx++;
+		}
+		
+		AStarPathFinder finder = new AStarPathFinder(map, size * size, diagonal);
+		FlowFieldEngine engine = new FlowFieldEngine(map, diagonal, 8);
+		
+		// the first round warms up the JIT
+		for (int round=0;round<2;round++) {
+			long start = System.nanoTime();
+			long steps = 0;
+			for (int i=0;i<units;i++) {
+				Path path = finder.findPath(tank, sx[i], sy[i], tx, ty);
+				steps += (path == null) ? 0 : path.getLength();
+			}
+			long astar = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			long fieldSteps = walk(engine.buildField(tank, tx, ty), sx, sy);
+			long built = System.nanoTime() - start;
+			
+			engine.getField(tank, tx, ty);
+			start = System.nanoTime();
+			walk(engine.getField(tank, tx, ty), sx, sy);
+			long cached = System.nanoTime() - start;
+			
+			if (round == 1) {
+				System.err.println(units + " units, " + size + "x" + size + (diagonal ? " diagonal" : "") + ", " 
+						+ steps + " steps by A*, " + fieldSteps + " by the field");
+				System.err.println("A*, one per unit:   " + (astar / 1000) + " us");
+				System.err.println("flow field, built:  " + (built / 1000) + " us");
+				System.err.println("flow field, cached: " + (cached / 1000) + " us");
+			}
+		}
+	}
+	
+	/**
+	 * Walk every unit to the target through a field
+	 * 
+	 * @param field The field to follow
+	 * @param sx The x coordinate of each unit
+	 * @param sy The y coordinate of each unit
+	 * @return The number of steps walked, the start of each path included
+	 */
+	private static long walk(FlowField field, int[] sx, int[] sy) {
+		long steps = 0;
+		for (int i=0;i<sx.length;i++) {
+			if (!field.isReachable(sx[i], sy[i])) {
+				continue;
+			}
+			int x = sx[i];
+			int y = sy[i];
+			steps++;
+			while (field.getDirection(x, y) != FlowField.NONE) {
+				int nx = field.getNextX(x, y);
+				y = field.getNextY(x, y);
+				x = nx;
+				steps++;
+			}
+		}
+		return steps;
+	}
+}
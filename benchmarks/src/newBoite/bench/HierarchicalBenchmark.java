@@ -0,0 +1,89 @@
+package newBoite.bench;
+
+import java.util.Random;
+
+import newBoite.AStarPathFinder;
+import newBoite.GameMap;
+import newBoite.HierarchicalPathFinder;
+import newBoite.Path;
+import newBoite.PathFinder;
+import newBoite.UnitMover;
+
+/**
+ * Compares the hierarchical finder with A* on long queries across a large
+ * game map, then measures what a tile change costs the hierarchical finder:
+ * the incremental rebuild of the clusters touched against building the whole
+ * abstraction again.
+ * 
+ * Usage: HierarchicalBenchmark [size] [queries] [clusterSize]
+ */
+public class HierarchicalBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles, the number of queries and the cluster size
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 1024;
+		int count = argv.length > 1 ? Integer.parseInt(argv[1]) : 20;
+		int clusterSize = argv.length > 2 ? Integer.parseInt(argv[2]) : 16;
+		
+		GameMap map = new GameMap(size, size);
+		int[][] queries = new int[count][];
+		Random random = new Random(1);
+		for (int i=0;i<count;i++) {
+			queries[i] = new int[] { random.nextInt(size), random.nextInt(size / 3), random.nextInt(size), size - 1 - random.nextInt(size / 3) };
+		}
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		
+		HierarchicalPathFinder hierarchical = new HierarchicalPathFinder(map, clusterSize, size * size, false);
+		long start = System.nanoTime();
+		hierarchical.findPath(tank, 0, 0, 1, 0);
+		System.err.println("full build: " + ((System.nanoTime() - start) / 1000000.0) + " ms");
+		
+		run("A*", new AStarPathFinder(map, size * size, false), queries);
+		run("HPA*", hierarchical, queries);
+		
+		// each change dirties one cluster, or up to four on a border corner
+		int changes = 200;
+		long rebuild = 0;
+		for (int i=0;i<changes;i++) {
+			int x = random.nextInt(size);
+			int y = random.nextInt(size);
+			map.setUnit(x, y, (i % 2 == 0) ? GameMap.BOAT : 0);
+			start = System.nanoTime();
+			hierarchical.findPath(tank, 0, 0, 1, 0);
+			rebuild += System.nanoTime() - start;
+		}
+		System.err.println("incremental rebuild after one tile change: " + (rebuild / changes / 1000000.0) + " ms");
+	}
+	
+	/**
+	 * Run the queries with a finder and print its figures
+	 * 
+	 * @param name The name of the run
+	 * @param finder The finder to run
+	 * @param queries The start and target coordinates of each query
+	 */
+	private static void run(String name, PathFinder finder, int[][] queries) {
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		// warm up the JIT before timing anything
+		for (int[] q : queries) {
+			finder.findPath(tank, q[0], q[1], q[2], q[3]);
+		}
+		
+		long expanded = 0;
+		long length = 0;
+		long start = System.nanoTime();
+		for (int[] q : queries) {
+			Path path = finder.findPath(tank, q[0], q[1], q[2], q[3]);
+			expanded += finder.getClosedListSize();
+			length += (path == null) ? 0 : path.getLength();
+		}
+		long time = System.nanoTime() - start;
+		
+		System.err.println(name + ": " + (time / queries.length / 1000000.0) + " ms/search, " 
+				+ (expanded / queries.length) + " nodes expanded/search, total path length " + length);
+	}
+}
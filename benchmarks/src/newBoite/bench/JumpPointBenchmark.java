@@ -0,0 +1,73 @@
+package newBoite.bench;
+
+import java.util.Random;
+
+import newBoite.AStarPathFinder;
+import newBoite.GameMap;
+import newBoite.JumpPointSearchPathFinder;
+import newBoite.Path;
+import newBoite.PathFinder;
+import newBoite.UnitMover;
+
+/**
+ * Compares jump point search with A* on the uniform cost game map: time per
+ * search, nodes expanded and total path length, with and without diagonal
+ * movement. A* runs with heuristic weight 0 (a Dijkstra search) so that both
+ * finders return shortest paths and the lengths can be compared.
+ * 
+ * Usage: JumpPointBenchmark [size] [queries]
+ */
+public class JumpPointBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles and the number of queries
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 512;
+		int count = argv.length > 1 ? Integer.parseInt(argv[1]) : 50;
+		
+		GameMap map = new GameMap(size, size);
+		int[][] queries = new int[count][];
+		Random random = new Random(1);
+		for (int i=0;i<count;i++) {
+			queries[i] = new int[] { random.nextInt(size), random.nextInt(size / 3), random.nextInt(size), size - 1 - random.nextInt(size / 3) };
+		}
+		
+		for (int diagonal=0;diagonal<2;diagonal++) {
+			AStarPathFinder astar = new AStarPathFinder(map, size * size, diagonal == 1);
+			astar.setHeuristicWeight(0);
+			run("A*  diagonal=" + (diagonal == 1), astar, queries);
+			run("JPS diagonal=" + (diagonal == 1), new JumpPointSearchPathFinder(map, size * size, diagonal == 1), queries);
+		}
+	}
+	
+	/**
+	 * Run the queries with a finder and print its figures
+	 * 
+	 * @param name The name of the run
+	 * @param finder The finder to run
+	 * @param queries The start and target coordinates of each query
+	 */
+	private static void run(String name, PathFinder finder, int[][] queries) {
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		// warm up the JIT before timing anything
+		for (int[] q : queries) {
+			finder.findPath(tank, q[0], q[1], q[2], q[3]);
+		}
+		
+		long expanded = 0;
+		long length = 0;
+		long start = System.nanoTime();
+		for (int[] q : queries) {
+			Path path = finder.findPath(tank, q[0], q[1], q[2], q[3]);
+			expanded += finder.getClosedListSize();
+			length += (path == null) ? 0 : path.getLength();
+		}
+		long time = System.nanoTime() - start;
+		
+		System.err.println(name + ": " + (time / queries.length / 1000000.0) + " ms/search, " 
+				+ (expanded / queries.length) + " nodes expanded/search, total path length " + length);
+	}
+}
@@ -0,0 +1,104 @@
+package newBoite.bench;
+
+import newBoite.AStarPathFinder;
+import newBoite.ArrayAStarPathFinder;
+import newBoite.BufferNodeStore;
+import newBoite.ClosestHeuristic;
+import newBoite.GameMap;
+import newBoite.Path;
+import newBoite.PathFinder;
+import newBoite.UnitMover;
+
+/**
+ * A simple timing harness for the A* open list. Runs a fixed set of tank
+ * queries around the C shaped obstacle of a large game map and reports the
+ * average time per search.
+ * 
+ * Usage: OpenListBenchmark [size] [iterations] [nodes|arrays|buffer]
+ * 
+ * The last argument selects how the search state is held: one Node object per
+ * tile (AStarPathFinder), primitive arrays or direct buffers (ArrayAStarPathFinder).
+ */
+public class OpenListBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles, the number of timed iterations and the node storage
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 1024;
+		int iterations = argv.length > 1 ? Integer.parseInt(argv[1]) : 5;
+		String storage = argv.length > 2 ? argv[2] : "nodes";
+		
+		GameMap map = new GameMap(size, size);
+		long heapBefore = usedHeap();
+		PathFinder finder;
+		if (storage.equals("arrays")) {
+			finder = new ArrayAStarPathFinder(map, size * size, false);
+		} else if (storage.equals("buffer")) {
+			finder = new ArrayAStarPathFinder(map, size * size, false, new ClosestHeuristic(), new BufferNodeStore(size * size));
+		} else {
+			finder = new AStarPathFinder(map, size * size, false);
+		}
+		long finderHeap = usedHeap() - heapBefore;
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		
+		// start above the C, targets below it so the search has to go around
+		int[][] queries = {
+			{ size / 2, size / 10, size / 2, size * 9 / 10 },
+			{ size / 4, size / 10, size * 3 / 4, size * 9 / 10 },
+			{ size / 2, size / 2, size / 10, size / 10 },
+		};
+		
+		// warm up the JIT before timing anything
+		run(finder, tank, queries);
+		
+		long total = 0;
+		long expanded = 0;
+		for (int i=0;i<iterations;i++) {
+			long start = System.nanoTime();
+			expanded += run(finder, tank, queries);
+			total += System.nanoTime() - start;
+		}
+		
+		int searches = iterations * queries.length;
+		System.err.println("map " + size + "x" + size + " (" + storage + "): " 
+				+ (total / searches / 1000000.0) + " ms/search, " 
+				+ (expanded / searches) + " nodes closed/search, "
+				+ (finderHeap / (1024 * 1024)) + " MB of heap for the finder");
+	}
+	
+	/**
+	 * Get the amount of heap in use after a garbage collection
+	 * 
+	 * @return The number of bytes of heap in use
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i=0;i<3;i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * Run each of the queries once
+	 * 
+	 * @param finder The path finder to exercise
+	 * @param mover The mover searching
+	 * @param queries The start and target coordinates of each query
+	 * @return The total number of nodes closed by the searches
+	 */
+	private static long run(PathFinder finder, UnitMover mover, int[][] queries) {
+		long expanded = 0;
+		for (int[] q : queries) {
+			Path path = finder.findPath(mover, q[0], q[1], q[2], q[3]);
+			if (path == null) {
+				throw new IllegalStateException("No path found for query " + q[0] + "," + q[1] + " -> " + q[2] + "," + q[3]);
+			}
+			expanded += finder.getClosedListSize();
+		}
+		return expanded;
+	}
+}
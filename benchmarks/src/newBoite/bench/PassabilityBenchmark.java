@@ -0,0 +1,86 @@
+package newBoite.bench;
+
+import java.util.Random;
+
+import newBoite.AStarPathFinder;
+import newBoite.GameMap;
+import newBoite.Mover;
+import newBoite.PathFinder;
+import newBoite.TileBasedMap;
+import newBoite.UnitMover;
+
+/**
+ * Compares A* listing its moves from the neighbour masks of the game map
+ * against the same searches through a map that only offers blocked(), so
+ * each neighbour costs a call, a cast and the terrain and unit checks.
+ * 
+ * Usage: PassabilityBenchmark [size] [queries] [diagonal]
+ */
+public class PassabilityBenchmark {
+	
+	/**
+	 * Entry point of the benchmark
+	 * 
+	 * @param argv The map size in tiles, the number of queries and true for diagonal movement
+	 */
+	public static void main(String[] argv) {
+		int size = argv.length > 0 ? Integer.parseInt(argv[0]) : 1024;
+		int count = argv.length > 1 ? Integer.parseInt(argv[1]) : 20;
+		boolean diagonal = argv.length > 2 && Boolean.parseBoolean(argv[2]);
+		
+		final GameMap map = new GameMap(size, size);
+		Random random = new Random(1);
+		for (int i=0;i<size*size/20;i++) {
+			map.setUnit(random.nextInt(size), random.nextInt(size), GameMap.BOAT);
+		}
+		TileBasedMap plain = new TileBasedMap() {
+			public int getWidthInTiles() {
+				return map.getWidthInTiles();
+			}
+			public int getHeightInTiles() {
+				return map.getHeightInTiles();
+			}
+			public boolean blocked(Mover mover, int x, int y) {
+				return map.blocked(mover, x, y);
+			}
+			public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
+				return map.getCost(mover, sx, sy, tx, ty);
+			}
+		};
+		
+		int[][] queries = new int[count][];
+		for (int i=0;i<count;i++) {
+			queries[i] = new int[] { random.nextInt(size), random.nextInt(size / 3), random.nextInt(size), size - 1 - random.nextInt(size / 3) };
+		}
+		
+		// the first round warms up the JIT
+		for (int round=0;round<2;round++) {
+			run("blocked()", new AStarPathFinder(plain, size * size, diagonal), queries, round == 1);
+			run("masks", new AStarPathFinder(map, size * size, diagonal), queries, round == 1);
+		}
+	}
+	
+	/**
+	 * Run the queries with a finder and print its figures
+	 * 
+	 * @param name The name of the run
+	 * @param finder The finder to run
+	 * @param queries The start and target coordinates of each query
+	 * @param report True to print the figures
+	 */
+	private static void run(String name, PathFinder finder, int[][] queries, boolean report) {
+		UnitMover tank = new UnitMover(GameMap.TANK);
+		long expanded = 0;
+		long start = System.nanoTime();
+		for (int[] q : queries) {
+			finder.findPath(tank, q[0], q[1], q[2], q[3]);
+			expanded += finder.getClosedListSize();
+		}
+		long time = System.nanoTime() - start;
+		
+		if (report) {
+			System.err.println(name + ": " + (time / queries.length / 1000000.0) + " ms/search, " 
+					+ (time / Math.max(1, expanded)) + " ns/node expanded");
+		}
+	}
+}
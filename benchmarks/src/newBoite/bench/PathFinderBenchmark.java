@@ -0,0 +1,120 @@
+package newBoite.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import newBoite.AStarPathFinder;
+import newBoite.GameMap;
+import newBoite.Path;
+import newBoite.UnitMover;
+
+/**
+ * JMH benchmark of AStarPathFinder.findPath on the game map, across map
+ * sizes, the two test layouts, the heuristic types and diagonal movement.
+ * The tank starts where the game map places it and goes around the C shaped
+ * obstacle, or into the middle of the maze.
+ * 
+ * throughput reports ops/s and latency the distribution of the time per
+ * search, with its p99. Run with the GC profiler for the allocation rate:
+ * 
+ *   java -jar benchmarks/target/benchmarks.jar PathFinderBenchmark -prof gc
+ * 
+ * Parameters can be narrowed on the command line, e.g. -p size=1024 -p layout=MAZE
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class PathFinderBenchmark {
+	/** The width and height of the map in tiles */
+	@Param({"30", "256", "1024", "4096"})
+	private int size;
+	/** The obstacles on the map */
+	@Param({"C", "MAZE"})
+	private String layout;
+	/** The heuristic type of the finder */
+	@Param({"0", "1", "2"})
+	private int heuristicType;
+	/** True if the finder moves diagonally */
+	@Param({"false", "true"})
+	private boolean diagonal;
+	
+	/** The finder being measured */
+	private AStarPathFinder finder;
+	/** The tank searching */
+	private UnitMover tank;
+	/** The x coordinate of the start location */
+	private int sx;
+	/** The y coordinate of the start location */
+	private int sy;
+	/** The x coordinate of the target location */
+	private int tx;
+	/** The y coordinate of the target location */
+	private int ty;
+	
+	/**
+	 * Build the map and the finder, and check the search finds a path
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		boolean maze = layout.equals("MAZE");
+		GameMap map = new GameMap(size, size, maze ? GameMap.LAYOUT_MAZE : GameMap.LAYOUT_C);
+		finder = new AStarPathFinder(map, size * size, diagonal);
+		finder.setHeuristicType(heuristicType);
+		tank = new UnitMover(GameMap.TANK);
+		
+		sx = scale(15);
+		sy = scale(3);
+		tx = maze ? scale(17) : scale(15);
+		ty = maze ? scale(12) : scale(25);
+		if (finder.findPath(tank, sx, sy, tx, ty) == null) {
+			throw new IllegalStateException("No path on the " + layout + " layout of size " + size);
+		}
+	}
+	
+	/**
+	 * Scale a coordinate of the default 30x30 layout to the size of the map
+	 * 
+	 * @param c The coordinate on the default layout
+	 * @return The matching coordinate on the map
+	 */
+	private int scale(int c) {
+		return c * size / GameMap.WIDTH;
+	}
+	
+	/**
+	 * Measure the number of searches per second
+	 * 
+	 * @return The path found
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Path throughput() {
+		return finder.findPath(tank, sx, sy, tx, ty);
+	}
+	
+	/**
+	 * Measure the distribution of the time per search
+	 * 
+	 * @return The path found
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Path latency() {
+		return finder.findPath(tank, sx, sy, tx, ty);
+	}
+}
@@ -0,0 +1,56 @@
+package newBoite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder event of a single path search. The duration of the
+ * event is the duration of the search. No stack trace is taken, the searches
+ * are too frequent for it.
+ * 
+ * @see RecordingPathFinder
+ */
+@Name(PathSearchEvent.NAME)
+@Label("Path Search")
+@Category("AI_PathFinder")
+@Description("A search for a path between two tiles")
+@StackTrace(false)
+public class PathSearchEvent extends Event {
+	/** The name of the event in the recordings */
+	public static final String NAME = "newBoite.PathSearch";
+	
+	/** The x coordinate of the start location */
+	@Label("Start X")
+	int startX;
+	/** The y coordinate of the start location */
+	@Label("Start Y")
+	int startY;
+	/** The x coordinate of the target location */
+	@Label("Target X")
+	int targetX;
+	/** The y coordinate of the target location */
+	@Label("Target Y")
+	int targetY;
+	/** The type of the unit moving, -1 if the mover isn't a UnitMover */
+	@Label("Mover Type")
+	int moverType;
+	/** The type of the heuristic searched with */
+	@Label("Heuristic Type")
+	int heuristicType;
+	/** The weight of the heuristic searched with */
+	@Label("Heuristic Weight")
+	float heuristicWeight;
+	/** The number of nodes expanded */
+	@Label("Nodes Expanded")
+	int expanded;
+	/** The number of steps of the path found, 0 if there is none */
+	@Label("Path Length")
+	int pathLength;
+	/** The outcome of the search: found, unreachable or depth-limit */
+	@Label("Outcome")
+	String outcome;
+}
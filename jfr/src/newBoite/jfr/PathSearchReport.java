@@ -0,0 +1,164 @@
+package newBoite.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import newBoite.Histogram;
+
+/**
+ * Summarises the path searches of a flight recording. The searches are
+ * grouped in scenarios, one for each mover type, heuristic type and weight,
+ * and a line is printed for each, with the same separator as the results of
+ * the ExperimentRunner:
+ * 
+ * <pre>
+ * java -cp pathfinder/target/classes:jfr/target/classes newBoite.jfr.PathSearchReport recording.jfr
+ * </pre>
+ */
+public class PathSearchReport {
+	/** The header of the report */
+	public static final String HEADER = "TypeUnite;TypeHeuristique;Poid;Recherches;Trouve;Inaccessible;LimiteProfondeur;"
+			+ "DureeP50 (us);DureeP99 (us);DureeMax (us);NoeudsDevelopesMoyen;NoeudsDevelopesP99;LongueurMoyenne;";
+	
+	/** The scenarios read, in the order of their key */
+	private Map<String, Scenario> scenarios = new TreeMap<String, Scenario>();
+	
+	/**
+	 * Add the path searches of a recording to the report
+	 * 
+	 * @param file The recording
+	 * @throws IOException Indicates a failure to read the recording
+	 */
+	public void read(File file) throws IOException {
+		RecordingFile recording = new RecordingFile(file.toPath());
+		try {
+			while (recording.hasMoreEvents()) {
+				RecordedEvent event = recording.readEvent();
+				if (event.getEventType().getName().equals(PathSearchEvent.NAME)) {
+					add(event);
+				}
+			}
+		} finally {
+			recording.close();
+		}
+	}
+	
+	/**
+	 * Add a path search to its scenario
+	 * 
+	 * @param event The event of the search
+	 */
+	private void add(RecordedEvent event) {
+		int moverType = event.getInt("moverType");
+		int heuristicType = event.getInt("heuristicType");
+		float weight = event.getFloat("heuristicWeight");
+		// the key sorts on the mover, then the heuristic, then the weight, whose bits sort as the weights do when positive
+		String key = String.format("%011d;%011d;%011d", moverType + (1L << 31), heuristicType + (1L << 31), 
+				Float.floatToIntBits(weight) + (1L << 31));
+		
+		Scenario scenario = scenarios.get(key);
+		if (scenario == null) {
+			scenario = new Scenario(moverType, heuristicType, weight);
+			scenarios.put(key, scenario);
+		}
+		
+		scenario.searches++;
+		String outcome = event.getString("outcome");
+		if ("found".equals(outcome)) {
+			scenario.found++;
+		} else if ("depth-limit".equals(outcome)) {
+			scenario.depthLimit++;
+		} else {
+			scenario.unreachable++;
+		}
+		scenario.duration.record(event.getDuration().toNanos());
+		scenario.expanded.record(event.getInt("expanded"));
+		scenario.totalLength += event.getInt("pathLength");
+	}
+	
+	/**
+	 * Print the report
+	 * 
+	 * @param out The stream to print to
+	 */
+	public void print(PrintStream out) {
+		out.println(HEADER);
+		for (Scenario s : scenarios.values()) {
+			StringBuilder line = new StringBuilder();
+			line.append(s.moverType).append(';').append(s.heuristicType).append(';').append(s.weight).append(';');
+			line.append(s.searches).append(';').append(s.found).append(';').append(s.unreachable).append(';');
+			line.append(s.depthLimit).append(';');
+			line.append(s.duration.getValueAtPercentile(50) / 1000).append(';');
+			line.append(s.duration.getValueAtPercentile(99) / 1000).append(';');
+			line.append(s.duration.getMax() / 1000).append(';');
+			line.append(String.format("%.1f", s.expanded.getMean())).append(';');
+			line.append(s.expanded.getValueAtPercentile(99)).append(';');
+			line.append(String.format("%.1f", (s.found == 0) ? 0.0 : (double) s.totalLength / s.found)).append(';');
+			out.println(line);
+		}
+	}
+	
+	/**
+	 * Entry point of the report
+	 * 
+	 * @param argv The recordings to summarise
+	 * @throws IOException Indicates a failure to read a recording
+	 */
+	public static void main(String[] argv) throws IOException {
+		if (argv.length == 0) {
+			System.err.println("Usage: PathSearchReport recording.jfr [recording.jfr ...]");
+			System.exit(1);
+		}
+		
+		PathSearchReport report = new PathSearchReport();
+		for (int i=0;i<argv.length;i++) {
+			report.read(new File(argv[i]));
+		}
+		report.print(System.out);
+	}
+	
+	/**
+	 * The searches of one mover type, heuristic type and weight
+	 */
+	private static class Scenario {
+		/** The type of the unit moving */
+		private int moverType;
+		/** The type of the heuristic */
+		private int heuristicType;
+		/** The weight of the heuristic */
+		private float weight;
+		/** The number of searches */
+		private long searches;
+		/** The number of searches which found a path */
+		private long found;
+		/** The number of searches which found the target can't be reached */
+		private long unreachable;
+		/** The number of searches which gave up on reaching the maximum search distance */
+		private long depthLimit;
+		/** The sum of the lengths of the paths found */
+		private long totalLength;
+		/** The duration of the searches, in nanoseconds */
+		private Histogram duration = new Histogram(40);
+		/** The number of nodes expanded by the searches */
+		private Histogram expanded = new Histogram(31);
+		
+		/**
+		 * Create a new scenario
+		 * 
+		 * @param moverType The type of the unit moving
+		 * @param heuristicType The type of the heuristic
+		 * @param weight The weight of the heuristic
+		 */
+		public Scenario(int moverType, int heuristicType, float weight) {
+			this.moverType = moverType;
+			this.heuristicType = heuristicType;
+			this.weight = weight;
+		}
+	}
+}
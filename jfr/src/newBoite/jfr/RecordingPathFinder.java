@@ -0,0 +1,131 @@
+package newBoite.jfr;
+
+import java.util.ArrayList;
+
+import newBoite.AStarPathFinder;
+import newBoite.Mover;
+import newBoite.Node;
+import newBoite.Path;
+import newBoite.PathFinder;
+import newBoite.SearchStats;
+import newBoite.UnitMover;
+
+/**
+ * A path finder emitting a PathSearchEvent for each search of another one.
+ * When the event is disabled in the running recordings, or there is none,
+ * the search is passed on untouched: the event allocated to check it never
+ * escapes and is removed by the compiler.
+ * 
+ * An AStarPathFinder reports the nodes it expanded and why it gave up through
+ * a SearchStats. For the other finders the nodes expanded are read from the
+ * closed list size and a search finding no path is taken as unreachable.
+ */
+public class RecordingPathFinder implements PathFinder {
+	/** The outcome names of the events, indexed on the SearchStats outcomes */
+	private static final String[] OUTCOMES = {"found", "unreachable", "depth-limit"};
+	
+	/** The finder searching */
+	private PathFinder finder;
+	/** The finder searching if it reports its figures, or null */
+	private AStarPathFinder astar;
+	/** The figures of the searches of each thread */
+	private ThreadLocal<SearchStats> stats = new ThreadLocal<SearchStats>() {
+		protected SearchStats initialValue() {
+			return new SearchStats();
+		}
+	};
+	/** The heuristic type set on the finder */
+	private volatile int heuristicType;
+	/** The heuristic weight set on the finder */
+	private volatile float heuristicWeight = 1;
+	
+	/**
+	 * Create a new recording finder
+	 * 
+	 * @param finder The finder searching
+	 */
+	public RecordingPathFinder(PathFinder finder) {
+		this.finder = finder;
+		if (finder instanceof AStarPathFinder) {
+			this.astar = (AStarPathFinder) finder;
+		}
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		PathSearchEvent event = new PathSearchEvent();
+		if (!event.isEnabled()) {
+			return finder.findPath(mover, sx, sy, tx, ty);
+		}
+		
+		SearchStats s = null;
+		event.begin();
+		Path path;
+		if (astar != null) {
+			s = stats.get();
+			path = astar.findPath(mover, sx, sy, tx, ty, s);
+		} else {
+			path = finder.findPath(mover, sx, sy, tx, ty);
+		}
+		event.end();
+		
+		if (event.shouldCommit()) {
+			event.startX = sx;
+			event.startY = sy;
+			event.targetX = tx;
+			event.targetY = ty;
+			event.moverType = (mover instanceof UnitMover) ? ((UnitMover) mover).getType() : -1;
+			event.heuristicType = heuristicType;
+			event.heuristicWeight = heuristicWeight;
+			event.pathLength = (path == null) ? 0 : path.getLength();
+			if (s != null) {
+				event.expanded = s.getExpanded();
+				event.outcome = OUTCOMES[s.getOutcome()];
+			} else {
+				event.expanded = finder.getClosedListSize();
+				event.outcome = OUTCOMES[(path == null) ? SearchStats.UNREACHABLE : SearchStats.FOUND];
+			}
+			event.commit();
+		}
+		return path;
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+		finder.setHeuristicType(i);
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = w;
+		finder.setHeuristicWeight(w);
+	}
+	
+	/**
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		return finder.getClosedList();
+	}
+	
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return finder.getClosedListSize();
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return finder.getOpenListSize();
+	}
+}
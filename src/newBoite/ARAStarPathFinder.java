@@ -0,0 +1,595 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An anytime path finder using Anytime Repairing A* (ARA*). The first path is
+ * found quickly with the heuristic inflated by the weight given to
+ * setHeuristicWeight(), then the weight is lowered step by step and the path
+ * improved until the time limit runs out or the path is known to be optimal.
+ * Each improvement reuses the costs found by the previous ones: only the nodes
+ * whose cost was lowered since they were last expanded are searched again.
+ *
+ * Along with the path the finder gives its suboptimality bound: the path found
+ * costs at most getSuboptimalityBound() times the cost of the shortest path.
+ * The bound only holds if the heuristic never overestimates the cost to the
+ * target, which is the case for the Manhattan heuristic without diaganol
+ * movement.
+ *
+ * The search state is kept by tile index in a NodeStore as in
+ * ArrayAStarPathFinder. A finder is not thread safe.
+ */
+public class ARAStarPathFinder implements PathFinder {
+	/** The number of expansions between two reads of the clock */
+	private static final int CLOCK_INTERVAL = 256;
+
+	/** The state of a node reached by the search but in none of the lists */
+	private static final int SEEN = 0;
+	/** The state of a node in the open list */
+	private static final int OPEN = 1;
+	/** The state of a node expanded by the current iteration */
+	private static final int CLOSED = 2;
+	/** The state of a node whose cost was lowered after being expanded by the current iteration */
+	private static final int INCONSISTENT = 3;
+	/** The state given by getState() to the nodes the search has not reached */
+	private static final int UNVISITED = -1;
+
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The maximum depth of search we're willing to accept before giving up */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic we're applying to determine which nodes to search first */
+	private AStarHeuristic heuristic;
+	/** The heuristic type, as given to setHeuristicType() */
+	private int heuristicType;
+	/** The weight of the heuristic for the first iteration */
+	private float heuristicWeight;
+	/** The amount the weight is lowered by between two iterations */
+	private float weightStep;
+	/** The time given to a search by findPath(Mover, int, int, int, int), in nanoseconds */
+	private long timeLimit;
+
+	/** The search state of each tile of the map, the heuristic is kept without its weight */
+	private NodeStore store;
+	/** The identifier of the current search, used to stamp the state of the nodes */
+	private int searchId;
+	/** The open list, node indices ordered on g + weight * h */
+	private IndexHeap open;
+	/** The nodes expanded by the current iteration */
+	private int[] closed = new int[64];
+	/** The number of nodes expanded by the current iteration */
+	private int closedCount;
+	/** The nodes whose cost was lowered after being expanded by the current iteration */
+	private int[] inconsistent = new int[64];
+	/** The number of inconsistent nodes */
+	private int inconsistentCount;
+	/** The weight of the heuristic in the current iteration */
+	private float weight;
+	/** The deepest node reached by the current search */
+	private int maxDepth;
+	/** The number of expansions of the last search, over all its iterations */
+	private int expanded;
+	/** The number of iterations completed by the last search */
+	private int iterations;
+	/** The suboptimality bound of the path found by the last search */
+	private float bound;
+	/** The listener following the searches, or null */
+	private SearchListener listener;
+
+	/**
+	 * Create a path finder with the default heuristic and the state
+	 * held on the Java heap. The first path is searched with a weight
+	 * of 3, lowered by 0.5 at each improvement, and a search is given
+	 * 10 milliseconds.
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public ARAStarPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this(map, maxSearchDistance, allowDiagMovement, new ClosestHeuristic(),
+			 new ArrayNodeStore(map.getWidthInTiles() * map.getHeightInTiles()));
+	}
+
+	/**
+	 * Create a path finder
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param heuristic The heuristic used to determine the search order of the map
+	 * @param store The store holding the search state, it must hold at least one node per tile
+	 */
+	public ARAStarPathFinder(TileBasedMap map, int maxSearchDistance,
+							 boolean allowDiagMovement, AStarHeuristic heuristic, NodeStore store) {
+		if (store.size() < map.getWidthInTiles() * map.getHeightInTiles()) {
+			throw new IllegalArgumentException("The node store holds " + store.size() + " nodes, the map has "
+					+ (map.getWidthInTiles() * map.getHeightInTiles()) + " tiles");
+		}
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristic = heuristic;
+		this.heuristicType = 0;
+		this.heuristicWeight = 3;
+		this.weightStep = 0.5f;
+		this.timeLimit = 10000000L;
+		this.store = store;
+		this.open = new IndexHeap(store);
+	}
+
+	/**
+	 * Set the listener following the searches of this finder. Without one
+	 * the searches make no notification at all.
+	 *
+	 * @param listener The listener to notify, or null to remove it
+	 */
+	public void setSearchListener(SearchListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Set the amount the weight of the heuristic is lowered by between
+	 * two improvements of the path
+	 *
+	 * @param step The amount to lower the weight by, greater than 0
+	 */
+	public void setWeightStep(float step) {
+		if (step <= 0) {
+			throw new IllegalArgumentException("The weight step must be positive: " + step);
+		}
+		weightStep = step;
+	}
+
+	/**
+	 * Set the time given to the searches made through
+	 * findPath(Mover, int, int, int, int)
+	 *
+	 * @param nanos The time given to a search, in nanoseconds
+	 */
+	public void setTimeLimit(long nanos) {
+		timeLimit = nanos;
+	}
+
+	/**
+	 * Find a path, improving it for the time given by setTimeLimit()
+	 *
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		return findPath(mover, sx, sy, tx, ty, timeLimit);
+	}
+
+	/**
+	 * Find a path, improving it until the given time has passed. The first
+	 * path is always searched to the end, so the search may take longer than
+	 * the time given when the first path is expensive to find. The bound of
+	 * the path returned is then given by getSuboptimalityBound().
+	 *
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param nanos The time given to the search, in nanoseconds
+	 * @return The best path found in the time given, or null if no path can be found
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty, long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		expanded = 0;
+		iterations = 0;
+		bound = Float.POSITIVE_INFINITY;
+		if (map.blocked(mover, tx, ty)) {
+			return null;
+		}
+
+		nextSearch();
+		int start = (sy * width) + sx;
+		int target = (ty * width) + tx;
+		weight = Math.max(1, heuristicWeight);
+		maxDepth = 0;
+		store.setCost(start, 0);
+		store.setHeuristic(start, getHeuristicCost(mover, sx, sy, tx, ty, sx, sy));
+		store.setDepth(start, 0);
+		store.setParent(start, NodeStore.NO_PARENT);
+		setState(start, OPEN);
+		open.add(start, getKey(start));
+		if (listener != null) {
+			listener.searchStarted(sx, sy, tx, ty);
+			listener.nodeOpened(sx, sy);
+		}
+
+		Path path = null;
+		while (true) {
+			boolean complete = improvePath(mover, sx, sy, tx, ty, target, (path == null) ? Long.MAX_VALUE : deadline);
+			if (!complete) {
+				break;
+			}
+			if ((target == start) || (getState(target) == UNVISITED)) {
+				// the target can't be reached, later iterations won't reach it either
+				return null;
+			}
+			iterations++;
+			path = buildPath(start, target);
+			bound = Math.max(1, store.getCost(target) / getLowestUnweightedCost());
+			if (maxDepth >= maxSearchDistance) {
+				// the iteration gave up early, only the lower bound of the open list holds
+				break;
+			}
+			bound = Math.min(weight, bound);
+
+			if ((bound <= 1) || (System.nanoTime() - deadline >= 0)) {
+				break;
+			}
+			weight = Math.max(1, weight - weightStep);
+			startIteration();
+		}
+
+		if ((listener != null) && (path != null)) {
+			listener.pathFound(path);
+		}
+		return path;
+	}
+
+	/**
+	 * Run one iteration of the search, expanding the nodes until none of the
+	 * open list can lead to a path cheaper than the one to the target,
+	 * within the current weight of the heuristic
+	 *
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param target The index of the target location
+	 * @param deadline The value of System.nanoTime() at which the iteration should give up
+	 * @return True if the iteration completed, false if it ran out of time
+	 */
+	private boolean improvePath(Mover mover, int sx, int sy, int tx, int ty, int target, long deadline) {
+		int sinceClock = 0;
+		while ((maxDepth < maxSearchDistance) && (open.size() != 0)) {
+			int current = open.first();
+			if ((getState(target) != UNVISITED) && (getKey(target) <= getKey(current))) {
+				break;
+			}
+			if (++sinceClock == CLOCK_INTERVAL) {
+				sinceClock = 0;
+				if (System.nanoTime() - deadline >= 0) {
+					return false;
+				}
+			}
+			open.removeFirst();
+			setState(current, CLOSED);
+			addClosed(current);
+			expanded++;
+
+			int cx = current % width;
+			int cy = current / width;
+			if (listener != null) {
+				listener.nodeClosed(cx, cy);
+			}
+			float currentCost = store.getCost(current);
+			int nextDepth = store.getDepth(current) + 1;
+
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					if ((x == 0) && (y == 0)) {
+						continue;
+					}
+					if (!allowDiagMovement) {
+						if ((x != 0) && (y != 0)) {
+							continue;
+						}
+					}
+
+					int xp = x + cx;
+					int yp = y + cy;
+					if (!isValidLocation(mover, sx, sy, xp, yp)) {
+						continue;
+					}
+
+					float nextStepCost = currentCost + map.getCost(mover, cx, cy, xp, yp);
+					int neighbour = (yp * width) + xp;
+
+					int state = getState(neighbour);
+					if (state == UNVISITED) {
+						store.setHeuristic(neighbour, getHeuristicCost(mover, xp, yp, tx, ty, sx, sy));
+					} else if (nextStepCost >= store.getCost(neighbour)) {
+						continue;
+					}
+
+					store.setCost(neighbour, nextStepCost);
+					store.setParent(neighbour, current);
+					store.setDepth(neighbour, nextDepth);
+					maxDepth = Math.max(maxDepth, nextDepth);
+
+					if (state == OPEN) {
+						open.decreaseKey(neighbour, getKey(neighbour));
+					} else if (state == CLOSED) {
+						// expanded once already in this iteration, it waits for the next one
+						setState(neighbour, INCONSISTENT);
+						addInconsistent(neighbour);
+						if (listener != null) {
+							listener.nodeReopened(xp, yp);
+						}
+					} else if (state != INCONSISTENT) {
+						setState(neighbour, OPEN);
+						open.add(neighbour, getKey(neighbour));
+						if (listener != null) {
+							if (state == SEEN) {
+								listener.nodeReopened(xp, yp);
+							} else {
+								listener.nodeOpened(xp, yp);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Start a new iteration with the current weight. The inconsistent nodes
+	 * are moved to the open list, the open list is reordered on the new
+	 * weight and the closed list is emptied.
+	 */
+	private void startIteration() {
+		for (int i=0;i<closedCount;i++) {
+			if (getState(closed[i]) == CLOSED) {
+				setState(closed[i], SEEN);
+			}
+		}
+		closedCount = 0;
+
+		// lowering the weight lowers every key, so each node only moves up
+		int[] nodes = new int[open.size()];
+		for (int i=0;i<nodes.length;i++) {
+			nodes[i] = open.get(i);
+		}
+		for (int i=0;i<nodes.length;i++) {
+			open.decreaseKey(nodes[i], getKey(nodes[i]));
+		}
+		for (int i=0;i<inconsistentCount;i++) {
+			setState(inconsistent[i], OPEN);
+			open.add(inconsistent[i], getKey(inconsistent[i]));
+		}
+		inconsistentCount = 0;
+	}
+
+	/**
+	 * Get the lowest cost, without the weight of the heuristic, of the nodes
+	 * that could still lead to a cheaper path: those of the open list and
+	 * the inconsistent ones
+	 *
+	 * @return The lowest g + h of the nodes left to search, or infinity if there are none
+	 */
+	private float getLowestUnweightedCost() {
+		float lowest = Float.POSITIVE_INFINITY;
+		for (int i=0;i<open.size();i++) {
+			int node = open.get(i);
+			lowest = Math.min(lowest, store.getCost(node) + store.getHeuristic(node));
+		}
+		for (int i=0;i<inconsistentCount;i++) {
+			int node = inconsistent[i];
+			lowest = Math.min(lowest, store.getCost(node) + store.getHeuristic(node));
+		}
+		return lowest;
+	}
+
+	/**
+	 * Get the key a node is ordered on in the open list
+	 *
+	 * @param index The index of the node
+	 * @return The cost of the node plus its heuristic inflated by the current weight
+	 */
+	private float getKey(int index) {
+		return store.getCost(index) + (weight * store.getHeuristic(index));
+	}
+
+	/**
+	 * Build the path to the target from the parents of the nodes
+	 *
+	 * @param start The index of the start location
+	 * @param target The index of the target location
+	 * @return The path from the start to the target
+	 */
+	private Path buildPath(int start, int target) {
+		int length = 1;
+		for (int node = target;node != start;node = store.getParent(node)) {
+			length++;
+		}
+		Path path = new Path(length);
+		for (int node = target;node != NodeStore.NO_PARENT;node = store.getParent(node)) {
+			path.prependStep(node % width, node / width);
+		}
+		return path;
+	}
+
+	/**
+	 * Record a node expanded by the current iteration
+	 *
+	 * @param index The index of the node
+	 */
+	private void addClosed(int index) {
+		if (closedCount == closed.length) {
+			closed = Arrays.copyOf(closed, closedCount * 2);
+		}
+		closed[closedCount++] = index;
+	}
+
+	/**
+	 * Record a node whose cost was lowered after its expansion
+	 *
+	 * @param index The index of the node
+	 */
+	private void addInconsistent(int index) {
+		if (inconsistentCount == inconsistent.length) {
+			inconsistent = Arrays.copyOf(inconsistent, inconsistentCount * 2);
+		}
+		inconsistent[inconsistentCount++] = index;
+	}
+
+	/**
+	 * Start a new search, emptying the lists
+	 */
+	private void nextSearch() {
+		open.clear();
+		closedCount = 0;
+		inconsistentCount = 0;
+
+		searchId = SearchContext.nextSearchId(searchId, store);
+	}
+
+	/**
+	 * Get the state of a node in the current search
+	 *
+	 * @param index The index of the node
+	 * @return The state of the node, UNVISITED, SEEN, OPEN, CLOSED or INCONSISTENT
+	 */
+	private int getState(int index) {
+		return SearchContext.getState(store, searchId, index, UNVISITED);
+	}
+
+	/**
+	 * Set the state of a node in the current search
+	 *
+	 * @param index The index of the node
+	 * @param state The state of the node, SEEN, OPEN, CLOSED or INCONSISTENT
+	 */
+	private void setState(int index, int state) {
+		SearchContext.setState(store, searchId, index, state);
+	}
+
+	/**
+	 * Get the suboptimality bound of the path found by the last search: its
+	 * cost is at most this many times the cost of the shortest path. A bound
+	 * of 1 means the path is the shortest one.
+	 *
+	 * @return The bound of the last path found, or infinity if none was found
+	 */
+	public float getSuboptimalityBound() {
+		return bound;
+	}
+
+	/**
+	 * Get the number of times the last search found or improved its path
+	 *
+	 * @return The number of iterations completed by the last search
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Get the number of nodes expanded by the last search over all its
+	 * iterations, a node expanded by several iterations counting once for each
+	 *
+	 * @return The number of expansions of the last search
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+
+	/**
+	 * Check if a given location is valid for the supplied mover
+	 *
+	 * @param mover The mover that would hold a given location
+	 * @param sx The starting x coordinate
+	 * @param sy The starting y coordinate
+	 * @param x The x coordinate of the location to check
+	 * @param y The y coordinate of the location to check
+	 * @return True if the location is valid for the given mover
+	 */
+	protected boolean isValidLocation(Mover mover, int sx, int sy, int x, int y) {
+		boolean invalid = (x < 0) || (y < 0) || (x >= width) || (y >= height);
+
+		if ((!invalid) && ((sx != x) || (sy != y))) {
+			invalid = map.blocked(mover, x, y);
+		}
+
+		return !invalid;
+	}
+
+	/**
+	 * Get the heuristic cost for the given location, without any weight.
+	 * The weight is applied by the search, which lowers it between iterations.
+	 *
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @return The heuristic cost assigned to the tile
+	 */
+	public float getHeuristicCost(Mover mover, int x, int y, int tx, int ty, int sx, int sy) {
+		if (heuristicType == 0) {
+			return heuristic.getCostManhattan(map, mover, 1, x, y, tx, ty);
+		} else if (heuristicType == 1) {
+			return heuristic.getCostWithDynamicWeighting(map, mover, 1, x, y, tx, ty, sx, sy);
+		}
+		return heuristic.getCost(map, mover, x, y, tx, ty);
+	}
+
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+	}
+
+	/**
+	 * Set the weight of the heuristic for the first iteration of each search.
+	 * Weights below 1 are searched as 1, giving a single optimal iteration.
+	 *
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = w;
+	}
+
+	/**
+	 * Get the nodes expanded by the last iteration of the last search. Node
+	 * objects are only created here, for the callers that need them.
+	 *
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		ArrayList<Node> list = new ArrayList<Node>(closedCount);
+		for (int i=0;i<closedCount;i++) {
+			int index = closed[i];
+			Node node = new Node(index % width, index / width);
+			node.setCost(store.getCost(index));
+			node.setHeuristic(store.getHeuristic(index));
+			node.setDepth(store.getDepth(index));
+			list.add(node);
+		}
+		return list;
+	}
+
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return closedCount;
+	}
+
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return open.size();
+	}
+}
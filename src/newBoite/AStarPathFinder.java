@@ -1,7 +1,6 @@
 package newBoite;
 
 import java.util.ArrayList;
-import java.util.Collections;
 
 import newBoite.Node;
 import newBoite.ClosestHeuristic;
@@ -10,27 +9,40 @@ import newBoite.ClosestHeuristic;
  * A path finder implementation that uses the AStar heuristic based algorithm
  * to determine a path. 
  * 
+ * The finder itself only holds the description of the search, the state of
+ * each query lives in a SearchContext. Each thread gets its own context, kept
+ * from one search to the next, so several threads can search the same map
+ * through one finder at the same time.
+ * 
  * @author Kevin Glass
  */
 public class AStarPathFinder implements PathFinder {
-	/** The set of nodes that have been searched through */
-	private ArrayList<Node> closed = new ArrayList<Node>();
-	/** The set of nodes that we do not yet consider fully searched */
-	private SortedList open = new SortedList();
-	
 	/** The map being searched */
 	private TileBasedMap map;
 	/** The maximum depth of search we're willing to accept before giving up */
 	private int maxSearchDistance;
 	
-	/** The complete set of nodes across the map */
-	private Node[][] nodes;
 	/** True if we allow diaganol movement */
 	private boolean allowDiagMovement;
 	/** The heuristic we're applying to determine which nodes to search first */
 	private AStarHeuristic heuristic;
-	private int heuristicType;
-	private float heuristicWeight;
+	private volatile int heuristicType;
+	private volatile float heuristicWeight;
+	/** The index telling unreachable targets apart without searching, or null */
+	private volatile ConnectivityIndex connectivity;
+	/** The listener following the searches, or null */
+	private volatile SearchListener listener;
+	/** True if the searches may keep their open list in buckets when the costs are whole numbers */
+	private volatile boolean integerCosts;
+	/** True if the nodes of equal f cost are expanded largest g cost first in integer cost searches */
+	private volatile boolean largerCostFirst = true;
+	
+	/** The search context of each thread using this finder */
+	private ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+		protected SearchContext initialValue() {
+			return createSearchContext();
+		}
+	};
 	
 	/**
 	 * Create a path finder with the default heuristic - closest to target.
@@ -59,12 +71,119 @@ public class AStarPathFinder implements PathFinder {
 		this.map = map;
 		this.maxSearchDistance = maxSearchDistance;
 		this.allowDiagMovement = allowDiagMovement;
-		
-		nodes = new Node[map.getWidthInTiles()][map.getHeightInTiles()];
-		for (int x=0;x<map.getWidthInTiles();x++) {
-			for (int y=0;y<map.getHeightInTiles();y++) {
-				nodes[x][y] = new Node(x,y);
-			}
+	}
+	
+	/**
+	 * Set the index used to reject the targets that can't be reached from
+	 * the start without searching
+	 * 
+	 * @param index The index to use, or null to always search
+	 */
+	public void setConnectivityIndex(ConnectivityIndex index) {
+		if ((index != null) && allowDiagMovement && !index.allowsDiagMovement()) {
+			throw new IllegalArgumentException("The index must connect areas through diagonal moves when the finder allows them");
+		}
+		connectivity = index;
+	}
+	
+	/**
+	 * Set the listener following the searches of this finder. Without one
+	 * the searches make no notification at all.
+	 * 
+	 * @param listener The listener to notify, or null to remove it
+	 */
+	public void setSearchListener(SearchListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Allow the searches to keep their open list in buckets, one per f cost,
+	 * when the costs are whole numbers. This is off by default: the buckets
+	 * break the ties between nodes of equal f cost in another order than the
+	 * heap, so the nodes expanded, and some of the paths, change with it.
+	 * 
+	 * @param integerCosts True to use the buckets when the costs allow it, false to always use the heap
+	 * @see #usesIntegerCosts(Mover)
+	 */
+	public void setIntegerCosts(boolean integerCosts) {
+		this.integerCosts = integerCosts;
+	}
+	
+	/**
+	 * Set the order in which the nodes of equal f cost are expanded by the
+	 * searches with integer costs. Taking the largest g cost first, the
+	 * default, follows one path across a plateau of equal f cost rather
+	 * than expanding all of it.
+	 * 
+	 * @param largerCostFirst True to expand the largest g cost first, false the smallest
+	 * @see #usesIntegerCosts(Mover)
+	 */
+	public void setLargerCostFirst(boolean largerCostFirst) {
+		this.largerCostFirst = largerCostFirst;
+	}
+	
+	/**
+	 * Check if the searches of a mover run with integer costs. This is the
+	 * case when they were allowed to with setIntegerCosts(), the map reports
+	 * the same whole cost for every move of the mover and the heuristic is
+	 * the Manhattan one with a whole weight, so that every f cost is a whole
+	 * number. The open list is then kept in buckets, one per f cost, rather
+	 * than in a heap.
+	 * 
+	 * @param mover The entity that will be moving along the paths
+	 * @return True if the searches of the mover keep their open list in buckets
+	 */
+	public boolean usesIntegerCosts(Mover mover) {
+		if (!integerCosts || !(map instanceof UniformCostMap) || (heuristicType != 0)) {
+			return false;
+		}
+		if (!(heuristic instanceof ClosestHeuristic) && !(heuristic instanceof LandmarkHeuristic)) {
+			return false;
+		}
+		float weight = heuristicWeight;
+		float cost = ((UniformCostMap) map).getUniformCost(mover);
+		return (cost > 0) && (cost == (int) cost) && (weight >= 0) && (weight == (int) weight);
+	}
+	
+	/**
+	 * Check if one search towards several targets finds paths as short as
+	 * a search towards each target would. This is only certain when the
+	 * moves are along the axes, with the same cost everywhere, and the
+	 * heuristic never overestimates the remaining cost: the Manhattan one
+	 * weighted no more than the cost of a move, or the straight distance
+	 * when a move costs at least 1.
+	 * 
+	 * @param mover The entity that will be moving along the paths
+	 * @return True if findPaths runs one shared search for the mover
+	 * @see #findPaths(SearchContext, Mover, int, int, int[], int[])
+	 */
+	public boolean canShareSearch(Mover mover) {
+		if (allowDiagMovement || !(map instanceof UniformCostMap)) {
+			return false;
+		}
+		if (!(heuristic instanceof ClosestHeuristic) && !(heuristic instanceof LandmarkHeuristic)) {
+			return false;
+		}
+		float weight = heuristicWeight;
+		float cost = ((UniformCostMap) map).getUniformCost(mover);
+		if (heuristicType == 0) {
+			return (cost > 0) && (weight >= 0) && (weight <= cost);
+		}
+		return (heuristicType == 2) && (cost >= 1);
+	}
+	
+	/**
+	 * Start a search in a context, with its open list in buckets if the
+	 * costs of the mover allow it
+	 * 
+	 * @param context The context to start the search in
+	 * @param mover The entity that will be moving along the path
+	 */
+	private void startSearch(SearchContext context, Mover mover) {
+		if (usesIntegerCosts(mover)) {
+			context.startIntegerSearch(largerCostFirst);
+		} else {
+			context.startSearch();
 		}
 	}
 	
@@ -72,198 +191,506 @@ public class AStarPathFinder implements PathFinder {
 	 * @see PathFinder#findPath(Mover, int, int, int, int)
 	 */
 	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		return findPath(contexts.get(), mover, sx, sy, tx, ty, null);
+	}
+	
+	/**
+	 * Find a path and fill in the figures of the search
+	 * 
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param stats The figures to fill in
+	 * @return The path found from start to end, or null if no path can be found
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty, SearchStats stats) {
+		return findPath(contexts.get(), mover, sx, sy, tx, ty, stats);
+	}
+	
+	/**
+	 * Find a path using the given search context. The context holds the
+	 * state of the search once it is over (closed and open lists).
+	 * 
+	 * @param context The context to run the search in, only one search may use it at a time
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The path found from start to end, or null if no path can be found
+	 */
+	public Path findPath(SearchContext context, Mover mover, int sx, int sy, int tx, int ty) {
+		return findPath(context, mover, sx, sy, tx, ty, null);
+	}
+	
+	/**
+	 * Find a path using the given search context, and fill in the figures
+	 * of the search
+	 * 
+	 * @param context The context to run the search in, only one search may use it at a time
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param stats The figures to fill in, or null. A search stopped before it starts, 
+	 * because the target can't be reached, only sets the outcome.
+	 * @return The path found from start to end, or null if no path can be found
+	 */
+	public Path findPath(SearchContext context, Mover mover, int sx, int sy, int tx, int ty, SearchStats stats) {
+		long startTime = (stats == null) ? 0 : System.nanoTime();
+		
+		// la recherche complete est une recherche par tranches sans limite de noeuds developpes,
+		// menee avec la recherche du contexte pour ne rien allouer
+		IncrementalSearch search = context.reuseSearch(this, mover, sx, sy, tx, ty);
+		startSearch(search);
+		if (!search.isDone()) {
+			step(search, Integer.MAX_VALUE);
+		}
+		
+		if (stats != null) {
+			search.elapsedNanos = System.nanoTime() - startTime;
+			search.fillStats(stats);
+		}
+		Path path = search.getPath();
+		// ne pas retenir le chemin dans le contexte jusqu'a la prochaine recherche
+		search.path = null;
+		return path;
+	}
+
+	/**
+	 * Start a search to be run in slices, in a context of its own
+	 * 
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The search, to be carried on with step()
+	 */
+	public IncrementalSearch startSearch(Mover mover, int sx, int sy, int tx, int ty) {
+		return startSearch(createSearchContext(), mover, sx, sy, tx, ty);
+	}
+	
+	/**
+	 * Start a search to be run in slices. No node is expanded yet. The
+	 * context belongs to the search until it is over or cancelled.
+	 * 
+	 * @param context The context to run the search in, only one search may use it at a time
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The search, to be carried on with step()
+	 */
+	public IncrementalSearch startSearch(SearchContext context, Mover mover, int sx, int sy, int tx, int ty) {
+		IncrementalSearch search = new IncrementalSearch(this, context, mover, sx, sy, tx, ty);
+		startSearch(search);
+		return search;
+	}
+	
+	/**
+	 * Set up a new search: its first node in the open list, or its end if
+	 * the target can't be reached
+	 * 
+	 * @param search The search to set up, with no node expanded yet
+	 */
+	private void startSearch(IncrementalSearch search) {
+		SearchContext context = search.context;
+		Mover mover = search.mover;
+		int sx = search.sx;
+		int sy = search.sy;
+		int tx = search.tx;
+		int ty = search.ty;
+		
 		// Si la case destination est un obstacle, alors annulle la recherche.
-		if (map.blocked(mover, tx, ty)) {
-			return null;
+		// Si le depart et la destination sont dans des zones separees, aucun chemin n'existe.
+		ConnectivityIndex index = connectivity;
+		if (map.blocked(mover, tx, ty) || ((index != null) && !index.connected(mover, sx, sy, tx, ty))) {
+			search.finish(IncrementalSearch.FAILED, null);
+			return;
 		}
 		
 		//Initialisation de l'etat de l'agent, la liste Closed (Liste de noeud essayer et carter de la solution) est vide,
 		//la liste Open (Liste de noeud a evaluer pouvant potentiellement faire partie de la solution) ne contient que le noeud de depart avec
 		//un cout de 0 (on est deja l) et une profondeur atteinte de 0 (pas fait de pas encore).
-		nodes[sx][sy].setCost(0);
-		nodes[sx][sy].setDepth(0); 
-		closed.clear();
-		open.clear();
-		open.add(nodes[sx][sy]);
-		
-		nodes[tx][ty].setParent(null);
+		//Les listes sont videes en changeant d'identifiant de recherche : l'etat laisse
+		//dans les noeuds par les recherches precedentes est alors ignore.
+		startSearch(context, mover);
+		search.start = context.getNode(sx, sy);
+		search.start.setCost(0);
+		search.start.setDepth(0);
+		context.addToOpen(search.start);
+		search.generated = 1;
+		search.peakOpenSize = 1;
+		search.target = context.getNode(tx, ty);
+		search.target.setParent(null);
+		search.masks = getNeighbourMasks(mover);
+		search.listener = listener;
+		if (search.listener != null) {
+			search.listener.searchStarted(sx, sy, tx, ty);
+			search.listener.nodeOpened(sx, sy);
+		}
+	}
+	
+	/**
+	 * Carry on a search started with startSearch(), stopped after a number 
+	 * of expansions with its state kept in the search. findPath() runs the 
+	 * whole search in a single step.
+	 * 
+	 * @param search The search to carry on
+	 * @param maxExpansions The largest number of nodes to expand
+	 */
+	void step(IncrementalSearch search, int maxExpansions) {
+		SearchContext context = search.context;
+		Node target = search.target;
+		int expansions = 0;
 		
 		// Tant que nous avons pas atteint la destination et depass un nombre max de pas, faire:
-		int maxDepth = 0;
-		while ((maxDepth < maxSearchDistance) && (open.size() != 0)) {
+		while ((search.maxDepth < maxSearchDistance) && (context.getOpenListSize() != 0)) {
 			
 			//Prendre le premier noeud de la liste. Il s'agit du prochain noeud  tre explorer (ou reevaluer).
-			Node current = getFirstInOpen();
+			Node current = context.getFirstInOpen();
 			
 			//Si le noeud  evaluer est le noeud destination alors arreter la recherche.
-			if (current == nodes[tx][ty]) {
+			if (current == target) {
 				break;
 			}
-			// On enleve le noeud de la liste Open et on la met dans la liste Closed
-			removeFromOpen(current);
-			addToClosed(current);
-			
-			//Rechercher chaque noeud voisin du noeud en evaluation et calculer leur cout 
-			//si elle devienne le prochain noeud sur lequel se deplace l'agent			
-			for (int x=-1;x<2;x++) {
-				for (int y=-1;y<2;y++) {
-					// Ce noeud est celui actuellement sous evaluation, il n'est donc pas un voisin
-					if ((x == 0) && (y == 0)) {
-						continue;
-					}
-					
-					//Si on interdit les deplacement en diagonale alors 
-					//les voisins en coin sont ignorer
-					if (!allowDiagMovement) {
-						if ((x != 0) && (y != 0)) {
-							continue;
-						}
-					}					
-					
-					//Localison le noeud voisin sur le terrain
-					int xp = x + current.getX();
-					int yp = y + current.getY();
-					
-					//Si le noeud voisin est une case de deplacement potentiel valide, 
-					//ie si c'est une case sans obstacle, a l'interieur du terrain et n'est pas le noeud de depart.
-					if (isValidLocation(mover,sx,sy,xp,yp)) {
-						
-						//Le cout pour atteindre ce noeud voisin est le cout du noeud en evaluation plus le cout du mouvement. 
-						//Ce calcul n'inclue que la partie Disjstra (g(n)) de A*
-						float nextStepCost = current.getCost() + getMovementCost(mover, current.getX(), current.getY(), xp, yp); 
-						Node neighbour = nodes[xp][yp];
-						map.pathFinderVisited(xp, yp);
-						
-						//Si le nouveau cout (g(n)) calculer pour le noeud voisin est moindre que 
-						//son ancien cout calculer, alors s'assurer que le noeud n'est pas 
-						//dans la liste Closed. Nous avons trouver un meilleur chemin pour nous
-						//rendre a ce noeud. Il faut donc reevaluer son f(n):
-						//Si le noeud faisait deja partie de la liste Open, nous allons le retirer 
-						//pour le temps de la reevaluation.
-						if (nextStepCost < neighbour.getCost()) {
-							if (inOpenList(neighbour)) {
-								removeFromOpen(neighbour);
-							}
-							if (inClosedList(neighbour)) {
-								removeFromClosed(neighbour);
-							}
-						}
-												
-						//Si le noeud ne fait pas partie de la liste de noeud candidate a evaluer(Open) ou de la liste des noeud rejeter (Closed)
-						//alors calculer et assigner son nouveau cout g(n) et h(n) et l'ajouter  la liste Open.
-						if (!inOpenList(neighbour) && !(inClosedList(neighbour))) {
-							neighbour.setCost(nextStepCost);
-							neighbour.setHeuristic(getHeuristicCost(mover, xp, yp, tx, ty, sx, sy));
-							maxDepth = Math.max(maxDepth, neighbour.setParent(current));
-							addToOpen(neighbour);
-						}
-					}
-				}
+			if (expansions == maxExpansions) {
+				return;
 			}
+			expand(search, current, null, null, 0);
+			expansions++;
 		}
-				
+		
 		//Nous n'avons pas atteint la destination dans notre recherche. Retourne null.
-		if (nodes[tx][ty].getParent() == null) {
-			return null;
+		if (target.getParent() == null) {
+			search.outcome = (search.maxDepth >= maxSearchDistance) ? SearchStats.DEPTH_LIMIT : SearchStats.UNREACHABLE;
+			search.finish(IncrementalSearch.FAILED, null);
+			return;
 		}
-				
+		
 		//Nous avons atteint la destination, retourner le chemin trouver.
 		//Utiliser les references au parent pour faire le chemin du retour et reconstituer l'ensemble des 
 		//noeuds emprunts
-		Path path = new Path();
-		Node target = nodes[tx][ty];
-		while (target != nodes[sx][sy]) {
-			path.prependStep(target.getX(), target.getY());
-			target = target.getParent();
+		Path path = buildPath(search.start, target);
+		if (search.listener != null) {
+			search.listener.pathFound(path);
 		}
-		path.prependStep(sx,sy);
-		
-		//Give the length of the path
+		search.outcome = SearchStats.FOUND;
+		search.finish(IncrementalSearch.FOUND, path);
+	}
+	
+	/**
+	 * Expand a node: move it from the open list to the closed list and offer
+	 * the moves out of it to its neighbours. The figures of the search are
+	 * updated as it goes.
+	 * 
+	 * @param search The search expanding the node
+	 * @param current The node to expand, the first of the open list
+	 * @param tx The x coordinates of the targets the heuristic leads to, or null for the target of the search
+	 * @param ty The y coordinates of the targets the heuristic leads to, or null for the target of the search
+	 * @param count The number of targets in tx and ty
+	 */
+	private void expand(IncrementalSearch search, Node current, int[] tx, int[] ty, int count) {
+		SearchContext context = search.context;
+		Mover mover = search.mover;
+		SearchListener listener = search.listener;
 		
-		System.out.println("Nombre de pas du chemin : "+ path.getLength());
-		System.out.println("Nombre case essay sans succes : "+ this.getClosedList().size());
+		// On enleve le noeud de la liste Open et on la met dans la liste Closed
+		context.removeFromOpen(current);
+		context.addToClosed(current);
+		search.expanded++;
+		if (listener != null) {
+			listener.nodeClosed(current.getX(), current.getY());
+		}
 		
-		// thats it, we have our path 
-		return path;
+		//Rechercher chaque noeud voisin du noeud en evaluation et calculer leur cout 
+		//si elle devienne le prochain noeud sur lequel se deplace l'agent.
+		//Seuls les voisins ou l'agent peut se deplacer sont enumeres : cases sans obstacle,
+		//a l'interieur du terrain, pas en diagonale si c'est interdit, ou le noeud de depart.
+		int successors = getSuccessors(search.masks, mover, search.sx, search.sy, current.getX(), current.getY());
+		while (successors != 0) {
+			int i = Integer.numberOfTrailingZeros(successors);
+			successors &= successors - 1;
+			
+			//Localison le noeud voisin sur le terrain
+			int xp = current.getX() + PassabilityMap.NEIGHBOUR_X[i];
+			int yp = current.getY() + PassabilityMap.NEIGHBOUR_Y[i];
+			
+			//Le cout pour atteindre ce noeud voisin est le cout du noeud en evaluation plus le cout du mouvement. 
+			//Ce calcul n'inclue que la partie Disjstra (g(n)) de A*
+			float nextStepCost = current.getCost() + getMovementCost(mover, current.getX(), current.getY(), xp, yp); 
+			Node neighbour = context.getNode(xp, yp);
+			
+			//Si le nouveau cout (g(n)) calculer pour le noeud voisin est moindre que 
+			//son ancien cout calculer, alors s'assurer que le noeud n'est pas 
+			//dans la liste Closed. Nous avons trouver un meilleur chemin pour nous
+			//rendre a ce noeud. Il faut donc reevaluer son f(n):
+			//Si le noeud faisait deja partie de la liste Open, il y reste : on met a jour
+			//son cout et son parent puis on le remonte dans le tas (decrease-key).
+			if (nextStepCost < neighbour.getCost()) {
+				if (context.inOpenList(neighbour)) {
+					neighbour.setCost(nextStepCost);
+					search.maxDepth = Math.max(search.maxDepth, neighbour.setParent(current));
+					context.decreaseKeyInOpen(neighbour);
+				}
+				if (context.inClosedList(neighbour)) {
+					context.removeFromClosed(neighbour);
+					search.reopened++;
+					if (listener != null) {
+						listener.nodeReopened(xp, yp);
+					}
+				}
+			}
+			
+			//Si le noeud ne fait pas partie de la liste de noeud candidate a evaluer(Open) ou de la liste des noeud rejeter (Closed)
+			//alors calculer et assigner son nouveau cout g(n) et h(n) et l'ajouter  la liste Open.
+			if (!context.inOpenList(neighbour) && !(context.inClosedList(neighbour))) {
+				neighbour.setCost(nextStepCost);
+				if (tx == null) {
+					neighbour.setHeuristic(getHeuristicCost(mover, xp, yp, search.tx, search.ty, search.sx, search.sy));
+				} else {
+					neighbour.setHeuristic(getHeuristicCost(mover, xp, yp, tx, ty, count, search.sx, search.sy));
+				}
+				search.maxDepth = Math.max(search.maxDepth, neighbour.setParent(current));
+				context.addToOpen(neighbour);
+				search.heuristicEvaluations++;
+				search.generated++;
+				search.peakOpenSize = Math.max(search.peakOpenSize, context.getOpenListSize());
+				if (listener != null) {
+					listener.nodeOpened(xp, yp);
+				}
+			}
+		}
 	}
-
+	
 	/**
-	 * Get the first element from the open list. This is the next
-	 * one to be searched.
+	 * Find the paths from one start location to several targets with a single
+	 * search. The search is guided by the smallest heuristic cost towards the
+	 * targets not reached yet, and goes on until every target has been taken
+	 * out of the open list. Each time a target is reached the heuristic of the
+	 * open nodes is computed again towards the remaining targets.
 	 * 
-	 * @return The first element in the open list
+	 * With diagonal moves, varying costs or a heuristic that may overestimate,
+	 * the shared search can return longer paths than findPath, so each target
+	 * gets its own search instead.
+	 * 
+	 * @param context The context to run the search in, only one search may use it at a time
+	 * @param mover The entity that will be moving along the paths
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinates of the target locations
+	 * @param ty The y coordinates of the target locations
+	 * @return The path to each target, in the order of the targets, null for the targets that can not be reached
 	 */
-	protected Node getFirstInOpen() {
-		return (Node) open.first();
+	public Path[] findPaths(SearchContext context, Mover mover, int sx, int sy, int[] tx, int[] ty) {
+		Path[] paths = new Path[tx.length];
+		if (!canShareSearch(mover)) {
+			for (int i=0;i<tx.length;i++) {
+				paths[i] = findPath(context, mover, sx, sy, tx[i], ty[i]);
+			}
+			return paths;
+		}
+		
+		startSearch(context, mover);
+		Node start = context.getNode(sx, sy);
+		start.setCost(0);
+		start.setDepth(0);
+		
+		// the targets still to reach are the first remaining entries of targets, rx and ry
+		Node[] targets = new Node[tx.length];
+		int[] rx = new int[tx.length];
+		int[] ry = new int[tx.length];
+		int remaining = 0;
+		ConnectivityIndex index = connectivity;
+		for (int i=0;i<tx.length;i++) {
+			if (!map.blocked(mover, tx[i], ty[i]) && ((index == null) || index.connected(mover, sx, sy, tx[i], ty[i]))) {
+				Node target = context.getNode(tx[i], ty[i]);
+				if ((target != start) && (indexOf(targets, remaining, target) < 0)) {
+					targets[remaining] = target;
+					rx[remaining] = tx[i];
+					ry[remaining] = ty[i];
+					remaining++;
+				}
+			}
+		}
+		if (remaining == 0) {
+			// no target to search for, and no heuristic to order the open list by
+			return paths;
+		}
+		
+		start.setHeuristic(getHeuristicCost(mover, sx, sy, rx, ry, remaining, sx, sy));
+		context.addToOpen(start);
+		SearchListener listener = this.listener;
+		if (listener != null) {
+			listener.searchStarted(sx, sy, -1, -1);
+			listener.nodeOpened(sx, sy);
+		}
+		
+		// the state of the expansions, with no single target
+		IncrementalSearch search = context.reuseSearch(this, mover, sx, sy, -1, -1);
+		search.masks = getNeighbourMasks(mover);
+		search.listener = listener;
+		while ((search.maxDepth < maxSearchDistance) && (context.getOpenListSize() != 0) && (remaining > 0)) {
+			Node current = context.getFirstInOpen();
+			
+			int reached = indexOf(targets, remaining, current);
+			if (reached >= 0) {
+				remaining--;
+				targets[reached] = targets[remaining];
+				rx[reached] = rx[remaining];
+				ry[reached] = ry[remaining];
+				if (remaining == 0) {
+					break;
+				}
+				
+				// the heuristic is now towards fewer targets, so it can only grow
+				for (int i=0;i<context.getOpenListSize();i++) {
+					Node node = context.getOpenNode(i);
+					node.setHeuristic(getHeuristicCost(mover, node.getX(), node.getY(), rx, ry, remaining, sx, sy));
+				}
+				context.reorderOpen();
+				continue;
+			}
+			
+			expand(search, current, rx, ry, remaining);
+		}
+		
+		for (int i=0;i<tx.length;i++) {
+			if (map.blocked(mover, tx[i], ty[i])) {
+				continue;
+			}
+			Node target = context.getNode(tx[i], ty[i]);
+			if ((target != start) && (target.getParent() != null)) {
+				paths[i] = buildPath(start, target);
+				if (listener != null) {
+					listener.pathFound(paths[i]);
+				}
+			}
+		}
+		return paths;
 	}
 	
 	/**
-	 * Add a node to the open list
+	 * Find a node amongst the first entries of an array
 	 * 
-	 * @param node The node to be added to the open list
+	 * @param nodes The array to search
+	 * @param count The number of entries to search
+	 * @param node The node to look for
+	 * @return The index of the node in the array or -1 if it is not found
 	 */
-	protected void addToOpen(Node node) {
-		open.add(node);
+	private static int indexOf(Node[] nodes, int count, Node node) {
+		for (int i=0;i<count;i++) {
+			if (nodes[i] == node) {
+				return i;
+			}
+		}
+		return -1;
 	}
 	
 	/**
-	 * Check if a node is in the open list
+	 * Get the heuristic cost for the given location towards the closest of
+	 * several targets
 	 * 
-	 * @param node The node to check for
-	 * @return True if the node given is in the open list
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinates of the targets
+	 * @param ty The y coordinates of the targets
+	 * @param count The number of targets to consider, the first of tx and ty
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @return The smallest heuristic cost towards the targets
 	 */
-	protected boolean inOpenList(Node node) {
-		return open.contains(node);
+	private float getHeuristicCost(Mover mover, int x, int y, int[] tx, int[] ty, int count, int sx, int sy) {
+		float best = Float.MAX_VALUE;
+		for (int i=0;i<count;i++) {
+			best = Math.min(best, getHeuristicCost(mover, x, y, tx[i], ty[i], sx, sy));
+		}
+		return best;
 	}
 	
-	public int getOpenListSize() {
-		return open.size();
+	/**
+	 * Build the path leading to a node by following the parents back
+	 * to the start of the search
+	 * 
+	 * @param start The node the search started from
+	 * @param target The node the path leads to
+	 * @return The path from start to target
+	 */
+	private Path buildPath(Node start, Node target) {
+		int length = 1;
+		for (Node step = target;step != start;step = step.getParent()) {
+			length++;
+		}
+		
+		Path path = new Path(length);
+		Node step = target;
+		while (step != start) {
+			path.prependStep(step.getX(), step.getY());
+			step = step.getParent();
+		}
+		path.prependStep(start.getX(), start.getY());
+		return path;
+	}
+
+	/**
+	 * Get the search context of the calling thread, the one used by
+	 * findPath(Mover, int, int, int, int)
+	 * 
+	 * @return The search context of the calling thread
+	 */
+	public SearchContext getSearchContext() {
+		return contexts.get();
 	}
 	
 	/**
-	 * Remove a node from the open list
+	 * Get the map searched by this finder
 	 * 
-	 * @param node The node to remove from the open list
+	 * @return The map searched by this finder
 	 */
-	protected void removeFromOpen(Node node) {
-		open.remove(node);
+	public TileBasedMap getMap() {
+		return map;
 	}
 	
 	/**
-	 * Add a node to the closed list
+	 * Create a new search context suited to the map searched by this finder
 	 * 
-	 * @param node The node to add to the closed list
+	 * @return A new search context
 	 */
-	protected void addToClosed(Node node) {
-		closed.add(node);
+	public SearchContext createSearchContext() {
+		return new SearchContext(map.getWidthInTiles());
 	}
 	
 	/**
-	 * get the closed list
+	 * Get the closed list of the last search run by the calling thread
 	 * 
-	 * @param node The node to add to the closed list
+	 * @see PathFinder#getClosedList()
 	 */
 	public ArrayList<Node> getClosedList() {
-		return closed;
+		return contexts.get().getClosedList();
 	}
 	
 	/**
-	 * Check if the node supplied is in the closed list
+	 * Get the size of the closed list of the last search run by the calling thread
 	 * 
-	 * @param node The node to search for
-	 * @return True if the node specified is in the closed list
+	 * @see PathFinder#getClosedListSize()
 	 */
-	protected boolean inClosedList(Node node) {
-		return closed.contains(node);
+	public int getClosedListSize() {
+		return contexts.get().getClosedListSize();
 	}
-		
+	
 	/**
-	 * Remove a node from the closed list
+	 * Get the size of the open list of the last search run by the calling thread
 	 * 
-	 * @param node The node to remove from the closed list
+	 * @see PathFinder#getOpenListSize()
 	 */
-	protected void removeFromClosed(Node node) {
-		closed.remove(node);
+	public int getOpenListSize() {
+		return contexts.get().getOpenListSize();
 	}
 	
 	/**
@@ -286,6 +713,59 @@ public class AStarPathFinder implements PathFinder {
 		return !invalid;
 	}
 	
+	/**
+	 * Get the neighbour masks the map keeps for a mover
+	 * 
+	 * @param mover The entity that will be moving
+	 * @return The neighbour masks, or null if the map doesn't keep them for the mover
+	 */
+	private byte[] getNeighbourMasks(Mover mover) {
+		if (map instanceof PassabilityMap) {
+			return ((PassabilityMap) map).getNeighbourMasks(mover);
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the moves out of a tile, as a mask whose bits stand for the 
+	 * neighbours in the order of PassabilityMap.NEIGHBOUR_X and NEIGHBOUR_Y
+	 * 
+	 * @param masks The neighbour masks kept by the map, or null to check each
+	 * neighbour with isValidLocation()
+	 * @param mover The entity that will be moving
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param x The x coordinate of the tile moved from
+	 * @param y The y coordinate of the tile moved from
+	 * @return The mask of the neighbours the mover may step to
+	 */
+	private int getSuccessors(byte[] masks, Mover mover, int sx, int sy, int x, int y) {
+		int successors = 0;
+		if (masks == null) {
+			for (int i=0;i<8;i++) {
+				if ((allowDiagMovement || ((PassabilityMap.ORTHOGONAL_NEIGHBOURS & (1 << i)) != 0)) 
+					&& isValidLocation(mover, sx, sy, x + PassabilityMap.NEIGHBOUR_X[i], y + PassabilityMap.NEIGHBOUR_Y[i])) {
+					successors |= 1 << i;
+				}
+			}
+			return successors;
+		}
+		
+		successors = masks[(y * map.getWidthInTiles()) + x] & 0xFF;
+		// the start location is always valid, even with the mover standing on it
+		int dx = sx - x;
+		int dy = sy - y;
+		if ((dx >= -1) && (dx <= 1) && (dy >= -1) && (dy <= 1) && ((dx != 0) || (dy != 0))) {
+			// the neighbours are numbered down the columns of the 3x3 square, skipping its centre
+			int cell = ((dx + 1) * 3) + dy + 1;
+			successors |= 1 << ((cell < 4) ? cell : cell - 1);
+		}
+		if (!allowDiagMovement) {
+			successors &= PassabilityMap.ORTHOGONAL_NEIGHBOURS;
+		}
+		return successors;
+	}
+	
 	/**
 	 * Get the cost to move through a given location
 	 * 
@@ -325,71 +805,16 @@ public class AStarPathFinder implements PathFinder {
 		heuristicType=i;
 	}
 	
-	public void setHeuristicWeight(float w){
-		this.heuristicWeight=w;
-	}
-	
 	/**
-	 * A simple sorted list
-	 *
-	 * @author kevin
+	 * Get the heuristic type searched with
+	 * 
+	 * @return The heuristic type, as given to setHeuristicType()
 	 */
-	private class SortedList {
-		/** The list of elements */
-		private ArrayList list = new ArrayList();
-		
-		/**
-		 * Retrieve the first element from the list
-		 *  
-		 * @return The first element from the list
-		 */
-		public Object first() {
-			return list.get(0);
-		}
-		
-		/**
-		 * Empty the list
-		 */
-		public void clear() {
-			list.clear();
-		}
-		
-		/**
-		 * Add an element to the list - causes sorting
-		 * 
-		 * @param o The element to add
-		 */
-		public void add(Object o) {
-			list.add(o);
-			Collections.sort(list);
-		}
-		
-		/**
-		 * Remove an element from the list
-		 * 
-		 * @param o The element to remove
-		 */
-		public void remove(Object o) {
-			list.remove(o);
-		}
-	
-		/**
-		 * Get the number of elements in the list
-		 * 
-		 * @return The number of element in the list
- 		 */
-		public int size() {
-			return list.size();
-		}
-		
-		/**
-		 * Check if an element is in the list
-		 * 
-		 * @param o The element to search for
-		 * @return True if the element is in the list
-		 */
-		public boolean contains(Object o) {
-			return list.contains(o);
-		}
+	public int getHeuristicType() {
+		return heuristicType;
+	}
+	
+	public void setHeuristicWeight(float w){
+		this.heuristicWeight=w;
 	}
 }
@@ -0,0 +1,340 @@
+package newBoite;
+
+import java.util.ArrayList;
+
+/**
+ * A path finder using the same A* search as AStarPathFinder, but keeping the
+ * search state of the tiles in a NodeStore rather than in one Node object per
+ * tile. Nodes are referred to by their index, <code>y * width + x</code>, and
+ * the open list is a binary heap of indices, so a search allocates nothing
+ * apart from the resulting path. Use a BufferNodeStore to keep the state of
+ * very large maps off the Java heap.
+ */
+public class ArrayAStarPathFinder implements PathFinder {
+	
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The maximum depth of search we're willing to accept before giving up */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic we're applying to determine which nodes to search first */
+	private AStarHeuristic heuristic;
+	private int heuristicType;
+	private float heuristicWeight;
+	
+	/** The search state of each tile of the map */
+	private NodeStore store;
+	/** The identifier of the current search, used to stamp the state of the nodes */
+	private int searchId;
+	/** The open list, node indices ordered on their f cost */
+	private IndexHeap open;
+	/** The number of nodes in the closed list of the current search */
+	private int closedCount;
+	/** The listener following the searches, or null */
+	private SearchListener listener;
+	
+	/**
+	 * Create a path finder with the default heuristic and the state
+	 * held on the Java heap
+	 * 
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public ArrayAStarPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this(map, maxSearchDistance, allowDiagMovement, new ClosestHeuristic(), 
+			 new ArrayNodeStore(map.getWidthInTiles() * map.getHeightInTiles()));
+	}
+	
+	/**
+	 * Create a path finder
+	 * 
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param heuristic The heuristic used to determine the search order of the map
+	 * @param store The store holding the search state, it must hold at least one node per tile
+	 */
+	public ArrayAStarPathFinder(TileBasedMap map, int maxSearchDistance, 
+								boolean allowDiagMovement, AStarHeuristic heuristic, NodeStore store) {
+		if (store.size() < map.getWidthInTiles() * map.getHeightInTiles()) {
+			throw new IllegalArgumentException("The node store holds " + store.size() + " nodes, the map has " 
+					+ (map.getWidthInTiles() * map.getHeightInTiles()) + " tiles");
+		}
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristic = heuristic;
+		this.heuristicType = 0;
+		this.heuristicWeight = 1;
+		this.store = store;
+		this.open = new IndexHeap(store);
+	}
+	
+	/**
+	 * Set the listener following the searches of this finder. Without one
+	 * the searches make no notification at all.
+	 * 
+	 * @param listener The listener to notify, or null to remove it
+	 */
+	public void setSearchListener(SearchListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		if (map.blocked(mover, tx, ty)) {
+			return null;
+		}
+		
+		nextSearch();
+		int start = (sy * width) + sx;
+		int target = (ty * width) + tx;
+		store.setCost(start, 0);
+		store.setHeuristic(start, 0);
+		store.setDepth(start, 0);
+		store.setParent(start, NodeStore.NO_PARENT);
+		addToOpen(start);
+		if (listener != null) {
+			listener.searchStarted(sx, sy, tx, ty);
+			listener.nodeOpened(sx, sy);
+		}
+		
+		int maxDepth = 0;
+		while ((maxDepth < maxSearchDistance) && (open.size() != 0)) {
+			int current = open.first();
+			if (current == target) {
+				break;
+			}
+			open.removeFirst();
+			setState(current, Node.CLOSED);
+			closedCount++;
+			
+			int cx = current % width;
+			int cy = current / width;
+			if (listener != null) {
+				listener.nodeClosed(cx, cy);
+			}
+			float currentCost = store.getCost(current);
+			int nextDepth = store.getDepth(current) + 1;
+			
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					if ((x == 0) && (y == 0)) {
+						continue;
+					}
+					if (!allowDiagMovement) {
+						if ((x != 0) && (y != 0)) {
+							continue;
+						}
+					}
+					
+					int xp = x + cx;
+					int yp = y + cy;
+					if (!isValidLocation(mover, sx, sy, xp, yp)) {
+						continue;
+					}
+					
+					float nextStepCost = currentCost + map.getCost(mover, cx, cy, xp, yp);
+					int neighbour = (yp * width) + xp;
+					
+					int state = getState(neighbour);
+					if (state == Node.OPEN) {
+						if (nextStepCost < store.getCost(neighbour)) {
+							store.setCost(neighbour, nextStepCost);
+							store.setParent(neighbour, current);
+							store.setDepth(neighbour, nextDepth);
+							maxDepth = Math.max(maxDepth, nextDepth);
+							open.decreaseKey(neighbour, nextStepCost + store.getHeuristic(neighbour));
+						}
+						continue;
+					}
+					if (state == Node.CLOSED) {
+						if (nextStepCost >= store.getCost(neighbour)) {
+							continue;
+						}
+						closedCount--;
+						if (listener != null) {
+							listener.nodeReopened(xp, yp);
+						}
+					}
+					
+					store.setCost(neighbour, nextStepCost);
+					store.setHeuristic(neighbour, getHeuristicCost(mover, xp, yp, tx, ty, sx, sy));
+					store.setParent(neighbour, current);
+					store.setDepth(neighbour, nextDepth);
+					maxDepth = Math.max(maxDepth, nextDepth);
+					addToOpen(neighbour);
+					if (listener != null) {
+						listener.nodeOpened(xp, yp);
+					}
+				}
+			}
+		}
+		
+		// the target has a parent as soon as it has been reached, even if the
+		// search gave up before taking it out of the open list
+		if ((target == start) || (getState(target) == Node.UNVISITED)) {
+			return null;
+		}
+		
+		int length = 1;
+		for (int node = target;node != start;node = store.getParent(node)) {
+			length++;
+		}
+		int[] steps = new int[length];
+		int node = target;
+		for (int i=length-1;i>=0;i--) {
+			steps[i] = node;
+			node = store.getParent(node);
+		}
+		
+		Path path = new Path();
+		for (int i=0;i<length;i++) {
+			path.appendStep(steps[i] % width, steps[i] / width);
+		}
+		if (listener != null) {
+			listener.pathFound(path);
+		}
+		return path;
+	}
+	
+	/**
+	 * Start a new search, emptying both lists
+	 */
+	private void nextSearch() {
+		open.clear();
+		closedCount = 0;
+		
+		searchId = SearchContext.nextSearchId(searchId, store);
+	}
+	
+	/**
+	 * Get the state of a node in the current search
+	 * 
+	 * @param index The index of the node
+	 * @return The state of the node, Node.UNVISITED, Node.OPEN or Node.CLOSED
+	 */
+	private int getState(int index) {
+		return SearchContext.getState(store, searchId, index, Node.UNVISITED);
+	}
+	
+	/**
+	 * Set the state of a node in the current search
+	 * 
+	 * @param index The index of the node
+	 * @param state The state of the node, Node.UNVISITED, Node.OPEN or Node.CLOSED
+	 */
+	private void setState(int index, int state) {
+		SearchContext.setState(store, searchId, index, state);
+	}
+	
+	/**
+	 * Check if a given location is valid for the supplied mover
+	 * 
+	 * @param mover The mover that would hold a given location
+	 * @param sx The starting x coordinate
+	 * @param sy The starting y coordinate
+	 * @param x The x coordinate of the location to check
+	 * @param y The y coordinate of the location to check
+	 * @return True if the location is valid for the given mover
+	 */
+	protected boolean isValidLocation(Mover mover, int sx, int sy, int x, int y) {
+		boolean invalid = (x < 0) || (y < 0) || (x >= width) || (y >= height);
+		
+		if ((!invalid) && ((sx != x) || (sy != y))) {
+			invalid = map.blocked(mover, x, y);
+		}
+		
+		return !invalid;
+	}
+	
+	/**
+	 * Get the heuristic cost for the given location. This determines in which 
+	 * order the locations are processed.
+	 * 
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @return The heuristic cost assigned to the tile
+	 */
+	public float getHeuristicCost(Mover mover, int x, int y, int tx, int ty, int sx, int sy) {
+		if (heuristicType == 0) {
+			return heuristic.getCostManhattan(map, mover, heuristicWeight, x, y, tx, ty);
+		} else if (heuristicType == 1) {
+			return heuristic.getCostWithDynamicWeighting(map, mover, heuristicWeight, x, y, tx, ty, sx, sy);
+		}
+		return heuristic.getCost(map, mover, x, y, tx, ty);
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = w;
+	}
+	
+	/**
+	 * Get the closed list of the last search. Node objects are only created
+	 * here, for the callers that need them.
+	 * 
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		ArrayList<Node> closed = new ArrayList<Node>(closedCount);
+		for (int i=0;i<width*height;i++) {
+			if (getState(i) == Node.CLOSED) {
+				Node node = new Node(i % width, i / width);
+				node.setCost(store.getCost(i));
+				node.setHeuristic(store.getHeuristic(i));
+				node.setDepth(store.getDepth(i));
+				closed.add(node);
+			}
+		}
+		return closed;
+	}
+	
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return closedCount;
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return open.size();
+	}
+	
+	/**
+	 * Add a node to the open list
+	 * 
+	 * @param index The index of the node to add
+	 */
+	private void addToOpen(int index) {
+		setState(index, Node.OPEN);
+		open.add(index, store.getCost(index) + store.getHeuristic(index));
+	}
+}
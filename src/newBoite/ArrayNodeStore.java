@@ -0,0 +1,125 @@
+package newBoite;
+
+/**
+ * A node store keeping the state of each tile in parallel primitive
+ * arrays on the Java heap.
+ */
+public class ArrayNodeStore implements NodeStore {
+	/** The path cost of each node */
+	private float[] cost;
+	/** The heuristic cost of each node */
+	private float[] heuristic;
+	/** The index of the parent of each node */
+	private int[] parent;
+	/** The search depth of each node */
+	private int[] depth;
+	/** The slot of each node in the open list heap */
+	private int[] heapIndex;
+	/** The search identifier and state of each node */
+	private int[] stamp;
+	
+	/**
+	 * Create a new store
+	 * 
+	 * @param size The number of nodes to hold, usually the number of tiles in the map
+	 */
+	public ArrayNodeStore(int size) {
+		cost = new float[size];
+		heuristic = new float[size];
+		parent = new int[size];
+		depth = new int[size];
+		heapIndex = new int[size];
+		stamp = new int[size];
+	}
+	
+	/**
+	 * @see NodeStore#size()
+	 */
+	public int size() {
+		return stamp.length;
+	}
+
+	/**
+	 * @see NodeStore#getCost(int)
+	 */
+	public float getCost(int index) {
+		return cost[index];
+	}
+
+	/**
+	 * @see NodeStore#setCost(int, float)
+	 */
+	public void setCost(int index, float cost) {
+		this.cost[index] = cost;
+	}
+
+	/**
+	 * @see NodeStore#getHeuristic(int)
+	 */
+	public float getHeuristic(int index) {
+		return heuristic[index];
+	}
+
+	/**
+	 * @see NodeStore#setHeuristic(int, float)
+	 */
+	public void setHeuristic(int index, float heuristic) {
+		this.heuristic[index] = heuristic;
+	}
+
+	/**
+	 * @see NodeStore#getParent(int)
+	 */
+	public int getParent(int index) {
+		return parent[index];
+	}
+
+	/**
+	 * @see NodeStore#setParent(int, int)
+	 */
+	public void setParent(int index, int parent) {
+		this.parent[index] = parent;
+	}
+
+	/**
+	 * @see NodeStore#getDepth(int)
+	 */
+	public int getDepth(int index) {
+		return depth[index];
+	}
+
+	/**
+	 * @see NodeStore#setDepth(int, int)
+	 */
+	public void setDepth(int index, int depth) {
+		this.depth[index] = depth;
+	}
+
+	/**
+	 * @see NodeStore#getHeapIndex(int)
+	 */
+	public int getHeapIndex(int index) {
+		return heapIndex[index];
+	}
+
+	/**
+	 * @see NodeStore#setHeapIndex(int, int)
+	 */
+	public void setHeapIndex(int index, int heapIndex) {
+		this.heapIndex[index] = heapIndex;
+	}
+
+	/**
+	 * @see NodeStore#getStamp(int)
+	 */
+	public int getStamp(int index) {
+		return stamp[index];
+	}
+
+	/**
+	 * @see NodeStore#setStamp(int, int)
+	 */
+	public void setStamp(int index, int stamp) {
+		this.stamp[index] = stamp;
+	}
+}
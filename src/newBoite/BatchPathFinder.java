@@ -0,0 +1,256 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resolves many path queries at once, spreading them over the threads of a
+ * fork/join pool. Queries are first grouped by mover and start location:
+ * identical queries are searched once, and the queries of a group with
+ * several targets share one search from their common start when that search
+ * finds the same path lengths as one search per target.
+ * 
+ * Queries sharing a target are not merged, since that would need a search
+ * backwards from the target, and TileBasedMap does not promise that the cost
+ * of a move is the same in both directions.
+ * 
+ * The paths returned may be shared between identical queries and must not
+ * be modified.
+ * 
+ * @see AStarPathFinder#findPaths(SearchContext, Mover, int, int, int[], int[])
+ * @see AStarPathFinder#canShareSearch(Mover)
+ */
+public class BatchPathFinder {
+	/** The number of groups below which a task stops splitting its work */
+	private static final int SPLIT_THRESHOLD = 4;
+	
+	/** The path finder running the searches, shared by all the threads */
+	private AStarPathFinder finder;
+	/** The pool running the searches */
+	private ForkJoinPool pool;
+	
+	/**
+	 * Create a batch finder running its searches on the common fork/join pool
+	 * 
+	 * @param finder The path finder running the searches
+	 */
+	public BatchPathFinder(AStarPathFinder finder) {
+		this(finder, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Create a batch finder
+	 * 
+	 * @param finder The path finder running the searches
+	 * @param pool The pool running the searches
+	 */
+	public BatchPathFinder(AStarPathFinder finder, ForkJoinPool pool) {
+		this.finder = finder;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Find the paths for a list of queries. Identical queries are answered
+	 * with the same Path instance, so the paths are shared and must not be
+	 * modified; copy a path before changing it.
+	 * 
+	 * @param queries The queries to resolve
+	 * @return The path for each query, in the order of the queries, null for the queries with no path
+	 */
+	public List<Path> findPaths(List<PathQuery> queries) {
+		LinkedHashMap<StartKey, Group> byStart = new LinkedHashMap<StartKey, Group>();
+		for (int i=0;i<queries.size();i++) {
+			PathQuery query = queries.get(i);
+			StartKey key = new StartKey(query.getMover(), query.getStartX(), query.getStartY());
+			Group group = byStart.get(key);
+			if (group == null) {
+				group = new Group(query);
+				byStart.put(key, group);
+			}
+			group.add(i, query.getTargetX(), query.getTargetY());
+		}
+		
+		Path[] results = new Path[queries.size()];
+		Group[] groups = byStart.values().toArray(new Group[byStart.size()]);
+		pool.invoke(new SearchTask(groups, 0, groups.length, results));
+		return Arrays.asList(results);
+	}
+	
+	/**
+	 * The queries sharing a mover and a start location
+	 */
+	private class Group {
+		/** The first query of the group, giving the mover and start */
+		private PathQuery first;
+		/** The queries of the group, as positions in the batch, for each distinct target as y * width + x */
+		private LinkedHashMap<Integer, ArrayList<Integer>> targets = new LinkedHashMap<Integer, ArrayList<Integer>>();
+		
+		/**
+		 * Create a new group
+		 * 
+		 * @param first The first query of the group
+		 */
+		public Group(PathQuery first) {
+			this.first = first;
+		}
+		
+		/**
+		 * Add a query to this group
+		 * 
+		 * @param index The position of the query in the batch
+		 * @param tx The x coordinate of the target of the query
+		 * @param ty The y coordinate of the target of the query
+		 */
+		public void add(int index, int tx, int ty) {
+			Integer target = Integer.valueOf((ty * finderWidth()) + tx);
+			ArrayList<Integer> queries = targets.get(target);
+			if (queries == null) {
+				queries = new ArrayList<Integer>();
+				targets.put(target, queries);
+			}
+			queries.add(Integer.valueOf(index));
+		}
+		
+		/**
+		 * Search the paths of this group and store them in the results
+		 * 
+		 * @param results The results of the batch, indexed by query position
+		 */
+		public void search(Path[] results) {
+			int width = finderWidth();
+			Mover mover = first.getMover();
+			int sx = first.getStartX();
+			int sy = first.getStartY();
+			SearchContext context = finder.getSearchContext();
+			
+			int[] tx = new int[targets.size()];
+			int[] ty = new int[targets.size()];
+			int i = 0;
+			for (Integer target : targets.keySet()) {
+				tx[i] = target.intValue() % width;
+				ty[i] = target.intValue() / width;
+				i++;
+			}
+			
+			Path[] paths;
+			if (tx.length == 1) {
+				paths = new Path[] { finder.findPath(context, mover, sx, sy, tx[0], ty[0]) };
+			} else {
+				paths = finder.findPaths(context, mover, sx, sy, tx, ty);
+			}
+			
+			i = 0;
+			for (ArrayList<Integer> queries : targets.values()) {
+				for (Integer index : queries) {
+					results[index.intValue()] = paths[i];
+				}
+				i++;
+			}
+		}
+	}
+	
+	/**
+	 * Get the width of the map searched, used to index the targets
+	 * 
+	 * @return The width of the map in tiles
+	 */
+	private int finderWidth() {
+		return finder.getMap().getWidthInTiles();
+	}
+	
+	/**
+	 * The key grouping queries with the same mover and start location
+	 */
+	private static class StartKey {
+		/** The entity moving */
+		private Mover mover;
+		/** The x coordinate of the start location */
+		private int sx;
+		/** The y coordinate of the start location */
+		private int sy;
+		
+		/**
+		 * Create a new key
+		 * 
+		 * @param mover The entity moving
+		 * @param sx The x coordinate of the start location
+		 * @param sy The y coordinate of the start location
+		 */
+		public StartKey(Mover mover, int sx, int sy) {
+			this.mover = mover;
+			this.sx = sx;
+			this.sy = sy;
+		}
+		
+		/**
+		 * @see Object#hashCode()
+		 */
+		public int hashCode() {
+			return (((mover.hashCode() * 31) + sx) * 31) + sy;
+		}
+		
+		/**
+		 * @see Object#equals(Object)
+		 */
+		public boolean equals(Object other) {
+			if (other instanceof StartKey) {
+				StartKey o = (StartKey) other;
+				return (o.sx == sx) && (o.sy == sy) && o.mover.equals(mover);
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * A task searching a range of groups, splitting the range in two
+	 * while it is large enough so that idle threads can steal half of it
+	 */
+	private class SearchTask extends RecursiveAction {
+		/** The version of the serialized form */
+		private static final long serialVersionUID = 1L;
+		
+		/** The groups of the batch */
+		private Group[] groups;
+		/** The first group searched by this task */
+		private int from;
+		/** The group after the last one searched by this task */
+		private int to;
+		/** The results of the batch, indexed by query position */
+		private Path[] results;
+		
+		/**
+		 * Create a new task
+		 * 
+		 * @param groups The groups of the batch
+		 * @param from The first group searched by this task
+		 * @param to The group after the last one searched by this task
+		 * @param results The results of the batch
+		 */
+		public SearchTask(Group[] groups, int from, int to, Path[] results) {
+			this.groups = groups;
+			this.from = from;
+			this.to = to;
+			this.results = results;
+		}
+		
+		/**
+		 * @see RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (to - from <= SPLIT_THRESHOLD) {
+				for (int i=from;i<to;i++) {
+					groups[i].search(results);
+				}
+				return;
+			}
+			
+			int middle = (from + to) >>> 1;
+			invokeAll(new SearchTask(groups, from, middle, results), 
+					  new SearchTask(groups, middle, to, results));
+		}
+	}
+}
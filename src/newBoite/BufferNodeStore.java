@@ -0,0 +1,170 @@
+package newBoite;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A node store keeping the state of each tile in direct byte buffers,
+ * outside of the Java heap. This lets the path finder search maps whose
+ * state would not fit in the heap, without adding to the work of the
+ * garbage collector. The nodes are spread over several buffers since a
+ * single buffer can not hold more than 2GB.
+ * 
+ * Direct buffers are not limited by the heap size but by
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size. The store
+ * takes 24 bytes per tile, so a 16384x16384 map needs 6GB of direct memory.
+ * Raise the limit to match, or the constructor fails with an OutOfMemoryError.
+ */
+public class BufferNodeStore implements NodeStore {
+	/** The number of bytes used by each node */
+	private static final int RECORD_SIZE = 24;
+	/** The offset of the path cost in a node record */
+	private static final int COST = 0;
+	/** The offset of the heuristic cost in a node record */
+	private static final int HEURISTIC = 4;
+	/** The offset of the parent index in a node record */
+	private static final int PARENT = 8;
+	/** The offset of the search depth in a node record */
+	private static final int DEPTH = 12;
+	/** The offset of the heap slot in a node record */
+	private static final int HEAP_INDEX = 16;
+	/** The offset of the stamp in a node record */
+	private static final int STAMP = 20;
+	/** The log2 of the number of nodes held in each buffer */
+	private static final int CHUNK_SHIFT = 20;
+	/** The mask giving the position of a node within its buffer */
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+	
+	/** The buffers holding the node records */
+	private ByteBuffer[] chunks;
+	/** The number of nodes held in this store */
+	private int size;
+	
+	/**
+	 * Create a new store
+	 * 
+	 * @param size The number of nodes to hold, usually the number of tiles in the map
+	 * @throws OutOfMemoryError If the nodes need more direct memory than -XX:MaxDirectMemorySize allows
+	 */
+	public BufferNodeStore(int size) {
+		this.size = size;
+		
+		int count = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+		chunks = new ByteBuffer[count];
+		for (int i=0;i<count;i++) {
+			int nodes = Math.min(size - (i << CHUNK_SHIFT), 1 << CHUNK_SHIFT);
+			chunks[i] = ByteBuffer.allocateDirect(nodes * RECORD_SIZE).order(ByteOrder.nativeOrder());
+		}
+	}
+	
+	/**
+	 * Get the buffer holding a given node
+	 * 
+	 * @param index The index of the node
+	 * @return The buffer holding the node
+	 */
+	private ByteBuffer chunk(int index) {
+		return chunks[index >>> CHUNK_SHIFT];
+	}
+	
+	/**
+	 * Get the position of the record of a node within its buffer
+	 * 
+	 * @param index The index of the node
+	 * @return The offset of the node record in its buffer
+	 */
+	private int offset(int index) {
+		return (index & CHUNK_MASK) * RECORD_SIZE;
+	}
+	
+	/**
+	 * @see NodeStore#size()
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @see NodeStore#getCost(int)
+	 */
+	public float getCost(int index) {
+		return chunk(index).getFloat(offset(index) + COST);
+	}
+
+	/**
+	 * @see NodeStore#setCost(int, float)
+	 */
+	public void setCost(int index, float cost) {
+		chunk(index).putFloat(offset(index) + COST, cost);
+	}
+
+	/**
+	 * @see NodeStore#getHeuristic(int)
+	 */
+	public float getHeuristic(int index) {
+		return chunk(index).getFloat(offset(index) + HEURISTIC);
+	}
+
+	/**
+	 * @see NodeStore#setHeuristic(int, float)
+	 */
+	public void setHeuristic(int index, float heuristic) {
+		chunk(index).putFloat(offset(index) + HEURISTIC, heuristic);
+	}
+
+	/**
+	 * @see NodeStore#getParent(int)
+	 */
+	public int getParent(int index) {
+		return chunk(index).getInt(offset(index) + PARENT);
+	}
+
+	/**
+	 * @see NodeStore#setParent(int, int)
+	 */
+	public void setParent(int index, int parent) {
+		chunk(index).putInt(offset(index) + PARENT, parent);
+	}
+
+	/**
+	 * @see NodeStore#getDepth(int)
+	 */
+	public int getDepth(int index) {
+		return chunk(index).getInt(offset(index) + DEPTH);
+	}
+
+	/**
+	 * @see NodeStore#setDepth(int, int)
+	 */
+	public void setDepth(int index, int depth) {
+		chunk(index).putInt(offset(index) + DEPTH, depth);
+	}
+
+	/**
+	 * @see NodeStore#getHeapIndex(int)
+	 */
+	public int getHeapIndex(int index) {
+		return chunk(index).getInt(offset(index) + HEAP_INDEX);
+	}
+
+	/**
+	 * @see NodeStore#setHeapIndex(int, int)
+	 */
+	public void setHeapIndex(int index, int heapIndex) {
+		chunk(index).putInt(offset(index) + HEAP_INDEX, heapIndex);
+	}
+
+	/**
+	 * @see NodeStore#getStamp(int)
+	 */
+	public int getStamp(int index) {
+		return chunk(index).getInt(offset(index) + STAMP);
+	}
+
+	/**
+	 * @see NodeStore#setStamp(int, int)
+	 */
+	public void setStamp(int index, int stamp) {
+		chunk(index).putInt(offset(index) + STAMP, stamp);
+	}
+}
@@ -0,0 +1,310 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A path finder that remembers the paths found by another one. Queries for
+ * the same mover, start, target and heuristic settings are answered from the
+ * cache, including the queries that found no path. The cache holds a bounded
+ * number of paths, split between the segments described below, and each
+segment evicts its least recently used path first.
+ * 
+ * The paths are tagged with the version of the map they were found on, and
+ * are dropped once the map has changed. Maps that are not an ObservableTileMap
+ * have no version, their paths are kept until evicted or clear() is called.
+ * 
+ * The cache may be used from several threads at once, it is split in segments
+ * with a lock each. The searches on a miss run on the calling thread, so the
+ * finder wrapped must be thread safe too if this one is shared. The paths
+ * returned are shared between callers and must not be modified.
+ */
+public class CachingPathFinder implements PathFinder {
+	/** The largest number of segments the cache is split in */
+	private static final int MAX_SEGMENTS = 16;
+	
+	/** The finder searching on a miss */
+	private PathFinder finder;
+	/** The map searched, or null if it has no version */
+	private ObservableTileMap map;
+	/** The segments of the cache, a key is always in the same one */
+	private Segment[] segments;
+	/** The heuristic type set on the finder */
+	private volatile int heuristicType;
+	/** The heuristic weight set on the finder */
+	private volatile float heuristicWeight = 1;
+	/** The number of queries answered from the cache */
+	private AtomicLong hits = new AtomicLong();
+	/** The number of queries that had to search */
+	private AtomicLong misses = new AtomicLong();
+	/** The number of paths evicted to make room for others */
+	private AtomicLong evictions = new AtomicLong();
+	
+	/**
+	 * Create a new caching finder
+	 * 
+	 * @param finder The finder searching on a miss
+	 * @param map The map searched by the finder
+	 * @param capacity The number of paths the cache holds, in all its segments
+	 */
+	public CachingPathFinder(PathFinder finder, TileBasedMap map, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+		}
+		this.finder = finder;
+		if (map instanceof ObservableTileMap) {
+			this.map = (ObservableTileMap) map;
+		}
+		
+		// the first segments take one more path each when the capacity doesn't split evenly
+		int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+		segments = new Segment[count];
+		for (int i=0;i<count;i++) {
+			segments[i] = new Segment((capacity / count) + ((i < capacity % count) ? 1 : 0));
+		}
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		Key key = new Key(mover, sx, sy, tx, ty, heuristicType, heuristicWeight);
+		// read the version before searching, a change during the search makes the result stale
+		long version = getVersion();
+		Segment segment = segments[key.hashCode() & (segments.length - 1)];
+		
+		synchronized (segment) {
+			CachedPath entry = segment.get(key);
+			if (entry != null) {
+				if (entry.version == version) {
+					hits.incrementAndGet();
+					return entry.path;
+				}
+				segment.remove(key);
+			}
+		}
+		
+		misses.incrementAndGet();
+		Path path = finder.findPath(mover, sx, sy, tx, ty);
+		synchronized (segment) {
+			segment.put(key, new CachedPath(path, version));
+		}
+		return path;
+	}
+	
+	/**
+	 * Get the version of the map searched
+	 * 
+	 * @return The version of the map, or 0 if it has none
+	 */
+	private long getVersion() {
+		return (map == null) ? 0 : map.getVersion();
+	}
+	
+	/**
+	 * Remove all the paths from the cache
+	 */
+	public void clear() {
+		for (int i=0;i<segments.length;i++) {
+			synchronized (segments[i]) {
+				segments[i].clear();
+			}
+		}
+	}
+	
+	/**
+	 * Get the number of queries answered from the cache
+	 * 
+	 * @return The number of hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+	
+	/**
+	 * Get the number of queries that had to search, including the ones whose
+	 * cached path was stale
+	 * 
+	 * @return The number of misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+	
+	/**
+	 * Get the number of paths evicted to make room for others
+	 * 
+	 * @return The number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+		finder.setHeuristicType(i);
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = w;
+		finder.setHeuristicWeight(w);
+	}
+	
+	/**
+	 * Get the closed list of the last search of the wrapped finder, a query
+	 * answered from the cache doesn't search
+	 * 
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		return finder.getClosedList();
+	}
+	
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return finder.getClosedListSize();
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return finder.getOpenListSize();
+	}
+	
+	/**
+	 * The key of a query in the cache
+	 */
+	private static class Key {
+		/** The entity moving */
+		private Mover mover;
+		/** The x coordinate of the start location */
+		private int sx;
+		/** The y coordinate of the start location */
+		private int sy;
+		/** The x coordinate of the target location */
+		private int tx;
+		/** The y coordinate of the target location */
+		private int ty;
+		/** The heuristic type of the search */
+		private int heuristicType;
+		/** The bits of the heuristic weight of the search */
+		private int heuristicWeight;
+		/** The hash code of the key */
+		private int hash;
+		
+		/**
+		 * Create a new key
+		 * 
+		 * @param mover The entity moving
+		 * @param sx The x coordinate of the start location
+		 * @param sy The y coordinate of the start location
+		 * @param tx The x coordinate of the target location
+		 * @param ty The y coordinate of the target location
+		 * @param heuristicType The heuristic type of the search
+		 * @param heuristicWeight The heuristic weight of the search
+		 */
+		public Key(Mover mover, int sx, int sy, int tx, int ty, int heuristicType, float heuristicWeight) {
+			this.mover = mover;
+			this.sx = sx;
+			this.sy = sy;
+			this.tx = tx;
+			this.ty = ty;
+			this.heuristicType = heuristicType;
+			this.heuristicWeight = Float.floatToIntBits(heuristicWeight);
+			
+			int h = mover.hashCode();
+			h = (h * 31) + sx;
+			h = (h * 31) + sy;
+			h = (h * 31) + tx;
+			h = (h * 31) + ty;
+			h = (h * 31) + heuristicType;
+			h = (h * 31) + this.heuristicWeight;
+			// spread the bits used to pick the segment
+			this.hash = h ^ (h >>> 16) ^ (h >>> 8);
+		}
+		
+		/**
+		 * @see Object#hashCode()
+		 */
+		public int hashCode() {
+			return hash;
+		}
+		
+		/**
+		 * @see Object#equals(Object)
+		 */
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) other;
+			return (sx == o.sx) && (sy == o.sy) && (tx == o.tx) && (ty == o.ty) && (heuristicType == o.heuristicType)
+					&& (heuristicWeight == o.heuristicWeight) && mover.equals(o.mover);
+		}
+	}
+	
+	/**
+	 * A path in the cache and the version of the map it was found on
+	 */
+	private static class CachedPath {
+		/** The path found, or null if there was none */
+		private Path path;
+		/** The version of the map the path was found on */
+		private long version;
+		
+		/**
+		 * Create a new entry
+		 * 
+		 * @param path The path found, or null if there was none
+		 * @param version The version of the map the path was found on
+		 */
+		public CachedPath(Path path, long version) {
+			this.path = path;
+			this.version = version;
+		}
+	}
+	
+	/**
+	 * A segment of the cache, a map kept in access order which drops its
+	 * least recently used entry once full. It must be locked to be used.
+	 */
+	private class Segment extends LinkedHashMap<Key, CachedPath> {
+		/** The version of the serialized form */
+		private static final long serialVersionUID = 1L;
+		
+		/** The number of entries this segment holds */
+		private int capacity;
+		
+		/**
+		 * Create a new segment
+		 * 
+		 * @param capacity The number of entries this segment holds
+		 */
+		public Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+		
+		/**
+		 * @see LinkedHashMap#removeEldestEntry(Map.Entry)
+		 */
+		protected boolean removeEldestEntry(Map.Entry<Key, CachedPath> eldest) {
+			if (size() > capacity) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
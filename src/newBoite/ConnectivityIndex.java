@@ -0,0 +1,417 @@
+package newBoite;
+
+import java.util.Arrays;
+
+/**
+ * Labels the connected areas of the game map for each type of unit, so that
+ * a path finder can tell at once that a target can't be reached, rather than
+ * searching every tile reachable from the start to find out.
+ * 
+ * Only the terrain is taken into account. Units come and go, they can only
+ * block more paths, so two tiles in different areas are never connected
+ * while two tiles in the same area may still be cut apart by units.
+ * 
+ * The labels are kept up to date as the terrain changes. Opening a tile
+ * merges the areas around it, relabelling the smaller ones. Closing a tile
+ * only relabels its area when the tiles around it no longer connect to each
+ * other through their own neighbours, which is when the area may split.
+ * The index must be updated from the thread changing the map.
+ */
+public class ConnectivityIndex implements TileChangeListener {
+	/** The types of unit an index is kept for */
+	private static final int[] TYPES = {GameMap.TANK, GameMap.BOAT, GameMap.PLANE};
+	/** The label of a tile the terrain blocks */
+	private static final int BLOCKED = -1;
+	
+	/** The map being indexed */
+	private GameMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** True if the areas are connected through diagonal moves as well */
+	private boolean allowDiagMovement;
+	/** The areas of the map for each type of unit */
+	private Layer[] layers;
+	/** The tiles waiting to be relabelled by a fill */
+	private int[] stack;
+	
+	/**
+	 * Create an index of a map and keep it up to date with the map's changes
+	 * 
+	 * @param map The map to index
+	 * @param allowDiagMovement True if the areas should be connected through diagonal moves
+	 */
+	public ConnectivityIndex(GameMap map, boolean allowDiagMovement) {
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.allowDiagMovement = allowDiagMovement;
+		this.stack = new int[width * height];
+		
+		layers = new Layer[TYPES.length];
+		for (int i=0;i<TYPES.length;i++) {
+			layers[i] = new Layer(TYPES[i]);
+		}
+		map.addTileChangeListener(this);
+	}
+	
+	/**
+	 * Check if the areas are connected through diagonal moves. An index without
+	 * them can't serve a finder allowing diagonal movement.
+	 * 
+	 * @return True if the areas are connected through diagonal moves
+	 */
+	public boolean allowsDiagMovement() {
+		return allowDiagMovement;
+	}
+	
+	/**
+	 * Check if a mover might find a path between two locations
+	 * 
+	 * @param mover The entity moving
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return False if there is certainly no path, true if there may be one
+	 */
+	public boolean connected(Mover mover, int sx, int sy, int tx, int ty) {
+		Layer layer = getLayer(mover);
+		if (layer == null) {
+			return true;
+		}
+		// a start on blocked terrain belongs to no area, let the search decide
+		int start = layer.labels[(sy * width) + sx];
+		return (start == BLOCKED) || (start == layer.labels[(ty * width) + tx]);
+	}
+	
+	/**
+	 * Get the number of separate areas a mover can move within
+	 * 
+	 * @param mover The entity moving
+	 * @return The number of areas, or -1 if the mover's type is not indexed
+	 */
+	public int getAreaCount(Mover mover) {
+		Layer layer = getLayer(mover);
+		return (layer == null) ? -1 : layer.areas;
+	}
+	
+	/**
+	 * Get the areas kept for a mover
+	 * 
+	 * @param mover The entity moving
+	 * @return The areas for the mover's type, or null if it is not indexed
+	 */
+	private Layer getLayer(Mover mover) {
+		if (!(mover instanceof UnitMover)) {
+			return null;
+		}
+		int type = ((UnitMover) mover).getType();
+		for (int i=0;i<TYPES.length;i++) {
+			if (TYPES[i] == type) {
+				return layers[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Notification that a tile has changed. Only a change to the terrain
+	 * can change the areas, units moving cost a passability check per type.
+	 * 
+	 * @see TileChangeListener#tileChanged(int, int)
+	 */
+	public void tileChanged(int x, int y) {
+		int tile = (y * width) + x;
+		for (int i=0;i<layers.length;i++) {
+			Layer layer = layers[i];
+			boolean open = !map.terrainBlocks(layer.type, x, y);
+			if (open == (layer.labels[tile] != BLOCKED)) {
+				continue;
+			}
+			if (open) {
+				layer.open(tile);
+			} else {
+				layer.close(tile);
+			}
+		}
+	}
+	
+	/**
+	 * Check if a step leads to a tile on the map
+	 * 
+	 * @param x The x offset of the step
+	 * @param y The y offset of the step
+	 * @param xp The x coordinate of the tile stepped to
+	 * @param yp The y coordinate of the tile stepped to
+	 * @return True if the tile is on the map and the step is allowed
+	 */
+	private boolean isNeighbour(int x, int y, int xp, int yp) {
+		if ((x == 0) && (y == 0)) {
+			return false;
+		}
+		if (!allowDiagMovement && (x != 0) && (y != 0)) {
+			return false;
+		}
+		return (xp >= 0) && (yp >= 0) && (xp < width) && (yp < height);
+	}
+	
+	/**
+	 * The areas of the map for one type of unit
+	 */
+	private class Layer {
+		/** The type of unit the areas are for */
+		private int type;
+		/** The label of the area holding each tile, or BLOCKED */
+		private int[] labels;
+		/** The number of tiles in the area with each label */
+		private int[] sizes = new int[16];
+		/** The labels no longer in use */
+		private int[] free = new int[16];
+		/** The number of labels no longer in use */
+		private int freeCount;
+		/** The number of labels handed out so far */
+		private int labelCount;
+		/** The number of areas */
+		private int areas;
+		
+		/**
+		 * Label the areas of the map for a type of unit
+		 * 
+		 * @param type The type of unit
+		 */
+		public Layer(int type) {
+			this.type = type;
+			labels = new int[width * height];
+			for (int y=0;y<height;y++) {
+				for (int x=0;x<width;x++) {
+					labels[(y * width) + x] = map.terrainBlocks(type, x, y) ? BLOCKED : Integer.MIN_VALUE;
+				}
+			}
+			for (int tile=0;tile<labels.length;tile++) {
+				if (labels[tile] == Integer.MIN_VALUE) {
+					int label = newLabel();
+					sizes[label] = fill(tile, Integer.MIN_VALUE, label);
+				}
+			}
+		}
+		
+		/**
+		 * Open a tile that was blocked, merging the areas around it
+		 * 
+		 * @param tile The tile opened
+		 */
+		public void open(int tile) {
+			// join the largest area around the tile, and relabel the others into it
+			int largest = BLOCKED;
+			int cx = tile % width;
+			int cy = tile / width;
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if (isNeighbour(x, y, xp, yp)) {
+						int label = labels[(yp * width) + xp];
+						if ((label != BLOCKED) && ((largest == BLOCKED) || (sizes[label] > sizes[largest]))) {
+							largest = label;
+						}
+					}
+				}
+			}
+			if (largest == BLOCKED) {
+				largest = newLabel();
+			}
+			
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if (isNeighbour(x, y, xp, yp)) {
+						int neighbour = (yp * width) + xp;
+						int label = labels[neighbour];
+						if ((label != BLOCKED) && (label != largest)) {
+							sizes[largest] += fill(neighbour, label, largest);
+							freeLabel(label);
+						}
+					}
+				}
+			}
+			labels[tile] = largest;
+			sizes[largest]++;
+		}
+		
+		/**
+		 * Close a tile that was open, splitting its area if that cut it in parts
+		 * 
+		 * @param tile The tile closed
+		 */
+		public void close(int tile) {
+			int label = labels[tile];
+			labels[tile] = BLOCKED;
+			sizes[label]--;
+			if (sizes[label] == 0) {
+				freeLabel(label);
+				return;
+			}
+			if (neighboursConnected(tile)) {
+				return;
+			}
+			
+			// each fill takes one part of the area, the first part keeps the old label
+			int cx = tile % width;
+			int cy = tile / width;
+			boolean first = true;
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if (!isNeighbour(x, y, xp, yp) || (labels[(yp * width) + xp] != label)) {
+						continue;
+					}
+					if (first) {
+						first = false;
+						continue;
+					}
+					int part = newLabel();
+					sizes[part] = fill((yp * width) + xp, label, part);
+					sizes[label] -= sizes[part];
+					if (sizes[label] == 0) {
+						// the fill reached the first part as well, so the area did not split
+						freeLabel(label);
+						return;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Check if the open neighbours of a closed tile still connect to each
+		 * other through the other tiles around it. If so its area can't have
+		 * been split.
+		 * 
+		 * @param tile The tile closed
+		 * @return True if the neighbours are connected around the tile
+		 */
+		private boolean neighboursConnected(int tile) {
+			int cx = tile % width;
+			int cy = tile / width;
+			// bits 0 to 8 stand for the tiles of the 3x3 square around the tile
+			int open = 0;
+			int targets = 0;
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if ((xp < 0) || (yp < 0) || (xp >= width) || (yp >= height) || ((x == 0) && (y == 0))) {
+						continue;
+					}
+					if (labels[(yp * width) + xp] != BLOCKED) {
+						int bit = 1 << (((y + 1) * 3) + x + 1);
+						open |= bit;
+						if (isNeighbour(x, y, xp, yp)) {
+							targets |= bit;
+						}
+					}
+				}
+			}
+			if (Integer.bitCount(targets) < 2) {
+				return true;
+			}
+			
+			// spread from one neighbour within the square
+			int reached = Integer.lowestOneBit(targets);
+			int last = 0;
+			while (reached != last) {
+				last = reached;
+				for (int bit=0;bit<9;bit++) {
+					if ((reached & (1 << bit)) == 0) {
+						continue;
+					}
+					for (int x=-1;x<2;x++) {
+						for (int y=-1;y<2;y++) {
+							int nx = (bit % 3) + x;
+							int ny = (bit / 3) + y;
+							if ((nx < 0) || (ny < 0) || (nx > 2) || (ny > 2) || ((x == 0) && (y == 0))) {
+								continue;
+							}
+							if (!allowDiagMovement && (x != 0) && (y != 0)) {
+								continue;
+							}
+							reached |= open & (1 << ((ny * 3) + nx));
+						}
+					}
+				}
+			}
+			return (reached & targets) == targets;
+		}
+		
+		/**
+		 * Relabel the tiles of an area connected to a given one
+		 * 
+		 * @param seed The tile to start from
+		 * @param from The label of the tiles to relabel
+		 * @param to The label to give them
+		 * @return The number of tiles relabelled
+		 */
+		private int fill(int seed, int from, int to) {
+			int count = 0;
+			int top = 0;
+			labels[seed] = to;
+			stack[top++] = seed;
+			while (top > 0) {
+				int tile = stack[--top];
+				count++;
+				int cx = tile % width;
+				int cy = tile / width;
+				for (int x=-1;x<2;x++) {
+					for (int y=-1;y<2;y++) {
+						int xp = cx + x;
+						int yp = cy + y;
+						if (isNeighbour(x, y, xp, yp)) {
+							int neighbour = (yp * width) + xp;
+							if (labels[neighbour] == from) {
+								labels[neighbour] = to;
+								stack[top++] = neighbour;
+							}
+						}
+					}
+				}
+			}
+			return count;
+		}
+		
+		/**
+		 * Get a label for a new area
+		 * 
+		 * @return The label
+		 */
+		private int newLabel() {
+			areas++;
+			int label;
+			if (freeCount > 0) {
+				label = free[--freeCount];
+			} else {
+				label = labelCount++;
+				if (label == sizes.length) {
+					sizes = Arrays.copyOf(sizes, label * 2);
+				}
+			}
+			sizes[label] = 0;
+			return label;
+		}
+		
+		/**
+		 * Release the label of an area that no longer exists
+		 * 
+		 * @param label The label
+		 */
+		private void freeLabel(int label) {
+			areas--;
+			if (freeCount == free.length) {
+				free = Arrays.copyOf(free, freeCount * 2);
+			}
+			free[freeCount++] = label;
+		}
+	}
+}
@@ -0,0 +1,664 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A path finder implementation using D* Lite. The search runs backwards from
+ * the target, and its state is kept between calls. While the mover and target
+ * stay the same, the next call only repairs what the tiles changed since the
+ * last one invalidated, instead of searching from scratch. This suits a unit
+ * walking to a fixed target while other units move in its way: call findPath
+ * again from the unit's current location each time its route is blocked.
+ * 
+ * The finder listens for changes itself when the map is an ObservableTileMap,
+ * other maps must call tileChanged(int, int). A different mover or target
+ * starts a new search. This finder is not thread safe.
+ * 
+ * Repairing the search relies on a heuristic that never overestimates the
+ * cost of a move, so this finder doesn't use the heuristic types of the
+ * others: it uses the Manhattan distance, or the Chebyshev distance when
+ * moving diagonally, scaled by a weight of at most 1.
+ * 
+ * Unlike AStarPathFinder, the search itself is not bounded by the maximum
+ * search distance: it runs backwards from the target and orders the tiles by
+ * cost, with no depth counted in steps to compare the distance with. The
+ * distance only limits the length of the path returned, so a start that
+ * can't reach the target expands every tile connected to the target before
+ * null is returned.
+ */
+public class DStarLitePathFinder implements PathFinder, TileChangeListener {
+	/** The cost of a tile that has not been reached */
+	private static final float INFINITY = Float.POSITIVE_INFINITY;
+	
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The maximum length of path we're willing to accept */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The weight applied to the heuristic */
+	private float heuristicWeight;
+	
+	/** The cost of the best path from each tile to the target, once expanded */
+	private float[] g;
+	/** The cost of each tile from the costs of its neighbours, a tile is consistent when it matches g */
+	private float[] rhs;
+	/** The search each tile's costs belong to, tiles of an older search are unreached */
+	private int[] stamp;
+	/** The identifier of the current search */
+	private int searchId;
+	/** The open list */
+	private KeyHeap open;
+	
+	/** The mover the current search is for */
+	private Mover mover;
+	/** The target of the current search */
+	private int goal = -1;
+	/** The start location of the last call */
+	private int start = -1;
+	/** The sum of the heuristic distances the start has moved, which keeps old keys valid */
+	private float km;
+	/** The tiles changed since the last call */
+	private int[] changed = new int[16];
+	/** The number of tiles changed since the last call */
+	private int changedCount;
+	/** The number of tiles expanded by the last call */
+	private int closedCount;
+	/** The tiles expanded by the last call */
+	private int[] closed = new int[64];
+	
+	/**
+	 * Create a path finder with the default heuristic
+	 * 
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum length of path we're willing to accept, it doesn't bound the search
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public DStarLitePathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristicWeight = 1;
+		
+		int size = width * height;
+		g = new float[size];
+		rhs = new float[size];
+		stamp = new int[size];
+		open = new KeyHeap(size);
+		
+		if (map instanceof ObservableTileMap) {
+			((ObservableTileMap) map).addTileChangeListener(this);
+		}
+	}
+	
+	/**
+	 * Notification that a tile has changed. The costs depending on it will be
+	 * repaired by the next call to findPath.
+	 * 
+	 * @see TileChangeListener#tileChanged(int, int)
+	 */
+	public void tileChanged(int x, int y) {
+		if (goal < 0) {
+			return;
+		}
+		if (changedCount == changed.length) {
+			changed = Arrays.copyOf(changed, changedCount * 2);
+		}
+		changed[changedCount++] = (y * width) + x;
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		closedCount = 0;
+		if (map.blocked(mover, tx, ty) || ((sx == tx) && (sy == ty))) {
+			return null;
+		}
+		
+		int target = (ty * width) + tx;
+		int next = (sy * width) + sx;
+		if ((target != goal) || !mover.equals(this.mover)) {
+			startSearch(mover, target, next);
+		} else {
+			// the old keys stay valid lower bounds once km grows by the distance the start moved
+			int last = start;
+			km += heuristic(last, next);
+			start = next;
+			for (int i=0;i<changedCount;i++) {
+				updateNeighbourhood(changed[i]);
+			}
+			changedCount = 0;
+			updateVertex(last);
+			updateVertex(start);
+		}
+		
+		computeShortestPath();
+		if (getG(start) == INFINITY) {
+			return null;
+		}
+		
+		// walk down the costs from the start to the target
+		Path path = new Path();
+		path.appendStep(sx, sy);
+		int current = start;
+		while (current != goal) {
+			if (path.getLength() > Math.min(maxSearchDistance, width * height)) {
+				return null;
+			}
+			int cx = current % width;
+			int cy = current / width;
+			int best = -1;
+			float bestCost = INFINITY;
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if (!isNeighbour(x, y, xp, yp)) {
+						continue;
+					}
+					int neighbour = (yp * width) + xp;
+					float cost = getCost(current, neighbour) + getG(neighbour);
+					if (cost < bestCost) {
+						bestCost = cost;
+						best = neighbour;
+					}
+				}
+			}
+			if (best < 0) {
+				return null;
+			}
+			path.appendStep(best % width, best / width);
+			current = best;
+		}
+		return path;
+	}
+	
+	/**
+	 * Throw away the current search and start a new one
+	 * 
+	 * @param mover The entity that will be moving along the path
+	 * @param target The tile to find a path to
+	 * @param from The tile the mover is at
+	 */
+	private void startSearch(Mover mover, int target, int from) {
+		searchId = SearchContext.nextSearchId(searchId, null);
+		if (searchId == 1) {
+			Arrays.fill(stamp, 0);
+		}
+		open.clear();
+		changedCount = 0;
+		km = 0;
+		this.mover = mover;
+		this.goal = target;
+		this.start = from;
+		
+		touch(goal);
+		rhs[goal] = 0;
+		open.add(goal, heuristic(goal, start), 0);
+	}
+	
+	/**
+	 * Expand the inconsistent tiles until the cost of the start is known
+	 */
+	private void computeShortestPath() {
+		while ((open.size() != 0) && (open.firstBefore(calculateKey1(start), calculateKey2(start)) || (getRhs(start) != getG(start)))) {
+			int u = open.first();
+			float k1 = calculateKey1(u);
+			float k2 = calculateKey2(u);
+			if (open.firstBefore(k1, k2)) {
+				// the key was computed before the start moved
+				open.update(u, k1, k2);
+				continue;
+			}
+			
+			open.remove(u);
+			if (closedCount == closed.length) {
+				closed = Arrays.copyOf(closed, closedCount * 2);
+			}
+			closed[closedCount++] = u;
+			
+			if (g[u] > rhs[u]) {
+				g[u] = rhs[u];
+				updateNeighbours(u);
+			} else {
+				g[u] = INFINITY;
+				updateNeighbours(u);
+				updateVertex(u);
+			}
+		}
+	}
+	
+	/**
+	 * Update the costs of a changed tile and of every tile that can move onto it
+	 * 
+	 * @param tile The tile that changed
+	 */
+	private void updateNeighbourhood(int tile) {
+		updateVertex(tile);
+		updateNeighbours(tile);
+	}
+	
+	/**
+	 * Update the costs of the tiles around a given one
+	 * 
+	 * @param tile The tile whose neighbours should be updated
+	 */
+	private void updateNeighbours(int tile) {
+		int cx = tile % width;
+		int cy = tile / width;
+		for (int x=-1;x<2;x++) {
+			for (int y=-1;y<2;y++) {
+				int xp = cx + x;
+				int yp = cy + y;
+				if (isNeighbour(x, y, xp, yp)) {
+					updateVertex((yp * width) + xp);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Compute again the cost of a tile from its neighbours and queue it if
+	 * that no longer matches the cost it was expanded with
+	 * 
+	 * @param u The tile to update
+	 */
+	private void updateVertex(int u) {
+		touch(u);
+		if (u != goal) {
+			float best = INFINITY;
+			// tiles the mover can't stand on lead nowhere, except its own start location
+			if ((u == start) || !map.blocked(mover, u % width, u / width)) {
+				int cx = u % width;
+				int cy = u / width;
+				for (int x=-1;x<2;x++) {
+					for (int y=-1;y<2;y++) {
+						int xp = cx + x;
+						int yp = cy + y;
+						if (!isNeighbour(x, y, xp, yp)) {
+							continue;
+						}
+						int neighbour = (yp * width) + xp;
+						float cost = getCost(u, neighbour) + getG(neighbour);
+						if (cost < best) {
+							best = cost;
+						}
+					}
+				}
+			}
+			rhs[u] = best;
+		}
+		
+		if (g[u] != rhs[u]) {
+			if (open.contains(u)) {
+				open.update(u, calculateKey1(u), calculateKey2(u));
+			} else {
+				open.add(u, calculateKey1(u), calculateKey2(u));
+			}
+		} else if (open.contains(u)) {
+			open.remove(u);
+		}
+	}
+	
+	/**
+	 * Check if a step leads to a tile the search should consider
+	 * 
+	 * @param x The x offset of the step
+	 * @param y The y offset of the step
+	 * @param xp The x coordinate of the tile stepped to
+	 * @param yp The y coordinate of the tile stepped to
+	 * @return True if the tile is on the map and the step is allowed
+	 */
+	private boolean isNeighbour(int x, int y, int xp, int yp) {
+		if ((x == 0) && (y == 0)) {
+			return false;
+		}
+		if (!allowDiagMovement && (x != 0) && (y != 0)) {
+			return false;
+		}
+		return (xp >= 0) && (yp >= 0) && (xp < width) && (yp < height);
+	}
+	
+	/**
+	 * Get the cost of moving from one tile to a neighbouring one
+	 * 
+	 * @param from The tile moved from
+	 * @param to The tile moved to
+	 * @return The cost of the move, or infinity if the mover can't enter the tile
+	 */
+	private float getCost(int from, int to) {
+		int x = to % width;
+		int y = to / width;
+		if (map.blocked(mover, x, y)) {
+			return INFINITY;
+		}
+		return map.getCost(mover, from % width, from / width, x, y);
+	}
+	
+	/**
+	 * Reset the costs of a tile that was not reached yet by the current search
+	 * 
+	 * @param tile The tile to reset
+	 */
+	private void touch(int tile) {
+		if (stamp[tile] != searchId) {
+			stamp[tile] = searchId;
+			g[tile] = INFINITY;
+			rhs[tile] = INFINITY;
+		}
+	}
+	
+	/**
+	 * Get the expanded cost of a tile
+	 * 
+	 * @param tile The tile
+	 * @return The cost of the tile or infinity if it has not been reached
+	 */
+	private float getG(int tile) {
+		return (stamp[tile] == searchId) ? g[tile] : INFINITY;
+	}
+	
+	/**
+	 * Get the cost of a tile computed from its neighbours
+	 * 
+	 * @param tile The tile
+	 * @return The cost of the tile or infinity if it has not been reached
+	 */
+	private float getRhs(int tile) {
+		return (stamp[tile] == searchId) ? rhs[tile] : INFINITY;
+	}
+	
+	/**
+	 * Get the first part of the key of a tile, ordering the open list
+	 * 
+	 * @param tile The tile
+	 * @return The estimated cost of the path from the start through the tile
+	 */
+	private float calculateKey1(int tile) {
+		return Math.min(getG(tile), getRhs(tile)) + heuristic(tile, start) + km;
+	}
+	
+	/**
+	 * Get the second part of the key of a tile, breaking ties in the first
+	 * 
+	 * @param tile The tile
+	 * @return The cost of the tile
+	 */
+	private float calculateKey2(int tile) {
+		return Math.min(getG(tile), getRhs(tile));
+	}
+	
+	/**
+	 * Get the heuristic cost between two tiles, this assumes no move costs
+	 * less than 1
+	 * 
+	 * @param from The tile the cost is estimated from
+	 * @param to The tile the cost is estimated to
+	 * @return The heuristic cost
+	 */
+	private float heuristic(int from, int to) {
+		int dx = Math.abs((from % width) - (to % width));
+		int dy = Math.abs((from / width) - (to / width));
+		return heuristicWeight * (allowDiagMovement ? Math.max(dx, dy) : dx + dy);
+	}
+	
+	/**
+	 * This finder has a single heuristic, the type is ignored
+	 * 
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+	}
+	
+	/**
+	 * Set the heuristic weight, capped at 1. The keys of the current search
+	 * depend on it, so the next call starts a new search.
+	 * 
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = Math.min(w, 1);
+		goal = -1;
+	}
+	
+	/**
+	 * Get the tiles expanded by the last call. Nodes are created for them
+	 * here, for the callers that need them.
+	 * 
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		ArrayList<Node> list = new ArrayList<Node>(closedCount);
+		for (int i=0;i<closedCount;i++) {
+			Node node = new Node(closed[i] % width, closed[i] / width);
+			node.setCost(getG(closed[i]));
+			list.add(node);
+		}
+		return list;
+	}
+	
+	/**
+	 * Get the number of tiles expanded by the last call
+	 * 
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return closedCount;
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return open.size();
+	}
+	
+	/**
+	 * The open list of D* Lite, a binary heap of tiles ordered on a two part
+	 * key, compared on the first part then the second. Unlike the A* open
+	 * lists the keys of a tile may go up as well as down, and tiles may be
+	 * removed from the middle of the heap.
+	 */
+	private static class KeyHeap {
+		/** The slot of each tile in the heap, or -1 if it is not in the heap */
+		private int[] slots;
+		/** The tiles, the one with the smallest key is at index 0 */
+		private int[] heap = new int[64];
+		/** The first part of the key of each tile in the heap */
+		private float[] key1 = new float[64];
+		/** The second part of the key of each tile in the heap */
+		private float[] key2 = new float[64];
+		/** The number of tiles in the heap */
+		private int size;
+		
+		/**
+		 * Create a new heap
+		 * 
+		 * @param tiles The number of tiles on the map
+		 */
+		public KeyHeap(int tiles) {
+			slots = new int[tiles];
+			Arrays.fill(slots, -1);
+		}
+		
+		/**
+		 * Get the number of tiles in the heap
+		 * 
+		 * @return The number of tiles in the heap
+		 */
+		public int size() {
+			return size;
+		}
+		
+		/**
+		 * Get the tile with the smallest key
+		 * 
+		 * @return The tile with the smallest key
+		 */
+		public int first() {
+			return heap[0];
+		}
+		
+		/**
+		 * Check if the key of the first tile comes before a given key
+		 * 
+		 * @param k1 The first part of the key to compare with
+		 * @param k2 The second part of the key to compare with
+		 * @return True if the smallest key in the heap is less than the given one
+		 */
+		public boolean firstBefore(float k1, float k2) {
+			return (key1[0] < k1) || ((key1[0] == k1) && (key2[0] < k2));
+		}
+		
+		/**
+		 * Check if a tile is in the heap
+		 * 
+		 * @param tile The tile
+		 * @return True if the tile is in the heap
+		 */
+		public boolean contains(int tile) {
+			return slots[tile] >= 0;
+		}
+		
+		/**
+		 * Empty the heap
+		 */
+		public void clear() {
+			for (int i=0;i<size;i++) {
+				slots[heap[i]] = -1;
+			}
+			size = 0;
+		}
+		
+		/**
+		 * Add a tile to the heap
+		 * 
+		 * @param tile The tile
+		 * @param k1 The first part of its key
+		 * @param k2 The second part of its key
+		 */
+		public void add(int tile, float k1, float k2) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+				key1 = Arrays.copyOf(key1, size * 2);
+				key2 = Arrays.copyOf(key2, size * 2);
+			}
+			heap[size] = tile;
+			key1[size] = k1;
+			key2[size] = k2;
+			slots[tile] = size;
+			size++;
+			siftUp(size - 1);
+		}
+		
+		/**
+		 * Change the key of a tile in the heap
+		 * 
+		 * @param tile The tile
+		 * @param k1 The first part of its new key
+		 * @param k2 The second part of its new key
+		 */
+		public void update(int tile, float k1, float k2) {
+			int slot = slots[tile];
+			key1[slot] = k1;
+			key2[slot] = k2;
+			siftDown(siftUp(slot));
+		}
+		
+		/**
+		 * Remove a tile from the heap
+		 * 
+		 * @param tile The tile
+		 */
+		public void remove(int tile) {
+			int slot = slots[tile];
+			slots[tile] = -1;
+			size--;
+			if (slot < size) {
+				heap[slot] = heap[size];
+				key1[slot] = key1[size];
+				key2[slot] = key2[size];
+				slots[heap[slot]] = slot;
+				siftDown(siftUp(slot));
+			}
+		}
+		
+		/**
+		 * Check if the key in one slot is less than the key in another
+		 * 
+		 * @param a The first slot
+		 * @param b The second slot
+		 * @return True if the key in slot a is less than the key in slot b
+		 */
+		private boolean less(int a, int b) {
+			return (key1[a] < key1[b]) || ((key1[a] == key1[b]) && (key2[a] < key2[b]));
+		}
+		
+		/**
+		 * Swap the tiles in two slots
+		 * 
+		 * @param a The first slot
+		 * @param b The second slot
+		 */
+		private void swap(int a, int b) {
+			int tile = heap[a];
+			float k1 = key1[a];
+			float k2 = key2[a];
+			heap[a] = heap[b];
+			key1[a] = key1[b];
+			key2[a] = key2[b];
+			heap[b] = tile;
+			key1[b] = k1;
+			key2[b] = k2;
+			slots[heap[a]] = a;
+			slots[heap[b]] = b;
+		}
+		
+		/**
+		 * Move the tile at the given slot up until its parent has no greater key
+		 * 
+		 * @param slot The slot of the tile to move
+		 * @return The slot the tile ended in
+		 */
+		private int siftUp(int slot) {
+			while (slot > 0) {
+				int parent = (slot - 1) >>> 1;
+				if (!less(slot, parent)) {
+					break;
+				}
+				swap(slot, parent);
+				slot = parent;
+			}
+			return slot;
+		}
+		
+		/**
+		 * Move the tile at the given slot down until none of its children has a smaller key
+		 * 
+		 * @param slot The slot of the tile to move
+		 */
+		private void siftDown(int slot) {
+			int half = size >>> 1;
+			while (slot < half) {
+				int child = (slot << 1) + 1;
+				int right = child + 1;
+				if ((right < size) && less(right, child)) {
+					child = right;
+				}
+				if (!less(child, slot)) {
+					break;
+				}
+				swap(slot, child);
+				slot = child;
+			}
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package newBoite;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the analysis of the path finder without a window. A scenario file
+ * describes the map, the queries and the finder settings to try; every
+ * combination of the settings is a configuration, which runs all the
+ * queries with its own finder. The configurations run in parallel and each
+ * one writes a row of CSV once done.
+ * 
+ * The rows are written in the order of the configurations, a row finishing
+ * early waits for the ones before it, so the file is the same whatever the
+ * number of threads.
+ * 
+ * The scenario is a properties file, every key is optional:
+ * 
+ *   size=30                  the width and height of the map
+ *   layout=C                 C or MAZE
+ *   mover=TANK               TANK, BOAT or PLANE
+ *   maxSearchDistance=500
+ *   heuristicTypes=0         the heuristic types to try
+ *   weights=0:5:0.2          the heuristic weights to try
+ *   diagonal=false           false, true or both
+ *   integerCosts=false       true to let the finders keep their open list in buckets
+ *   startX=0:15  startY=2    the start locations
+ *   targetX=0:30 targetY=18  the target locations
+ * 
+ * Lists are either values separated by commas or a range "from:to[:step]",
+ * to excluded. The defaults are the sweep of the original analysis in
+ * PathTest, and give the columns of its TestB.txt. A scenario trying several
+ * heuristic types or diagonal settings adds them as the last two columns.
+ * 
+ * The finders keep their open list in a heap unless integerCosts is true.
+ * The buckets break the ties between nodes of equal f cost differently, so
+ * with them the totals of TestB.txt change at the whole weights (0 and 1 in
+ * the default sweep) while the other weights keep theirs.
+ * 
+ * Usage: ExperimentRunner scenario.properties results.csv [threads]
+ */
+public class ExperimentRunner {
+	/** The header of the CSV written, the one of the original analysis */
+	public static final String HEADER = "Essaie; Poid; TotalTest; totalCheminNonTrouver; totalPath (pas);totalCaseEssayerEchec;";
+	/** The columns added after the header when several heuristic types or diagonal settings are tried */
+	public static final String SWEEP_COLUMNS = "TypeHeuristique;Diagonale;";
+	
+	/** The map searched by all the configurations, it is only read */
+	private GameMap map;
+	/** The mover searching */
+	private UnitMover mover;
+	/** The maximum depth of search for the finders */
+	private int maxSearchDistance;
+	/** True if the finders may keep their open list in buckets */
+	private boolean integerCosts;
+	/** The configurations to run */
+	private ArrayList<Configuration> configurations = new ArrayList<Configuration>();
+	/** True if the rows end with the heuristic type and the diagonal setting */
+	private boolean sweepColumns;
+	/** The x coordinates of the start locations */
+	private float[] startX;
+	/** The y coordinates of the start locations */
+	private float[] startY;
+	/** The x coordinates of the target locations */
+	private float[] targetX;
+	/** The y coordinates of the target locations */
+	private float[] targetY;
+	
+	/**
+	 * Create a runner for a scenario
+	 * 
+	 * @param scenario The scenario to run
+	 */
+	public ExperimentRunner(Properties scenario) {
+		int size = Integer.parseInt(scenario.getProperty("size", "30"));
+		String layout = scenario.getProperty("layout", "C");
+		map = new GameMap(size, size, layout.equals("MAZE") ? GameMap.LAYOUT_MAZE : GameMap.LAYOUT_C);
+		
+		String type = scenario.getProperty("mover", "TANK");
+		if (type.equals("TANK")) {
+			mover = new UnitMover(GameMap.TANK);
+		} else if (type.equals("BOAT")) {
+			mover = new UnitMover(GameMap.BOAT);
+		} else if (type.equals("PLANE")) {
+			mover = new UnitMover(GameMap.PLANE);
+		} else {
+			throw new IllegalArgumentException("Unknown mover: " + type);
+		}
+		maxSearchDistance = Integer.parseInt(scenario.getProperty("maxSearchDistance", "500"));
+		integerCosts = Boolean.parseBoolean(scenario.getProperty("integerCosts", "false"));
+		
+		startX = parseList(scenario.getProperty("startX", "0:15"));
+		startY = parseList(scenario.getProperty("startY", "2"));
+		targetX = parseList(scenario.getProperty("targetX", "0:30"));
+		targetY = parseList(scenario.getProperty("targetY", "18"));
+		
+		float[] types = parseList(scenario.getProperty("heuristicTypes", "0"));
+		float[] weights = parseList(scenario.getProperty("weights", "0:5:0.2"));
+		String diagonal = scenario.getProperty("diagonal", "false");
+		boolean[] diagonals = diagonal.equals("both") ? new boolean[] {false, true} : new boolean[] {Boolean.parseBoolean(diagonal)};
+		sweepColumns = (types.length > 1) || (diagonals.length > 1);
+		for (int d=0;d<diagonals.length;d++) {
+			for (int t=0;t<types.length;t++) {
+				for (int w=0;w<weights.length;w++) {
+					configurations.add(new Configuration(configurations.size(), (int) types[t], weights[w], diagonals[d]));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Parse a list of values from the scenario
+	 * 
+	 * @param value The values separated by commas, or a range "from:to[:step]"
+	 * @return The values of the list
+	 */
+	private static float[] parseList(String value) {
+		if (value.indexOf(':') < 0) {
+			String[] parts = value.split(",");
+			float[] list = new float[parts.length];
+			for (int i=0;i<parts.length;i++) {
+				list[i] = Float.parseFloat(parts[i].trim());
+			}
+			return list;
+		}
+		
+		String[] parts = value.split(":");
+		float from = Float.parseFloat(parts[0].trim());
+		float to = Float.parseFloat(parts[1].trim());
+		float step = (parts.length > 2) ? Float.parseFloat(parts[2].trim()) : 1;
+		if (step <= 0) {
+			throw new IllegalArgumentException("The step of a range must be positive: " + value);
+		}
+		// the values add up the step as the original sweep did, so the weights match its results
+		ArrayList<Float> list = new ArrayList<Float>();
+		for (float v=from;v<to;v+=step) {
+			list.add(Float.valueOf(v));
+		}
+		float[] values = new float[list.size()];
+		for (int i=0;i<values.length;i++) {
+			values[i] = list.get(i).floatValue();
+		}
+		return values;
+	}
+	
+	/**
+	 * Get the number of configurations of the scenario
+	 * 
+	 * @return The number of configurations
+	 */
+	public int getConfigurationCount() {
+		return configurations.size();
+	}
+	
+	/**
+	 * Run all the configurations and write a row for each. The writer is
+	 * only used by the calling thread.
+	 * 
+	 * @param out The writer to write the CSV to, it is flushed after each row
+	 * @param threads The number of threads to run the configurations on
+	 * @throws IOException Indicates a failure to write the results
+	 * @throws InterruptedException Indicates the run was interrupted
+	 */
+	public void run(Writer out, int threads) throws IOException, InterruptedException {
+		out.write(sweepColumns ? HEADER + SWEEP_COLUMNS : HEADER);
+		out.write("\n");
+		out.flush();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			ExecutorCompletionService<Configuration> completion = new ExecutorCompletionService<Configuration>(executor);
+			for (final Configuration configuration : configurations) {
+				completion.submit(new Callable<Configuration>() {
+					public Configuration call() {
+						runConfiguration(configuration);
+						return configuration;
+					}
+				});
+			}
+			
+			// write each finished row once all the rows before it are written
+			Configuration[] done = new Configuration[configurations.size()];
+			int next = 0;
+			for (int i=0;i<done.length;i++) {
+				Configuration finished = getResult(completion.take());
+				done[finished.index] = finished;
+				while ((next < done.length) && (done[next] != null)) {
+					out.write(done[next].toRow(sweepColumns));
+					out.write("\n");
+					done[next] = null;
+					next++;
+				}
+				out.flush();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Get the configuration a finished task ran
+	 * 
+	 * @param future The finished task
+	 * @return The configuration it ran
+	 */
+	private static Configuration getResult(Future<Configuration> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A configuration failed", e.getCause());
+		}
+	}
+	
+	/**
+	 * Run all the queries of the scenario with one configuration
+	 * 
+	 * @param configuration The configuration to run, which receives the totals
+	 */
+	private void runConfiguration(Configuration configuration) {
+		AStarPathFinder finder = new AStarPathFinder(map, maxSearchDistance, configuration.diagonal);
+		finder.setHeuristicType(configuration.heuristicType);
+		finder.setHeuristicWeight(configuration.weight);
+		finder.setIntegerCosts(integerCosts);
+		
+		//Variation des positions de depart et de destination
+		for (int sy=0;sy<startY.length;sy++) {
+			for (int sx=0;sx<startX.length;sx++) {
+				for (int ty=0;ty<targetY.length;ty++) {
+					for (int tx=0;tx<targetX.length;tx++) {
+						Path path = finder.findPath(mover, (int) startX[sx], (int) startY[sy], (int) targetX[tx], (int) targetY[ty]);
+						configuration.totalTest++;
+						if (path == null) {
+							configuration.totalNotFound++;
+						} else {
+							configuration.totalPath += path.getLength();
+							configuration.totalTriedFailed += finder.getClosedListSize() + finder.getOpenListSize() - path.getLength();
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Entry point of the runner
+	 * 
+	 * @param argv The scenario file, the CSV file to write and optionally the number of threads
+	 * @throws Exception Indicates a failure to read the scenario or write the results
+	 */
+	public static void main(String[] argv) throws Exception {
+		if (argv.length < 2) {
+			System.err.println("Usage: ExperimentRunner scenario.properties results.csv [threads]");
+			System.exit(1);
+		}
+		int threads = (argv.length > 2) ? Integer.parseInt(argv[2]) : Runtime.getRuntime().availableProcessors();
+		
+		Properties scenario = new Properties();
+		InputStream in = new FileInputStream(argv[0]);
+		try {
+			scenario.load(in);
+		} finally {
+			in.close();
+		}
+		
+		ExperimentRunner runner = new ExperimentRunner(scenario);
+		long start = System.currentTimeMillis();
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(argv[1]), "UTF-8"));
+		try {
+			runner.run(out, threads);
+		} finally {
+			out.close();
+		}
+		System.out.println(runner.getConfigurationCount() + " configurations on " + threads + " threads in " 
+				+ (System.currentTimeMillis() - start) + " ms, results in " + argv[1]);
+	}
+	
+	/**
+	 * One combination of the finder settings, and its totals once run
+	 */
+	private static class Configuration {
+		/** The position of the configuration in the scenario */
+		private int index;
+		/** The heuristic type of the finder */
+		private int heuristicType;
+		/** The heuristic weight of the finder */
+		private float weight;
+		/** True if the finder moves diagonally */
+		private boolean diagonal;
+		/** The number of queries run */
+		private long totalTest;
+		/** The number of queries finding no path */
+		private long totalNotFound;
+		/** The total length of the paths found */
+		private long totalPath;
+		/** The total number of nodes looked at but not on the paths found */
+		private long totalTriedFailed;
+		
+		/**
+		 * Create a new configuration
+		 * 
+		 * @param index The position of the configuration in the scenario
+		 * @param heuristicType The heuristic type of the finder
+		 * @param weight The heuristic weight of the finder
+		 * @param diagonal True if the finder moves diagonally
+		 */
+		public Configuration(int index, int heuristicType, float weight, boolean diagonal) {
+			this.index = index;
+			this.heuristicType = heuristicType;
+			this.weight = weight;
+			this.diagonal = diagonal;
+		}
+		
+		/**
+		 * Get the CSV row of this configuration
+		 * 
+		 * @param sweepColumns True to end the row with the heuristic type and the diagonal setting
+		 * @return The row, without its line break
+		 */
+		public String toRow(boolean sweepColumns) {
+			String row = index + ";" + weight + ";" + totalTest + ";" + totalNotFound + ";" + totalPath + ";" + totalTriedFailed + ";";
+			if (sweepColumns) {
+				row += heuristicType + ";" + diagonal + ";";
+			}
+			return row;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package newBoite;
+
+/**
+ * The directions leading every tile of a map to one target, for one type of
+ * mover. A field is built once by a FlowFieldEngine, then any number of units
+ * heading to the target read their next move from it in constant time, rather
+ * than each searching its own path.
+ * 
+ * Tiles blocked for the mover, such as the tiles the units themselves stand
+ * on, have a direction too when one of their neighbours leads to the target,
+ * so a unit can always leave the tile it is on. A field is read only once
+ * built and may be shared between threads.
+ * 
+ * @see FlowFieldEngine
+ */
+public class FlowField {
+	/** The direction of the target itself and of the tiles that can't reach it */
+	public static final int NONE = -1;
+	
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The mover the field was built for */
+	private Mover mover;
+	/** The x coordinate of the target */
+	private int tx;
+	/** The y coordinate of the target */
+	private int ty;
+	/** The version of the map the field was built on */
+	private long version;
+	/** The cost of reaching the target from each tile, infinite if it can't be reached */
+	private float[] cost;
+	/** The neighbour of each tile to move to, as an index in PassabilityMap.NEIGHBOUR_X and NEIGHBOUR_Y, or NONE */
+	private byte[] direction;
+	
+	/**
+	 * Create a new field, filled in by the engine
+	 * 
+	 * @param width The width of the map in tiles
+	 * @param height The height of the map in tiles
+	 * @param mover The mover the field is built for
+	 * @param tx The x coordinate of the target
+	 * @param ty The y coordinate of the target
+	 * @param version The version of the map the field is built on
+	 * @param cost The cost of reaching the target from each tile
+	 * @param direction The neighbour of each tile to move to
+	 */
+	FlowField(int width, int height, Mover mover, int tx, int ty, long version, float[] cost, byte[] direction) {
+		this.width = width;
+		this.height = height;
+		this.mover = mover;
+		this.tx = tx;
+		this.ty = ty;
+		this.version = version;
+		this.cost = cost;
+		this.direction = direction;
+	}
+	
+	/**
+	 * Get the mover the field was built for
+	 * 
+	 * @return The mover the field was built for
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+	
+	/**
+	 * Get the x coordinate of the target
+	 * 
+	 * @return The x coordinate of the target
+	 */
+	public int getTargetX() {
+		return tx;
+	}
+	
+	/**
+	 * Get the y coordinate of the target
+	 * 
+	 * @return The y coordinate of the target
+	 */
+	public int getTargetY() {
+		return ty;
+	}
+	
+	/**
+	 * Get the version of the map the field was built on
+	 * 
+	 * @return The version of the map, or 0 if it has none
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Check if the target can be reached from a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return True if the target can be reached, or if the tile is the target
+	 */
+	public boolean isReachable(int x, int y) {
+		return cost[(y * width) + x] != Float.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Get the cost of reaching the target from a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The cost of the cheapest path to the target, infinite if there is none
+	 */
+	public float getCost(int x, int y) {
+		return cost[(y * width) + x];
+	}
+	
+	/**
+	 * Get the direction to move in from a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The neighbour to move to, as an index in PassabilityMap.NEIGHBOUR_X and NEIGHBOUR_Y, 
+	 * or NONE on the target and the tiles that can't reach it
+	 */
+	public int getDirection(int x, int y) {
+		return direction[(y * width) + x];
+	}
+	
+	/**
+	 * Get the x coordinate of the next step from a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The x coordinate of the next step, x if there is none
+	 */
+	public int getNextX(int x, int y) {
+		int d = direction[(y * width) + x];
+		return (d == NONE) ? x : x + PassabilityMap.NEIGHBOUR_X[d];
+	}
+	
+	/**
+	 * Get the y coordinate of the next step from a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The y coordinate of the next step, y if there is none
+	 */
+	public int getNextY(int x, int y) {
+		int d = direction[(y * width) + x];
+		return (d == NONE) ? y : y + PassabilityMap.NEIGHBOUR_Y[d];
+	}
+	
+	/**
+	 * Follow the field from a tile to the target
+	 * 
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @return The path from the start to the target, or null if the target can't be reached
+	 */
+	public Path getPath(int sx, int sy) {
+		if (!isReachable(sx, sy)) {
+			return null;
+		}
+		
+		Path path = new Path();
+		int x = sx;
+		int y = sy;
+		path.appendStep(x, y);
+		int d = direction[(y * width) + x];
+		while (d != NONE) {
+			x += PassabilityMap.NEIGHBOUR_X[d];
+			y += PassabilityMap.NEIGHBOUR_Y[d];
+			path.appendStep(x, y);
+			d = direction[(y * width) + x];
+		}
+		return path;
+	}
+}
@@ -0,0 +1,282 @@
+package newBoite;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds flow fields: a single Dijkstra search backwards from a target gives
+ * every tile of the map the cost of reaching the target and the neighbour to
+ * move to. A group of units ordered to the same tile then share one search
+ * instead of running one each.
+ * 
+ * The search goes backwards, but the cost of each move is asked of the map in
+ * the direction the units will take it, so the map doesn't need symmetric
+ * costs. The moves are the ones AStarPathFinder allows, diagonal ones only if
+ * asked for.
+ * 
+ * The fields built recently are cached. They are tagged with the version of
+ * the map they were built on and built again once the map has changed; maps
+ * that are not an ObservableTileMap have no version, their fields are kept
+ * until evicted or clear() is called. As for the path finders, the units on
+ * the map block the way, so moving a unit makes the cached fields stale.
+ * 
+ * The engine may be used from several threads, the builds are run one at a
+ * time.
+ * 
+ * @see FlowField
+ */
+public class FlowFieldEngine {
+	/** The map the fields are built on */
+	private TileBasedMap map;
+	/** The map the fields are built on, or null if it has no version */
+	private ObservableTileMap observable;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** True if the units may move diagonally */
+	private boolean allowDiagMovement;
+	
+	/** The state of the tiles during a build, only the stamps and heap slots are used */
+	private NodeStore store;
+	/** The tiles to expand, ordered on their cost to the target */
+	private IndexHeap open;
+	/** The identifier of the current build, used to stamp the tiles */
+	private int buildId;
+	
+	/** The fields built recently, the least recently used first */
+	private LinkedHashMap<Key, FlowField> cache;
+	/** The number of fields answered from the cache */
+	private long hits;
+	/** The number of fields built */
+	private long builds;
+	
+	/**
+	 * Create a new engine
+	 * 
+	 * @param map The map the fields are built on
+	 * @param allowDiagMovement True if the units may move diagonally
+	 * @param capacity The number of fields kept in the cache, 0 for none
+	 */
+	public FlowFieldEngine(TileBasedMap map, boolean allowDiagMovement, final int capacity) {
+		this.map = map;
+		if (map instanceof ObservableTileMap) {
+			this.observable = (ObservableTileMap) map;
+		}
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.allowDiagMovement = allowDiagMovement;
+		this.store = new ArrayNodeStore(width * height);
+		this.open = new IndexHeap(store);
+		this.cache = new LinkedHashMap<Key, FlowField>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, FlowField> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	/**
+	 * Get the field leading to a target, from the cache if it holds one built
+	 * on the current map
+	 * 
+	 * @param mover The mover the field is for
+	 * @param tx The x coordinate of the target
+	 * @param ty The y coordinate of the target
+	 * @return The field leading to the target
+	 */
+	public synchronized FlowField getField(Mover mover, int tx, int ty) {
+		Key key = new Key(mover, (ty * width) + tx);
+		FlowField field = cache.get(key);
+		if ((field != null) && (field.getVersion() == getVersion())) {
+			hits++;
+			return field;
+		}
+		
+		field = buildField(mover, tx, ty);
+		cache.put(key, field);
+		return field;
+	}
+	
+	/**
+	 * Build the field leading to a target, without looking in the cache
+	 * 
+	 * @param mover The mover the field is for
+	 * @param tx The x coordinate of the target
+	 * @param ty The y coordinate of the target
+	 * @return The field leading to the target
+	 */
+	public synchronized FlowField buildField(Mover mover, int tx, int ty) {
+		builds++;
+		// read the version before building, a change during the build makes the field stale
+		long version = getVersion();
+		float[] cost = new float[width * height];
+		byte[] direction = new byte[width * height];
+		Arrays.fill(cost, Float.POSITIVE_INFINITY);
+		Arrays.fill(direction, (byte) FlowField.NONE);
+		
+		FlowField field = new FlowField(width, height, mover, tx, ty, version, cost, direction);
+		if (map.blocked(mover, tx, ty)) {
+			return field;
+		}
+		
+		nextBuild();
+		int target = (ty * width) + tx;
+		cost[target] = 0;
+		setState(target, Node.OPEN);
+		open.add(target, 0);
+		
+		while (open.size() != 0) {
+			int current = open.removeFirst();
+			setState(current, Node.CLOSED);
+			int cx = current % width;
+			int cy = current / width;
+			
+			for (int i=0;i<PassabilityMap.NEIGHBOUR_X.length;i++) {
+				int dx = PassabilityMap.NEIGHBOUR_X[i];
+				int dy = PassabilityMap.NEIGHBOUR_Y[i];
+				if (!allowDiagMovement && (dx != 0) && (dy != 0)) {
+					continue;
+				}
+				// the tile moving in direction i to reach the current one
+				int px = cx - dx;
+				int py = cy - dy;
+				if ((px < 0) || (py < 0) || (px >= width) || (py >= height)) {
+					continue;
+				}
+				int previous = (py * width) + px;
+				if (getState(previous) == Node.CLOSED) {
+					continue;
+				}
+				
+				float nextCost = cost[current] + map.getCost(mover, px, py, cx, cy);
+				if (nextCost >= cost[previous]) {
+					continue;
+				}
+				cost[previous] = nextCost;
+				direction[previous] = (byte) i;
+				
+				// a blocked tile gets a way out but leads nowhere itself
+				if (map.blocked(mover, px, py)) {
+					continue;
+				}
+				if (getState(previous) == Node.OPEN) {
+					open.decreaseKey(previous, nextCost);
+				} else {
+					setState(previous, Node.OPEN);
+					open.add(previous, nextCost);
+				}
+			}
+		}
+		return field;
+	}
+	
+	/**
+	 * Start a new build, emptying the open list and forgetting the state of
+	 * the tiles left by the previous one
+	 */
+	private void nextBuild() {
+		open.clear();
+		buildId++;
+		if (buildId > (Integer.MAX_VALUE >>> 2)) {
+			for (int i=0;i<store.size();i++) {
+				store.setStamp(i, 0);
+			}
+			buildId = 1;
+		}
+	}
+	
+	/**
+	 * Get the state of a tile in the current build
+	 * 
+	 * @param index The index of the tile
+	 * @return The state of the tile, Node.UNVISITED, Node.OPEN or Node.CLOSED
+	 */
+	private int getState(int index) {
+		int stamp = store.getStamp(index);
+		return ((stamp >>> 2) == buildId) ? (stamp & 3) : Node.UNVISITED;
+	}
+	
+	/**
+	 * Set the state of a tile in the current build
+	 * 
+	 * @param index The index of the tile
+	 * @param state The state of the tile, Node.UNVISITED, Node.OPEN or Node.CLOSED
+	 */
+	private void setState(int index, int state) {
+		store.setStamp(index, (buildId << 2) | state);
+	}
+	
+	/**
+	 * Get the version of the map
+	 * 
+	 * @return The version of the map, or 0 if it has none
+	 */
+	private long getVersion() {
+		return (observable == null) ? 0 : observable.getVersion();
+	}
+	
+	/**
+	 * Remove all the fields from the cache
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+	
+	/**
+	 * Get the number of fields answered from the cache
+	 * 
+	 * @return The number of hits
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+	
+	/**
+	 * Get the number of fields built, including the ones replacing a stale field
+	 * 
+	 * @return The number of builds
+	 */
+	public synchronized long getBuildCount() {
+		return builds;
+	}
+	
+	/**
+	 * The key of a field in the cache
+	 */
+	private static class Key {
+		/** The mover the field is for */
+		private Mover mover;
+		/** The target of the field, as y * width + x */
+		private int target;
+		
+		/**
+		 * Create a new key
+		 * 
+		 * @param mover The mover the field is for
+		 * @param target The target of the field, as y * width + x
+		 */
+		public Key(Mover mover, int target) {
+			this.mover = mover;
+			this.target = target;
+		}
+		
+		/**
+		 * @see Object#hashCode()
+		 */
+		public int hashCode() {
+			return (mover.hashCode() * 31) + target;
+		}
+		
+		/**
+		 * @see Object#equals(Object)
+		 */
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Key o = (Key) other;
+				return (o.target == target) && o.mover.equals(mover);
+			}
+			return false;
+		}
+	}
+}
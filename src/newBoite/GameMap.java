@@ -1,5 +1,7 @@
 package newBoite;
 
+import java.util.ArrayList;
+
 import newBoite.Mover;
 import newBoite.TileBasedMap;;
 
@@ -11,7 +13,7 @@ import newBoite.TileBasedMap;;
  * 
  * @author Kevin Glass
  */
-public class GameMap implements TileBasedMap {
+public class GameMap implements UniformCostMap, ObservableTileMap, PassabilityMap {
 	/** The map width in tiles */
 	public static final int WIDTH = 30;
 	/** The map height in tiles */
@@ -30,50 +32,130 @@ public class GameMap implements TileBasedMap {
 	/** Indicate a tank is at a given location */
 	public static final int TANK = 5;
 	
+	/** Indicate the layout with the C shaped obstacle */
+	public static final int LAYOUT_C = 0;
+	/** Indicate the layout with the maze */
+	public static final int LAYOUT_MAZE = 1;
+	
+	/** The types of unit the passability of the tiles is kept for */
+	private static final int[] PASSABILITY_TYPES = {TANK, BOAT, PLANE};
+	
+	/** The width of this map in tiles */
+	private int width;
+	/** The height of this map in tiles */
+	private int height;
 	/** The terrain settings for each tile in the map */
-	private int[][] terrain = new int[WIDTH][HEIGHT];
+	private int[][] terrain;
 	/** The unit in each tile of the map */
-	private int[][] units = new int[WIDTH][HEIGHT];
-	/** Indicator if a given tile has been visited during the search */
-	private boolean[][] visited = new boolean[WIDTH][HEIGHT];
+	private int[][] units;
+	/** The listeners notified when a tile changes */
+	private ArrayList<TileChangeListener> listeners = new ArrayList<TileChangeListener>();
+	/** The number of changes made to the tiles, read by the path finders on other threads */
+	private volatile long version;
+	/** The tiles each type of unit may enter, as packed bits */
+	private long[][] passable;
+	/** The neighbours of each tile each type of unit may enter */
+	private byte[][] neighbourMasks;
 	
 	/**
 	 * Create a new test map with some default configuration
 	 */
 	public GameMap() {
+		this(WIDTH, HEIGHT);
+	}
+	
+	/**
+	 * Create a new test map of the given size. The default configuration
+	 * is scaled to the size of the map so that larger maps keep the same
+	 * layout.
+	 * 
+	 * @param width The width of the map in tiles
+	 * @param height The height of the map in tiles
+	 */
+	public GameMap(int width, int height) {
+		this(width, height, LAYOUT_C);
+	}
+	
+	/**
+	 * Create a new test map of the given size with one of the test layouts,
+	 * scaled to the size of the map
+	 * 
+	 * @param width The width of the map in tiles
+	 * @param height The height of the map in tiles
+	 * @param layout The obstacles to place, LAYOUT_C or LAYOUT_MAZE
+	 */
+	public GameMap(int width, int height, int layout) {
+		this.width = width;
+		this.height = height;
+		terrain = new int[width][height];
+		units = new int[width][height];
+		
 		// create some test data
 		
 		//Put grass everywhere first
-		fillArea(0,0,30, 20, GRASS);
+		fillArea(0,0,width, scaleY(20), GRASS);
 		
 		//fillArea(0,0,5,5,WATER);
 		
 		
-		//Labyrinthe #############
-		/*fillArea(10,5,15,15,TREES);
-		fillArea(11,6,13, 13, GRASS);
-		fillArea(12,7,11,11,TREES);
-		fillArea(13,8,9, 9, GRASS);
-		fillArea(14,9,7,7,TREES);
-		fillArea(15,10,5, 5, GRASS);
-		
-		fillArea(20,5, 1, 1, GRASS);
-		fillArea(20,17, 1, 1, GRASS);
-		fillArea(17,9, 1, 1, GRASS);*/
-		//########################
-		
-		//Obstacle en C #############
-		fillArea(9,10,1,10,TREES);
-		fillArea(9,20,12, 1, TREES);
-		fillArea(20,10,1,10,TREES);
-		//########################
+		if (layout == LAYOUT_MAZE) {
+			//Labyrinthe #############
+			//Trois anneaux d'arbres l'un dans l'autre, chacun avec une seule ouverture
+			for (int ring=0;ring<6;ring+=2) {
+				int x0 = scaleX(10 + ring);
+				int y0 = scaleY(5 + ring);
+				int x1 = scaleX(25 - ring);
+				int y1 = scaleY(20 - ring);
+				fillArea(x0, y0, x1 - x0, y1 - y0, TREES);
+				fillArea(x0 + 1, y0 + 1, x1 - x0 - 2, y1 - y0 - 2, GRASS);
+			}
+			
+			fillArea(scaleX(20),scaleY(5), 1, 1, GRASS);
+			fillArea(scaleX(20),scaleY(18)-1, 1, 1, GRASS);
+			fillArea(scaleX(17),scaleY(9), 1, 1, GRASS);
+			//########################
+		} else {
+			//Obstacle en C #############
+			fillArea(scaleX(9),scaleY(10),1,scaleY(20)-scaleY(10),TREES);
+			fillArea(scaleX(9),scaleY(20),scaleX(21)-scaleX(9), 1, TREES);
+			fillArea(scaleX(20),scaleY(10),1,scaleY(20)-scaleY(10),TREES);
+			//########################
+		}
 		
 		
 		
 		
-		units[15][3] = TANK;
+		units[scaleX(15)][scaleY(3)] = TANK;
 		//units[2][7] = BOAT;
 		//units[13][13] = PLANE;
+		
+		passable = new long[PASSABILITY_TYPES.length][((width * height) + 63) / 64];
+		neighbourMasks = new byte[PASSABILITY_TYPES.length][width * height];
+		for (int x=0;x<width;x++) {
+			for (int y=0;y<height;y++) {
+				updatePassability(x, y);
+			}
+		}
+	}
+	
+	/**
+	 * Scale an x coordinate of the default layout to the width of this map
+	 * 
+	 * @param x The x coordinate on a map of the default width
+	 * @return The matching x coordinate on this map
+	 */
+	private int scaleX(int x) {
+		return x * width / WIDTH;
+	}
+	
+	/**
+	 * Scale a y coordinate of the default layout to the height of this map
+	 * 
+	 * @param y The y coordinate on a map of the default height
+	 * @return The matching y coordinate on this map
+	 */
+	private int scaleY(int y) {
+		return y * height / HEIGHT;
 	}
 
 	/**
@@ -93,25 +175,6 @@ public class GameMap implements TileBasedMap {
 		}
 	}
 	
-	/**
-	 * Clear the array marking which tiles have been visted by the path 
-	 * finder.
-	 */
-	public void clearVisited() {
-		for (int x=0;x<getWidthInTiles();x++) {
-			for (int y=0;y<getHeightInTiles();y++) {
-				visited[x][y] = false;
-			}
-		}
-	}
-	
-	/**
-	 * @see TileBasedMap#visited(int, int)
-	 */
-	public boolean visited(int x, int y) {
-		return visited[x][y];
-	}
-	
 	/**
 	 * Get the terrain at a given location
 	 * 
@@ -123,6 +186,19 @@ public class GameMap implements TileBasedMap {
 		return terrain[x][y];
 	}
 	
+	/**
+	 * Set the terrain at the given location
+	 * 
+	 * @param x The x coordinate of the terrain tile to set
+	 * @param y The y coordinate of the terrain tile to set
+	 * @param type The terrain type to set
+	 */
+	public void setTerrain(int x, int y, int type) {
+		terrain[x][y] = type;
+		updatePassability(x, y);
+		fireTileChanged(x, y);
+	}
+	
 	/**
 	 * Get the unit at a given location
 	 * 
@@ -144,6 +220,108 @@ public class GameMap implements TileBasedMap {
 	 */
 	public void setUnit(int x, int y, int unit) {
 		units[x][y] = unit;
+		updatePassability(x, y);
+		fireTileChanged(x, y);
+	}
+	
+	/**
+	 * @see ObservableTileMap#addTileChangeListener(TileChangeListener)
+	 */
+	public void addTileChangeListener(TileChangeListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * @see ObservableTileMap#removeTileChangeListener(TileChangeListener)
+	 */
+	public void removeTileChangeListener(TileChangeListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * @see PassabilityMap#getPassableBits(Mover)
+	 */
+	public long[] getPassableBits(Mover mover) {
+		int layer = getPassabilityLayer(mover);
+		return (layer < 0) ? null : passable[layer];
+	}
+	
+	/**
+	 * @see PassabilityMap#getNeighbourMasks(Mover)
+	 */
+	public byte[] getNeighbourMasks(Mover mover) {
+		int layer = getPassabilityLayer(mover);
+		return (layer < 0) ? null : neighbourMasks[layer];
+	}
+	
+	/**
+	 * Get the index of the passability kept for a mover
+	 * 
+	 * @param mover The entity moving
+	 * @return The index in the passability arrays, or -1 if none is kept for the mover
+	 */
+	private int getPassabilityLayer(Mover mover) {
+		int unit = ((UnitMover) mover).getType();
+		for (int i=0;i<PASSABILITY_TYPES.length;i++) {
+			if (PASSABILITY_TYPES[i] == unit) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Update the passable bit of a tile for each type of unit, and the bit
+	 * standing for the tile in the neighbour masks of the tiles around it
+	 * 
+	 * @param x The x coordinate of the tile that changed
+	 * @param y The y coordinate of the tile that changed
+	 */
+	private void updatePassability(int x, int y) {
+		int tile = (y * width) + x;
+		for (int layer=0;layer<PASSABILITY_TYPES.length;layer++) {
+			boolean open = (units[x][y] == 0) && !terrainBlocks(PASSABILITY_TYPES[layer], x, y);
+			if (open) {
+				passable[layer][tile >>> 6] |= 1L << tile;
+			} else {
+				passable[layer][tile >>> 6] &= ~(1L << tile);
+			}
+			
+			// the neighbour at offset i sees this tile at the opposite offset, bit 7 - i
+			for (int i=0;i<8;i++) {
+				int xp = x + NEIGHBOUR_X[i];
+				int yp = y + NEIGHBOUR_Y[i];
+				if ((xp < 0) || (yp < 0) || (xp >= width) || (yp >= height)) {
+					continue;
+				}
+				int neighbour = (yp * width) + xp;
+				if (open) {
+					neighbourMasks[layer][neighbour] |= 1 << (7 - i);
+				} else {
+					neighbourMasks[layer][neighbour] &= ~(1 << (7 - i));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @see ObservableTileMap#getVersion()
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Move the map to a new version and notify the listeners that a tile has changed
+	 * 
+	 * @param x The x coordinate of the tile that changed
+	 * @param y The y coordinate of the tile that changed
+	 */
+	private void fireTileChanged(int x, int y) {
+		version++;
+		for (int i=0;i<listeners.size();i++) {
+			listeners.get(i).tileChanged(x, y);
+		}
 	}
 	
 	/**
@@ -155,19 +333,42 @@ public class GameMap implements TileBasedMap {
 			return true;
 		}
 		
-		int unit = ((UnitMover) mover).getType();
-		
+		return terrainBlocks(((UnitMover) mover).getType(), x, y);
+	}
+	
+	/**
+	 * Check if the terrain at a given location blocks a type of unit, ignoring
+	 * the units on the map
+	 * 
+	 * @param unit The type of the unit moving
+	 * @param x The x coordinate of the tile to check
+	 * @param y The y coordinate of the tile to check
+	 * @return True if the terrain blocks the unit
+	 */
+	public boolean terrainBlocks(int unit, int x, int y) {
+		return terrainBlocks(unit, terrain[x][y]);
+	}
+	
+	/**
+	 * Check if a type of terrain blocks a type of unit. The maps holding the
+	 * tiles of this game elsewhere, such as a MappedTileMap, share these rules.
+	 * 
+	 * @param unit The type of the unit moving
+	 * @param type The type of the terrain
+	 * @return True if the terrain blocks the unit
+	 */
+	public static boolean terrainBlocks(int unit, int type) {
 		// planes can move anywhere
 		if (unit == PLANE) {
 			return false;
 		}
 		// tanks can only move across grass
 		if (unit == TANK) {
-			return terrain[x][y] != GRASS;
+			return type != GRASS;
 		}
 		// boats can only move across water
 		if (unit == BOAT) {
-			return terrain[x][y] != WATER;
+			return type != WATER;
 		}
 		
 		// unknown unit so everything blocks
@@ -180,27 +381,28 @@ public class GameMap implements TileBasedMap {
 	public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
 		return 1;
 	}
+	
+	/**
+	 * @see UniformCostMap#getUniformCost(Mover)
+	 */
+	public float getUniformCost(Mover mover) {
+		return 1;
+	}
 
 	/**
 	 * @see TileBasedMap#getHeightInTiles()
 	 */
 	public int getHeightInTiles() {
-		return WIDTH;
+		return height;
 	}
 
 	/**
 	 * @see TileBasedMap#getWidthInTiles()
 	 */
 	public int getWidthInTiles() {
-		return HEIGHT;
+		return width;
 	}
 
-	/**
-	 * @see TileBasedMap#pathFinderVisited(int, int)
-	 */
-	public void pathFinderVisited(int x, int y) {
-		visited[x][y] = true;
-	}
 	
 	
 }
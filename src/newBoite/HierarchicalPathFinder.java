@@ -0,0 +1,1007 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * A hierarchical path finder (HPA*). The map is split into square clusters.
+ * Where a free run of tiles crosses the border between two clusters an
+ * entrance is placed, and the cost of moving between the entrances of each
+ * cluster is computed ahead of time. A query then searches this small abstract
+ * graph of entrances first, and only runs tile level searches inside the
+ * clusters the abstract path goes through, to fill in each of its segments.
+ * With diagonal movement, a diagonal step across a border that has no
+ * straight crossing next to it gets an entrance of its own, as does a
+ * diagonal step across the corner shared by four clusters.
+ * 
+ * The abstraction depends on what blocks the mover, so one is kept for each
+ * mover (movers that are equal share one). When a tile changes only the
+ * cluster holding it, and the borders it lies on, are computed again, lazily
+ * on the next search. The finder listens for changes itself when the map is
+ * an ObservableTileMap, other maps must call tileChanged(int, int).
+ * 
+ * The paths found are close to the shortest ones, but not always the shortest
+ * since the abstract graph only holds some of the tiles of each border. This
+ * finder is not thread safe.
+ */
+public class HierarchicalPathFinder implements PathFinder, TileChangeListener {
+	/** The length from which a free run along a border gets an entrance at each end rather than one in the middle */
+	private static final int WIDE_ENTRANCE = 6;
+	/** The key of the start of the search in the abstract graph */
+	private static final int START = -1;
+	/** The key of the target of the search in the abstract graph */
+	private static final int GOAL = -2;
+	
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The size in tiles of the side of a cluster */
+	private int clusterSize;
+	/** The number of clusters across the map */
+	private int clustersX;
+	/** The number of clusters down the map */
+	private int clustersY;
+	/** The maximum length of path we're willing to accept */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic we're applying to determine which nodes to search first */
+	private AStarHeuristic heuristic;
+	private int heuristicType;
+	private float heuristicWeight;
+	
+	/** The abstraction of the map for each mover */
+	private HashMap<Mover, Abstraction> abstractions = new HashMap<Mover, Abstraction>();
+	/** The search used within a single cluster */
+	private LocalSearch local;
+	/** The abstract nodes closed by the last search */
+	private ArrayList<Node> closed = new ArrayList<Node>();
+	/** The number of abstract nodes left in the open list by the last search */
+	private int openSize;
+	
+	/**
+	 * Create a path finder with the default heuristic
+	 * 
+	 * @param map The map to be searched
+	 * @param clusterSize The size in tiles of the side of a cluster
+	 * @param maxSearchDistance The maximum length of path we're willing to accept
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int clusterSize, int maxSearchDistance, boolean allowDiagMovement) {
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.clusterSize = clusterSize;
+		this.clustersX = (width + clusterSize - 1) / clusterSize;
+		this.clustersY = (height + clusterSize - 1) / clusterSize;
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristic = new ClosestHeuristic();
+		this.heuristicType = 0;
+		this.heuristicWeight = 1;
+		this.local = new LocalSearch();
+		
+		if (map instanceof ObservableTileMap) {
+			((ObservableTileMap) map).addTileChangeListener(this);
+		}
+	}
+	
+	/**
+	 * Notification that a tile has changed. The clusters and borders holding
+	 * the tile will be computed again before the next search.
+	 * 
+	 * @see TileChangeListener#tileChanged(int, int)
+	 */
+	public void tileChanged(int x, int y) {
+		for (Abstraction abstraction : abstractions.values()) {
+			abstraction.tileChanged(x, y);
+		}
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		closed.clear();
+		openSize = 0;
+		if (map.blocked(mover, tx, ty) || ((sx == tx) && (sy == ty))) {
+			return null;
+		}
+		
+		Abstraction abstraction = abstractions.get(mover);
+		if (abstraction == null) {
+			abstraction = new Abstraction(mover);
+			abstractions.put(mover, abstraction);
+		}
+		abstraction.update();
+		
+		int[] tiles = abstraction.search(sx, sy, tx, ty);
+		if (tiles == null) {
+			return null;
+		}
+		
+		// refine each segment of the abstract path into tiles
+		Path path = new Path();
+		path.appendStep(sx, sy);
+		for (int i=1;i<tiles.length;i++) {
+			int from = tiles[i-1];
+			int to = tiles[i];
+			int cluster = clusterOf(from % width, from / width);
+			if (cluster != clusterOf(to % width, to / width)) {
+				path.appendStep(to % width, to / width);
+				continue;
+			}
+			
+			int except = (i == 1) ? from : -1;
+			local.run(mover, cluster, from, to, false, except);
+			int[] steps = local.getPath(to);
+			for (int j=1;j<steps.length;j++) {
+				path.appendStep(steps[j] % width, steps[j] / width);
+			}
+		}
+		
+		if (path.getLength() - 1 > maxSearchDistance) {
+			return null;
+		}
+		return path;
+	}
+	
+	/**
+	 * Get the cluster holding a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The index of the cluster holding the tile
+	 */
+	private int clusterOf(int x, int y) {
+		return ((y / clusterSize) * clustersX) + (x / clusterSize);
+	}
+	
+	/**
+	 * Get the heuristic cost for the given location. This determines in which 
+	 * order the abstract nodes are processed.
+	 * 
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @return The heuristic cost assigned to the tile
+	 */
+	public float getHeuristicCost(Mover mover, int x, int y, int tx, int ty, int sx, int sy) {
+		if (heuristicType == 0) {
+			return heuristic.getCostManhattan(map, mover, heuristicWeight, x, y, tx, ty);
+		} else if (heuristicType == 1) {
+			return heuristic.getCostWithDynamicWeighting(map, mover, heuristicWeight, x, y, tx, ty, sx, sy);
+		}
+		return heuristic.getCost(map, mover, x, y, tx, ty);
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = w;
+	}
+	
+	/**
+	 * Get the abstract nodes, the entrances, closed by the last search
+	 * 
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		return closed;
+	}
+	
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return closed.size();
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return openSize;
+	}
+	
+	/**
+	 * A crossing between two neighbouring clusters: a tile on each side
+	 * of the border and the cost of stepping across in each direction
+	 */
+	private static class Transition {
+		/** The tile on the left or upper side of the border */
+		private int a;
+		/** The tile on the right or lower side of the border, diagonally across from a at a cluster corner */
+		private int b;
+		/** The cost of moving from a to b */
+		private float costAB;
+		/** The cost of moving from b to a */
+		private float costBA;
+	}
+	
+	/**
+	 * The abstract graph of the map for one mover
+	 */
+	private class Abstraction {
+		/** The mover the graph is built for */
+		private Mover mover;
+		/** The transitions across the border on the right of each cluster */
+		private ArrayList<Transition>[] right;
+		/** The transitions across the border below each cluster, and across its lower corners */
+		private ArrayList<Transition>[] down;
+		/** True if the border on the right of a cluster must be computed again */
+		private boolean[] rightDirty;
+		/** True if the border below a cluster must be computed again */
+		private boolean[] downDirty;
+		/** True if the entrances and distances of a cluster must be computed again */
+		private boolean[] clusterDirty;
+		/** True if anything must be computed again */
+		private boolean dirty;
+		/** The tiles of the entrances of each cluster */
+		private int[][] entrances;
+		/** The cost of moving from each entrance of a cluster to each other, within the cluster */
+		private float[][][] distances;
+		
+		/**
+		 * Create the abstraction for a mover, it is built by the first update
+		 * 
+		 * @param mover The mover the graph is built for
+		 */
+		public Abstraction(Mover mover) {
+			int count = clustersX * clustersY;
+			this.mover = mover;
+			right = createTransitionLists(count);
+			down = createTransitionLists(count);
+			rightDirty = new boolean[count];
+			downDirty = new boolean[count];
+			clusterDirty = new boolean[count];
+			entrances = new int[count][];
+			distances = new float[count][][];
+			for (int i=0;i<count;i++) {
+				rightDirty[i] = true;
+				downDirty[i] = true;
+				clusterDirty[i] = true;
+			}
+			dirty = true;
+		}
+		
+		/**
+		 * Create an empty list of transitions for each cluster. Java can't
+		 * create an array of a generic type, hence the raw array.
+		 * 
+		 * @param count The number of clusters
+		 * @return The lists of transitions
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private ArrayList<Transition>[] createTransitionLists(int count) {
+			ArrayList<Transition>[] lists = new ArrayList[count];
+			for (int i=0;i<count;i++) {
+				lists[i] = new ArrayList<Transition>();
+			}
+			return lists;
+		}
+		
+		/**
+		 * Mark the parts of the graph depending on a tile as needing update
+		 * 
+		 * @param x The x coordinate of the tile that changed
+		 * @param y The y coordinate of the tile that changed
+		 */
+		public void tileChanged(int x, int y) {
+			int cx = x / clusterSize;
+			int cy = y / clusterSize;
+			int cluster = (cy * clustersX) + cx;
+			clusterDirty[cluster] = true;
+			if ((x % clusterSize == clusterSize - 1) || (x == width - 1)) {
+				rightDirty[cluster] = true;
+			}
+			if ((x % clusterSize == 0) && (cx > 0)) {
+				rightDirty[cluster - 1] = true;
+			}
+			if ((y % clusterSize == clusterSize - 1) || (y == height - 1)) {
+				downDirty[cluster] = true;
+				cornerChanged(x, cluster);
+			}
+			if ((y % clusterSize == 0) && (cy > 0)) {
+				downDirty[cluster - clustersX] = true;
+				cornerChanged(x, cluster - clustersX);
+			}
+			dirty = true;
+		}
+		
+		/**
+		 * Mark the borders below the clusters on either side of a cluster as
+		 * needing update when a tile changes at one of its corners, since the
+		 * diagonal crossings of those borders depend on it
+		 * 
+		 * @param x The x coordinate of the tile that changed
+		 * @param cluster The cluster whose border below runs along the tile
+		 */
+		private void cornerChanged(int x, int cluster) {
+			if (!allowDiagMovement) {
+				return;
+			}
+			int cx = cluster % clustersX;
+			if ((x % clusterSize == 0) && (cx > 0)) {
+				downDirty[cluster - 1] = true;
+			}
+			if ((x % clusterSize == clusterSize - 1) && (cx < clustersX - 1)) {
+				downDirty[cluster + 1] = true;
+			}
+		}
+		
+		/**
+		 * Compute again the borders and clusters marked as needing it
+		 */
+		public void update() {
+			if (!dirty) {
+				return;
+			}
+			
+			for (int cy=0;cy<clustersY;cy++) {
+				for (int cx=0;cx<clustersX;cx++) {
+					int cluster = (cy * clustersX) + cx;
+					if (rightDirty[cluster]) {
+						rightDirty[cluster] = false;
+						if (cx < clustersX - 1) {
+							buildBorder(right[cluster], cx, cy, true);
+							clusterDirty[cluster] = true;
+							clusterDirty[cluster + 1] = true;
+						}
+					}
+					if (downDirty[cluster]) {
+						downDirty[cluster] = false;
+						if (cy < clustersY - 1) {
+							buildBorder(down[cluster], cx, cy, false);
+							clusterDirty[cluster] = true;
+							clusterDirty[cluster + clustersX] = true;
+							if (allowDiagMovement && (cx > 0)) {
+								clusterDirty[cluster + clustersX - 1] = true;
+							}
+							if (allowDiagMovement && (cx < clustersX - 1)) {
+								clusterDirty[cluster + clustersX + 1] = true;
+							}
+						}
+					}
+				}
+			}
+			
+			for (int cluster=0;cluster<clustersX*clustersY;cluster++) {
+				if (clusterDirty[cluster]) {
+					clusterDirty[cluster] = false;
+					buildCluster(cluster);
+				}
+			}
+			dirty = false;
+		}
+		
+		/**
+		 * Find the entrances across the border on the right of or below a cluster
+		 * 
+		 * @param transitions The list to fill with the transitions found
+		 * @param cx The x index of the cluster
+		 * @param cy The y index of the cluster
+		 * @param vertical True for the border on the right, false for the border below
+		 */
+		private void buildBorder(ArrayList<Transition> transitions, int cx, int cy, boolean vertical) {
+			transitions.clear();
+			int length = vertical ? Math.min(clusterSize, height - (cy * clusterSize)) 
+								  : Math.min(clusterSize, width - (cx * clusterSize));
+			int runStart = -1;
+			for (int i=0;i<=length;i++) {
+				boolean free = (i < length) && crossable(cx, cy, vertical, i);
+				if (free && (runStart < 0)) {
+					runStart = i;
+				} else if (!free && (runStart >= 0)) {
+					int runLength = i - runStart;
+					if (runLength >= WIDE_ENTRANCE) {
+						transitions.add(createTransition(cx, cy, vertical, runStart));
+						transitions.add(createTransition(cx, cy, vertical, i - 1));
+					} else {
+						transitions.add(createTransition(cx, cy, vertical, runStart + (runLength / 2)));
+					}
+					runStart = -1;
+				}
+			}
+			
+			if (allowDiagMovement) {
+				for (int i=0;i<length;i++) {
+					buildDiagonal(transitions, cx, cy, vertical, i, length, -1);
+					buildDiagonal(transitions, cx, cy, vertical, i, length, 1);
+				}
+			}
+		}
+		
+		/**
+		 * Add the diagonal crossing of a border from a given position when it
+		 * is the only way across there: both tiles free, as for any diagonal
+		 * step of the tile level search, and the two tiles of the straight
+		 * steps around it blocked. Across the border below a cluster the
+		 * crossing may reach the cluster below and to the side, past the corner.
+		 * 
+		 * @param transitions The list to add the transition to
+		 * @param cx The x index of the cluster
+		 * @param cy The y index of the cluster
+		 * @param vertical True for the border on the right, false for the border below
+		 * @param i The position along the border of the tile on the side of the cluster
+		 * @param length The length of the border
+		 * @param d The offset along the border of the tile on the other side, -1 or 1
+		 */
+		private void buildDiagonal(ArrayList<Transition> transitions, int cx, int cy, boolean vertical, int i, int length, int d) {
+			int ax = vertical ? ((cx + 1) * clusterSize) - 1 : (cx * clusterSize) + i;
+			int ay = vertical ? (cy * clusterSize) + i : ((cy + 1) * clusterSize) - 1;
+			int bx = vertical ? ax + 1 : ax + d;
+			int by = vertical ? ay + d : ay + 1;
+			if (vertical ? ((i + d < 0) || (i + d >= length)) : ((bx < 0) || (bx >= width))) {
+				return;
+			}
+			if (map.blocked(mover, ax, ay) || map.blocked(mover, bx, by)) {
+				return;
+			}
+			if (!map.blocked(mover, bx, ay) || !map.blocked(mover, ax, by)) {
+				return;
+			}
+			
+			Transition transition = new Transition();
+			transition.a = (ay * width) + ax;
+			transition.b = (by * width) + bx;
+			transition.costAB = map.getCost(mover, ax, ay, bx, by);
+			transition.costBA = map.getCost(mover, bx, by, ax, ay);
+			transitions.add(transition);
+		}
+		
+		/**
+		 * Check if both tiles on either side of a border are free
+		 * 
+		 * @param cx The x index of the cluster
+		 * @param cy The y index of the cluster
+		 * @param vertical True for the border on the right, false for the border below
+		 * @param i The position along the border
+		 * @return True if the mover can cross the border at the given position
+		 */
+		private boolean crossable(int cx, int cy, boolean vertical, int i) {
+			if (vertical) {
+				int x = ((cx + 1) * clusterSize) - 1;
+				int y = (cy * clusterSize) + i;
+				return !map.blocked(mover, x, y) && !map.blocked(mover, x + 1, y);
+			}
+			int x = (cx * clusterSize) + i;
+			int y = ((cy + 1) * clusterSize) - 1;
+			return !map.blocked(mover, x, y) && !map.blocked(mover, x, y + 1);
+		}
+		
+		/**
+		 * Create the transition crossing a border at a given position
+		 * 
+		 * @param cx The x index of the cluster
+		 * @param cy The y index of the cluster
+		 * @param vertical True for the border on the right, false for the border below
+		 * @param i The position along the border
+		 * @return The transition
+		 */
+		private Transition createTransition(int cx, int cy, boolean vertical, int i) {
+			int ax = vertical ? ((cx + 1) * clusterSize) - 1 : (cx * clusterSize) + i;
+			int ay = vertical ? (cy * clusterSize) + i : ((cy + 1) * clusterSize) - 1;
+			int bx = vertical ? ax + 1 : ax;
+			int by = vertical ? ay : ay + 1;
+			
+			Transition transition = new Transition();
+			transition.a = (ay * width) + ax;
+			transition.b = (by * width) + bx;
+			transition.costAB = map.getCost(mover, ax, ay, bx, by);
+			transition.costBA = map.getCost(mover, bx, by, ax, ay);
+			return transition;
+		}
+		
+		/**
+		 * Collect the entrances of a cluster from its four borders and compute
+		 * the cost of moving between each of them within the cluster
+		 * 
+		 * @param cluster The index of the cluster
+		 */
+		private void buildCluster(int cluster) {
+			ArrayList<Integer> tiles = new ArrayList<Integer>();
+			for (Transition t : right[cluster]) {
+				addEntrance(tiles, t.a);
+			}
+			for (Transition t : down[cluster]) {
+				addEntrance(tiles, t.a);
+			}
+			if (cluster % clustersX > 0) {
+				for (Transition t : right[cluster - 1]) {
+					addEntrance(tiles, t.b);
+				}
+			}
+			if (cluster >= clustersX) {
+				// the borders above and, past the corners, above and to the side
+				int cx = cluster % clustersX;
+				for (int above=Math.max(cx-1, 0);above<=Math.min(cx+1, clustersX-1);above++) {
+					for (Transition t : down[cluster - clustersX - cx + above]) {
+						if (clusterOf(t.b % width, t.b / width) == cluster) {
+							addEntrance(tiles, t.b);
+						}
+					}
+				}
+			}
+			
+			int count = tiles.size();
+			int[] nodes = new int[count];
+			for (int i=0;i<count;i++) {
+				nodes[i] = tiles.get(i).intValue();
+			}
+			float[][] costs = new float[count][count];
+			for (int i=0;i<count;i++) {
+				local.run(mover, cluster, nodes[i], -1, false, -1);
+				for (int j=0;j<count;j++) {
+					costs[i][j] = local.getCost(nodes[j]);
+				}
+			}
+			entrances[cluster] = nodes;
+			distances[cluster] = costs;
+		}
+		
+		/**
+		 * Add a tile to a list of entrances unless it is already there
+		 * 
+		 * @param tiles The list of entrances
+		 * @param tile The tile to add
+		 */
+		private void addEntrance(ArrayList<Integer> tiles, int tile) {
+			Integer value = Integer.valueOf(tile);
+			if (!tiles.contains(value)) {
+				tiles.add(value);
+			}
+		}
+		
+		/**
+		 * Search the abstract graph from a start to a target location
+		 * 
+		 * @param sx The x coordinate of the start location
+		 * @param sy The y coordinate of the start location
+		 * @param tx The x coordinate of the target location
+		 * @param ty The y coordinate of the target location
+		 * @return The tiles of the abstract path, from start to target, or null if there is none
+		 */
+		public int[] search(int sx, int sy, int tx, int ty) {
+			int start = (sy * width) + sx;
+			int goal = (ty * width) + tx;
+			int startCluster = clusterOf(sx, sy);
+			int goalCluster = clusterOf(tx, ty);
+			
+			// connect the start and the target to the entrances of their clusters
+			local.run(mover, startCluster, start, -1, false, start);
+			int[] startEntrances = entrances[startCluster];
+			float[] startCosts = new float[startEntrances.length];
+			for (int i=0;i<startEntrances.length;i++) {
+				startCosts[i] = local.getCost(startEntrances[i]);
+			}
+			float direct = (startCluster == goalCluster) ? local.getCost(goal) : Float.MAX_VALUE;
+			
+			local.run(mover, goalCluster, goal, -1, true, start);
+			int[] goalEntrances = entrances[goalCluster];
+			float[] goalCosts = new float[goalEntrances.length];
+			for (int i=0;i<goalEntrances.length;i++) {
+				goalCosts[i] = local.getCost(goalEntrances[i]);
+			}
+			
+			HashMap<Integer, AbstractNode> nodes = new HashMap<Integer, AbstractNode>();
+			PriorityQueue<QueuedNode> open = new PriorityQueue<QueuedNode>();
+			AbstractNode first = new AbstractNode(START, start, startCluster, -1);
+			first.setHeuristic(getHeuristicCost(mover, sx, sy, tx, ty, sx, sy));
+			nodes.put(Integer.valueOf(START), first);
+			open.add(first.queued());
+			
+			while (!open.isEmpty()) {
+				AbstractNode current = open.poll().node;
+				if (current.closed) {
+					continue;
+				}
+				current.closed = true;
+				if (current.key == GOAL) {
+					openSize = open.size();
+					return current.tiles();
+				}
+				Node node = new Node(current.tile % width, current.tile / width);
+				node.setCost(current.cost);
+				closed.add(node);
+				
+				if (current.key == START) {
+					for (int i=0;i<startEntrances.length;i++) {
+						relax(nodes, open, current, startEntrances[i], startCluster, i, startCosts[i], tx, ty, sx, sy);
+					}
+					relax(nodes, open, current, GOAL, goalCluster, -1, direct, tx, ty, sx, sy);
+					continue;
+				}
+				
+				// moves within the cluster
+				int cluster = current.cluster;
+				float[] costs = distances[cluster][current.entrance];
+				for (int j=0;j<costs.length;j++) {
+					relax(nodes, open, current, entrances[cluster][j], cluster, j, costs[j], tx, ty, sx, sy);
+				}
+				if (cluster == goalCluster) {
+					relax(nodes, open, current, GOAL, goalCluster, -1, goalCosts[current.entrance], tx, ty, sx, sy);
+				}
+				
+				// moves across the borders of the cluster
+				int cx = cluster % clustersX;
+				int cy = cluster / clustersX;
+				crossBorder(nodes, open, current, right[cluster], true, tx, ty, sx, sy);
+				crossBorder(nodes, open, current, down[cluster], true, tx, ty, sx, sy);
+				if (cx > 0) {
+					crossBorder(nodes, open, current, right[cluster - 1], false, tx, ty, sx, sy);
+				}
+				if (cy > 0) {
+					crossBorder(nodes, open, current, down[cluster - clustersX], false, tx, ty, sx, sy);
+					if (allowDiagMovement && (cx > 0)) {
+						crossBorder(nodes, open, current, down[cluster - clustersX - 1], false, tx, ty, sx, sy);
+					}
+					if (allowDiagMovement && (cx < clustersX - 1)) {
+						crossBorder(nodes, open, current, down[cluster - clustersX + 1], false, tx, ty, sx, sy);
+					}
+				}
+			}
+			
+			openSize = 0;
+			return null;
+		}
+		
+		/**
+		 * Relax the moves across a border from an abstract node
+		 * 
+		 * @param nodes The abstract nodes reached so far
+		 * @param open The open list
+		 * @param current The node being expanded
+		 * @param transitions The transitions of the border
+		 * @param fromA True if the node being expanded is on the a side of the border
+		 * @param tx The x coordinate of the target location
+		 * @param ty The y coordinate of the target location
+		 * @param sx The x coordinate of the start location
+		 * @param sy The y coordinate of the start location
+		 */
+		private void crossBorder(HashMap<Integer, AbstractNode> nodes, PriorityQueue<QueuedNode> open, AbstractNode current,
+								 ArrayList<Transition> transitions, boolean fromA, int tx, int ty, int sx, int sy) {
+			for (int i=0;i<transitions.size();i++) {
+				Transition t = transitions.get(i);
+				int from = fromA ? t.a : t.b;
+				if (from != current.tile) {
+					continue;
+				}
+				int to = fromA ? t.b : t.a;
+				int otherCluster = clusterOf(to % width, to / width);
+				int entrance = indexOf(entrances[otherCluster], to);
+				relax(nodes, open, current, to, otherCluster, entrance, fromA ? t.costAB : t.costBA, tx, ty, sx, sy);
+			}
+		}
+		
+		/**
+		 * Offer a cheaper way to reach an abstract node
+		 * 
+		 * @param nodes The abstract nodes reached so far
+		 * @param open The open list
+		 * @param current The node being expanded
+		 * @param key The key of the node reached, its tile or GOAL
+		 * @param cluster The cluster of the node reached
+		 * @param entrance The index of the node reached amongst the entrances of its cluster
+		 * @param cost The cost of the move from the current node
+		 * @param tx The x coordinate of the target location
+		 * @param ty The y coordinate of the target location
+		 * @param sx The x coordinate of the start location
+		 * @param sy The y coordinate of the start location
+		 */
+		private void relax(HashMap<Integer, AbstractNode> nodes, PriorityQueue<QueuedNode> open, AbstractNode current,
+						   int key, int cluster, int entrance, float cost, int tx, int ty, int sx, int sy) {
+			if (cost == Float.MAX_VALUE) {
+				return;
+			}
+			float nextCost = current.cost + cost;
+			Integer boxed = Integer.valueOf(key);
+			AbstractNode node = nodes.get(boxed);
+			if (node == null) {
+				int tile = (key == GOAL) ? (ty * width) + tx : key;
+				node = new AbstractNode(key, tile, cluster, entrance);
+				node.setHeuristic(getHeuristicCost(mover, tile % width, tile / width, tx, ty, sx, sy));
+				nodes.put(boxed, node);
+			} else if (node.closed || (nextCost >= node.cost)) {
+				return;
+			}
+			node.cost = nextCost;
+			node.parent = current;
+			open.add(node.queued());
+		}
+	}
+	
+	/**
+	 * Find a tile amongst the entrances of a cluster
+	 * 
+	 * @param tiles The entrances of the cluster
+	 * @param tile The tile to look for
+	 * @return The index of the tile amongst the entrances, or -1
+	 */
+	private static int indexOf(int[] tiles, int tile) {
+		for (int i=0;i<tiles.length;i++) {
+			if (tiles[i] == tile) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * A node of the abstract graph reached by the current search
+	 */
+	private static class AbstractNode {
+		/** The key of the node, its tile or START or GOAL */
+		private int key;
+		/** The tile of the node */
+		private int tile;
+		/** The cluster holding the node */
+		private int cluster;
+		/** The index of the node amongst the entrances of its cluster */
+		private int entrance;
+		/** The cost of the best path to this node found so far */
+		private float cost = Float.MAX_VALUE;
+		/** The heuristic cost of this node */
+		private float heuristic;
+		/** The node we reached this node from */
+		private AbstractNode parent;
+		/** True once the node has been expanded */
+		private boolean closed;
+		
+		/**
+		 * Create a new node
+		 * 
+		 * @param key The key of the node, its tile or START or GOAL
+		 * @param tile The tile of the node
+		 * @param cluster The cluster holding the node
+		 * @param entrance The index of the node amongst the entrances of its cluster
+		 */
+		public AbstractNode(int key, int tile, int cluster, int entrance) {
+			this.key = key;
+			this.tile = tile;
+			this.cluster = cluster;
+			this.entrance = entrance;
+			if (key == START) {
+				this.cost = 0;
+			}
+		}
+		
+		/**
+		 * Set the heuristic cost of this node
+		 * 
+		 * @param heuristic The heuristic cost of this node
+		 */
+		public void setHeuristic(float heuristic) {
+			this.heuristic = heuristic;
+		}
+		
+		/**
+		 * Get an entry of the open list for this node at its current cost
+		 * 
+		 * @return The entry for the open list
+		 */
+		public QueuedNode queued() {
+			return new QueuedNode(this, cost + heuristic);
+		}
+		
+		/**
+		 * Get the tiles of the abstract path leading to this node
+		 * 
+		 * @return The tiles from the start to this node
+		 */
+		public int[] tiles() {
+			int length = 0;
+			for (AbstractNode node = this;node != null;node = node.parent) {
+				length++;
+			}
+			int[] tiles = new int[length];
+			AbstractNode node = this;
+			for (int i=length-1;i>=0;i--) {
+				tiles[i] = node.tile;
+				node = node.parent;
+			}
+			return tiles;
+		}
+	}
+	
+	/**
+	 * An entry of the abstract open list. A node is queued again each time a
+	 * cheaper path to it is found, the stale entries are skipped when polled.
+	 */
+	private static class QueuedNode implements Comparable<QueuedNode> {
+		/** The node queued */
+		private AbstractNode node;
+		/** The f cost of the node when it was queued */
+		private float f;
+		
+		/**
+		 * Create a new entry
+		 * 
+		 * @param node The node queued
+		 * @param f The f cost of the node
+		 */
+		public QueuedNode(AbstractNode node, float f) {
+			this.node = node;
+			this.f = f;
+		}
+		
+		/**
+		 * @see Comparable#compareTo(Object)
+		 */
+		public int compareTo(QueuedNode other) {
+			return Float.compare(f, other.f);
+		}
+	}
+	
+	/**
+	 * A Dijkstra search restricted to the tiles of one cluster
+	 */
+	private class LocalSearch {
+		/** The search state of the tiles of a cluster */
+		private NodeStore store = new ArrayNodeStore(clusterSize * clusterSize);
+		/** The open list */
+		private IndexHeap open = new IndexHeap(store);
+		/** The identifier of the current search, used to stamp the state of the nodes */
+		private int searchId;
+		/** The x coordinate of the first tile of the cluster searched */
+		private int x0;
+		/** The y coordinate of the first tile of the cluster searched */
+		private int y0;
+		/** The width of the cluster searched */
+		private int w;
+		/** The height of the cluster searched */
+		private int h;
+		
+		/**
+		 * Run a search within a cluster
+		 * 
+		 * @param mover The entity moving
+		 * @param cluster The cluster to search
+		 * @param from The tile the search starts from
+		 * @param to The tile at which to stop the search, or -1 to reach every tile of the cluster
+		 * @param reverse True to compute the cost of moving to the start tile rather than from it
+		 * @param except A tile the mover may always stand on, its own start location, or -1
+		 */
+		public void run(Mover mover, int cluster, int from, int to, boolean reverse, int except) {
+			x0 = (cluster % clustersX) * clusterSize;
+			y0 = (cluster / clustersX) * clusterSize;
+			w = Math.min(clusterSize, width - x0);
+			h = Math.min(clusterSize, height - y0);
+			
+			open.clear();
+			searchId = SearchContext.nextSearchId(searchId, store);
+			
+			int first = toLocal(from);
+			store.setCost(first, 0);
+			store.setParent(first, NodeStore.NO_PARENT);
+			setState(first, Node.OPEN);
+			open.add(first, 0);
+			
+			int target = (to < 0) ? -1 : toLocal(to);
+			while (open.size() != 0) {
+				int current = open.removeFirst();
+				setState(current, Node.CLOSED);
+				if (current == target) {
+					return;
+				}
+				
+				int cx = x0 + (current % w);
+				int cy = y0 + (current / w);
+				for (int dx=-1;dx<2;dx++) {
+					for (int dy=-1;dy<2;dy++) {
+						if ((dx == 0) && (dy == 0)) {
+							continue;
+						}
+						if (!allowDiagMovement && (dx != 0) && (dy != 0)) {
+							continue;
+						}
+						int nx = cx + dx;
+						int ny = cy + dy;
+						if ((nx < x0) || (ny < y0) || (nx >= x0 + w) || (ny >= y0 + h)) {
+							continue;
+						}
+						if ((((ny * width) + nx) != except) && map.blocked(mover, nx, ny)) {
+							continue;
+						}
+						
+						int neighbour = ((ny - y0) * w) + (nx - x0);
+						int state = getState(neighbour);
+						if (state == Node.CLOSED) {
+							continue;
+						}
+						float cost = store.getCost(current) + (reverse ? map.getCost(mover, nx, ny, cx, cy) : map.getCost(mover, cx, cy, nx, ny));
+						if (state == Node.OPEN) {
+							if (cost < store.getCost(neighbour)) {
+								store.setCost(neighbour, cost);
+								store.setParent(neighbour, current);
+								open.decreaseKey(neighbour, cost);
+							}
+							continue;
+						}
+						store.setCost(neighbour, cost);
+						store.setParent(neighbour, current);
+						setState(neighbour, Node.OPEN);
+						open.add(neighbour, cost);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Get the cost found by the last search for a tile of the cluster
+		 * 
+		 * @param tile The tile, which must be in the cluster searched
+		 * @return The cost of the tile or Float.MAX_VALUE if it was not reached
+		 */
+		public float getCost(int tile) {
+			int index = toLocal(tile);
+			return (getState(index) == Node.UNVISITED) ? Float.MAX_VALUE : store.getCost(index);
+		}
+		
+		/**
+		 * Get the path found by the last search to a tile of the cluster
+		 * 
+		 * @param tile The tile the path leads to
+		 * @return The tiles of the path, from the start of the search to the given tile
+		 */
+		public int[] getPath(int tile) {
+			int length = 0;
+			for (int node = toLocal(tile);node != NodeStore.NO_PARENT;node = store.getParent(node)) {
+				length++;
+			}
+			int[] steps = new int[length];
+			int node = toLocal(tile);
+			for (int i=length-1;i>=0;i--) {
+				steps[i] = ((y0 + (node / w)) * width) + x0 + (node % w);
+				node = store.getParent(node);
+			}
+			return steps;
+		}
+		
+		/**
+		 * Convert a tile of the map to the index of the tile within the cluster searched
+		 * 
+		 * @param tile The index of the tile on the map
+		 * @return The index of the tile within the cluster
+		 */
+		private int toLocal(int tile) {
+			return (((tile / width) - y0) * w) + ((tile % width) - x0);
+		}
+		
+		/**
+		 * Get the state of a tile in the current search
+		 * 
+		 * @param index The index of the tile within the cluster
+		 * @return The state of the tile, Node.UNVISITED, Node.OPEN or Node.CLOSED
+		 */
+		private int getState(int index) {
+			return SearchContext.getState(store, searchId, index, Node.UNVISITED);
+		}
+		
+		/**
+		 * Set the state of a tile in the current search
+		 * 
+		 * @param index The index of the tile within the cluster
+		 * @param state The state of the tile
+		 */
+		private void setState(int index, int state) {
+			SearchContext.setState(store, searchId, index, state);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package newBoite;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of positive values, such as latencies, which may be recorded
+ * from many threads at once. The buckets are laid out as in HdrHistogram:
+ * each power of two is split in 16 buckets, so the value reported for a
+ * percentile is within 1/16th of the real one whatever its magnitude.
+ * 
+ * Each bucket is a LongAdder, which spreads the updates of contending
+ * threads over several cells, so recording never takes a lock nor makes
+ * threads retry on the same counter. Reading the histogram while it is
+ * being recorded to gives a close, but not exact, picture.
+ */
+public class Histogram {
+	/** The number of bits of a value kept exactly, the buckets of a power of two */
+	private static final int SUB_BUCKET_BITS = 4;
+	/** The number of buckets each power of two is split in */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	/** The number of values recorded in each bucket */
+	private LongAdder[] buckets;
+	/** The largest value recorded */
+	private AtomicLong max = new AtomicLong();
+	/** The sum of the values recorded */
+	private LongAdder sum = new LongAdder();
+	
+	/**
+	 * Create a new histogram
+	 * 
+	 * @param maxBits The number of bits of the largest value told apart, larger values are counted with it
+	 */
+	public Histogram(int maxBits) {
+		if ((maxBits <= SUB_BUCKET_BITS) || (maxBits > 62)) {
+			throw new IllegalArgumentException("The values must have between " + (SUB_BUCKET_BITS + 1) 
+					+ " and 62 bits: " + maxBits);
+		}
+		buckets = new LongAdder[(maxBits - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+		for (int i=0;i<buckets.length;i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Record a value, negative values are counted as 0
+	 * 
+	 * @param value The value to record
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets[Math.min(getBucket(value), buckets.length - 1)].increment();
+		sum.add(value);
+		
+		long current = max.get();
+		while ((value > current) && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * Get the bucket a value is counted in
+	 * 
+	 * @param value The value, not negative
+	 * @return The index of the bucket
+	 */
+	private static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * Get the largest value counted in a bucket
+	 * 
+	 * @param bucket The index of the bucket
+	 * @return The largest value counted in it
+	 */
+	private static long getHighestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		long sub = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+		return ((sub + 1) << shift) - 1;
+	}
+	
+	/**
+	 * Get the number of values recorded
+	 * 
+	 * @return The number of values recorded
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i=0;i<buckets.length;i++) {
+			count += buckets[i].sum();
+		}
+		return count;
+	}
+	
+	/**
+	 * Get the largest value recorded
+	 * 
+	 * @return The largest value recorded, or 0 if none was
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Get the mean of the values recorded
+	 * 
+	 * @return The mean of the values, or 0 if none was recorded
+	 */
+	public double getMean() {
+		long count = getCount();
+		return (count == 0) ? 0 : (double) sum.sum() / count;
+	}
+	
+	/**
+	 * Get the value at a given percentile, that is the largest value of the
+	 * bucket in which the percentile falls, and never more than the largest
+	 * value recorded
+	 * 
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The value at the percentile, or 0 if no value was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[buckets.length];
+		long count = 0;
+		for (int i=0;i<buckets.length;i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil((Math.min(100, Math.max(0, percentile)) / 100) * count));
+		long seen = 0;
+		for (int i=0;i<counts.length;i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(getHighestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	/**
+	 * Forget all the values recorded
+	 */
+	public void reset() {
+		for (int i=0;i<buckets.length;i++) {
+			buckets[i].reset();
+		}
+		sum.reset();
+		max.set(0);
+	}
+}
@@ -0,0 +1,213 @@
+package newBoite;
+
+/**
+ * A search run in slices. It is started by AStarPathFinder.startSearch() and
+ * keeps its open and closed lists between the calls to step(), each of which
+ * expands at most a given number of nodes. A game can then spread a hard
+ * search over several frames rather than stall one of them.
+ * 
+ * The map should not change while the search is in progress: the nodes
+ * already expanded are not looked at again, so a change behind the search
+ * front is only seen by the next search.
+ * 
+ * @see AStarPathFinder#startSearch(SearchContext, Mover, int, int, int, int)
+ * @see SearchScheduler
+ */
+public class IncrementalSearch {
+	/** The status of a search which has not finished yet */
+	public static final int IN_PROGRESS = 0;
+	/** The status of a search which found a path */
+	public static final int FOUND = 1;
+	/** The status of a search which found no path, or was cancelled */
+	public static final int FAILED = 2;
+	
+	/** The finder running the search */
+	AStarPathFinder finder;
+	/** The context holding the state of the search, or null once finished */
+	SearchContext context;
+	/** The entity moving */
+	Mover mover;
+	/** The x coordinate of the start location */
+	int sx;
+	/** The y coordinate of the start location */
+	int sy;
+	/** The x coordinate of the target location */
+	int tx;
+	/** The y coordinate of the target location */
+	int ty;
+	/** The node the search started from */
+	Node start;
+	/** The node the search is heading to */
+	Node target;
+	/** The neighbours each tile of the map may move to, or null to check them one by one */
+	byte[] masks;
+	/** The listener following the search, or null */
+	SearchListener listener;
+	/** The deepest node reached so far */
+	int maxDepth;
+	/** The number of nodes expanded so far */
+	int expanded;
+	/** The number of nodes added to the open list so far */
+	int generated;
+	/** The largest size the open list reached so far */
+	int peakOpenSize;
+	/** The number of closed nodes reached again through a cheaper path so far */
+	int reopened;
+	/** The number of times the heuristic was computed so far */
+	int heuristicEvaluations;
+	/** The time spent in the steps of the search so far, in nanoseconds */
+	long elapsedNanos;
+	/** The outcome of the search once over, as given by SearchStats */
+	int outcome = SearchStats.UNREACHABLE;
+	/** The status of the search */
+	int status = IN_PROGRESS;
+	/** The path found, or null */
+	Path path;
+	
+	/**
+	 * Create a new search, started by the finder
+	 * 
+	 * @param finder The finder running the search
+	 * @param context The context holding the state of the search
+	 * @param mover The entity moving
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 */
+	IncrementalSearch(AStarPathFinder finder, SearchContext context, Mover mover, int sx, int sy, int tx, int ty) {
+		reset(finder, context, mover, sx, sy, tx, ty);
+	}
+	
+	/**
+	 * Make this search a new one, with no node expanded yet. findPath()
+	 * reuses the search of its context this way rather than create one for
+	 * each query.
+	 * 
+	 * @param finder The finder running the search
+	 * @param context The context holding the state of the search
+	 * @param mover The entity moving
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 */
+	void reset(AStarPathFinder finder, SearchContext context, Mover mover, int sx, int sy, int tx, int ty) {
+		this.finder = finder;
+		this.context = context;
+		this.mover = mover;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+		start = null;
+		target = null;
+		masks = null;
+		listener = null;
+		maxDepth = 0;
+		expanded = 0;
+		generated = 0;
+		peakOpenSize = 0;
+		reopened = 0;
+		heuristicEvaluations = 0;
+		elapsedNanos = 0;
+		outcome = SearchStats.UNREACHABLE;
+		status = IN_PROGRESS;
+		path = null;
+	}
+	
+	/**
+	 * Carry on the search
+	 * 
+	 * @param maxExpansions The largest number of nodes to expand before returning
+	 * @return The status of the search, IN_PROGRESS, FOUND or FAILED
+	 */
+	public int step(int maxExpansions) {
+		if (status == IN_PROGRESS) {
+			long start = System.nanoTime();
+			finder.step(this, maxExpansions);
+			elapsedNanos += System.nanoTime() - start;
+		}
+		return status;
+	}
+	
+	/**
+	 * Stop the search. Its status becomes FAILED and its context may be
+	 * used by another search.
+	 */
+	public void cancel() {
+		if (status == IN_PROGRESS) {
+			finish(FAILED, null);
+		}
+	}
+	
+	/**
+	 * End the search
+	 * 
+	 * @param status The status the search ends with, FOUND or FAILED
+	 * @param path The path found, or null
+	 */
+	void finish(int status, Path path) {
+		this.status = status;
+		this.path = path;
+		this.context = null;
+		this.start = null;
+		this.target = null;
+	}
+	
+	/**
+	 * Get the status of the search
+	 * 
+	 * @return IN_PROGRESS, FOUND or FAILED
+	 */
+	public int getStatus() {
+		return status;
+	}
+	
+	/**
+	 * Check if the search is over
+	 * 
+	 * @return True if the search found a path, or failed
+	 */
+	public boolean isDone() {
+		return status != IN_PROGRESS;
+	}
+	
+	/**
+	 * Get the path found
+	 * 
+	 * @return The path found, or null if the search is in progress or failed
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	/**
+	 * Get the number of nodes expanded so far
+	 * 
+	 * @return The number of nodes expanded
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+	
+	/**
+	 * Fill in the figures of the search so far. The outcome only tells
+	 * why the search is over once it is done.
+	 * 
+	 * @param stats The figures to fill in
+	 */
+	public void fillStats(SearchStats stats) {
+		stats.set(expanded, generated, peakOpenSize, reopened, heuristicEvaluations, elapsedNanos);
+		stats.setOutcome(outcome);
+	}
+	
+	/**
+	 * Get the entity moving
+	 * 
+	 * @return The entity moving
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+}
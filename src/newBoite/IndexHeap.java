@@ -0,0 +1,168 @@
+package newBoite;
+
+import java.util.Arrays;
+
+/**
+ * An open list for the path finders working on node indices rather than Node
+ * objects. This is a binary heap of indices ordered on a cost given when the
+ * node is added. The costs are kept alongside the heap, so sifting never reads
+ * the node store, which is only used to record the slot of each node.
+ * 
+ * @see NodeStore
+ */
+public class IndexHeap {
+	/** The store recording the slot of each node in the heap */
+	private NodeStore store;
+	/** The node indices, the cheapest node is at index 0 */
+	private int[] heap = new int[64];
+	/** The cost of each node in the heap */
+	private float[] cost = new float[64];
+	/** The number of nodes in the heap */
+	private int size;
+	
+	/**
+	 * Create a new heap
+	 * 
+	 * @param store The store recording the slot of each node in the heap
+	 */
+	public IndexHeap(NodeStore store) {
+		this.store = store;
+	}
+	
+	/**
+	 * Get the cheapest node
+	 * 
+	 * @return The index of the cheapest node
+	 */
+	public int first() {
+		return heap[0];
+	}
+	
+	/**
+	 * Get the number of nodes in the heap
+	 * 
+	 * @return The number of nodes in the heap
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Get the node held in a given slot of the heap
+	 * 
+	 * @param slot The slot of the node, between 0 and size() - 1
+	 * @return The index of the node in the given slot
+	 */
+	public int get(int slot) {
+		return heap[slot];
+	}
+	
+	/**
+	 * Empty the heap
+	 */
+	public void clear() {
+		for (int i=0;i<size;i++) {
+			store.setHeapIndex(heap[i], -1);
+		}
+		size = 0;
+	}
+	
+	/**
+	 * Add a node to the heap
+	 * 
+	 * @param index The index of the node
+	 * @param f The cost the node is ordered on
+	 */
+	public void add(int index, float f) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+			cost = Arrays.copyOf(cost, size * 2);
+		}
+		heap[size] = index;
+		cost[size] = f;
+		size++;
+		siftUp(size - 1);
+	}
+	
+	/**
+	 * Remove the cheapest node from the heap
+	 * 
+	 * @return The index of the node removed
+	 */
+	public int removeFirst() {
+		int first = heap[0];
+		store.setHeapIndex(first, -1);
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			cost[0] = cost[size];
+			siftDown(0);
+		}
+		return first;
+	}
+	
+	/**
+	 * Move a node towards the front of the heap after its cost has been lowered
+	 * 
+	 * @param index The index of the node
+	 * @param f The new, lower, cost of the node
+	 */
+	public void decreaseKey(int index, float f) {
+		int slot = store.getHeapIndex(index);
+		cost[slot] = f;
+		siftUp(slot);
+	}
+	
+	/**
+	 * Move the node at the given slot up until its parent is no more
+	 * expensive than it
+	 * 
+	 * @param slot The slot of the node to move
+	 */
+	private void siftUp(int slot) {
+		int node = heap[slot];
+		float f = cost[slot];
+		while (slot > 0) {
+			int parent = (slot - 1) >>> 1;
+			if (cost[parent] <= f) {
+				break;
+			}
+			heap[slot] = heap[parent];
+			cost[slot] = cost[parent];
+			store.setHeapIndex(heap[slot], slot);
+			slot = parent;
+		}
+		heap[slot] = node;
+		cost[slot] = f;
+		store.setHeapIndex(node, slot);
+	}
+	
+	/**
+	 * Move the node at the given slot down until none of its children
+	 * is cheaper than it
+	 * 
+	 * @param slot The slot of the node to move
+	 */
+	private void siftDown(int slot) {
+		int node = heap[slot];
+		float f = cost[slot];
+		int half = size >>> 1;
+		while (slot < half) {
+			int child = (slot << 1) + 1;
+			int right = child + 1;
+			if ((right < size) && (cost[right] < cost[child])) {
+				child = right;
+			}
+			if (f <= cost[child]) {
+				break;
+			}
+			heap[slot] = heap[child];
+			cost[slot] = cost[child];
+			store.setHeapIndex(heap[slot], slot);
+			slot = child;
+		}
+		heap[slot] = node;
+		cost[slot] = f;
+		store.setHeapIndex(node, slot);
+	}
+}
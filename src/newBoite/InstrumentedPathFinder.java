@@ -0,0 +1,127 @@
+package newBoite;
+
+import java.util.ArrayList;
+
+/**
+ * A path finder recording the searches of another one in a PathFinderMonitor.
+ * An AStarPathFinder reports the nodes it expanded through a SearchStats, so
+ * a search it stops before starting counts none. For the other finders the
+ * number is read from the closed list size right after the search, so they
+ * must keep it per thread if this one is used from several threads. While
+ * the monitor is disabled the searches are passed on untouched.
+ * 
+ * @see PathFinderMonitor
+ */
+public class InstrumentedPathFinder implements PathFinder {
+	/** The finder searching */
+	private PathFinder finder;
+	/** The finder searching if it reports its figures, or null */
+	private AStarPathFinder astar;
+	/** The figures of the searches of each thread */
+	private ThreadLocal<SearchStats> stats = new ThreadLocal<SearchStats>() {
+		protected SearchStats initialValue() {
+			return new SearchStats();
+		}
+	};
+	/** The monitor recording the searches */
+	private PathFinderMonitor monitor;
+	/** The heuristic type the finder searches with, recorded with each search */
+	private volatile int heuristicType;
+	
+	/**
+	 * Create a new instrumented finder. The heuristic type recorded is read
+	 * from an AStarPathFinder, and is 0, the default of the finders, for the
+	 * others.
+	 * 
+	 * @param finder The finder searching
+	 * @param monitor The monitor recording the searches
+	 */
+	public InstrumentedPathFinder(PathFinder finder, PathFinderMonitor monitor) {
+		this(finder, (finder instanceof AStarPathFinder) ? ((AStarPathFinder) finder).getHeuristicType() : 0, monitor);
+	}
+	
+	/**
+	 * Create a new instrumented finder
+	 * 
+	 * @param finder The finder searching
+	 * @param heuristicType The heuristic type the finder searches with
+	 * @param monitor The monitor recording the searches
+	 */
+	public InstrumentedPathFinder(PathFinder finder, int heuristicType, PathFinderMonitor monitor) {
+		this.finder = finder;
+		this.heuristicType = heuristicType;
+		this.monitor = monitor;
+		if (finder instanceof AStarPathFinder) {
+			this.astar = (AStarPathFinder) finder;
+		}
+	}
+	
+	/**
+	 * Get the monitor recording the searches
+	 * 
+	 * @return The monitor recording the searches
+	 */
+	public PathFinderMonitor getMonitor() {
+		return monitor;
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		if (!monitor.isEnabled()) {
+			return finder.findPath(mover, sx, sy, tx, ty);
+		}
+		
+		if (astar != null) {
+			SearchStats s = stats.get();
+			long start = System.nanoTime();
+			Path path = astar.findPath(mover, sx, sy, tx, ty, s);
+			long nanos = System.nanoTime() - start;
+			monitor.record(mover, heuristicType, path != null, nanos, s.getExpanded());
+			return path;
+		}
+		
+		long start = System.nanoTime();
+		Path path = finder.findPath(mover, sx, sy, tx, ty);
+		long nanos = System.nanoTime() - start;
+		monitor.record(mover, heuristicType, path != null, nanos, finder.getClosedListSize());
+		return path;
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+		finder.setHeuristicType(i);
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		finder.setHeuristicWeight(w);
+	}
+	
+	/**
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		return finder.getClosedList();
+	}
+	
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return finder.getClosedListSize();
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return finder.getOpenListSize();
+	}
+}
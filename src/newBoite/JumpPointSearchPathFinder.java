@@ -0,0 +1,519 @@
+package newBoite;
+
+import java.util.ArrayList;
+
+/**
+ * A path finder using jump point search, an A* search for grids where every
+ * move costs the same. On such grids many paths between two tiles have the
+ * same cost and plain A* expands all of them. Jump point search only expands
+ * the tiles where an optimal path may have to turn (jump points), skipping
+ * along straight lines in between, so it returns paths of the same cost while
+ * expanding far fewer nodes.
+ * 
+ * Both movement models of AStarPathFinder are supported: four neighbours, or
+ * eight when diagonal movement is allowed, with diagonal moves costing the same
+ * as straight ones and allowed as long as the destination tile is free.
+ * 
+ * The map must implement UniformCostMap and report a uniform cost for the mover.
+ * When it does not, the search falls back to an AStarPathFinder over the same map.
+ * The heuristic type only applies to the fallback, jump point search always uses
+ * the distance in moves scaled by the heuristic weight.
+ */
+public class JumpPointSearchPathFinder implements PathFinder {
+	
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The maximum depth of search we're willing to accept before giving up */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	private int heuristicType;
+	private float heuristicWeight;
+	
+	/** The search state of each tile of the map */
+	private NodeStore store;
+	/** The open list, node indices ordered on their f cost */
+	private IndexHeap open;
+	/** The identifier of the current search, used to stamp the state of the nodes */
+	private int searchId;
+	/** The number of nodes in the closed list of the current search */
+	private int closedCount;
+	/** The path finder used on maps without uniform costs, created when first needed */
+	private AStarPathFinder fallback;
+	/** True if the last search was run by the fallback path finder */
+	private boolean lastSearchFallback;
+	/** The listener following the searches, or null */
+	private SearchListener listener;
+	
+	/** The mover of the current search */
+	private Mover mover;
+	/** The x coordinate of the start of the current search */
+	private int sx;
+	/** The y coordinate of the start of the current search */
+	private int sy;
+	/** The x coordinate of the target of the current search */
+	private int tx;
+	/** The y coordinate of the target of the current search */
+	private int ty;
+	/** The directions of the neighbours to explore from the current node, as dx, dy pairs */
+	private int[] directions = new int[16];
+	
+	/**
+	 * Create a path finder
+	 * 
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public JumpPointSearchPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristicType = 0;
+		this.heuristicWeight = 1;
+		this.store = new ArrayNodeStore(width * height);
+		this.open = new IndexHeap(store);
+	}
+	
+	/**
+	 * Set the listener following the searches of this finder. Without one
+	 * the searches make no notification at all.
+	 * 
+	 * @param listener The listener to notify, or null to remove it
+	 */
+	public void setSearchListener(SearchListener listener) {
+		this.listener = listener;
+		if (fallback != null) {
+			fallback.setSearchListener(listener);
+		}
+	}
+	
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		float moveCost = -1;
+		if (map instanceof UniformCostMap) {
+			moveCost = ((UniformCostMap) map).getUniformCost(mover);
+		}
+		lastSearchFallback = moveCost <= 0;
+		if (lastSearchFallback) {
+			return getFallback().findPath(mover, sx, sy, tx, ty);
+		}
+		
+		if (map.blocked(mover, tx, ty)) {
+			return null;
+		}
+		
+		this.mover = mover;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+		nextSearch();
+		
+		int start = (sy * width) + sx;
+		int target = (ty * width) + tx;
+		store.setCost(start, 0);
+		store.setHeuristic(start, getHeuristicCost(moveCost, sx, sy));
+		store.setDepth(start, 0);
+		store.setParent(start, NodeStore.NO_PARENT);
+		addToOpen(start);
+		if (listener != null) {
+			listener.searchStarted(sx, sy, tx, ty);
+			listener.nodeOpened(sx, sy);
+		}
+		
+		int maxDepth = 0;
+		while ((maxDepth < maxSearchDistance) && (open.size() != 0)) {
+			int current = open.first();
+			if (current == target) {
+				break;
+			}
+			open.removeFirst();
+			setState(current, Node.CLOSED);
+			closedCount++;
+			
+			int cx = current % width;
+			int cy = current / width;
+			if (listener != null) {
+				listener.nodeClosed(cx, cy);
+			}
+			float currentCost = store.getCost(current);
+			int currentDepth = store.getDepth(current);
+			
+			int count = findNeighbours(current, cx, cy);
+			for (int i=0;i<count;i+=2) {
+				int jumpPoint = jump(cx + directions[i], cy + directions[i+1], directions[i], directions[i+1]);
+				if (jumpPoint < 0) {
+					continue;
+				}
+				
+				int jx = jumpPoint % width;
+				int jy = jumpPoint / width;
+				int moves = Math.max(Math.abs(jx - cx), Math.abs(jy - cy));
+				float nextStepCost = currentCost + (moves * moveCost);
+				int nextDepth = currentDepth + moves;
+				
+				int state = getState(jumpPoint);
+				if (state == Node.OPEN) {
+					if (nextStepCost < store.getCost(jumpPoint)) {
+						store.setCost(jumpPoint, nextStepCost);
+						store.setParent(jumpPoint, current);
+						store.setDepth(jumpPoint, nextDepth);
+						maxDepth = Math.max(maxDepth, nextDepth);
+						open.decreaseKey(jumpPoint, nextStepCost + store.getHeuristic(jumpPoint));
+					}
+					continue;
+				}
+				if (state == Node.CLOSED) {
+					if (nextStepCost >= store.getCost(jumpPoint)) {
+						continue;
+					}
+					closedCount--;
+					if (listener != null) {
+						listener.nodeReopened(jx, jy);
+					}
+				}
+				
+				store.setCost(jumpPoint, nextStepCost);
+				store.setHeuristic(jumpPoint, getHeuristicCost(moveCost, jx, jy));
+				store.setParent(jumpPoint, current);
+				store.setDepth(jumpPoint, nextDepth);
+				maxDepth = Math.max(maxDepth, nextDepth);
+				addToOpen(jumpPoint);
+				if (listener != null) {
+					listener.nodeOpened(jx, jy);
+				}
+			}
+		}
+		
+		this.mover = null;
+		
+		// the target has a parent as soon as it has been reached, even if the
+		// search gave up before taking it out of the open list
+		if ((target == start) || (getState(target) == Node.UNVISITED)) {
+			return null;
+		}
+		
+		// fill in the tiles between the jump points
+		int length = store.getDepth(target) + 1;
+		int[] steps = new int[length];
+		int step = length - 1;
+		for (int node = target;node != start;node = store.getParent(node)) {
+			int parent = store.getParent(node);
+			int x = node % width;
+			int y = node / width;
+			int dx = Integer.signum((parent % width) - x);
+			int dy = Integer.signum((parent / width) - y);
+			while ((y * width) + x != parent) {
+				steps[step--] = (y * width) + x;
+				x += dx;
+				y += dy;
+			}
+		}
+		steps[0] = start;
+		
+		Path path = new Path();
+		for (int i=0;i<length;i++) {
+			path.appendStep(steps[i] % width, steps[i] / width);
+		}
+		if (listener != null) {
+			listener.pathFound(path);
+		}
+		return path;
+	}
+	
+	/**
+	 * Find the directions worth exploring from a node. From the start every
+	 * neighbour is explored, from any other node only the natural neighbours
+	 * in the direction we came from, and the forced neighbours next to an
+	 * obstacle. The directions are stored as dx, dy pairs in the directions
+	 * array.
+	 * 
+	 * @param node The index of the node being expanded
+	 * @param x The x coordinate of the node being expanded
+	 * @param y The y coordinate of the node being expanded
+	 * @return The number of entries written, twice the number of directions
+	 */
+	private int findNeighbours(int node, int x, int y) {
+		int count = 0;
+		int parent = store.getParent(node);
+		if (parent == NodeStore.NO_PARENT) {
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if (((dx == 0) && (dy == 0)) || (!allowDiagMovement && (dx != 0) && (dy != 0))) {
+						continue;
+					}
+					count = addDirection(count, dx, dy);
+				}
+			}
+			return count;
+		}
+		
+		int dx = Integer.signum(x - (parent % width));
+		int dy = Integer.signum(y - (parent / width));
+		
+		if (!allowDiagMovement) {
+			if (dx != 0) {
+				count = addDirection(count, 0, -1);
+				count = addDirection(count, 0, 1);
+				count = addDirection(count, dx, 0);
+			} else {
+				count = addDirection(count, -1, 0);
+				count = addDirection(count, 1, 0);
+				count = addDirection(count, 0, dy);
+			}
+			return count;
+		}
+		
+		if ((dx != 0) && (dy != 0)) {
+			count = addDirection(count, 0, dy);
+			count = addDirection(count, dx, 0);
+			count = addDirection(count, dx, dy);
+			if (!walkable(x - dx, y)) {
+				count = addDirection(count, -dx, dy);
+			}
+			if (!walkable(x, y - dy)) {
+				count = addDirection(count, dx, -dy);
+			}
+		} else if (dx != 0) {
+			count = addDirection(count, dx, 0);
+			if (!walkable(x, y + 1)) {
+				count = addDirection(count, dx, 1);
+			}
+			if (!walkable(x, y - 1)) {
+				count = addDirection(count, dx, -1);
+			}
+		} else {
+			count = addDirection(count, 0, dy);
+			if (!walkable(x + 1, y)) {
+				count = addDirection(count, 1, dy);
+			}
+			if (!walkable(x - 1, y)) {
+				count = addDirection(count, -1, dy);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Add a direction to explore from the current node
+	 * 
+	 * @param count The number of entries already in the directions array
+	 * @param dx The x step of the direction
+	 * @param dy The y step of the direction
+	 * @return The new number of entries in the directions array
+	 */
+	private int addDirection(int count, int dx, int dy) {
+		directions[count] = dx;
+		directions[count+1] = dy;
+		return count + 2;
+	}
+	
+	/**
+	 * Move from a tile in a given direction until reaching a jump point: the
+	 * target, a tile with a forced neighbour or, when moving diagonally, a tile
+	 * from which a straight jump finds a jump point.
+	 * 
+	 * @param x The x coordinate of the first tile to check
+	 * @param y The y coordinate of the first tile to check
+	 * @param dx The x step of the direction
+	 * @param dy The y step of the direction
+	 * @return The index of the jump point found, or -1 if the jump runs into an obstacle
+	 */
+	private int jump(int x, int y, int dx, int dy) {
+		while (true) {
+			if (!walkable(x, y)) {
+				return -1;
+			}
+			if ((x == tx) && (y == ty)) {
+				return (y * width) + x;
+			}
+			
+			if (!allowDiagMovement) {
+				if (dx != 0) {
+					if ((walkable(x, y - 1) && !walkable(x - dx, y - 1)) || (walkable(x, y + 1) && !walkable(x - dx, y + 1))) {
+						return (y * width) + x;
+					}
+				} else {
+					if ((walkable(x - 1, y) && !walkable(x - 1, y - dy)) || (walkable(x + 1, y) && !walkable(x + 1, y - dy))) {
+						return (y * width) + x;
+					}
+					if ((jump(x + 1, y, 1, 0) >= 0) || (jump(x - 1, y, -1, 0) >= 0)) {
+						return (y * width) + x;
+					}
+				}
+			} else if ((dx != 0) && (dy != 0)) {
+				if ((walkable(x - dx, y + dy) && !walkable(x - dx, y)) || (walkable(x + dx, y - dy) && !walkable(x, y - dy))) {
+					return (y * width) + x;
+				}
+				if ((jump(x + dx, y, dx, 0) >= 0) || (jump(x, y + dy, 0, dy) >= 0)) {
+					return (y * width) + x;
+				}
+			} else if (dx != 0) {
+				if ((walkable(x + dx, y + 1) && !walkable(x, y + 1)) || (walkable(x + dx, y - 1) && !walkable(x, y - 1))) {
+					return (y * width) + x;
+				}
+			} else {
+				if ((walkable(x + 1, y + dy) && !walkable(x + 1, y)) || (walkable(x - 1, y + dy) && !walkable(x - 1, y))) {
+					return (y * width) + x;
+				}
+			}
+			
+			x += dx;
+			y += dy;
+		}
+	}
+	
+	/**
+	 * Check if the mover of the current search can stand on a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return True if the tile is on the map and not blocked, the start tile is never blocked
+	 */
+	private boolean walkable(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+			return false;
+		}
+		if ((x == sx) && (y == sy)) {
+			return true;
+		}
+		return !map.blocked(mover, x, y);
+	}
+	
+	/**
+	 * Get the heuristic cost of a tile, the number of moves to the target
+	 * on an empty map
+	 * 
+	 * @param moveCost The cost of a single move
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The heuristic cost of the tile
+	 */
+	private float getHeuristicCost(float moveCost, int x, int y) {
+		int dx = Math.abs(tx - x);
+		int dy = Math.abs(ty - y);
+		int moves = allowDiagMovement ? Math.max(dx, dy) : dx + dy;
+		return heuristicWeight * moveCost * moves;
+	}
+	
+	/**
+	 * Start a new search, emptying both lists
+	 */
+	private void nextSearch() {
+		open.clear();
+		closedCount = 0;
+		
+		searchId = SearchContext.nextSearchId(searchId, store);
+	}
+	
+	/**
+	 * Get the state of a node in the current search
+	 * 
+	 * @param index The index of the node
+	 * @return The state of the node, Node.UNVISITED, Node.OPEN or Node.CLOSED
+	 */
+	private int getState(int index) {
+		return SearchContext.getState(store, searchId, index, Node.UNVISITED);
+	}
+	
+	/**
+	 * Set the state of a node in the current search
+	 * 
+	 * @param index The index of the node
+	 * @param state The state of the node, Node.UNVISITED, Node.OPEN or Node.CLOSED
+	 */
+	private void setState(int index, int state) {
+		SearchContext.setState(store, searchId, index, state);
+	}
+	
+	/**
+	 * Add a node to the open list
+	 * 
+	 * @param index The index of the node to add
+	 */
+	private void addToOpen(int index) {
+		setState(index, Node.OPEN);
+		open.add(index, store.getCost(index) + store.getHeuristic(index));
+	}
+	
+	/**
+	 * Get the path finder used on maps without uniform costs
+	 * 
+	 * @return The fallback path finder
+	 */
+	private AStarPathFinder getFallback() {
+		if (fallback == null) {
+			fallback = new AStarPathFinder(map, maxSearchDistance, allowDiagMovement);
+			fallback.setHeuristicType(heuristicType);
+			fallback.setHeuristicWeight(heuristicWeight);
+			fallback.setSearchListener(listener);
+		}
+		return fallback;
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicType(int)
+	 */
+	public void setHeuristicType(int i) {
+		heuristicType = i;
+		if (fallback != null) {
+			fallback.setHeuristicType(i);
+		}
+	}
+	
+	/**
+	 * @see PathFinder#setHeuristicWeight(float)
+	 */
+	public void setHeuristicWeight(float w) {
+		heuristicWeight = w;
+		if (fallback != null) {
+			fallback.setHeuristicWeight(w);
+		}
+	}
+	
+	/**
+	 * Get the jump points closed by the last search, or the closed list
+	 * of the fallback path finder if it ran the last search
+	 * 
+	 * @see PathFinder#getClosedList()
+	 */
+	public ArrayList<Node> getClosedList() {
+		if (lastSearchFallback) {
+			return fallback.getClosedList();
+		}
+		ArrayList<Node> closed = new ArrayList<Node>(closedCount);
+		for (int i=0;i<width*height;i++) {
+			if (getState(i) == Node.CLOSED) {
+				Node node = new Node(i % width, i / width);
+				node.setCost(store.getCost(i));
+				node.setHeuristic(store.getHeuristic(i));
+				node.setDepth(store.getDepth(i));
+				closed.add(node);
+			}
+		}
+		return closed;
+	}
+	
+	/**
+	 * @see PathFinder#getClosedListSize()
+	 */
+	public int getClosedListSize() {
+		return lastSearchFallback ? fallback.getClosedListSize() : closedCount;
+	}
+	
+	/**
+	 * @see PathFinder#getOpenListSize()
+	 */
+	public int getOpenListSize() {
+		return lastSearchFallback ? fallback.getOpenListSize() : open.size();
+	}
+}
@@ -0,0 +1,692 @@
+package newBoite;
+
+import java.util.Arrays;
+
+/**
+ * A heuristic using landmarks and the triangle inequality (ALT). The exact
+ * distance from a few landmark tiles to every tile of the map is computed in
+ * advance for each type of unit. Since d(L, t) <= d(L, v) + d(v, t), the
+ * difference between the distances of two tiles to any landmark is a lower
+ * bound on the distance between them. On maze like maps this bound is far
+ * closer to the real distance than the straight line ones, which only see
+ * the walls once they run into them.
+ *
+ * The landmarks are picked by farthest point selection in the largest area of
+ * each type of unit: each new landmark is the tile farthest from the ones
+ * already picked. The distances count moves, every move costing 1 on a
+ * GameMap, and are kept for all the landmarks of a tile side by side, in
+ * 16 bits while they fit.
+ *
+ * Only the terrain is taken into account. Units can only lengthen paths, so
+ * the bound holds whatever units stand on the map. The tables are kept up to
+ * date as the terrain changes: opening a tile lowers the distances around it
+ * for each landmark, closing one only recomputes the landmarks whose shortest
+ * paths went through it. The heuristic must be updated from the thread
+ * changing the map.
+ *
+ * @see ConnectivityIndex
+ */
+public class LandmarkHeuristic implements AStarHeuristic, TileChangeListener {
+	/** The types of unit tables are kept for */
+	private static final int[] TYPES = {GameMap.TANK, GameMap.BOAT, GameMap.PLANE};
+	/** The distance given to the tiles a landmark can't reach */
+	private static final int UNREACHED = Integer.MAX_VALUE;
+	/** The value standing for UNREACHED in the 16 bit tables */
+	private static final char NARROW_UNREACHED = 0xFFFF;
+
+	/** The map the distances are measured on */
+	private GameMap map;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** True if the distances are measured with diagonal moves as well */
+	private boolean allowDiagMovement;
+	/** The number of landmarks picked for each type of unit */
+	private int landmarkCount;
+	/** The tables of distances for each type of unit */
+	private Layer[] layers;
+	/** The heuristic used for the movers no table is kept for */
+	private AStarHeuristic fallback = new ClosestHeuristic();
+	/** The tiles waiting to be visited by a breadth first search */
+	private int[] queue;
+	/** The number of landmark tables computed since the heuristic was created */
+	private int recomputeCount;
+
+	/**
+	 * Create the heuristic for a map and keep it up to date with the map's changes
+	 *
+	 * @param map The map to measure
+	 * @param landmarkCount The number of landmarks to pick for each type of unit
+	 * @param allowDiagMovement True if the paths searched allow diagonal moves
+	 */
+	public LandmarkHeuristic(GameMap map, int landmarkCount, boolean allowDiagMovement) {
+		if (landmarkCount < 1) {
+			throw new IllegalArgumentException("At least one landmark is needed: " + landmarkCount);
+		}
+		this.map = map;
+		this.width = map.getWidthInTiles();
+		this.height = map.getHeightInTiles();
+		this.allowDiagMovement = allowDiagMovement;
+		this.landmarkCount = landmarkCount;
+		this.queue = new int[width * height];
+
+		layers = new Layer[TYPES.length];
+		for (int i=0;i<TYPES.length;i++) {
+			layers[i] = new Layer(TYPES[i]);
+		}
+		map.addTileChangeListener(this);
+	}
+
+	/**
+	 * Get the lower bound on the distance between two tiles given by the
+	 * landmarks, or by the number of moves if it is higher
+	 *
+	 * @see AStarHeuristic#getCost(TileBasedMap, Mover, int, int, int, int)
+	 */
+	public float getCost(TileBasedMap map, Mover mover, int x, int y, int tx, int ty) {
+		Layer layer = getLayer(mover);
+		if (layer == null) {
+			return fallback.getCost(map, mover, x, y, tx, ty);
+		}
+		return layer.getBound((y * width) + x, (ty * width) + tx);
+	}
+
+	/**
+	 * Get the landmark bound, weighted as the Manhattan distance would be
+	 *
+	 * @see AStarHeuristic#getCostManhattan(TileBasedMap, Mover, float, int, int, int, int)
+	 */
+	public float getCostManhattan(TileBasedMap map, Mover mover, float w, int x, int y, int tx, int ty) {
+		Layer layer = getLayer(mover);
+		if (layer == null) {
+			return fallback.getCostManhattan(map, mover, w, x, y, tx, ty);
+		}
+		return w * layer.getBound((y * width) + x, (ty * width) + tx);
+	}
+
+	/**
+	 * Get the landmark bound. The bound is already tight, so it is not weighted.
+	 *
+	 * @see AStarHeuristic#getCostWithDynamicWeighting(TileBasedMap, Mover, float, int, int, int, int, int, int)
+	 */
+	public float getCostWithDynamicWeighting(TileBasedMap map, Mover mover, float w, int x, int y, int tx, int ty, int sx, int sy) {
+		Layer layer = getLayer(mover);
+		if (layer == null) {
+			return fallback.getCostWithDynamicWeighting(map, mover, w, x, y, tx, ty, sx, sy);
+		}
+		return layer.getBound((y * width) + x, (ty * width) + tx);
+	}
+
+	/**
+	 * Get the number of landmarks kept for a mover. It is lower than the
+	 * number asked for when the mover's largest area has fewer tiles.
+	 *
+	 * @param mover The entity moving
+	 * @return The number of landmarks, or -1 if the mover's type has no table
+	 */
+	public int getLandmarkCount(Mover mover) {
+		Layer layer = getLayer(mover);
+		return (layer == null) ? -1 : layer.count;
+	}
+
+	/**
+	 * Get the tile of a landmark kept for a mover
+	 *
+	 * @param mover The entity moving
+	 * @param landmark The index of the landmark, below getLandmarkCount(mover)
+	 * @return The index of the landmark's tile on the map
+	 */
+	int getLandmark(Mover mover, int landmark) {
+		return getLayer(mover).landmarks[landmark];
+	}
+
+	/**
+	 * Get the distance kept from a landmark to a tile for a mover
+	 *
+	 * @param mover The entity moving
+	 * @param landmark The index of the landmark, below getLandmarkCount(mover)
+	 * @param tile The index of the tile on the map
+	 * @return The number of moves from the landmark to the tile, or Integer.MAX_VALUE if it can't be reached
+	 */
+	int getDistance(Mover mover, int landmark, int tile) {
+		return getLayer(mover).getDistance(landmark, tile);
+	}
+
+	/**
+	 * Get the number of landmark tables computed from scratch, when the
+	 * heuristic was created and after the terrain changed since
+	 *
+	 * @return The number of landmark tables computed
+	 */
+	public int getRecomputeCount() {
+		return recomputeCount;
+	}
+
+	/**
+	 * Get the tables kept for a mover
+	 *
+	 * @param mover The entity moving
+	 * @return The tables for the mover's type, or null if it has none
+	 */
+	private Layer getLayer(Mover mover) {
+		if (!(mover instanceof UnitMover)) {
+			return null;
+		}
+		int type = ((UnitMover) mover).getType();
+		for (int i=0;i<TYPES.length;i++) {
+			if (TYPES[i] == type) {
+				return layers[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Notification that a tile has changed. Only a change to the terrain
+	 * can change the distances, units moving cost a passability check per type.
+	 *
+	 * @see TileChangeListener#tileChanged(int, int)
+	 */
+	public void tileChanged(int x, int y) {
+		int tile = (y * width) + x;
+		for (int i=0;i<layers.length;i++) {
+			Layer layer = layers[i];
+			boolean open = !map.terrainBlocks(layer.type, x, y);
+			if (open == !layer.isBlocked(tile)) {
+				continue;
+			}
+			if (open) {
+				layer.open(tile);
+			} else {
+				layer.close(tile);
+			}
+		}
+	}
+
+	/**
+	 * Check if a step leads to a tile on the map
+	 *
+	 * @param x The x offset of the step
+	 * @param y The y offset of the step
+	 * @param xp The x coordinate of the tile stepped to
+	 * @param yp The y coordinate of the tile stepped to
+	 * @return True if the tile is on the map and the step is allowed
+	 */
+	private boolean isNeighbour(int x, int y, int xp, int yp) {
+		if ((x == 0) && (y == 0)) {
+			return false;
+		}
+		if (!allowDiagMovement && (x != 0) && (y != 0)) {
+			return false;
+		}
+		return (xp >= 0) && (yp >= 0) && (xp < width) && (yp < height);
+	}
+
+	/**
+	 * The landmarks and distance tables for one type of unit
+	 */
+	private class Layer {
+		/** The type of unit the distances are for */
+		private int type;
+		/** One bit per tile, set when the terrain blocks the unit */
+		private long[] blocked;
+		/** The tile of each landmark */
+		private int[] landmarks;
+		/** The number of landmarks */
+		private int count;
+		/**
+		 * The distance from each landmark to each tile, those of tile i held
+		 * from i * landmarkCount on, or null once a distance no longer fits
+		 */
+		private char[] narrow;
+		/** The distances once they no longer fit in 16 bits, laid out as narrow */
+		private int[] wide;
+
+		/**
+		 * Pick the landmarks and measure their distances for a type of unit
+		 *
+		 * @param type The type of unit
+		 */
+		public Layer(int type) {
+			this.type = type;
+			blocked = new long[((width * height) + 63) >>> 6];
+			for (int y=0;y<height;y++) {
+				for (int x=0;x<width;x++) {
+					if (map.terrainBlocks(type, x, y)) {
+						int tile = (y * width) + x;
+						blocked[tile >>> 6] |= 1L << tile;
+					}
+				}
+			}
+			narrow = new char[width * height * landmarkCount];
+			Arrays.fill(narrow, NARROW_UNREACHED);
+			landmarks = new int[landmarkCount];
+
+			int seed = findLargestArea();
+			if (seed == -1) {
+				return;
+			}
+			// the first landmark is the tile farthest from any tile of the area,
+			// then each landmark is the tile farthest from all those before it
+			int[] nearest = new int[width * height];
+			int farthest = search(seed, -1);
+			while ((count < landmarkCount) && (farthest != -1)) {
+				landmarks[count] = farthest;
+				measure(count);
+				count++;
+				farthest = -1;
+				int best = 0;
+				for (int tile=0;tile<nearest.length;tile++) {
+					int distance = getDistance(count - 1, tile);
+					if ((count == 1) || (distance < nearest[tile])) {
+						nearest[tile] = distance;
+					}
+					if ((nearest[tile] != UNREACHED) && (nearest[tile] > best)) {
+						best = nearest[tile];
+						farthest = tile;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Get the lower bound on the distance between two tiles
+		 *
+		 * @param from The tile the distance is measured from
+		 * @param to The tile the distance is measured to
+		 * @return The lower bound on the number of moves between the tiles
+		 */
+		public float getBound(int from, int to) {
+			int dx = Math.abs((to % width) - (from % width));
+			int dy = Math.abs((to / width) - (from / width));
+			int bound = allowDiagMovement ? Math.max(dx, dy) : dx + dy;
+
+			int a = from * landmarkCount;
+			int b = to * landmarkCount;
+			if (narrow != null) {
+				for (int i=0;i<count;i++) {
+					int da = narrow[a + i];
+					int db = narrow[b + i];
+					if ((da != NARROW_UNREACHED) && (db != NARROW_UNREACHED)) {
+						bound = Math.max(bound, Math.abs(da - db));
+					}
+				}
+			} else {
+				for (int i=0;i<count;i++) {
+					int da = wide[a + i];
+					int db = wide[b + i];
+					if ((da != UNREACHED) && (db != UNREACHED)) {
+						bound = Math.max(bound, Math.abs(da - db));
+					}
+				}
+			}
+			return bound;
+		}
+
+		/**
+		 * Check if the terrain blocks the unit on a tile, as last seen by the layer
+		 *
+		 * @param tile The tile to check
+		 * @return True if the tile is blocked
+		 */
+		public boolean isBlocked(int tile) {
+			return (blocked[tile >>> 6] & (1L << tile)) != 0;
+		}
+
+		/**
+		 * Open a tile that was blocked. The distances can only get shorter,
+		 * so they are lowered from the tile outwards for each landmark.
+		 *
+		 * @param tile The tile opened
+		 */
+		public void open(int tile) {
+			blocked[tile >>> 6] &= ~(1L << tile);
+			if (count == 0) {
+				// the unit had nowhere to go, the tile is the first of its areas
+				landmarks[0] = tile;
+				count = 1;
+				measure(0);
+				return;
+			}
+
+			int cx = tile % width;
+			int cy = tile / width;
+			for (int i=0;i<count;i++) {
+				int distance = UNREACHED;
+				for (int x=-1;x<2;x++) {
+					for (int y=-1;y<2;y++) {
+						int xp = cx + x;
+						int yp = cy + y;
+						if (isNeighbour(x, y, xp, yp)) {
+							distance = Math.min(distance, getDistance(i, (yp * width) + xp));
+						}
+					}
+				}
+				if (distance != UNREACHED) {
+					setDistance(i, tile, distance + 1);
+					lower(i, tile);
+				}
+			}
+		}
+
+		/**
+		 * Close a tile that was open. The distances of a landmark only change
+		 * if one of the tiles next to the closed one was reached through it
+		 * alone, only those landmarks are measured again.
+		 *
+		 * @param tile The tile closed
+		 */
+		public void close(int tile) {
+			blocked[tile >>> 6] |= 1L << tile;
+			for (int i=0;i<count;i++) {
+				if (landmarks[i] == tile) {
+					int replacement = pickReplacement(i);
+					if (replacement == -1) {
+						removeLandmark(i);
+						i--;
+						continue;
+					}
+					landmarks[i] = replacement;
+					measure(i);
+				} else if (reachedThrough(i, tile)) {
+					measure(i);
+				} else {
+					setDistance(i, tile, UNREACHED);
+				}
+			}
+		}
+
+		/**
+		 * Check if a tile next to a given one was reached by a landmark
+		 * through that tile alone
+		 *
+		 * @param landmark The landmark to check
+		 * @param tile The tile the others may have been reached through
+		 * @return True if the distances of the landmark depend on the tile
+		 */
+		private boolean reachedThrough(int landmark, int tile) {
+			int distance = getDistance(landmark, tile);
+			if (distance == UNREACHED) {
+				return false;
+			}
+			int cx = tile % width;
+			int cy = tile / width;
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if (!isNeighbour(x, y, xp, yp)) {
+						continue;
+					}
+					int neighbour = (yp * width) + xp;
+					if (isBlocked(neighbour) || (getDistance(landmark, neighbour) != distance + 1)) {
+						continue;
+					}
+					if (!hasOtherParent(landmark, neighbour, tile, distance)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Check if a tile has an open neighbour at a given distance of a
+		 * landmark, other than the one excluded
+		 *
+		 * @param landmark The landmark the distances are measured from
+		 * @param tile The tile to check
+		 * @param excluded The neighbour not to count
+		 * @param distance The distance looked for
+		 * @return True if another neighbour is at the given distance
+		 */
+		private boolean hasOtherParent(int landmark, int tile, int excluded, int distance) {
+			int cx = tile % width;
+			int cy = tile / width;
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					int xp = cx + x;
+					int yp = cy + y;
+					if (!isNeighbour(x, y, xp, yp)) {
+						continue;
+					}
+					int neighbour = (yp * width) + xp;
+					if ((neighbour != excluded) && !isBlocked(neighbour)
+							&& (getDistance(landmark, neighbour) == distance)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Pick a tile to replace a landmark whose tile was closed: the tile
+		 * farthest from the other landmarks amongst those the old one reached,
+		 * or the first of them in index order if it was the only landmark
+		 *
+		 * @param landmark The landmark to replace
+		 * @return The tile of the new landmark, or -1 if there is none
+		 */
+		private int pickReplacement(int landmark) {
+			int best = -1;
+			int farthest = -1;
+			for (int tile=0;tile<width*height;tile++) {
+				if (isBlocked(tile) || (getDistance(landmark, tile) == UNREACHED)) {
+					continue;
+				}
+				int nearest = UNREACHED;
+				for (int i=0;i<count;i++) {
+					if (i != landmark) {
+						nearest = Math.min(nearest, getDistance(i, tile));
+					}
+				}
+				if (nearest == UNREACHED) {
+					nearest = 0;
+				}
+				if (nearest > best) {
+					best = nearest;
+					farthest = tile;
+				}
+			}
+			return farthest;
+		}
+
+		/**
+		 * Remove a landmark, moving the last one into its place
+		 *
+		 * @param landmark The landmark to remove
+		 */
+		private void removeLandmark(int landmark) {
+			count--;
+			landmarks[landmark] = landmarks[count];
+			for (int tile=0;tile<width*height;tile++) {
+				setDistance(landmark, tile, getDistance(count, tile));
+				setDistance(count, tile, UNREACHED);
+			}
+		}
+
+		/**
+		 * Find a tile of the largest area the unit can move within
+		 *
+		 * @return A tile of the largest area, or -1 if the terrain blocks the unit everywhere
+		 */
+		private int findLargestArea() {
+			boolean[] seen = new boolean[width * height];
+			int largest = 0;
+			int seed = -1;
+			for (int tile=0;tile<seen.length;tile++) {
+				if (seen[tile] || isBlocked(tile)) {
+					continue;
+				}
+				int top = 0;
+				int size = 0;
+				seen[tile] = true;
+				queue[top++] = tile;
+				while (top > 0) {
+					int current = queue[--top];
+					size++;
+					int cx = current % width;
+					int cy = current / width;
+					for (int x=-1;x<2;x++) {
+						for (int y=-1;y<2;y++) {
+							int xp = cx + x;
+							int yp = cy + y;
+							if (isNeighbour(x, y, xp, yp)) {
+								int neighbour = (yp * width) + xp;
+								if (!seen[neighbour] && !isBlocked(neighbour)) {
+									seen[neighbour] = true;
+									queue[top++] = neighbour;
+								}
+							}
+						}
+					}
+				}
+				if (size > largest) {
+					largest = size;
+					seed = tile;
+				}
+			}
+			return seed;
+		}
+
+		/**
+		 * Measure the distance from a landmark to every tile
+		 *
+		 * @param landmark The landmark to measure from
+		 */
+		private void measure(int landmark) {
+			recomputeCount++;
+			for (int tile=0;tile<width*height;tile++) {
+				setDistance(landmark, tile, UNREACHED);
+			}
+			search(landmarks[landmark], landmark);
+		}
+
+		/**
+		 * Run a breadth first search over the open tiles from a given one
+		 *
+		 * @param start The tile to start from
+		 * @param landmark The landmark whose distances are recorded, or -1 to
+		 * only find the farthest tile
+		 * @return The last tile reached, which is one of the farthest from the start
+		 */
+		private int search(int start, int landmark) {
+			boolean[] seen = (landmark == -1) ? new boolean[width * height] : null;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			if (landmark == -1) {
+				seen[start] = true;
+			} else {
+				setDistance(landmark, start, 0);
+			}
+			int last = start;
+			while (head < tail) {
+				int current = queue[head++];
+				last = current;
+				int next = (landmark == -1) ? 0 : getDistance(landmark, current) + 1;
+				int cx = current % width;
+				int cy = current / width;
+				for (int x=-1;x<2;x++) {
+					for (int y=-1;y<2;y++) {
+						int xp = cx + x;
+						int yp = cy + y;
+						if (!isNeighbour(x, y, xp, yp)) {
+							continue;
+						}
+						int neighbour = (yp * width) + xp;
+						if (isBlocked(neighbour)) {
+							continue;
+						}
+						if (landmark == -1) {
+							if (!seen[neighbour]) {
+								seen[neighbour] = true;
+								queue[tail++] = neighbour;
+							}
+						} else if (getDistance(landmark, neighbour) == UNREACHED) {
+							setDistance(landmark, neighbour, next);
+							queue[tail++] = neighbour;
+						}
+					}
+				}
+			}
+			return last;
+		}
+
+		/**
+		 * Spread a lowered distance from a tile to those around it
+		 *
+		 * @param landmark The landmark whose distances are lowered
+		 * @param start The tile whose distance was lowered
+		 */
+		private void lower(int landmark, int start) {
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			while (head < tail) {
+				int current = queue[head++];
+				int next = getDistance(landmark, current) + 1;
+				int cx = current % width;
+				int cy = current / width;
+				for (int x=-1;x<2;x++) {
+					for (int y=-1;y<2;y++) {
+						int xp = cx + x;
+						int yp = cy + y;
+						if (!isNeighbour(x, y, xp, yp)) {
+							continue;
+						}
+						int neighbour = (yp * width) + xp;
+						if (!isBlocked(neighbour) && (getDistance(landmark, neighbour) > next)) {
+							setDistance(landmark, neighbour, next);
+							queue[tail++] = neighbour;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Get the distance from a landmark to a tile
+		 *
+		 * @param landmark The landmark
+		 * @param tile The tile
+		 * @return The number of moves from the landmark to the tile, or UNREACHED
+		 */
+		private int getDistance(int landmark, int tile) {
+			if (narrow != null) {
+				char distance = narrow[(tile * landmarkCount) + landmark];
+				return (distance == NARROW_UNREACHED) ? UNREACHED : distance;
+			}
+			return wide[(tile * landmarkCount) + landmark];
+		}
+
+		/**
+		 * Set the distance from a landmark to a tile, moving the tables to
+		 * 32 bits the first time a distance does not fit in 16
+		 *
+		 * @param landmark The landmark
+		 * @param tile The tile
+		 * @param distance The number of moves from the landmark to the tile, or UNREACHED
+		 */
+		private void setDistance(int landmark, int tile, int distance) {
+			if (narrow != null) {
+				if (distance == UNREACHED) {
+					narrow[(tile * landmarkCount) + landmark] = NARROW_UNREACHED;
+					return;
+				}
+				if (distance < NARROW_UNREACHED) {
+					narrow[(tile * landmarkCount) + landmark] = (char) distance;
+					return;
+				}
+				wide = new int[narrow.length];
+				for (int i=0;i<narrow.length;i++) {
+					wide[i] = (narrow[i] == NARROW_UNREACHED) ? UNREACHED : narrow[i];
+				}
+				narrow = null;
+			}
+			wide[(tile * landmarkCount) + landmark] = distance;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package newBoite;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A map of the example game read from a file mapped in memory. Nothing is
+ * parsed when the map is opened: the tiles are paged in by the operating
+ * system as the path finders reach them, and several processes opening the
+ * same file share its pages in the page cache. This makes maps far larger
+ * than the Java heap usable.
+ * 
+ * The file holds a header then a byte per tile for the terrain, and a byte
+ * per tile for the units, both in rows, the tile (x, y) at y * width + x:
+ * 
+ * <pre>
+ * int  MAGIC, "APFM"
+ * int  VERSION
+ * int  width
+ * int  height
+ * byte terrain[width * height]
+ * byte units[width * height]
+ * </pre>
+ * 
+ * The integers are big endian. The map is read only, the units and terrain
+ * follow the rules of GameMap.
+ * 
+ * @see GameMap
+ */
+public class MappedTileMap implements UniformCostMap {
+	/** The first bytes of a map file, "APFM" */
+	public static final int MAGIC = 0x4150464D;
+	/** The version of the file format */
+	public static final int VERSION = 1;
+	/** The size of the header in bytes */
+	public static final int HEADER_SIZE = 16;
+	/** The number of bits of the offset within a mapped chunk of the file */
+	private static final int CHUNK_BITS = 30;
+	/** The mask of the offset within a mapped chunk of the file */
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The offset of the units in the file */
+	private long unitsOffset;
+	/** The file mapped, in chunks of 1 GB since a single mapping can't exceed 2 GB */
+	private MappedByteBuffer[] chunks;
+	
+	/**
+	 * Open a map file
+	 * 
+	 * @param file The file to open
+	 * @throws IOException Indicates a failure to read the file, or that it isn't a valid map
+	 */
+	public MappedTileMap(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size < HEADER_SIZE) {
+				throw new IOException("Not a map file, too short: " + file);
+			}
+			
+			chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+			for (int i=0;i<chunks.length;i++) {
+				long position = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, CHUNK_MASK + 1));
+			}
+			
+			if (chunks[0].getInt(0) != MAGIC) {
+				throw new IOException("Not a map file: " + file);
+			}
+			if (chunks[0].getInt(4) != VERSION) {
+				throw new IOException("Unsupported map file version " + chunks[0].getInt(4) + ": " + file);
+			}
+			width = chunks[0].getInt(8);
+			height = chunks[0].getInt(12);
+			if ((width <= 0) || (height <= 0)) {
+				throw new IOException("Invalid map size " + width + "x" + height + ": " + file);
+			}
+			unitsOffset = HEADER_SIZE + ((long) width * height);
+			if (size != unitsOffset + ((long) width * height)) {
+				throw new IOException("The map file should be " + (unitsOffset + ((long) width * height)) 
+						+ " bytes long, it is " + size + ": " + file);
+			}
+		} finally {
+			// the mappings stay valid once the file is closed
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Write a map to a file in the format read by this class
+	 * 
+	 * @param map The map to write
+	 * @param file The file to write to
+	 * @throws IOException Indicates a failure to write the file
+	 */
+	public static void write(GameMap map, File file) throws IOException {
+		int w = map.getWidthInTiles();
+		int h = map.getHeightInTiles();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(w);
+			out.writeInt(h);
+			for (int y=0;y<h;y++) {
+				for (int x=0;x<w;x++) {
+					out.writeByte(map.getTerrain(x, y));
+				}
+			}
+			for (int y=0;y<h;y++) {
+				for (int x=0;x<w;x++) {
+					out.writeByte(map.getUnit(x, y));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Read a byte of the file
+	 * 
+	 * @param offset The offset of the byte in the file
+	 * @return The byte, as an unsigned value
+	 */
+	private int read(long offset) {
+		return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK)) & 0xFF;
+	}
+	
+	/**
+	 * Get the terrain at a given location
+	 * 
+	 * @param x The x coordinate of the terrain tile to retrieve
+	 * @param y The y coordinate of the terrain tile to retrieve
+	 * @return The terrain tile at the given location
+	 */
+	public int getTerrain(int x, int y) {
+		return read(HEADER_SIZE + ((long) y * width) + x);
+	}
+	
+	/**
+	 * Get the unit at a given location
+	 * 
+	 * @param x The x coordinate of the tile to check for a unit
+	 * @param y The y coordinate of the tile to check for a unit
+	 * @return The ID of the unit at the given location or 0 if there is no unit 
+	 */
+	public int getUnit(int x, int y) {
+		return read(unitsOffset + ((long) y * width) + x);
+	}
+	
+	/**
+	 * @see TileBasedMap#blocked(Mover, int, int)
+	 */
+	public boolean blocked(Mover mover, int x, int y) {
+		// if theres a unit at the location, then it's blocked
+		if (getUnit(x, y) != 0) {
+			return true;
+		}
+		
+		return GameMap.terrainBlocks(((UnitMover) mover).getType(), getTerrain(x, y));
+	}
+	
+	/**
+	 * @see TileBasedMap#getCost(Mover, int, int, int, int)
+	 */
+	public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
+		return 1;
+	}
+	
+	/**
+	 * @see UniformCostMap#getUniformCost(Mover)
+	 */
+	public float getUniformCost(Mover mover) {
+		return 1;
+	}
+	
+	/**
+	 * @see TileBasedMap#getWidthInTiles()
+	 */
+	public int getWidthInTiles() {
+		return width;
+	}
+	
+	/**
+	 * @see TileBasedMap#getHeightInTiles()
+	 */
+	public int getHeightInTiles() {
+		return height;
+	}
+	
+	/**
+	 * Write one of the generated maps of the example game to a file
+	 * 
+	 * @param argv The file to write, the width and height of the map, then C or MAZE for its layout
+	 * @throws IOException Indicates a failure to write the file
+	 */
+	public static void main(String[] argv) throws IOException {
+		if (argv.length < 3) {
+			System.err.println("Usage: MappedTileMap file.map width height [C|MAZE]");
+			System.exit(1);
+		}
+		int layout = ((argv.length > 3) && argv[3].equals("MAZE")) ? GameMap.LAYOUT_MAZE : GameMap.LAYOUT_C;
+		write(new GameMap(Integer.parseInt(argv[1]), Integer.parseInt(argv[2]), layout), new File(argv[0]));
+	}
+}
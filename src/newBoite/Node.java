@@ -2,6 +2,13 @@ package newBoite;
 
 
 public class Node implements Comparable<Object> {
+	/** The state of a node that has not been reached by the current search */
+	public static final int UNVISITED = 0;
+	/** The state of a node that is in the open list of the current search */
+	public static final int OPEN = 1;
+	/** The state of a node that is in the closed list of the current search */
+	public static final int CLOSED = 2;
+	
 	/** The x coordinate of the node */
 	private int x;
 	/** The y coordinate of the node */
@@ -14,6 +21,12 @@ public class Node implements Comparable<Object> {
 	private float heuristic;
 	/** The search depth of this node */
 	private int depth;
+	/** The slot of this node in the open list heap, or -1 if it is not in the heap */
+	private int heapIndex = -1;
+	/** The search the state of this node belongs to */
+	private int searchId;
+	/** The state of this node in the search identified by searchId */
+	private int state = UNVISITED;
 	
 	/**
 	 * Create a new node
@@ -85,6 +98,36 @@ public class Node implements Comparable<Object> {
 		return this.parent;
 	}
 	
+	public int getHeapIndex() {
+		return heapIndex;
+	}
+
+	public void setHeapIndex(int heapIndex) {
+		this.heapIndex = heapIndex;
+	}
+	
+	/**
+	 * Get the state of this node in the given search. A node last touched by
+	 * another search is unvisited, whatever state it was left in.
+	 * 
+	 * @param searchId The identifier of the search being run
+	 * @return The state of this node, UNVISITED, OPEN or CLOSED
+	 */
+	public int getState(int searchId) {
+		return (this.searchId == searchId) ? state : UNVISITED;
+	}
+	
+	/**
+	 * Set the state of this node in the given search
+	 * 
+	 * @param searchId The identifier of the search being run
+	 * @param state The new state of this node, UNVISITED, OPEN or CLOSED
+	 */
+	public void setState(int searchId, int state) {
+		this.searchId = searchId;
+		this.state = state;
+	}
+	
 	public boolean contains(int x, int y){
 		return (this.x==x && this.y==y);
 	}
@@ -0,0 +1,118 @@
+package newBoite;
+
+/**
+ * The per tile search state used by the array based path finder. Rather than
+ * holding one Node object per tile, a store keeps the state of every tile in
+ * flat storage indexed by <code>y * width + x</code>, so that a map of millions
+ * of tiles costs a handful of primitive arrays instead of millions of objects.
+ * 
+ * @see ArrayAStarPathFinder
+ */
+public interface NodeStore {
+	/** The parent index of a node that has no parent */
+	public static final int NO_PARENT = -1;
+	
+	/**
+	 * Get the number of nodes held in this store
+	 * 
+	 * @return The number of nodes held in this store
+	 */
+	public int size();
+	
+	/**
+	 * Get the path cost, g(n), of a node
+	 * 
+	 * @param index The index of the node
+	 * @return The path cost of the node
+	 */
+	public float getCost(int index);
+	
+	/**
+	 * Set the path cost, g(n), of a node
+	 * 
+	 * @param index The index of the node
+	 * @param cost The path cost of the node
+	 */
+	public void setCost(int index, float cost);
+	
+	/**
+	 * Get the heuristic cost, h(n), of a node
+	 * 
+	 * @param index The index of the node
+	 * @return The heuristic cost of the node
+	 */
+	public float getHeuristic(int index);
+	
+	/**
+	 * Set the heuristic cost, h(n), of a node
+	 * 
+	 * @param index The index of the node
+	 * @param heuristic The heuristic cost of the node
+	 */
+	public void setHeuristic(int index, float heuristic);
+	
+	/**
+	 * Get the index of the node we reached a node from
+	 * 
+	 * @param index The index of the node
+	 * @return The index of the parent node or NO_PARENT
+	 */
+	public int getParent(int index);
+	
+	/**
+	 * Set the index of the node we reached a node from
+	 * 
+	 * @param index The index of the node
+	 * @param parent The index of the parent node or NO_PARENT
+	 */
+	public void setParent(int index, int parent);
+	
+	/**
+	 * Get the search depth of a node
+	 * 
+	 * @param index The index of the node
+	 * @return The search depth of the node
+	 */
+	public int getDepth(int index);
+	
+	/**
+	 * Set the search depth of a node
+	 * 
+	 * @param index The index of the node
+	 * @param depth The search depth of the node
+	 */
+	public void setDepth(int index, int depth);
+	
+	/**
+	 * Get the slot of a node in the open list heap
+	 * 
+	 * @param index The index of the node
+	 * @return The slot of the node in the heap
+	 */
+	public int getHeapIndex(int index);
+	
+	/**
+	 * Set the slot of a node in the open list heap
+	 * 
+	 * @param index The index of the node
+	 * @param heapIndex The slot of the node in the heap
+	 */
+	public void setHeapIndex(int index, int heapIndex);
+	
+	/**
+	 * Get the stamp of a node, the search identifier and state last
+	 * recorded for it by the path finder
+	 * 
+	 * @param index The index of the node
+	 * @return The stamp of the node, 0 if it has never been stamped
+	 */
+	public int getStamp(int index);
+	
+	/**
+	 * Set the stamp of a node
+	 * 
+	 * @param index The index of the node
+	 * @param stamp The search identifier and state of the node
+	 */
+	public void setStamp(int index, int stamp);
+}
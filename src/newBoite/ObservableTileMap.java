@@ -0,0 +1,32 @@
+package newBoite;
+
+/**
+ * A tile map that notifies listeners when its tiles change, and counts
+ * the changes in a version number.
+ * 
+ * @see TileChangeListener
+ */
+public interface ObservableTileMap extends TileBasedMap {
+	/**
+	 * Add a listener to be notified of the changes of the tiles
+	 * 
+	 * @param listener The listener to add
+	 */
+	public void addTileChangeListener(TileChangeListener listener);
+	
+	/**
+	 * Remove a listener previously added to this map
+	 * 
+	 * @param listener The listener to remove
+	 */
+	public void removeTileChangeListener(TileChangeListener listener);
+	
+	/**
+	 * Get the version of the map. The version changes each time a tile
+	 * changes, so results computed against one version are stale once
+	 * it has moved on.
+	 * 
+	 * @return The current version of the map
+	 */
+	public long getVersion();
+}
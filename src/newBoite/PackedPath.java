@@ -0,0 +1,278 @@
+package newBoite;
+
+/**
+ * A compact, read only, form of a path: the steps are kept as tile indices,
+ * <code>y * width + x</code>, in a single array. A path of n steps takes 4n
+ * bytes rather than an object per step, which matters when many long paths
+ * are kept or sent over the network.
+ * 
+ * The path may be indexed, which builds a bitset over the rectangle the path
+ * goes through so that contains() answers in constant time. The index is only
+ * worth its memory when contains() is called often, for instance for every
+ * tile drawn.
+ * 
+ * A path may also be compressed to its waypoints, the steps where it changes
+ * direction. Between two waypoints the path goes in a straight line, so the
+ * full path can be rebuilt from them with expand().
+ * 
+ * @see Path
+ */
+public class PackedPath {
+	/** The width of the map the path is on, in tiles */
+	private int width;
+	/** The tile index of each step */
+	private int[] tiles;
+	/** True if only the waypoints of the path are kept */
+	private boolean compressed;
+	
+	/** The smallest x coordinate of the path, once indexed */
+	private int minX;
+	/** The smallest y coordinate of the path, once indexed */
+	private int minY;
+	/** The width of the rectangle the path goes through, once indexed */
+	private int boundsWidth;
+	/** The height of the rectangle the path goes through, once indexed */
+	private int boundsHeight;
+	/** The tiles of the rectangle the path goes through, or null if not indexed */
+	private long[] bits;
+	
+	/**
+	 * Create a packed copy of a path
+	 * 
+	 * @param path The path to copy
+	 * @param width The width of the map the path is on, in tiles
+	 */
+	public PackedPath(Path path, int width) {
+		this.width = width;
+		this.tiles = new int[path.getLength()];
+		for (int i=0;i<tiles.length;i++) {
+			tiles[i] = (path.getY(i) * width) + path.getX(i);
+		}
+	}
+	
+	/**
+	 * Create a packed path from the tile indices of its steps. The array is
+	 * kept by the path, not copied.
+	 * 
+	 * @param width The width of the map the path is on, in tiles
+	 * @param tiles The tile index of each step, from the start to the target
+	 * @param compressed True if the tiles are only the waypoints of the path
+	 */
+	public PackedPath(int width, int[] tiles, boolean compressed) {
+		this.width = width;
+		this.tiles = tiles;
+		this.compressed = compressed;
+	}
+	
+	/**
+	 * Get the number of steps kept, the waypoints if the path is compressed
+	 * 
+	 * @return The number of steps kept
+	 */
+	public int getLength() {
+		return tiles.length;
+	}
+	
+	/**
+	 * Check if only the waypoints of the path are kept
+	 * 
+	 * @return True if the path is compressed
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+	
+	/**
+	 * Get the width of the map the path is on
+	 * 
+	 * @return The width of the map in tiles
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Get the tile index of a step
+	 * 
+	 * @param index The index of the step
+	 * @return The tile index of the step, y * width + x
+	 */
+	public int getTile(int index) {
+		return tiles[index];
+	}
+	
+	/**
+	 * Get the x coordinate of a step
+	 * 
+	 * @param index The index of the step
+	 * @return The x coordinate of the step
+	 */
+	public int getX(int index) {
+		return tiles[index] % width;
+	}
+	
+	/**
+	 * Get the y coordinate of a step
+	 * 
+	 * @param index The index of the step
+	 * @return The y coordinate of the step
+	 */
+	public int getY(int index) {
+		return tiles[index] / width;
+	}
+	
+	/**
+	 * Get a copy of the tile indices of the steps, for instance to send them
+	 * 
+	 * @return The tile index of each step kept
+	 */
+	public int[] toArray() {
+		return tiles.clone();
+	}
+	
+	/**
+	 * Build the index making contains() answer in constant time. The index
+	 * takes a bit per tile of the rectangle the path goes through.
+	 */
+	public void index() {
+		if ((bits != null) || (tiles.length == 0)) {
+			return;
+		}
+		
+		int maxX = minX = getX(0);
+		int maxY = minY = getY(0);
+		for (int i=1;i<tiles.length;i++) {
+			minX = Math.min(minX, getX(i));
+			minY = Math.min(minY, getY(i));
+			maxX = Math.max(maxX, getX(i));
+			maxY = Math.max(maxY, getY(i));
+		}
+		boundsWidth = maxX - minX + 1;
+		boundsHeight = maxY - minY + 1;
+		
+		long[] b = new long[(int) ((((long) boundsWidth * boundsHeight) + 63) >>> 6)];
+		PackedPath full = expand();
+		for (int i=0;i<full.tiles.length;i++) {
+			int bit = ((full.getY(i) - minY) * boundsWidth) + (full.getX(i) - minX);
+			b[bit >>> 6] |= 1L << bit;
+		}
+		bits = b;
+	}
+	
+	/**
+	 * Check if the path goes through a given tile, in constant time if the
+	 * path is indexed and a time linear in its length otherwise
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return True if the path goes through the tile
+	 */
+	public boolean contains(int x, int y) {
+		if (bits != null) {
+			if ((x < minX) || (y < minY) || (x >= minX + boundsWidth) || (y >= minY + boundsHeight)) {
+				return false;
+			}
+			int bit = ((y - minY) * boundsWidth) + (x - minX);
+			return (bits[bit >>> 6] & (1L << bit)) != 0;
+		}
+		
+		int tile = (y * width) + x;
+		if (!compressed) {
+			for (int i=0;i<tiles.length;i++) {
+				if (tiles[i] == tile) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		// the tile must lie on one of the straight lines between the waypoints
+		for (int i=1;i<tiles.length;i++) {
+			int fx = getX(i - 1);
+			int fy = getY(i - 1);
+			int dx = getX(i) - fx;
+			int dy = getY(i) - fy;
+			int moves = Math.max(Math.abs(dx), Math.abs(dy));
+			int k = (dx != 0) ? (x - fx) * Integer.signum(dx) : (y - fy) * Integer.signum(dy);
+			if ((k >= 0) && (k <= moves) && (fx + (k * Integer.signum(dx)) == x) && (fy + (k * Integer.signum(dy)) == y)) {
+				return true;
+			}
+		}
+		return (tiles.length == 1) && (tiles[0] == tile);
+	}
+	
+	/**
+	 * Get the path reduced to its waypoints: the start, the target, and the
+	 * steps where the direction changes
+	 * 
+	 * @return The compressed path, this path if it already is
+	 */
+	public PackedPath compress() {
+		if (compressed || (tiles.length <= 2)) {
+			return compressed ? this : new PackedPath(width, tiles.clone(), true);
+		}
+		
+		int[] waypoints = new int[tiles.length];
+		int count = 0;
+		waypoints[count++] = tiles[0];
+		for (int i=1;i<tiles.length-1;i++) {
+			// a step is kept when the move leading to it differs from the one leaving it. The
+			// moves are compared on both axes: on a map one or two tiles wide, a move along x
+			// and one along the diagonal can change the tile index by the same amount
+			if (((getX(i) - getX(i - 1)) != (getX(i + 1) - getX(i))) || ((getY(i) - getY(i - 1)) != (getY(i + 1) - getY(i)))) {
+				waypoints[count++] = tiles[i];
+			}
+		}
+		waypoints[count++] = tiles[tiles.length - 1];
+		
+		int[] kept = new int[count];
+		System.arraycopy(waypoints, 0, kept, 0, count);
+		return new PackedPath(width, kept, true);
+	}
+	
+	/**
+	 * Get the full path, with every step between the waypoints
+	 * 
+	 * @return The expanded path, this path if it isn't compressed
+	 */
+	public PackedPath expand() {
+		if (!compressed || (tiles.length == 0)) {
+			return compressed ? new PackedPath(width, tiles, false) : this;
+		}
+		
+		int length = 1;
+		for (int i=1;i<tiles.length;i++) {
+			length += Math.max(Math.abs(getX(i) - getX(i - 1)), Math.abs(getY(i) - getY(i - 1)));
+		}
+		
+		int[] steps = new int[length];
+		int count = 0;
+		for (int i=1;i<tiles.length;i++) {
+			int x = getX(i - 1);
+			int y = getY(i - 1);
+			int dx = Integer.signum(getX(i) - x);
+			int dy = Integer.signum(getY(i) - y);
+			while ((x != getX(i)) || (y != getY(i))) {
+				steps[count++] = (y * width) + x;
+				x += dx;
+				y += dy;
+			}
+		}
+		steps[count] = tiles[tiles.length - 1];
+		return new PackedPath(width, steps, false);
+	}
+	
+	/**
+	 * Get the path as a list of steps
+	 * 
+	 * @return The full path, expanded if this one is compressed
+	 */
+	public Path toPath() {
+		PackedPath full = expand();
+		Path path = new Path(full.getLength());
+		for (int i=full.getLength()-1;i>=0;i--) {
+			path.prependStep(full.getX(i), full.getY(i));
+		}
+		return path;
+	}
+}
@@ -0,0 +1,40 @@
+package newBoite;
+
+/**
+ * A tile map that keeps, for each type of mover, which tiles it may enter
+ * as packed bits and, for each tile, which of its eight neighbours it may
+ * step to. A path finder can then list the moves out of a tile with one
+ * array read rather than calling blocked() for each neighbour.
+ * 
+ * The arrays returned are the map's own and are kept up to date as the map
+ * changes. They must not be modified.
+ */
+public interface PassabilityMap extends TileBasedMap {
+	/** The x offset of the neighbour for each bit of a neighbour mask */
+	public static final int[] NEIGHBOUR_X = {-1, -1, -1, 0, 0, 1, 1, 1};
+	/** The y offset of the neighbour for each bit of a neighbour mask */
+	public static final int[] NEIGHBOUR_Y = {-1, 0, 1, -1, 1, -1, 0, 1};
+	/** The bits of a neighbour mask for the neighbours that are not diagonal */
+	public static final int ORTHOGONAL_NEIGHBOURS = (1 << 1) | (1 << 3) | (1 << 4) | (1 << 6);
+	
+	/**
+	 * Get the tiles a mover may enter. The bit for the tile at (x,y) is bit
+	 * (y * width + x) % 64 of the entry (y * width + x) / 64.
+	 * 
+	 * @param mover The entity moving
+	 * @return The packed bits of the tiles the mover may enter, or null if 
+	 * the map doesn't keep them for this mover
+	 */
+	public long[] getPassableBits(Mover mover);
+	
+	/**
+	 * Get the neighbours each tile has that a mover may enter. The entry
+	 * (y * width + x) holds the mask for the tile at (x,y), bit i of it is 
+	 * set if the mover may enter the tile at (x + NEIGHBOUR_X[i], y + NEIGHBOUR_Y[i]).
+	 * 
+	 * @param mover The entity moving
+	 * @return The neighbour masks for the mover, or null if the map doesn't
+	 * keep them for this mover
+	 */
+	public byte[] getNeighbourMasks(Mover mover);
+}
@@ -1,23 +1,46 @@
 package newBoite;
 
-import java.util.ArrayList;
-
 /**
  * A path determined by some path finding algorithm. A series of steps from
  * the starting location to the target location. This includes a step for the
  * initial location.
  * 
+ * The coordinates are kept in two arrays with room left at both ends, so
+ * steps can be prepended as cheaply as appended and no object is created
+ * per step. Use a PackedPath to keep or send many long paths.
+ * 
+ * @see PackedPath
  * @author Kevin Glass
  */
 public class Path {
-	/** The list of steps building up this path */
-	private ArrayList steps = new ArrayList();
+	/** The x coordinate of each step, from index head */
+	private int[] xs;
+	/** The y coordinate of each step, from index head */
+	private int[] ys;
+	/** The index of the first step in the arrays */
+	private int head;
+	/** The number of steps in this path */
+	private int length;
 	
 	/**
 	 * Create an empty path
 	 */
 	public Path() {
-		
+		xs = new int[8];
+		ys = new int[8];
+		head = 4;
+	}
+	
+	/**
+	 * Create an empty path with room for a given number of steps prepended,
+	 * as a path finder does when following the parents back from the target
+	 * 
+	 * @param capacity The number of steps that may be prepended before the path grows
+	 */
+	public Path(int capacity) {
+		xs = new int[Math.max(1, capacity)];
+		ys = new int[xs.length];
+		head = xs.length;
 	}
 
 	/**
@@ -26,7 +49,7 @@ public class Path {
 	 * @return The number of steps in this path
 	 */
 	public int getLength() {
-		return steps.size();
+		return length;
 	}
 	
 	/**
@@ -37,7 +60,7 @@ public class Path {
 	 * @return The step information, the position on the map.
 	 */
 	public Step getStep(int index) {
-		return (Step) steps.get(index);
+		return new Step(getX(index), getY(index));
 	}
 	
 	/**
@@ -47,7 +70,8 @@ public class Path {
 	 * @return The x coordinate at the step
 	 */
 	public int getX(int index) {
-		return getStep(index).x;
+		checkIndex(index);
+		return xs[head + index];
 	}
 
 	/**
@@ -57,7 +81,19 @@ public class Path {
 	 * @return The y coordinate at the step
 	 */
 	public int getY(int index) {
-		return getStep(index).y;
+		checkIndex(index);
+		return ys[head + index];
+	}
+	
+	/**
+	 * Check that an index refers to a step of this path
+	 * 
+	 * @param index The index to check
+	 */
+	private void checkIndex(int index) {
+		if ((index < 0) || (index >= length)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+		}
 	}
 	
 	/**
@@ -67,7 +103,12 @@ public class Path {
 	 * @param y The y coordinate of the new step
 	 */
 	public void appendStep(int x, int y) {
-		steps.add(new Step(x,y));
+		if (head + length == xs.length) {
+			grow(head);
+		}
+		xs[head + length] = x;
+		ys[head + length] = y;
+		length++;
 	}
 
 	/**
@@ -77,7 +118,28 @@ public class Path {
 	 * @param y The y coordinate of the new step
 	 */
 	public void prependStep(int x, int y) {
-		steps.add(0, new Step(x, y));
+		if (head == 0) {
+			grow(xs.length);
+		}
+		head--;
+		xs[head] = x;
+		ys[head] = y;
+		length++;
+	}
+	
+	/**
+	 * Double the room for steps
+	 * 
+	 * @param newHead The index of the first step in the new arrays, the room added goes before it
+	 */
+	private void grow(int newHead) {
+		int[] nxs = new int[xs.length * 2];
+		int[] nys = new int[ys.length * 2];
+		System.arraycopy(xs, head, nxs, newHead, length);
+		System.arraycopy(ys, head, nys, newHead, length);
+		xs = nxs;
+		ys = nys;
+		head = newHead;
 	}
 	
 	/**
@@ -88,9 +150,14 @@ public class Path {
 	 * @return True if the path contains the given step
 	 */
 	public boolean contains(int x, int y) {
-		return steps.contains(new Step(x,y));
+		for (int i=head;i<head+length;i++) {
+			if ((xs[i] == x) && (ys[i] == y)) {
+				return true;
+			}
+		}
+		return false;
 	}
-	
+
 	/**
 	 * A single step within the path
 	 * 
@@ -135,7 +202,7 @@ public class Path {
 		 * @see Object#hashCode()
 		 */
 		public int hashCode() {
-			return x*y;
+			return (x * 31) + y;
 		}
 
 		/**
@@ -26,6 +26,14 @@ public interface PathFinder {
 	 */
 	public Path findPath(Mover mover, int sx, int sy, int tx, int ty);
 	public ArrayList<Node> getClosedList();
+	
+	/**
+	 * Get the number of nodes in the closed list of the last search, without
+	 * building the list itself
+	 * 
+	 * @return The number of nodes closed by the last search
+	 */
+	public int getClosedListSize();
 	public int getOpenListSize();
 	public void setHeuristicType(int i);	
 	public void setHeuristicWeight(float w);
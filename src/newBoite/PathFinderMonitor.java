@@ -0,0 +1,239 @@
+package newBoite;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records the searches of the InstrumentedPathFinder wrapping a finder: the
+ * number of searches and failures, and histograms of the latency and of the
+ * nodes expanded, for each mover type and heuristic type. Every counter is a
+ * LongAdder, so the threads searching at once never contend on a lock.
+ * 
+ * The monitor may be published on the platform MBean server with register(),
+ * and turned off from there. Several finders may share one monitor.
+ * 
+ * @see InstrumentedPathFinder
+ */
+public class PathFinderMonitor implements PathFinderMonitorMBean {
+	/** The number of mover types told apart, from 0, the others share a series with the plain movers */
+	private static final int MOVER_TYPES = 16;
+	/** The number of heuristic types told apart */
+	private static final int HEURISTIC_TYPES = 3;
+	/** The number of bits of the largest latency told apart, about 18 minutes in nanoseconds */
+	private static final int LATENCY_BITS = 40;
+	/** The number of bits of the largest number of nodes expanded told apart */
+	private static final int EXPANDED_BITS = 31;
+	/** The percentiles given in the summary */
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+	/** The names of the percentiles given in the summary */
+	private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+	
+	/** True if the searches are being recorded */
+	private volatile boolean enabled = true;
+	/** The figures of each mover and heuristic type, created on their first search */
+	private AtomicReferenceArray<Series> series = new AtomicReferenceArray<Series>((MOVER_TYPES + 1) * HEURISTIC_TYPES);
+	/** The name the monitor is registered under, or null if it isn't */
+	private ObjectName name;
+	
+	/**
+	 * @see PathFinderMonitorMBean#isEnabled()
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#setEnabled(boolean)
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * Record a search
+	 * 
+	 * @param mover The entity that was moving
+	 * @param heuristicType The type of the heuristic searched with
+	 * @param found True if a path was found
+	 * @param nanos The time the search took, in nanoseconds
+	 * @param expanded The number of nodes expanded by the search
+	 */
+	public void record(Mover mover, int heuristicType, boolean found, long nanos, int expanded) {
+		Series s = getSeries(getMoverType(mover), heuristicType, true);
+		s.queries.increment();
+		if (!found) {
+			s.failures.increment();
+		}
+		s.latency.record(nanos);
+		s.expanded.record(expanded);
+	}
+	
+	/**
+	 * Get the type of a mover
+	 * 
+	 * @param mover The entity moving
+	 * @return The type of the unit, or -1 if it isn't a UnitMover
+	 */
+	private static int getMoverType(Mover mover) {
+		return (mover instanceof UnitMover) ? ((UnitMover) mover).getType() : -1;
+	}
+	
+	/**
+	 * Get the slot holding the figures of a mover and heuristic type
+	 * 
+	 * @param moverType The type of the mover
+	 * @param heuristicType The type of the heuristic
+	 * @return The index of the slot
+	 */
+	private static int getSlot(int moverType, int heuristicType) {
+		int m = ((moverType < 0) || (moverType >= MOVER_TYPES)) ? MOVER_TYPES : moverType;
+		int h = ((heuristicType == 0) || (heuristicType == 1)) ? heuristicType : 2;
+		return (m * HEURISTIC_TYPES) + h;
+	}
+	
+	/**
+	 * Get the figures of a mover and heuristic type
+	 * 
+	 * @param moverType The type of the mover
+	 * @param heuristicType The type of the heuristic
+	 * @param create True if the figures should be created when there are none yet
+	 * @return The figures, or null if there are none and create is false
+	 */
+	private Series getSeries(int moverType, int heuristicType, boolean create) {
+		int slot = getSlot(moverType, heuristicType);
+		Series s = series.get(slot);
+		if ((s == null) && create) {
+			series.compareAndSet(slot, null, new Series());
+			s = series.get(slot);
+		}
+		return s;
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#getQueryCount()
+	 */
+	public long getQueryCount() {
+		long count = 0;
+		for (int i=0;i<series.length();i++) {
+			Series s = series.get(i);
+			if (s != null) {
+				count += s.queries.sum();
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#getFailureCount()
+	 */
+	public long getFailureCount() {
+		long count = 0;
+		for (int i=0;i<series.length();i++) {
+			Series s = series.get(i);
+			if (s != null) {
+				count += s.failures.sum();
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#getSummary()
+	 */
+	public String[] getSummary() {
+		ArrayList<String> lines = new ArrayList<String>();
+		for (int i=0;i<series.length();i++) {
+			Series s = series.get(i);
+			if (s == null) {
+				continue;
+			}
+			int moverType = (i / HEURISTIC_TYPES == MOVER_TYPES) ? -1 : i / HEURISTIC_TYPES;
+			StringBuilder line = new StringBuilder();
+			line.append("mover=").append(moverType).append(" heuristic=").append(i % HEURISTIC_TYPES);
+			line.append(" queries=").append(s.queries.sum()).append(" failures=").append(s.failures.sum());
+			for (int p=0;p<PERCENTILES.length;p++) {
+				line.append(" latency.").append(PERCENTILE_NAMES[p]).append('=').append(s.latency.getValueAtPercentile(PERCENTILES[p]) / 1000).append("us");
+			}
+			line.append(" latency.max=").append(s.latency.getMax() / 1000).append("us");
+			for (int p=0;p<PERCENTILES.length;p++) {
+				line.append(" expanded.").append(PERCENTILE_NAMES[p]).append('=').append(s.expanded.getValueAtPercentile(PERCENTILES[p]));
+			}
+			line.append(" expanded.max=").append(s.expanded.getMax());
+			lines.add(line.toString());
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#getLatencyPercentile(int, int, double)
+	 */
+	public long getLatencyPercentile(int moverType, int heuristicType, double percentile) {
+		Series s = getSeries(moverType, heuristicType, false);
+		return (s == null) ? 0 : s.latency.getValueAtPercentile(percentile);
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#getExpandedPercentile(int, int, double)
+	 */
+	public long getExpandedPercentile(int moverType, int heuristicType, double percentile) {
+		Series s = getSeries(moverType, heuristicType, false);
+		return (s == null) ? 0 : s.expanded.getValueAtPercentile(percentile);
+	}
+	
+	/**
+	 * @see PathFinderMonitorMBean#reset()
+	 */
+	public void reset() {
+		for (int i=0;i<series.length();i++) {
+			series.set(i, null);
+		}
+	}
+	
+	/**
+	 * Publish this monitor on the platform MBean server
+	 * 
+	 * @param id The name telling this monitor apart from the others
+	 * @throws JMException Indicates the monitor couldn't be registered, for instance if the name is taken
+	 */
+	public synchronized void register(String id) throws JMException {
+		if (name != null) {
+			throw new IllegalStateException("The monitor is already registered as " + name);
+		}
+		ObjectName objectName = new ObjectName("newBoite:type=PathFinderMonitor,name=" + ObjectName.quote(id));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		name = objectName;
+	}
+	
+	/**
+	 * Remove this monitor from the platform MBean server, if it was registered
+	 * 
+	 * @throws JMException Indicates the monitor couldn't be removed
+	 */
+	public synchronized void unregister() throws JMException {
+		if (name != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.unregisterMBean(name);
+			name = null;
+		}
+	}
+	
+	/**
+	 * The figures of the searches for one mover and heuristic type
+	 */
+	private static class Series {
+		/** The number of searches */
+		private LongAdder queries = new LongAdder();
+		/** The number of searches which found no path */
+		private LongAdder failures = new LongAdder();
+		/** The time the searches took, in nanoseconds */
+		private Histogram latency = new Histogram(LATENCY_BITS);
+		/** The number of nodes expanded by the searches */
+		private Histogram expanded = new Histogram(EXPANDED_BITS);
+	}
+}
@@ -0,0 +1,74 @@
+package newBoite;
+
+/**
+ * The management interface of a PathFinderMonitor, as seen through JMX.
+ * The figures are kept for each mover type and heuristic type. The movers
+ * that aren't a UnitMover are counted with the type -1, and the heuristic
+ * types other than 0 and 1 are all counted as 2, the plain heuristic.
+ * 
+ * @see PathFinderMonitor
+ */
+public interface PathFinderMonitorMBean {
+	/**
+	 * Check if the searches are being recorded
+	 * 
+	 * @return True if the searches are being recorded
+	 */
+	public boolean isEnabled();
+	
+	/**
+	 * Start or stop recording the searches. Once stopped, the instrumented
+	 * finders do nothing but check this flag.
+	 * 
+	 * @param enabled True if the searches should be recorded
+	 */
+	public void setEnabled(boolean enabled);
+	
+	/**
+	 * Get the number of searches recorded
+	 * 
+	 * @return The number of searches
+	 */
+	public long getQueryCount();
+	
+	/**
+	 * Get the number of searches recorded which found no path
+	 * 
+	 * @return The number of searches that failed
+	 */
+	public long getFailureCount();
+	
+	/**
+	 * Get a line of figures for each mover and heuristic type searched for:
+	 * the number of searches and failures, then the percentiles of the
+	 * latency, in microseconds, and of the number of nodes expanded.
+	 * 
+	 * @return A line for each mover and heuristic type
+	 */
+	public String[] getSummary();
+	
+	/**
+	 * Get a percentile of the latency of the searches
+	 * 
+	 * @param moverType The type of the mover
+	 * @param heuristicType The type of the heuristic
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The latency at the percentile in nanoseconds, or 0 if there was no such search
+	 */
+	public long getLatencyPercentile(int moverType, int heuristicType, double percentile);
+	
+	/**
+	 * Get a percentile of the number of nodes expanded by the searches
+	 * 
+	 * @param moverType The type of the mover
+	 * @param heuristicType The type of the heuristic
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The number of nodes expanded at the percentile, or 0 if there was no such search
+	 */
+	public long getExpandedPercentile(int moverType, int heuristicType, double percentile);
+	
+	/**
+	 * Forget all the searches recorded
+	 */
+	public void reset();
+}
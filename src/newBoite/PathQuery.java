@@ -0,0 +1,102 @@
+package newBoite;
+
+/**
+ * A single request for a path, as handed to a BatchPathFinder: the entity
+ * moving and the start and target locations.
+ * 
+ * @see BatchPathFinder
+ */
+public class PathQuery {
+	/** The entity that will be moving along the path */
+	private Mover mover;
+	/** The x coordinate of the start location */
+	private int sx;
+	/** The y coordinate of the start location */
+	private int sy;
+	/** The x coordinate of the target location */
+	private int tx;
+	/** The y coordinate of the target location */
+	private int ty;
+	
+	/**
+	 * Create a new query
+	 * 
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 */
+	public PathQuery(Mover mover, int sx, int sy, int tx, int ty) {
+		this.mover = mover;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+	}
+	
+	/**
+	 * Get the entity that will be moving along the path
+	 * 
+	 * @return The entity that will be moving along the path
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+	
+	/**
+	 * Get the x coordinate of the start location
+	 * 
+	 * @return The x coordinate of the start location
+	 */
+	public int getStartX() {
+		return sx;
+	}
+	
+	/**
+	 * Get the y coordinate of the start location
+	 * 
+	 * @return The y coordinate of the start location
+	 */
+	public int getStartY() {
+		return sy;
+	}
+	
+	/**
+	 * Get the x coordinate of the target location
+	 * 
+	 * @return The x coordinate of the target location
+	 */
+	public int getTargetX() {
+		return tx;
+	}
+	
+	/**
+	 * Get the y coordinate of the target location
+	 * 
+	 * @return The y coordinate of the target location
+	 */
+	public int getTargetY() {
+		return ty;
+	}
+	
+	/**
+	 * @see Object#hashCode()
+	 */
+	public int hashCode() {
+		return (((((((mover.hashCode() * 31) + sx) * 31) + sy) * 31) + tx) * 31) + ty;
+	}
+	
+	/**
+	 * Two queries are equal when they are for the same mover, start and target
+	 * 
+	 * @see Object#equals(Object)
+	 */
+	public boolean equals(Object other) {
+		if (other instanceof PathQuery) {
+			PathQuery o = (PathQuery) other;
+			return (o.sx == sx) && (o.sy == sy) && (o.tx == tx) && (o.ty == ty) && o.mover.equals(mover);
+		}
+		return false;
+	}
+}
@@ -15,7 +15,9 @@ import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Properties;
 
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
@@ -77,7 +79,9 @@ public class PathTest extends JFrame {
 			System.exit(0);
 		}
 		
-		finder = new AStarPathFinder(map, 500, false);
+		AStarPathFinder astar = new AStarPathFinder(map, 500, false);
+		astar.setConnectivityIndex(new ConnectivityIndex(map, false));
+		finder = astar;
 		
 		addMouseListener(new MouseAdapter() {
 			public void mousePressed(MouseEvent e) {
@@ -177,7 +181,6 @@ public class PathTest extends JFrame {
 			lastFindX = - 1;
 		} else {
 			if (selectedx != -1 && !inTest) {
-				map.clearVisited();
 				path = finder.findPath(new UnitMover(map.getUnit(selectedx, selectedy)), 
 						   			   selectedx, selectedy, x, y);
 				nodesCheck = finder.getClosedList();
@@ -212,7 +215,12 @@ public class PathTest extends JFrame {
 		
 		// cycle through the tiles in the map drawing the appropriate
 		// image for the terrain and units where appropriate
-	
+		// the path is looked up for every tile, so index it first
+		PackedPath drawnPath = null;
+		if (path != null) {
+			drawnPath = new PackedPath(path, map.getWidthInTiles());
+			drawnPath.index();
+		}
 				
 		for (int x=0;x<map.getWidthInTiles();x++) {
 			for (int y=0;y<map.getHeightInTiles();y++) {
@@ -230,8 +238,8 @@ public class PathTest extends JFrame {
 							}
 						}
 					}
-					if (path != null) {
-						if (path.contains(x, y)) {
+					if (drawnPath != null) {
+						if (drawnPath.contains(x, y)) {
 							g.setColor(Color.blue);
 							g.fillRect((x*tileSize)+4, (y*tileSize)+4,7,7);
 						}
@@ -293,50 +301,25 @@ public class PathTest extends JFrame {
 	 */
 	public static void main(String[] argv) {
 		String nomFichier = "TestB.txt";
-		File file = new File(nomFichier);
-		String content = new String();
-		Path path;
-		int n=0;	
 		PathTest test = new PathTest();	
 				
-		//Calcul et enregistre le contenu des resultats d'analyse pour chaque test dans le fichier
-		content = "Essaie; Poid; TotalTest; totalCheminNonTrouver; totalPath (pas);totalCaseEssayerEchec;\n";
-		test.finder.setHeuristicType(0);
-		int totalTest=0;
-		int totalPath=0;
-		int totalCaseEssayerEchec = 0;
-		int totalCheminNonTrouver =0;
-		test.finder.setHeuristicWeight((float)(0));
-		//Variation du poid (cout) de l'heuristique
+		//Calcul et enregistre le contenu des resultats d'analyse pour chaque test dans le fichier.
+		//L'analyse tourne sans fenetre dans ExperimentRunner, avec son scenario par defaut :
+		//variation du poid de l'heuristique de 0 a 5, pour 15x30 positions de depart et de destination.
+		//La liste Open reste un tas (integerCosts=false) pour que les totaux ne sautent pas aux poids entiers.
 		JOptionPane.showMessageDialog(null, "Presser sur OK pour dbuter l'analyse de l'algorithme et veuillez attendre\n le message de compltion avant de commencer  jouer. Les rsultats d'analyses\n sont sauvegards dans le fichier "+nomFichier+".");
-		for (float z=0;z<5;z=(float)(z+0.2)){
-			totalTest=0;
-			totalPath=0;
-			totalCaseEssayerEchec = 0;
-			totalCheminNonTrouver = 0;
-			test.finder.setHeuristicWeight(z);
-			//Variation des positions de depart et de destination
-			for (int i = 0; i<15;i++){
-				for (int j = 0; j<30;j++){
-					path = test.finder.findPath(new UnitMover(test.map.getUnit(15, 3)),i, 2, j, 18);
-					totalTest++;
-					if(path==null)
-						totalCheminNonTrouver++;
-					else{	
-						totalPath=totalPath+path.getLength();
-						totalCaseEssayerEchec=totalCaseEssayerEchec+test.finder.getClosedList().size()+test.finder.getOpenListSize()-path.getLength();
-					}
-				}
+		try {
+			Writer out = new BufferedWriter(new FileWriter(nomFichier));
+			try {
+				new ExperimentRunner(new Properties()).run(out, Runtime.getRuntime().availableProcessors());
+			} finally {
+				out.close();
 			}
-			content += n +";";
-			content += z +";";
-			content += totalTest+";";
-			content += totalCheminNonTrouver+ ";";
-			content += totalPath+ ";";
-			content += totalCaseEssayerEchec+ ";\n";
-			n++;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
-		writeToFile(content,file );	
 		test.finder.setHeuristicWeight((float)1.2);
 		JOptionPane.showMessageDialog(null,"L'analyse est complt, vous pouvez commencer  jouer!");
 		test.setInTest(false);
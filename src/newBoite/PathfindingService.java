@@ -0,0 +1,368 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Resolves path queries on a pool of worker threads, answering each with a
+ * future. The queries wait in a queue ordered on their priority, the player's
+ * orders before the background work of the AI, then in the order they came.
+ * 
+ * A query identical to one already queued or being searched doesn't start
+ * a search of its own, it waits for the same result. If it has a higher
+ * priority, the queued search moves up the queue.
+ * 
+ * Cancelling a future stops its search once no other query is waiting for
+ * it, even in the middle of the search, which is run in slices for that
+ * purpose. A query may be given an owner, such as the unit or the cursor
+ * asking for it: the next query of the same owner supersedes it and cancels
+ * it.
+ * 
+ * The searches share the map, which must not change while they run. The
+ * paths may be shared between the futures of identical queries and must not
+ * be modified.
+ * 
+ * @see IncrementalSearch
+ */
+public class PathfindingService {
+	/** The priority of the orders given by the player */
+	public static final int PRIORITY_PLAYER = 0;
+	/** The priority of the searches of the AI */
+	public static final int PRIORITY_AI = 10;
+	/** The number of nodes expanded between two checks that the search is still wanted */
+	private static final int SLICE = 256;
+	
+	/** The finder running the searches */
+	private AStarPathFinder finder;
+	/** The pool of worker threads, its queue ordered on the priority of the tasks */
+	private ThreadPoolExecutor executor;
+	/** The search context of each worker */
+	private ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+		protected SearchContext initialValue() {
+			return finder.createSearchContext();
+		}
+	};
+	/** The tasks queued or running, by query. Guarded by this service. */
+	private HashMap<PathQuery, Task> inFlight = new HashMap<PathQuery, Task>();
+	/** The latest query of each owner. Guarded by this service. */
+	private HashMap<Object, CompletableFuture<Path>> latest = new HashMap<Object, CompletableFuture<Path>>();
+	/** The number given to the next task, to keep the order of the queries of the same priority */
+	private long sequence;
+	/** True once the service has been shut down. Guarded by this service. */
+	private boolean shutdown;
+	
+	/** The number of queries submitted */
+	private LongAdder submitted = new LongAdder();
+	/** The number of queries merged with an identical one */
+	private LongAdder merged = new LongAdder();
+	/** The number of searches cancelled before they were over */
+	private LongAdder cancelled = new LongAdder();
+	/** The number of searches run to the end */
+	private LongAdder completed = new LongAdder();
+	/** The time the searches waited in the queue, in nanoseconds */
+	private Histogram waitTime = new Histogram(40);
+	/** The time the searches ran, in nanoseconds */
+	private Histogram runTime = new Histogram(40);
+	
+	/**
+	 * Create a new service
+	 * 
+	 * @param finder The finder running the searches
+	 * @param threads The number of worker threads
+	 */
+	public PathfindingService(AStarPathFinder finder, int threads) {
+		this.finder = finder;
+		final AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), 
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "pathfinder-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+	
+	/**
+	 * Submit a query
+	 * 
+	 * @param query The query to resolve
+	 * @param priority The priority of the query, the lower the sooner, such as PRIORITY_PLAYER or PRIORITY_AI
+	 * @return The future path, null if there is none
+	 */
+	public CompletableFuture<Path> submit(PathQuery query, int priority) {
+		return submit(null, query, priority);
+	}
+	
+	/**
+	 * Submit a query superseding the previous query of the same owner
+	 * 
+	 * @param owner The owner of the query, or null if it has none
+	 * @param query The query to resolve
+	 * @param priority The priority of the query, the lower the sooner, such as PRIORITY_PLAYER or PRIORITY_AI
+	 * @return The future path, null if there is none
+	 */
+	public CompletableFuture<Path> submit(final Object owner, PathQuery query, int priority) {
+		final CompletableFuture<Path> future = new CompletableFuture<Path>();
+		CompletableFuture<Path> previous = null;
+		final Task task;
+		submitted.increment();
+		
+		synchronized (this) {
+			if (shutdown) {
+				future.completeExceptionally(new RejectedExecutionException("The service has been shut down"));
+				return future;
+			}
+			if (owner != null) {
+				previous = latest.put(owner, future);
+			}
+			
+			Task existing = inFlight.get(query);
+			if (existing == null) {
+				task = new Task(query, priority, sequence++);
+				task.subscribers.add(future);
+				inFlight.put(query, task);
+				executor.execute(task);
+			} else {
+				task = existing;
+				task.subscribers.add(future);
+				merged.increment();
+				// move the search up the queue, unless a worker has taken it already
+				if ((priority < task.priority) && executor.getQueue().remove(task)) {
+					task.priority = priority;
+					executor.execute(task);
+				}
+			}
+		}
+		
+		future.whenComplete(new BiConsumer<Path, Throwable>() {
+			public void accept(Path path, Throwable failure) {
+				done(owner, task, future);
+			}
+		});
+		if (previous != null) {
+			previous.cancel(false);
+		}
+		return future;
+	}
+	
+	/**
+	 * Notification that a future is done, resolved or cancelled
+	 * 
+	 * @param owner The owner of the query, or null
+	 * @param task The task resolving the query
+	 * @param future The future of the query
+	 */
+	private synchronized void done(Object owner, Task task, CompletableFuture<Path> future) {
+		if ((owner != null) && (latest.get(owner) == future)) {
+			latest.remove(owner);
+		}
+		if (!future.isCancelled()) {
+			return;
+		}
+		
+		task.subscribers.remove(future);
+		if (task.subscribers.isEmpty() && !task.cancelled) {
+			task.cancelled = true;
+			cancelled.increment();
+			if (inFlight.get(task.query) == task) {
+				inFlight.remove(task.query);
+			}
+			executor.getQueue().remove(task);
+		}
+	}
+	
+	/**
+	 * Stop the workers. The queries not resolved yet are cancelled.
+	 */
+	public void shutdown() {
+		ArrayList<CompletableFuture<Path>> futures = new ArrayList<CompletableFuture<Path>>();
+		synchronized (this) {
+			shutdown = true;
+			for (Task task : inFlight.values()) {
+				futures.addAll(task.subscribers);
+			}
+		}
+		for (CompletableFuture<Path> future : futures) {
+			future.cancel(false);
+		}
+		executor.shutdown();
+	}
+	
+	/**
+	 * Get the number of searches waiting for a worker
+	 * 
+	 * @return The number of searches queued
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * Get the number of searches running
+	 * 
+	 * @return The number of workers searching
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+	
+	/**
+	 * Get a percentile of the time the searches waited for a worker
+	 * 
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The time waited at the percentile, in nanoseconds
+	 */
+	public long getWaitTimePercentile(double percentile) {
+		return waitTime.getValueAtPercentile(percentile);
+	}
+	
+	/**
+	 * Get a percentile of the time the searches ran
+	 * 
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The time searching at the percentile, in nanoseconds
+	 */
+	public long getRunTimePercentile(double percentile) {
+		return runTime.getValueAtPercentile(percentile);
+	}
+	
+	/**
+	 * Get the number of queries submitted
+	 * 
+	 * @return The number of queries submitted
+	 */
+	public long getSubmittedCount() {
+		return submitted.sum();
+	}
+	
+	/**
+	 * Get the number of queries answered by the search of an identical query
+	 * 
+	 * @return The number of queries merged
+	 */
+	public long getMergedCount() {
+		return merged.sum();
+	}
+	
+	/**
+	 * Get the number of searches cancelled, queued or running
+	 * 
+	 * @return The number of searches cancelled
+	 */
+	public long getCancelledCount() {
+		return cancelled.sum();
+	}
+	
+	/**
+	 * Get the number of searches run to the end
+	 * 
+	 * @return The number of searches completed
+	 */
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+	
+	/**
+	 * A search waiting in the queue or running, and the futures waiting for it
+	 */
+	private class Task implements Runnable, Comparable<Task> {
+		/** The query searched */
+		private PathQuery query;
+		/** The priority of the search, the lower the sooner */
+		private int priority;
+		/** The number of the task, ordering the tasks of the same priority */
+		private long number;
+		/** The time the task was queued, as given by System.nanoTime() */
+		private long queued = System.nanoTime();
+		/** The futures waiting for the search. Guarded by the service. */
+		private ArrayList<CompletableFuture<Path>> subscribers = new ArrayList<CompletableFuture<Path>>(1);
+		/** True once no future waits for the search any more */
+		private volatile boolean cancelled;
+		
+		/**
+		 * Create a new task
+		 * 
+		 * @param query The query to search
+		 * @param priority The priority of the search
+		 * @param number The number of the task
+		 */
+		public Task(PathQuery query, int priority, long number) {
+			this.query = query;
+			this.priority = priority;
+			this.number = number;
+		}
+		
+		/**
+		 * @see Comparable#compareTo(Object)
+		 */
+		public int compareTo(Task other) {
+			if (priority != other.priority) {
+				return (priority < other.priority) ? -1 : 1;
+			}
+			return (number < other.number) ? -1 : ((number == other.number) ? 0 : 1);
+		}
+		
+		/**
+		 * Run the search in slices, stopping if it is no longer wanted
+		 */
+		public void run() {
+			long start = System.nanoTime();
+			waitTime.record(start - queued);
+			if (cancelled) {
+				return;
+			}
+			
+			Path path;
+			try {
+				IncrementalSearch search = finder.startSearch(contexts.get(), query.getMover(), query.getStartX(), 
+						query.getStartY(), query.getTargetX(), query.getTargetY());
+				while (search.step(SLICE) == IncrementalSearch.IN_PROGRESS) {
+					if (cancelled) {
+						search.cancel();
+						return;
+					}
+				}
+				path = search.getPath();
+			} catch (RuntimeException e) {
+				complete(null, e);
+				return;
+			}
+			runTime.record(System.nanoTime() - start);
+			completed.increment();
+			complete(path, null);
+		}
+		
+		/**
+		 * Hand the result of the search to the futures waiting for it
+		 * 
+		 * @param path The path found, or null
+		 * @param failure The exception thrown by the search, or null
+		 */
+		private void complete(Path path, Throwable failure) {
+			ArrayList<CompletableFuture<Path>> futures;
+			synchronized (PathfindingService.this) {
+				if (inFlight.get(query) == this) {
+					inFlight.remove(query);
+				}
+				futures = new ArrayList<CompletableFuture<Path>>(subscribers);
+			}
+			for (CompletableFuture<Path> future : futures) {
+				if (failure != null) {
+					future.completeExceptionally(failure);
+				} else {
+					future.complete(path);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,829 @@
+package newBoite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The mutable state of a single A* search: the open and closed lists and the
+ * nodes reached so far. A path finder holds only the immutable description of
+ * the search (map, heuristic, settings) and runs each query in a context, so
+ * that one finder can serve many threads at once as long as each thread uses
+ * its own context.
+ * 
+ * Nodes are only created for the tiles the search reaches, and are kept from
+ * one search to the next, so the memory held by a context grows with the size
+ * of the largest search it ran rather than with the size of the map.
+ * 
+ * A context is not thread safe and must only be used by one search at a time.
+ * 
+ * @see AStarPathFinder#findPath(SearchContext, Mover, int, int, int, int)
+ */
+public class SearchContext {
+	/**
+	 * The largest search identifier before the stamps are cleared. A stamp
+	 * holds the identifier above the two bits of the state of the node.
+	 */
+	static final int MAX_SEARCH_ID = (1 << 29) - 1;
+	
+	/** The width of the map searched, used to index the tiles */
+	private int width;
+	
+	/** The identifier of the current search, used to stamp the state of the nodes */
+	private int searchId;
+	/** The number of nodes in the closed list of the current search */
+	private int closedCount;
+	/** The closed list of the current search, built on demand by getClosedList() */
+	private ArrayList<Node> closed;
+	/** The set of nodes that we do not yet consider fully searched */
+	private NodeHeap open = new NodeHeap();
+	/** The open list used instead of the heap by the searches with whole f costs */
+	private NodeBuckets buckets = new NodeBuckets();
+	/** True if the current search keeps its open list in buckets */
+	private boolean integer;
+	
+	/** The nodes created by this context, the first used of them belong to the current search */
+	private Node[] pool = new Node[64];
+	/** The number of nodes from the pool used by the current search */
+	private int used;
+	/** 
+	 * The search that filled each slot of the node table in the high 32 bits and
+	 * the index of the tile held in the low 32 bits. Slots filled by an older
+	 * search are empty.
+	 */
+	private long[] keys = new long[128];
+	/** The node held in each slot of the node table */
+	private Node[] values = new Node[128];
+	/** The search reused by the queries run to the end in one go, created when first needed */
+	private IncrementalSearch search;
+	
+	/**
+	 * Create a new context
+	 * 
+	 * @param width The width in tiles of the map that will be searched
+	 */
+	public SearchContext(int width) {
+		this.width = width;
+	}
+	
+	/**
+	 * Get the search reused by the queries run to the end in one go in this
+	 * context, which then don't create one each
+	 * 
+	 * @param finder The finder running the search
+	 * @param mover The entity moving
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The search, reset for the query
+	 */
+	IncrementalSearch reuseSearch(AStarPathFinder finder, Mover mover, int sx, int sy, int tx, int ty) {
+		if (search == null) {
+			search = new IncrementalSearch(finder, this, mover, sx, sy, tx, ty);
+		} else {
+			search.reset(finder, this, mover, sx, sy, tx, ty);
+		}
+		return search;
+	}
+	
+	/**
+	 * Start a new search, emptying both lists and the node table
+	 */
+	public void startSearch() {
+		open.clear();
+		buckets.clear();
+		integer = false;
+		nextSearchId();
+	}
+	
+	/**
+	 * Start a new search whose f costs are all whole numbers. The open list
+	 * is then kept in one bucket per f cost, so that adding and taking out
+	 * nodes costs the same whatever the size of the list.
+	 * 
+	 * @param largerCostFirst True if the nodes of equal f cost are taken out
+	 * largest g cost first, which heads for the target across a plateau
+	 * rather than widening it, false to take the smallest first
+	 */
+	public void startIntegerSearch(boolean largerCostFirst) {
+		open.clear();
+		buckets.clear();
+		buckets.largerCostFirst = largerCostFirst;
+		integer = true;
+		nextSearchId();
+	}
+	
+	/**
+	 * Empty the node table and the closed list by moving on to the next
+	 * search identifier
+	 */
+	private void nextSearchId() {
+		searchId = nextSearchId(searchId, null);
+		if (searchId == 1) {
+			Arrays.fill(keys, 0);
+		}
+		used = 0;
+		closedCount = 0;
+		closed = null;
+	}
+	
+	/**
+	 * Get the identifier of the search following a given one. Nodes are
+	 * stamped with the identifier of the search that last reached them, so
+	 * bumping it forgets the state of every node without visiting them. The
+	 * stamps only need clearing in the rare case where the identifier wraps
+	 * around, the identifier is then 1 again.
+	 * 
+	 * @param searchId The identifier of the last search
+	 * @param store The store whose stamps to clear when the identifier wraps around, or null
+	 * @return The identifier of the next search
+	 */
+	static int nextSearchId(int searchId, NodeStore store) {
+		searchId++;
+		if (searchId > MAX_SEARCH_ID) {
+			if (store != null) {
+				for (int i=0;i<store.size();i++) {
+					store.setStamp(i, 0);
+				}
+			}
+			searchId = 1;
+		}
+		return searchId;
+	}
+	
+	/**
+	 * Get the state of a node of a store in a given search
+	 * 
+	 * @param store The store holding the node
+	 * @param searchId The identifier of the search
+	 * @param index The index of the node
+	 * @param unvisited The state to give a node the search has not stamped
+	 * @return The state stamped on the node by the search, or unvisited
+	 */
+	static int getState(NodeStore store, int searchId, int index, int unvisited) {
+		int stamp = store.getStamp(index);
+		return ((stamp >>> 2) == searchId) ? (stamp & 3) : unvisited;
+	}
+	
+	/**
+	 * Stamp the state of a node of a store in a given search
+	 * 
+	 * @param store The store holding the node
+	 * @param searchId The identifier of the search
+	 * @param index The index of the node
+	 * @param state The state of the node, between 0 and 3
+	 */
+	static void setState(NodeStore store, int searchId, int index, int state) {
+		store.setStamp(index, (searchId << 2) | state);
+	}
+	
+	/**
+	 * Get the node for a given tile in the current search, creating it
+	 * unvisited if the search has not reached the tile yet
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The node for the given tile
+	 */
+	public Node getNode(int x, int y) {
+		int index = (y * width) + x;
+		long key = ((long) searchId << 32) | index;
+		int mask = keys.length - 1;
+		int slot = hash(index) & mask;
+		while ((int) (keys[slot] >>> 32) == searchId) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		if (used == pool.length) {
+			pool = Arrays.copyOf(pool, used * 2);
+		}
+		Node node = pool[used];
+		if (node == null) {
+			node = new Node(x, y);
+			pool[used] = node;
+		} else {
+			node.setX(x);
+			node.setY(y);
+			node.setCost(0);
+			node.setHeuristic(0);
+			node.setParent(null);
+			node.setDepth(0);
+		}
+		node.setState(searchId, Node.UNVISITED);
+		used++;
+		
+		keys[slot] = key;
+		values[slot] = node;
+		if (used * 2 > keys.length) {
+			growTable();
+		}
+		return node;
+	}
+	
+	/**
+	 * Double the size of the node table, putting back the nodes of the
+	 * current search
+	 */
+	private void growTable() {
+		int size = keys.length * 2;
+		keys = new long[size];
+		values = new Node[size];
+		
+		int mask = size - 1;
+		for (int i=0;i<used;i++) {
+			Node node = pool[i];
+			int index = (node.getY() * width) + node.getX();
+			int slot = hash(index) & mask;
+			while ((int) (keys[slot] >>> 32) == searchId) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = ((long) searchId << 32) | index;
+			values[slot] = node;
+		}
+	}
+	
+	/**
+	 * Spread the bits of a tile index so that neighbouring tiles do not
+	 * fill consecutive slots of the node table
+	 * 
+	 * @param index The index of the tile
+	 * @return The hash of the tile index
+	 */
+	private static int hash(int index) {
+		int h = index * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Get the first element from the open list. This is the next
+	 * one to be searched.
+	 * 
+	 * @return The first element in the open list
+	 */
+	public Node getFirstInOpen() {
+		if (integer) {
+			return buckets.first();
+		}
+		return open.first();
+	}
+	
+	/**
+	 * Add a node to the open list
+	 * 
+	 * @param node The node to be added to the open list
+	 */
+	public void addToOpen(Node node) {
+		node.setState(searchId, Node.OPEN);
+		if (integer) {
+			buckets.add(node);
+		} else {
+			open.add(node);
+		}
+	}
+	
+	/**
+	 * Check if a node is in the open list
+	 * 
+	 * @param node The node to check for
+	 * @return True if the node given is in the open list
+	 */
+	public boolean inOpenList(Node node) {
+		return node.getState(searchId) == Node.OPEN;
+	}
+	
+	/**
+	 * Get the number of nodes in the open list
+	 * 
+	 * @return The number of nodes in the open list
+	 */
+	public int getOpenListSize() {
+		return integer ? buckets.size() : open.size();
+	}
+	
+	/**
+	 * Get a node of the open list, in no particular order
+	 * 
+	 * @param index The position of the node, between 0 and getOpenListSize() - 1
+	 * @return The node at the given position
+	 */
+	public Node getOpenNode(int index) {
+		return integer ? buckets.get(index) : open.get(index);
+	}
+	
+	/**
+	 * Restore the order of the open list after the costs of the nodes it
+	 * holds have been changed in place
+	 */
+	public void reorderOpen() {
+		if (integer) {
+			buckets.reorder();
+		} else {
+			open.reorder();
+		}
+	}
+	
+	/**
+	 * Notify the open list that the cost of a node it holds has been lowered
+	 * so that the node can be moved to its new place in the list
+	 * 
+	 * @param node The node whose cost has been lowered
+	 */
+	public void decreaseKeyInOpen(Node node) {
+		if (integer) {
+			buckets.decreaseKey(node);
+		} else {
+			open.decreaseKey(node);
+		}
+	}
+	
+	/**
+	 * Remove a node from the open list
+	 * 
+	 * @param node The node to remove from the open list
+	 */
+	public void removeFromOpen(Node node) {
+		node.setState(searchId, Node.UNVISITED);
+		if (integer) {
+			buckets.remove(node);
+		} else {
+			open.remove(node);
+		}
+	}
+	
+	/**
+	 * Add a node to the closed list
+	 * 
+	 * @param node The node to add to the closed list
+	 */
+	public void addToClosed(Node node) {
+		node.setState(searchId, Node.CLOSED);
+		closedCount++;
+	}
+	
+	/**
+	 * Get the closed list of the last search. The list is only built on
+	 * the first call after a search, by collecting the nodes stamped as
+	 * closed, so it costs nothing to searches that never ask for it. The
+	 * nodes are reused by the next search run in this context.
+	 * 
+	 * @return The nodes in the closed list of the last search
+	 */
+	public ArrayList<Node> getClosedList() {
+		if (closed == null) {
+			closed = new ArrayList<Node>(closedCount);
+			for (int i=0;i<used;i++) {
+				if (pool[i].getState(searchId) == Node.CLOSED) {
+					closed.add(pool[i]);
+				}
+			}
+		}
+		return closed;
+	}
+	
+	/**
+	 * Get the number of nodes in the closed list of the last search
+	 * 
+	 * @return The number of nodes closed by the last search
+	 */
+	public int getClosedListSize() {
+		return closedCount;
+	}
+	
+	/**
+	 * Check if the node supplied is in the closed list
+	 * 
+	 * @param node The node to search for
+	 * @return True if the node specified is in the closed list
+	 */
+	public boolean inClosedList(Node node) {
+		return node.getState(searchId) == Node.CLOSED;
+	}
+		
+	/**
+	 * Remove a node from the closed list
+	 * 
+	 * @param node The node to remove from the closed list
+	 */
+	public void removeFromClosed(Node node) {
+		node.setState(searchId, Node.UNVISITED);
+		closedCount--;
+	}
+	
+	/**
+	 * An indexed binary heap ordered on the f cost of the nodes. Each node
+	 * records its slot in the heap so that membership tests, removals and
+	 * decrease-key are done without scanning the list.
+	 */
+	private class NodeHeap {
+		/** The heap of nodes, the cheapest node is at index 0 */
+		private Node[] heap = new Node[64];
+		/** The number of nodes in the heap */
+		private int size;
+		
+		/**
+		 * Retrieve the first element from the list
+		 *  
+		 * @return The first element from the list
+		 */
+		public Node first() {
+			return heap[0];
+		}
+		
+		/**
+		 * Empty the list
+		 */
+		public void clear() {
+			for (int i=0;i<size;i++) {
+				heap[i].setHeapIndex(-1);
+				heap[i] = null;
+			}
+			size = 0;
+		}
+		
+		/**
+		 * Add an element to the list
+		 * 
+		 * @param node The element to add
+		 */
+		public void add(Node node) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			heap[size] = node;
+			node.setHeapIndex(size);
+			size++;
+			siftUp(size - 1);
+		}
+		
+		/**
+		 * Remove an element from the list
+		 * 
+		 * @param node The element to remove
+		 */
+		public void remove(Node node) {
+			int index = node.getHeapIndex();
+			if (index < 0) {
+				return;
+			}
+			
+			size--;
+			Node last = heap[size];
+			heap[size] = null;
+			node.setHeapIndex(-1);
+			if (index != size) {
+				heap[index] = last;
+				last.setHeapIndex(index);
+				siftDown(index);
+				siftUp(last.getHeapIndex());
+			}
+		}
+		
+		/**
+		 * Get the element held in a given slot of the heap
+		 * 
+		 * @param index The slot of the element
+		 * @return The element in the given slot
+		 */
+		public Node get(int index) {
+			return heap[index];
+		}
+		
+		/**
+		 * Rebuild the heap after the costs of its elements have been changed
+		 */
+		public void reorder() {
+			for (int i=(size >>> 1)-1;i>=0;i--) {
+				siftDown(i);
+			}
+		}
+		
+		/**
+		 * Move an element towards the front of the list after its cost
+		 * has been lowered
+		 * 
+		 * @param node The element whose cost has been lowered
+		 */
+		public void decreaseKey(Node node) {
+			siftUp(node.getHeapIndex());
+		}
+	
+		/**
+		 * Get the number of elements in the list
+		 * 
+		 * @return The number of element in the list
+ 		 */
+		public int size() {
+			return size;
+		}
+		
+		/**
+		 * Check if an element is in the list
+		 * 
+		 * @param node The element to search for
+		 * @return True if the element is in the list
+		 */
+		public boolean contains(Node node) {
+			int index = node.getHeapIndex();
+			return (index >= 0) && (index < size) && (heap[index] == node);
+		}
+		
+		/**
+		 * Move the node at the given slot up until its parent is no more
+		 * expensive than it
+		 * 
+		 * @param index The slot of the node to move
+		 */
+		private void siftUp(int index) {
+			Node node = heap[index];
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (heap[parent].compareTo(node) <= 0) {
+					break;
+				}
+				heap[index] = heap[parent];
+				heap[index].setHeapIndex(index);
+				index = parent;
+			}
+			heap[index] = node;
+			node.setHeapIndex(index);
+		}
+		
+		/**
+		 * Move the node at the given slot down until none of its children
+		 * is cheaper than it
+		 * 
+		 * @param index The slot of the node to move
+		 */
+		private void siftDown(int index) {
+			Node node = heap[index];
+			int half = size >>> 1;
+			while (index < half) {
+				int child = (index << 1) + 1;
+				int right = child + 1;
+				if ((right < size) && (heap[right].compareTo(heap[child]) < 0)) {
+					child = right;
+				}
+				if (node.compareTo(heap[child]) <= 0) {
+					break;
+				}
+				heap[index] = heap[child];
+				heap[index].setHeapIndex(index);
+				index = child;
+			}
+			heap[index] = node;
+			node.setHeapIndex(index);
+		}
+	}
+	
+	/**
+	 * An open list for searches whose f costs are whole numbers: one bucket
+	 * of nodes per f cost, and the lowest bucket that may still hold a node.
+	 * The nodes of a bucket come out last in, first out or first in, first
+	 * out. Across a plateau of equal f cost each node opened is a step
+	 * further than the one expanded, so the last in has the largest g cost
+	 * and the first in the smallest.
+	 * 
+	 * A node moving to another bucket, or leaving the list, is not searched
+	 * for in its old bucket. Its entry there is left behind and skipped when
+	 * it is reached, as the f cost of the node no longer matches the bucket
+	 * or the node is no longer in the list. The nodes in the list are also
+	 * kept in an array of their own, in which each node records its slot.
+	 */
+	private class NodeBuckets {
+		/** The nodes of each bucket, bucket i holding the f cost base + i */
+		private Node[][] buckets = new Node[64][];
+		/** The position of the first entry of each bucket */
+		private int[] heads = new int[64];
+		/** The position after the last entry of each bucket */
+		private int[] tails = new int[64];
+		/** The f cost held by the first bucket */
+		private int base;
+		/** The lowest bucket that may hold a node */
+		private int lowest;
+		/** The highest bucket used since the list was last cleared, or -1 */
+		private int highest = -1;
+		/** The nodes in the list, in no particular order */
+		private Node[] nodes = new Node[64];
+		/** The number of nodes in the list */
+		private int size;
+		/** True if the nodes of equal f cost come out largest g cost first */
+		private boolean largerCostFirst = true;
+		
+		/**
+		 * Retrieve the first element from the list, dropping the entries
+		 * left behind in the buckets on the way
+		 *  
+		 * @return The first element from the list
+		 */
+		public Node first() {
+			while (true) {
+				Node[] bucket = buckets[lowest];
+				while (heads[lowest] < tails[lowest]) {
+					Node node = largerCostFirst ? bucket[tails[lowest] - 1] : bucket[heads[lowest]];
+					if ((node.getHeapIndex() >= 0) && (getKey(node) == base + lowest)) {
+						return node;
+					}
+					if (largerCostFirst) {
+						tails[lowest]--;
+					} else {
+						heads[lowest]++;
+					}
+				}
+				heads[lowest] = 0;
+				tails[lowest] = 0;
+				lowest++;
+			}
+		}
+		
+		/**
+		 * Empty the list
+		 */
+		public void clear() {
+			for (int i=0;i<size;i++) {
+				nodes[i].setHeapIndex(-1);
+				nodes[i] = null;
+			}
+			size = 0;
+			for (int i=0;i<=highest;i++) {
+				heads[i] = 0;
+				tails[i] = 0;
+			}
+			lowest = 0;
+			highest = -1;
+		}
+		
+		/**
+		 * Add an element to the list
+		 * 
+		 * @param node The element to add
+		 */
+		public void add(Node node) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			nodes[size] = node;
+			node.setHeapIndex(size);
+			size++;
+			insert(node);
+		}
+		
+		/**
+		 * Remove an element from the list. Its entry in its bucket is left
+		 * behind.
+		 * 
+		 * @param node The element to remove
+		 */
+		public void remove(Node node) {
+			int index = node.getHeapIndex();
+			if (index < 0) {
+				return;
+			}
+			
+			size--;
+			Node last = nodes[size];
+			nodes[size] = null;
+			node.setHeapIndex(-1);
+			if (index != size) {
+				nodes[index] = last;
+				last.setHeapIndex(index);
+			}
+		}
+		
+		/**
+		 * Get the element held in a given slot of the list
+		 * 
+		 * @param index The slot of the element
+		 * @return The element in the given slot
+		 */
+		public Node get(int index) {
+			return nodes[index];
+		}
+		
+		/**
+		 * Put the elements back in the buckets after their costs have been changed
+		 */
+		public void reorder() {
+			for (int i=0;i<=highest;i++) {
+				heads[i] = 0;
+				tails[i] = 0;
+			}
+			lowest = 0;
+			highest = -1;
+			for (int i=0;i<size;i++) {
+				insert(nodes[i]);
+			}
+		}
+		
+		/**
+		 * Move an element to its new bucket after its cost has been lowered
+		 * 
+		 * @param node The element whose cost has been lowered
+		 */
+		public void decreaseKey(Node node) {
+			insert(node);
+		}
+		
+		/**
+		 * Get the number of elements in the list
+		 * 
+		 * @return The number of element in the list
+ 		 */
+		public int size() {
+			return size;
+		}
+		
+		/**
+		 * Get the f cost of a node as a whole number
+		 * 
+		 * @param node The node
+		 * @return The f cost of the node
+		 */
+		private int getKey(Node node) {
+			return (int) (node.getCost() + node.getHeuristic());
+		}
+		
+		/**
+		 * Add an entry for a node to the end of the bucket of its f cost
+		 * 
+		 * @param node The node to add an entry for
+		 */
+		private void insert(Node node) {
+			int key = getKey(node);
+			if (highest == -1) {
+				base = key;
+				lowest = 0;
+			}
+			int index = key - base;
+			if (index < 0) {
+				// a lower f cost than any seen, only possible with an inflated heuristic
+				shift(-index);
+				index = 0;
+			} else if (index >= buckets.length) {
+				grow(index + 1);
+			}
+			
+			Node[] bucket = buckets[index];
+			if (bucket == null) {
+				bucket = new Node[16];
+				buckets[index] = bucket;
+			}
+			int tail = tails[index];
+			if (tail == bucket.length) {
+				int head = heads[index];
+				if (head > (tail >>> 1)) {
+					// the entries taken from the front leave room enough
+					System.arraycopy(bucket, head, bucket, 0, tail - head);
+					tail -= head;
+					heads[index] = 0;
+				} else {
+					bucket = Arrays.copyOf(bucket, bucket.length * 2);
+					buckets[index] = bucket;
+				}
+			}
+			
+			bucket[tail] = node;
+			tails[index] = tail + 1;
+			
+			lowest = Math.min(lowest, index);
+			highest = Math.max(highest, index);
+		}
+		
+		/**
+		 * Make room for the buckets of more f costs
+		 * 
+		 * @param count The number of buckets needed
+		 */
+		private void grow(int count) {
+			int length = buckets.length;
+			while (length < count) {
+				length *= 2;
+			}
+			buckets = Arrays.copyOf(buckets, length);
+			heads = Arrays.copyOf(heads, length);
+			tails = Arrays.copyOf(tails, length);
+		}
+		
+		/**
+		 * Move the buckets up to make room for lower f costs
+		 * 
+		 * @param count The number of buckets to add in front
+		 */
+		private void shift(int count) {
+			grow(highest + 1 + count);
+			System.arraycopy(buckets, 0, buckets, count, highest + 1);
+			System.arraycopy(heads, 0, heads, count, highest + 1);
+			System.arraycopy(tails, 0, tails, count, highest + 1);
+			for (int i=0;i<count;i++) {
+				buckets[i] = null;
+				heads[i] = 0;
+				tails[i] = 0;
+			}
+			base -= count;
+			lowest += count;
+			highest += count;
+		}
+	}
+}
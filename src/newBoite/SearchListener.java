@@ -0,0 +1,56 @@
+package newBoite;
+
+/**
+ * A description of a class following the progress of the searches of a path
+ * finder, for instance to show which tiles were explored while debugging a
+ * new heuristic. The finders only call a listener when one is attached, so
+ * the searches cost nothing more without it.
+ * 
+ * A listener attached to a finder shared between threads is called from all
+ * of them at once.
+ */
+public interface SearchListener {
+	/**
+	 * Notification that a search has started
+	 * 
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location, or -1 if the search is towards several targets
+	 * @param ty The y coordinate of the target location, or -1 if the search is towards several targets
+	 */
+	public void searchStarted(int sx, int sy, int tx, int ty);
+	
+	/**
+	 * Notification that a tile has been added to the open list
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 */
+	public void nodeOpened(int x, int y);
+	
+	/**
+	 * Notification that a tile has been taken out of the open list and
+	 * expanded
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 */
+	public void nodeClosed(int x, int y);
+	
+	/**
+	 * Notification that a closed tile has been reached through a cheaper path
+	 * and will be added to the open list again
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 */
+	public void nodeReopened(int x, int y);
+	
+	/**
+	 * Notification that the search found a path. A search finding none
+	 * simply ends without notification.
+	 * 
+	 * @param path The path found
+	 */
+	public void pathFound(Path path);
+}
@@ -0,0 +1,132 @@
+package newBoite;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the searches of many units a little at a time, within a fixed number
+ * of node expansions per tick of the game. Each tick the budget is shared
+ * evenly between the searches in progress, the part a search doesn't use
+ * going to the next ones, so the time spent searching in a frame is bounded
+ * however many hard searches are pending. The search served first changes
+ * from one tick to the next, so that none waits for the others.
+ * 
+ * The contexts of the searches are kept and reused once a search is over.
+ * The scheduler is meant to be used from the game thread only.
+ * 
+ * @see IncrementalSearch
+ */
+public class SearchScheduler {
+	/** The finder running the searches */
+	private AStarPathFinder finder;
+	/** The number of nodes expanded per tick, over all the searches */
+	private int budget;
+	/** The searches in progress */
+	private ArrayList<IncrementalSearch> pending = new ArrayList<IncrementalSearch>();
+	/** The context of each search in progress */
+	private ArrayList<SearchContext> contexts = new ArrayList<SearchContext>();
+	/** The contexts free to be used by the next searches */
+	private ArrayList<SearchContext> free = new ArrayList<SearchContext>();
+	/** The search served first on the next tick */
+	private int next;
+	
+	/**
+	 * Create a new scheduler
+	 * 
+	 * @param finder The finder running the searches
+	 * @param budget The number of nodes expanded per tick, over all the searches
+	 */
+	public SearchScheduler(AStarPathFinder finder, int budget) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("The budget must be at least 1: " + budget);
+		}
+		this.finder = finder;
+		this.budget = budget;
+	}
+	
+	/**
+	 * Start a search, carried on by the next ticks
+	 * 
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The search, whose status tells when it is over
+	 */
+	public IncrementalSearch submit(Mover mover, int sx, int sy, int tx, int ty) {
+		SearchContext context = free.isEmpty() ? finder.createSearchContext() : free.remove(free.size() - 1);
+		IncrementalSearch search = finder.startSearch(context, mover, sx, sy, tx, ty);
+		if (search.isDone()) {
+			free.add(context);
+		} else {
+			pending.add(search);
+			contexts.add(context);
+		}
+		return search;
+	}
+	
+	/**
+	 * Carry on the searches in progress for one tick
+	 * 
+	 * @return The number of nodes expanded
+	 */
+	public int tick() {
+		int count = pending.size();
+		if (count == 0) {
+			return 0;
+		}
+		
+		int remaining = budget;
+		int first = next % count;
+		for (int i=0;(i<count) && (remaining > 0);i++) {
+			IncrementalSearch search = pending.get((first + i) % count);
+			if (search.isDone()) {
+				// cancelled since the last tick
+				continue;
+			}
+			int share = Math.max(1, remaining / (count - i));
+			int before = search.getExpanded();
+			search.step(share);
+			remaining -= search.getExpanded() - before;
+		}
+		next = first + 1;
+		
+		for (int i=count-1;i>=0;i--) {
+			if (pending.get(i).isDone()) {
+				pending.remove(i);
+				free.add(contexts.remove(i));
+			}
+		}
+		return budget - remaining;
+	}
+	
+	/**
+	 * Get the number of searches in progress
+	 * 
+	 * @return The number of searches in progress
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+	
+	/**
+	 * Get the number of nodes expanded per tick
+	 * 
+	 * @return The budget of a tick
+	 */
+	public int getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Set the number of nodes expanded per tick
+	 * 
+	 * @param budget The budget of a tick, over all the searches
+	 */
+	public void setBudget(int budget) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("The budget must be at least 1: " + budget);
+		}
+		this.budget = budget;
+	}
+}
@@ -0,0 +1,138 @@
+package newBoite;
+
+/**
+ * The figures of a single search. The caller keeps an instance and hands it
+ * to each search, which fills it in, so gathering the figures allocates
+ * nothing. An instance must only be used by one search at a time.
+ */
+public class SearchStats {
+	/** The outcome of a search which found a path */
+	public static final int FOUND = 0;
+	/** The outcome of a search which found the target can't be reached */
+	public static final int UNREACHABLE = 1;
+	/** The outcome of a search which gave up on reaching the maximum search distance */
+	public static final int DEPTH_LIMIT = 2;
+	
+	/** The number of nodes taken out of the open list and expanded */
+	private int expanded;
+	/** The number of nodes added to the open list */
+	private int generated;
+	/** The largest size the open list reached */
+	private int peakOpenSize;
+	/** The number of closed nodes reached again through a cheaper path */
+	private int reopened;
+	/** The number of times the heuristic was computed */
+	private int heuristicEvaluations;
+	/** The time the search took, in nanoseconds */
+	private long elapsedNanos;
+	/** The outcome of the search, FOUND, UNREACHABLE or DEPTH_LIMIT */
+	private int outcome = UNREACHABLE;
+	
+	/**
+	 * Clear the figures
+	 */
+	public void reset() {
+		set(0, 0, 0, 0, 0, 0);
+		outcome = UNREACHABLE;
+	}
+	
+	/**
+	 * Set all the figures of a search
+	 * 
+	 * @param expanded The number of nodes expanded
+	 * @param generated The number of nodes added to the open list
+	 * @param peakOpenSize The largest size the open list reached
+	 * @param reopened The number of closed nodes reached again through a cheaper path
+	 * @param heuristicEvaluations The number of times the heuristic was computed
+	 * @param elapsedNanos The time the search took, in nanoseconds
+	 */
+	public void set(int expanded, int generated, int peakOpenSize, int reopened, int heuristicEvaluations, long elapsedNanos) {
+		this.expanded = expanded;
+		this.generated = generated;
+		this.peakOpenSize = peakOpenSize;
+		this.reopened = reopened;
+		this.heuristicEvaluations = heuristicEvaluations;
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * Get the number of nodes taken out of the open list and expanded
+	 * 
+	 * @return The number of nodes expanded
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+	
+	/**
+	 * Get the number of nodes added to the open list, the start included
+	 * 
+	 * @return The number of nodes generated
+	 */
+	public int getGenerated() {
+		return generated;
+	}
+	
+	/**
+	 * Get the largest size the open list reached
+	 * 
+	 * @return The peak size of the open list
+	 */
+	public int getPeakOpenSize() {
+		return peakOpenSize;
+	}
+	
+	/**
+	 * Get the number of closed nodes reached again through a cheaper path,
+	 * and so put back in the open list
+	 * 
+	 * @return The number of nodes reopened
+	 */
+	public int getReopened() {
+		return reopened;
+	}
+	
+	/**
+	 * Get the number of times the heuristic was computed
+	 * 
+	 * @return The number of heuristic evaluations
+	 */
+	public int getHeuristicEvaluations() {
+		return heuristicEvaluations;
+	}
+	
+	/**
+	 * Get the time the search took
+	 * 
+	 * @return The time the search took, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * Get the outcome of the search
+	 * 
+	 * @return FOUND, UNREACHABLE or DEPTH_LIMIT
+	 */
+	public int getOutcome() {
+		return outcome;
+	}
+	
+	/**
+	 * Set the outcome of the search
+	 * 
+	 * @param outcome FOUND, UNREACHABLE or DEPTH_LIMIT
+	 */
+	public void setOutcome(int outcome) {
+		this.outcome = outcome;
+	}
+	
+	/**
+	 * @see Object#toString()
+	 */
+	public String toString() {
+		return "outcome=" + outcome + " expanded=" + expanded + " generated=" + generated + " peakOpenSize=" + peakOpenSize + " reopened=" + reopened 
+				+ " heuristicEvaluations=" + heuristicEvaluations + " elapsedNanos=" + elapsedNanos;
+	}
+}
@@ -24,15 +24,6 @@ public interface TileBasedMap {
 	 */
 	public int getHeightInTiles();
 	
-	/**
-	 * Notification that the path finder visited a given tile. This is 
-	 * used for debugging new heuristics.
-	 * 
-	 * @param x The x coordinate of the tile that was visited
-	 * @param y The y coordinate of the tile that was visited
-	 */
-	public void pathFinderVisited(int x, int y);
-	
 	/**
 	 * Check if the given location is blocked, i.e. blocks movement of 
 	 * the supplied mover.
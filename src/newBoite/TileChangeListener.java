@@ -0,0 +1,19 @@
+package newBoite;
+
+/**
+ * A listener notified when a tile of a map changes in a way that may change
+ * which movers it blocks or what moving across it costs, for instance when a
+ * unit moves onto it or its terrain is edited. Path finders keeping state
+ * derived from the map use this to update only what the change affects.
+ * 
+ * @see ObservableTileMap
+ */
+public interface TileChangeListener {
+	/**
+	 * Notification that a tile of the map has changed
+	 * 
+	 * @param x The x coordinate of the tile that changed
+	 * @param y The y coordinate of the tile that changed
+	 */
+	public void tileChanged(int x, int y);
+}
@@ -0,0 +1,20 @@
+package newBoite;
+
+/**
+ * A tile map that can tell when every move across it costs the same. Path
+ * finders relying on uniform costs, such as jump point search, use this to
+ * decide whether they can search the map.
+ * 
+ * @see JumpPointSearchPathFinder
+ */
+public interface UniformCostMap extends TileBasedMap {
+	/**
+	 * Get the cost of every move of the given mover across this map, when
+	 * getCost returns the same value for all of its moves, diagonal ones
+	 * included.
+	 * 
+	 * @param mover The mover that is trying to move across the map
+	 * @return The cost of any move of the mover, or a negative value if the costs vary
+	 */
+	public float getUniformCost(Mover mover);
+}
@@ -29,4 +29,25 @@ public class UnitMover implements Mover {
 	public int getType() {
 		return type;
 	}
+	
+	/**
+	 * @see Object#hashCode()
+	 */
+	public int hashCode() {
+		return type;
+	}
+
+	/**
+	 * Two movers are equal when they represent the same type of unit, since
+	 * the type is all the map looks at to decide what blocks them.
+	 * 
+	 * @see Object#equals(Object)
+	 */
+	public boolean equals(Object other) {
+		if (other instanceof UnitMover) {
+			return ((UnitMover) other).type == type;
+		}
+		
+		return false;
+	}
 }
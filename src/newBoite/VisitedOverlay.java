@@ -0,0 +1,85 @@
+package newBoite;
+
+/**
+ * A search listener marking the tiles the last search reached, that is the
+ * tiles it added to the open list. Each mark is stamped with the number of
+ * the search that made it, so starting a new search forgets the previous
+ * marks without visiting the tiles.
+ * 
+ * The overlay follows a single finder searching on one thread at a time.
+ */
+public class VisitedOverlay implements SearchListener {
+	/** The width of the map in tiles */
+	private int width;
+	/** The number of the search which last reached each tile */
+	private int[] stamps;
+	/** The number of the current search, tiles stamped with it have been visited */
+	private int epoch = 1;
+	
+	/**
+	 * Create a new overlay
+	 * 
+	 * @param map The map searched
+	 */
+	public VisitedOverlay(TileBasedMap map) {
+		this.width = map.getWidthInTiles();
+		this.stamps = new int[width * map.getHeightInTiles()];
+	}
+	
+	/**
+	 * Forget the tiles visited
+	 */
+	public void clear() {
+		epoch++;
+		if (epoch == Integer.MAX_VALUE) {
+			// the stamps are only cleared once every 2^31 searches
+			for (int i=0;i<stamps.length;i++) {
+				stamps[i] = 0;
+			}
+			epoch = 1;
+		}
+	}
+	
+	/**
+	 * Check if the last search visited a given tile
+	 * 
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return True if the tile was visited
+	 */
+	public boolean visited(int x, int y) {
+		return stamps[(y * width) + x] == epoch;
+	}
+	
+	/**
+	 * @see SearchListener#searchStarted(int, int, int, int)
+	 */
+	public void searchStarted(int sx, int sy, int tx, int ty) {
+		clear();
+	}
+	
+	/**
+	 * @see SearchListener#nodeOpened(int, int)
+	 */
+	public void nodeOpened(int x, int y) {
+		stamps[(y * width) + x] = epoch;
+	}
+	
+	/**
+	 * @see SearchListener#nodeClosed(int, int)
+	 */
+	public void nodeClosed(int x, int y) {
+	}
+	
+	/**
+	 * @see SearchListener#nodeReopened(int, int)
+	 */
+	public void nodeReopened(int x, int y) {
+	}
+	
+	/**
+	 * @see SearchListener#pathFound(Path)
+	 */
+	public void pathFound(Path path) {
+	}
+}
@@ -0,0 +1,80 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the anytime contract of ARA*: the first path comes whatever the time
+ * given, and the bound reported always holds against the shortest path
+ */
+public class ARAStarPathFinderTest {
+	/** The size of the map searched */
+	private static final int SIZE = 64;
+	/** The weight of the first iteration */
+	private static final float WEIGHT = 3;
+	/** Time enough for every search to reach the shortest path */
+	private static final long UNLIMITED = 60000000000L;
+
+	@Test
+	public void unlimitedTimeFindsShortestPath() {
+		checkSearches(UNLIMITED, new Random(1));
+	}
+
+	@Test
+	public void noTimeStillFindsFirstPath() {
+		checkSearches(0, new Random(2));
+	}
+
+	/**
+	 * Run searches given some time, and compare each path with the shortest
+	 * one found by A*
+	 *
+	 * @param nanos The time given to each search
+	 * @param random The source of the start and target locations
+	 */
+	private void checkSearches(long nanos, Random random) {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		Mover mover = new UnitMover(GameMap.TANK);
+		ARAStarPathFinder finder = new ARAStarPathFinder(map, SIZE * SIZE, false);
+		finder.setHeuristicWeight(WEIGHT);
+		AStarPathFinder astar = new AStarPathFinder(map, SIZE * SIZE, false);
+
+		int found = 0;
+		for (int q=0;q<100;q++) {
+			int sx = random.nextInt(SIZE);
+			int sy = random.nextInt(SIZE);
+			int tx = random.nextInt(SIZE);
+			int ty = random.nextInt(SIZE);
+			if (map.blocked(mover, sx, sy)) {
+				continue;
+			}
+			Path expected = astar.findPath(mover, sx, sy, tx, ty);
+			Path path = finder.findPath(mover, sx, sy, tx, ty, nanos);
+			String query = sx + "," + sy + " -> " + tx + "," + ty;
+			if (expected == null) {
+				assertNull(query, path);
+				continue;
+			}
+			assertNotNull(query, path);
+			found++;
+
+			// every move costs 1, so the cost of a path is its number of moves
+			float bound = finder.getSuboptimalityBound();
+			float optimal = expected.getLength() - 1;
+			assertTrue(query, finder.getIterations() >= 1);
+			assertTrue(query + " bound " + bound, (bound >= 1) && (bound <= WEIGHT));
+			assertTrue(query + " bound " + bound, path.getLength() - 1 <= bound * optimal);
+			if (nanos == UNLIMITED) {
+				assertEquals(query, 1, bound, 0);
+				assertEquals(query, expected.getLength(), path.getLength());
+			}
+		}
+		assertTrue(found > 0);
+	}
+}
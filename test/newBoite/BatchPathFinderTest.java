@@ -0,0 +1,92 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the batch finder returns paths as short as one search per query
+ */
+public class BatchPathFinderTest {
+	/** The size of the maps searched */
+	private static final int SIZE = 64;
+	/** The number of start locations in a batch */
+	private static final int STARTS = 20;
+	/** The number of targets of each start location */
+	private static final int TARGETS = 8;
+
+	@Test
+	public void diagonalBatchMatchesFindPath() {
+		AStarPathFinder finder = new AStarPathFinder(new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE), SIZE * SIZE, true);
+		assertFalse(finder.canShareSearch(new UnitMover(GameMap.TANK)));
+		checkBatch(finder, new Random(1));
+	}
+
+	@Test
+	public void straightBatchMatchesFindPath() {
+		AStarPathFinder finder = new AStarPathFinder(new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE), SIZE * SIZE, false);
+		assertTrue(finder.canShareSearch(new UnitMover(GameMap.TANK)));
+		checkBatch(finder, new Random(2));
+	}
+
+	@Test
+	public void overestimatingHeuristicIsNotShared() {
+		AStarPathFinder finder = new AStarPathFinder(new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE), SIZE * SIZE, false);
+		finder.setHeuristicWeight(3);
+		assertFalse(finder.canShareSearch(new UnitMover(GameMap.TANK)));
+		checkBatch(finder, new Random(3));
+	}
+
+	@Test
+	public void blockedTargetsOnly() {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		map.setTerrain(5, 5, GameMap.TREES);
+		map.setTerrain(6, 5, GameMap.TREES);
+		AStarPathFinder finder = new AStarPathFinder(map, SIZE * SIZE, false);
+		Path[] paths = finder.findPaths(finder.getSearchContext(), new UnitMover(GameMap.TANK), 1, 1, new int[] { 5, 6 }, new int[] { 5, 5 });
+		assertNull(paths[0]);
+		assertNull(paths[1]);
+	}
+
+	/**
+	 * Run a batch of queries sharing their start locations and compare each
+	 * path length with the one found by findPath
+	 *
+	 * @param finder The finder to check
+	 * @param random The source of the query locations
+	 */
+	private void checkBatch(AStarPathFinder finder, Random random) {
+		TileBasedMap map = finder.getMap();
+		Mover mover = new UnitMover(GameMap.TANK);
+		List<PathQuery> queries = new ArrayList<PathQuery>();
+		for (int s=0;s<STARTS;s++) {
+			int sx = random.nextInt(SIZE);
+			int sy = random.nextInt(SIZE);
+			if (map.blocked(mover, sx, sy)) {
+				continue;
+			}
+			for (int t=0;t<TARGETS;t++) {
+				queries.add(new PathQuery(mover, sx, sy, random.nextInt(SIZE), random.nextInt(SIZE)));
+			}
+		}
+
+		List<Path> paths = new BatchPathFinder(finder).findPaths(queries);
+		for (int i=0;i<queries.size();i++) {
+			PathQuery query = queries.get(i);
+			Path expected = finder.findPath(mover, query.getStartX(), query.getStartY(), query.getTargetX(), query.getTargetY());
+			Path path = paths.get(i);
+			if (expected == null) {
+				assertNull("query " + i, path);
+			} else {
+				assertEquals("query " + i, expected.getLength(), path.getLength());
+			}
+		}
+	}
+}
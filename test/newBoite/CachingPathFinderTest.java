@@ -0,0 +1,108 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that the cache counts its hits, misses and evictions, holds no more
+ * paths than its capacity and drops the paths once the map has changed
+ */
+public class CachingPathFinderTest {
+	/** The size of the map searched */
+	private static final int SIZE = 32;
+
+	/** The map searched */
+	private GameMap map = new GameMap(SIZE, SIZE);
+	/** The mover searching */
+	private Mover mover = new UnitMover(GameMap.TANK);
+
+	@Test
+	public void hitsAndMisses() {
+		CachingPathFinder finder = createFinder(64);
+		Path path = finder.findPath(mover, 0, 0, 10, 10);
+		assertSame(path, finder.findPath(mover, 0, 0, 10, 10));
+		assertNotSame(path, finder.findPath(mover, 0, 0, 10, 11));
+		assertEquals(1, finder.getHitCount());
+		assertEquals(2, finder.getMissCount());
+
+		// the queries finding no path are cached too
+		map.setTerrain(20, 20, GameMap.TREES);
+		assertNull(finder.findPath(mover, 0, 0, 20, 20));
+		assertNull(finder.findPath(mover, 0, 0, 20, 20));
+		assertEquals(2, finder.getHitCount());
+
+		// another heuristic is another query
+		finder.setHeuristicWeight(2);
+		finder.findPath(mover, 0, 0, 20, 20);
+		assertEquals(2, finder.getHitCount());
+		assertEquals(0, finder.getEvictionCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		// a single segment, so that the order of eviction is the order of use
+		CachingPathFinder finder = createFinder(1);
+		Path first = finder.findPath(mover, 0, 0, 10, 10);
+		finder.findPath(mover, 0, 0, 10, 11);
+		assertEquals(1, finder.getEvictionCount());
+		assertNotSame(first, finder.findPath(mover, 0, 0, 10, 10));
+		assertEquals(0, finder.getHitCount());
+		assertEquals(2, finder.getEvictionCount());
+	}
+
+	@Test
+	public void capacityIsShared() {
+		// 20 paths in 16 segments, the segments don't hold the same number
+		int capacity = 20;
+		CachingPathFinder finder = createFinder(capacity);
+		int queries = 0;
+		for (int x=1;x<SIZE;x++) {
+			for (int y=1;y<SIZE;y+=4) {
+				finder.findPath(mover, 0, 0, x, y);
+				queries++;
+			}
+		}
+		assertEquals(queries, finder.getMissCount());
+		assertTrue(finder.getEvictionCount() + " evicted", finder.getEvictionCount() >= queries - capacity);
+	}
+
+	@Test
+	public void mapChangesDropPaths() {
+		CachingPathFinder finder = createFinder(64);
+		Path path = finder.findPath(mover, 0, 0, 10, 10);
+		map.setUnit(25, 25, GameMap.BOAT);
+		Path fresh = finder.findPath(mover, 0, 0, 10, 10);
+		assertNotSame(path, fresh);
+		assertEquals(0, finder.getHitCount());
+		assertEquals(2, finder.getMissCount());
+		assertSame(fresh, finder.findPath(mover, 0, 0, 10, 10));
+
+		// the path found before the change is not given again
+		finder.findPath(mover, 0, 0, 10, 11);
+		map.setUnit(25, 25, 0);
+		assertNotSame(fresh, finder.findPath(mover, 0, 0, 10, 10));
+		assertEquals(1, finder.getHitCount());
+		assertEquals(0, finder.getEvictionCount());
+	}
+
+	/**
+	 * Create a cache in front of A* on the open map of the test
+	 *
+	 * @param capacity The number of paths the cache holds
+	 * @return The caching finder
+	 */
+	private CachingPathFinder createFinder(int capacity) {
+		for (int x=0;x<SIZE;x++) {
+			for (int y=0;y<SIZE;y++) {
+				map.setTerrain(x, y, GameMap.GRASS);
+				map.setUnit(x, y, 0);
+			}
+		}
+		return new CachingPathFinder(new AStarPathFinder(map, SIZE * SIZE, true), map, capacity);
+	}
+}
@@ -0,0 +1,171 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the areas kept up to date as tiles open and close, splitting
+ * and merging them, are the areas of an index built afresh on the edited map
+ */
+public class ConnectivityIndexTest {
+	/** The size of the map */
+	private static final int SIZE = 24;
+
+	/** The map edited */
+	private GameMap map;
+	/** The index kept up to date */
+	private ConnectivityIndex index;
+	/** The mover whose areas are checked */
+	private Mover mover = new UnitMover(GameMap.TANK);
+
+	@Test
+	public void threeWaySplit() {
+		createWalledMap(false);
+		// a T of corridors meeting at 5,5
+		for (int i=1;i<10;i++) {
+			open(i, 5);
+		}
+		for (int i=6;i<10;i++) {
+			open(5, i);
+		}
+		assertEquals(1, index.getAreaCount(mover));
+
+		edit(5, 5, GameMap.TREES);
+		assertEquals(3, index.getAreaCount(mover));
+		edit(5, 5, GameMap.GRASS);
+		assertEquals(1, index.getAreaCount(mover));
+	}
+
+	@Test
+	public void diagonalThreeWaySplit() {
+		createWalledMap(true);
+		// three corridors meeting at 5,5, none of them next to another
+		open(5, 5);
+		for (int i=1;i<5;i++) {
+			open(5, i);
+		}
+		for (int i=1;i<4;i++) {
+			open(5 - i, 5 + i);
+			open(5 + i, 5 + i);
+		}
+		assertEquals(1, index.getAreaCount(mover));
+
+		edit(5, 5, GameMap.TREES);
+		assertEquals(3, index.getAreaCount(mover));
+		edit(5, 5, GameMap.GRASS);
+		assertEquals(1, index.getAreaCount(mover));
+	}
+
+	@Test
+	public void randomEdits() {
+		checkRandomEdits(false, new Random(1));
+	}
+
+	@Test
+	public void diagonalRandomEdits() {
+		checkRandomEdits(true, new Random(2));
+	}
+
+	/**
+	 * Open and close random tiles of the maze, checking the areas after each
+	 *
+	 * @param diagonal True if the areas are connected through diagonal moves
+	 * @param random The source of the tiles edited
+	 */
+	private void checkRandomEdits(boolean diagonal, Random random) {
+		map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		index = new ConnectivityIndex(map, diagonal);
+		checkAreas(diagonal);
+		for (int i=0;i<300;i++) {
+			int x = random.nextInt(SIZE);
+			int y = random.nextInt(SIZE);
+			// lean towards closing so that the areas split as well as merge
+			edit(x, y, (random.nextInt(3) == 0) ? GameMap.GRASS : GameMap.TREES);
+		}
+	}
+
+	/**
+	 * Create a map blocked everywhere, and its index
+	 *
+	 * @param diagonal True if the areas are connected through diagonal moves
+	 */
+	private void createWalledMap(boolean diagonal) {
+		map = new GameMap(SIZE, SIZE);
+		for (int x=0;x<SIZE;x++) {
+			for (int y=0;y<SIZE;y++) {
+				map.setTerrain(x, y, GameMap.TREES);
+			}
+		}
+		index = new ConnectivityIndex(map, diagonal);
+	}
+
+	/**
+	 * Open a tile without checking the areas
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 */
+	private void open(int x, int y) {
+		map.setTerrain(x, y, GameMap.GRASS);
+	}
+
+	/**
+	 * Change the terrain of a tile and check the areas
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @param terrain The terrain to give the tile
+	 */
+	private void edit(int x, int y, int terrain) {
+		map.setTerrain(x, y, terrain);
+		checkAreas(index.allowsDiagMovement());
+	}
+
+	/**
+	 * Check that the index tells apart the same areas as one built afresh:
+	 * the same number of areas, each tile connected to the first tile found
+	 * of its fresh area, and those first tiles not connected to each other
+	 *
+	 * @param diagonal True if the areas are connected through diagonal moves
+	 */
+	private void checkAreas(boolean diagonal) {
+		ConnectivityIndex fresh = new ConnectivityIndex(map, diagonal);
+		map.removeTileChangeListener(fresh);
+		assertEquals(fresh.getAreaCount(mover), index.getAreaCount(mover));
+
+		ArrayList<Integer> firsts = new ArrayList<Integer>();
+		for (int tile=0;tile<SIZE*SIZE;tile++) {
+			int x = tile % SIZE;
+			int y = tile / SIZE;
+			if (map.terrainBlocks(GameMap.TANK, x, y)) {
+				continue;
+			}
+			int first = -1;
+			for (Integer other : firsts) {
+				if (fresh.connected(mover, other.intValue() % SIZE, other.intValue() / SIZE, x, y)) {
+					first = other.intValue();
+					break;
+				}
+			}
+			if (first < 0) {
+				firsts.add(Integer.valueOf(tile));
+				continue;
+			}
+			assertTrue("tile " + x + "," + y, index.connected(mover, first % SIZE, first / SIZE, x, y));
+		}
+		assertEquals(fresh.getAreaCount(mover), firsts.size());
+		for (int i=0;i<firsts.size();i++) {
+			for (int j=i+1;j<firsts.size();j++) {
+				int a = firsts.get(i).intValue();
+				int b = firsts.get(j).intValue();
+				assertFalse("areas of " + a + " and " + b, index.connected(mover, a % SIZE, a / SIZE, b % SIZE, b / SIZE));
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that each replan of D* Lite, after units block or free tiles on its
+ * route and the start moves along it, is as short as a fresh A* search
+ */
+public class DStarLitePathFinderTest {
+	/** The size of the map searched */
+	private static final int SIZE = 32;
+
+	@Test
+	public void replansMatchAStar() {
+		checkReplans(false, new Random(1));
+	}
+
+	@Test
+	public void diagonalReplansMatchAStar() {
+		checkReplans(true, new Random(2));
+	}
+
+	@Test
+	public void unreachableTarget() {
+		GameMap map = createMap();
+		Mover mover = new UnitMover(GameMap.TANK);
+		DStarLitePathFinder finder = new DStarLitePathFinder(map, SIZE * SIZE, false);
+		assertNotNull(finder.findPath(mover, 0, 0, 2, 2));
+		for (int i=1;i<4;i++) {
+			map.setUnit(i, 1, GameMap.BOAT);
+			map.setUnit(1, i, GameMap.BOAT);
+			map.setUnit(i, 3, GameMap.BOAT);
+			map.setUnit(3, i, GameMap.BOAT);
+		}
+		assertNull(finder.findPath(mover, 0, 0, 2, 2));
+		map.setUnit(2, 3, 0);
+		assertEquals(new AStarPathFinder(map, SIZE * SIZE, false).findPath(mover, 0, 0, 2, 2).getLength(),
+				finder.findPath(mover, 0, 0, 2, 2).getLength());
+	}
+
+	/**
+	 * Walk a mover to its target, blocking and freeing tiles on its route on
+	 * the way, and compare each replan with a fresh A* search
+	 *
+	 * @param diagonal True if the finders move diagonally
+	 * @param random The source of the tiles changed
+	 */
+	private void checkReplans(boolean diagonal, Random random) {
+		GameMap map = createMap();
+		Mover mover = new UnitMover(GameMap.TANK);
+		DStarLitePathFinder finder = new DStarLitePathFinder(map, SIZE * SIZE, diagonal);
+		AStarPathFinder astar = new AStarPathFinder(map, SIZE * SIZE, diagonal);
+		// no heuristic, so that A* finds the shortest paths with diagonal moves too
+		astar.setHeuristicWeight(0);
+
+		int sx = 1;
+		int sy = 1;
+		int tx = SIZE - 2;
+		int ty = SIZE - 2;
+		ArrayList<Integer> blocked = new ArrayList<Integer>();
+		Path path = finder.findPath(mover, sx, sy, tx, ty);
+		assertEquals(astar.findPath(mover, sx, sy, tx, ty).getLength(), path.getLength());
+
+		for (int replan=0;(replan<20) && (path != null) && (path.getLength() > 4);replan++) {
+			// move the start along the route
+			sx = path.getX(2);
+			sy = path.getY(2);
+
+			// block a tile further on the route, and sometimes free an older one
+			int step = 3 + random.nextInt(path.getLength() - 4);
+			if ((path.getX(step) != tx) || (path.getY(step) != ty)) {
+				map.setUnit(path.getX(step), path.getY(step), GameMap.BOAT);
+				blocked.add(Integer.valueOf((path.getY(step) * SIZE) + path.getX(step)));
+			}
+			if ((blocked.size() > 2) && random.nextBoolean()) {
+				int tile = blocked.remove(random.nextInt(blocked.size())).intValue();
+				map.setUnit(tile % SIZE, tile / SIZE, 0);
+			}
+
+			path = finder.findPath(mover, sx, sy, tx, ty);
+			Path expected = astar.findPath(mover, sx, sy, tx, ty);
+			String query = "replan " + replan + " from " + sx + "," + sy;
+			if (expected == null) {
+				assertNull(query, path);
+			} else {
+				assertNotNull(query, path);
+				assertEquals(query, expected.getLength(), path.getLength());
+			}
+		}
+	}
+
+	/**
+	 * Create the maze layout with no unit on it
+	 *
+	 * @return The map
+	 */
+	private GameMap createMap() {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		for (int x=0;x<SIZE;x++) {
+			for (int y=0;y<SIZE;y++) {
+				if (map.getUnit(x, y) != 0) {
+					map.setUnit(x, y, 0);
+				}
+			}
+		}
+		return map;
+	}
+}
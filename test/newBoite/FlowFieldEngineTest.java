@@ -0,0 +1,120 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the paths followed on a flow field are as short as the ones
+ * A* finds, and that the cached fields are built again once the map changes
+ */
+public class FlowFieldEngineTest {
+	/** The size of the map */
+	private static final int SIZE = 48;
+
+	@Test
+	public void pathsMatchAStar() {
+		checkPaths(false, new Random(1));
+	}
+
+	@Test
+	public void diagonalPathsMatchAStar() {
+		checkPaths(true, new Random(2));
+	}
+
+	@Test
+	public void fieldsRebuiltAfterMapChange() {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		FlowFieldEngine engine = new FlowFieldEngine(map, false, 4);
+		AStarPathFinder astar = new AStarPathFinder(map, SIZE * SIZE, false);
+		Mover mover = new UnitMover(GameMap.TANK);
+		int tx = open(map, mover, SIZE - 2);
+		int sx = open(map, mover, 1);
+
+		FlowField field = engine.getField(mover, tx, tx);
+		assertSame(field, engine.getField(mover, tx, tx));
+		assertEquals(1, engine.getHitCount());
+		assertEquals(1, engine.getBuildCount());
+		Path path = field.getPath(sx, sx);
+		assertNotNull(path);
+
+		// a unit in the middle of the route makes the field stale
+		map.setUnit(path.getX(path.getLength() / 2), path.getY(path.getLength() / 2), GameMap.BOAT);
+		FlowField rebuilt = engine.getField(mover, tx, tx);
+		assertNotSame(field, rebuilt);
+		assertEquals(1, engine.getHitCount());
+		assertEquals(2, engine.getBuildCount());
+		assertEquals(map.getVersion(), rebuilt.getVersion());
+		checkPath(astar.findPath(mover, sx, sx, tx, tx), rebuilt.getPath(sx, sx), "rebuilt");
+		assertSame(rebuilt, engine.getField(mover, tx, tx));
+	}
+
+	/**
+	 * Compare the paths followed on the fields of random targets with the
+	 * paths A* finds
+	 *
+	 * @param diagonal True if the units move diagonally
+	 * @param random The source of the queries
+	 */
+	private void checkPaths(boolean diagonal, Random random) {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		FlowFieldEngine engine = new FlowFieldEngine(map, diagonal, 4);
+		AStarPathFinder astar = new AStarPathFinder(map, SIZE * SIZE, diagonal);
+		// no heuristic, so that A* finds the shortest paths with diagonal moves too
+		astar.setHeuristicWeight(0);
+		Mover mover = new UnitMover(GameMap.TANK);
+		for (int t=0;t<10;t++) {
+			int tx = random.nextInt(SIZE);
+			int ty = random.nextInt(SIZE);
+			FlowField field = engine.getField(mover, tx, ty);
+			for (int q=0;q<20;q++) {
+				int sx = random.nextInt(SIZE);
+				int sy = random.nextInt(SIZE);
+				if (map.blocked(mover, sx, sy) || ((sx == tx) && (sy == ty))) {
+					continue;
+				}
+				checkPath(astar.findPath(mover, sx, sy, tx, ty), field.getPath(sx, sy), sx + "," + sy + " -> " + tx + "," + ty);
+			}
+		}
+	}
+
+	/**
+	 * Check that a path followed on a field is as short as the one of A*
+	 *
+	 * @param expected The path found by A*, or null
+	 * @param path The path followed on the field, or null
+	 * @param query The description of the query
+	 */
+	private void checkPath(Path expected, Path path, String query) {
+		if (expected == null) {
+			assertNull(query, path);
+		} else {
+			assertNotNull(query, path);
+			assertEquals(query, expected.getLength(), path.getLength());
+		}
+	}
+
+	/**
+	 * Get the first open tile on the diagonal of the map from a given tile,
+	 * going towards the centre
+	 *
+	 * @param map The map
+	 * @param mover The mover that must be able to stand on the tile
+	 * @param from The coordinate of the tile on the diagonal to start from
+	 * @return The coordinate of the open tile, the same on both axes
+	 */
+	private int open(GameMap map, Mover mover, int from) {
+		int step = (from < SIZE / 2) ? 1 : -1;
+		int i = from;
+		while (map.blocked(mover, i, i)) {
+			i += step;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,118 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the hierarchical finder reaches the same targets as A*, with
+ * diagonal movement across gaps only open on the diagonal
+ */
+public class HierarchicalPathFinderTest {
+	/** The size of the clusters of the hierarchical finder */
+	private static final int CLUSTER_SIZE = 8;
+
+	@Test
+	public void diagonalGapAcrossBorder() {
+		GameMap map = createOpenMap(16, 16);
+		for (int y=0;y<16;y++) {
+			if (y != 3) {
+				map.setTerrain(7, y, GameMap.TREES);
+			}
+			if (y != 4) {
+				map.setTerrain(8, y, GameMap.TREES);
+			}
+		}
+		checkReachability(map, 0, 0, 15, 15);
+		assertNotNull(new HierarchicalPathFinder(map, CLUSTER_SIZE, 256, true).findPath(new UnitMover(GameMap.TANK), 0, 0, 15, 15));
+	}
+
+	@Test
+	public void diagonalGapAtClusterCorner() {
+		GameMap map = createOpenMap(16, 16);
+		for (int i=0;i<16;i++) {
+			map.setTerrain(7, i, GameMap.TREES);
+			map.setTerrain(8, i, GameMap.TREES);
+			map.setTerrain(i, 7, GameMap.TREES);
+			map.setTerrain(i, 8, GameMap.TREES);
+		}
+		map.setTerrain(7, 7, GameMap.GRASS);
+		map.setTerrain(8, 8, GameMap.GRASS);
+		HierarchicalPathFinder finder = new HierarchicalPathFinder(map, CLUSTER_SIZE, 256, true);
+		Mover mover = new UnitMover(GameMap.TANK);
+		assertNotNull(finder.findPath(mover, 0, 0, 15, 15));
+		assertNotNull(finder.findPath(mover, 15, 15, 0, 0));
+
+		// the finder follows the changes of the corner tiles
+		map.setTerrain(8, 8, GameMap.TREES);
+		assertNull(finder.findPath(mover, 0, 0, 15, 15));
+		map.setTerrain(8, 8, GameMap.GRASS);
+		map.setTerrain(8, 7, GameMap.GRASS);
+		map.setTerrain(7, 7, GameMap.TREES);
+		map.setTerrain(7, 8, GameMap.GRASS);
+		assertNotNull(finder.findPath(mover, 15, 0, 0, 15));
+		assertNotNull(finder.findPath(mover, 0, 15, 15, 0));
+	}
+
+	@Test
+	public void randomMapsMatchAStar() {
+		Random random = new Random(7);
+		for (int m=0;m<20;m++) {
+			GameMap map = createOpenMap(32, 32);
+			for (int x=0;x<32;x++) {
+				for (int y=0;y<32;y++) {
+					if (random.nextInt(100) < 40) {
+						map.setTerrain(x, y, GameMap.TREES);
+					}
+				}
+			}
+			for (int q=0;q<50;q++) {
+				checkReachability(map, random.nextInt(32), random.nextInt(32), random.nextInt(32), random.nextInt(32));
+			}
+		}
+	}
+
+	/**
+	 * Create a map with no obstacle and no unit on it
+	 *
+	 * @param width The width of the map in tiles
+	 * @param height The height of the map in tiles
+	 * @return The map
+	 */
+	private GameMap createOpenMap(int width, int height) {
+		GameMap map = new GameMap(width, height);
+		for (int x=0;x<width;x++) {
+			for (int y=0;y<height;y++) {
+				map.setTerrain(x, y, GameMap.GRASS);
+				map.setUnit(x, y, 0);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Check that the hierarchical finder finds a path exactly when A* does,
+	 * both with diagonal movement
+	 *
+	 * @param map The map to search
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 */
+	private void checkReachability(GameMap map, int sx, int sy, int tx, int ty) {
+		Mover mover = new UnitMover(GameMap.TANK);
+		if (map.blocked(mover, sx, sy)) {
+			return;
+		}
+		int limit = map.getWidthInTiles() * map.getHeightInTiles();
+		Path expected = new AStarPathFinder(map, limit, true).findPath(mover, sx, sy, tx, ty);
+		Path path = new HierarchicalPathFinder(map, CLUSTER_SIZE, limit, true).findPath(mover, sx, sy, tx, ty);
+		String query = sx + "," + sy + " -> " + tx + "," + ty;
+		assertEquals(query, expected != null, path != null);
+	}
+}
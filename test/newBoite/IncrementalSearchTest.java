@@ -0,0 +1,52 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that a search run in slices gives the same path and figures as findPath
+ */
+public class IncrementalSearchTest {
+	/** The size of the map searched */
+	private static final int SIZE = 64;
+
+	@Test
+	public void slicesMatchFindPath() {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		AStarPathFinder finder = new AStarPathFinder(map, SIZE * SIZE, true);
+		Mover mover = new UnitMover(GameMap.TANK);
+		SearchStats expected = new SearchStats();
+		SearchStats stats = new SearchStats();
+		Random random = new Random(5);
+		for (int q=0;q<50;q++) {
+			int sx = random.nextInt(SIZE);
+			int sy = random.nextInt(SIZE);
+			int tx = random.nextInt(SIZE);
+			int ty = random.nextInt(SIZE);
+			if (map.blocked(mover, sx, sy)) {
+				continue;
+			}
+			Path path = finder.findPath(mover, sx, sy, tx, ty, expected);
+
+			IncrementalSearch search = finder.startSearch(mover, sx, sy, tx, ty);
+			while (search.step(7) == IncrementalSearch.IN_PROGRESS) {
+			}
+			search.fillStats(stats);
+			if (path == null) {
+				assertNull(search.getPath());
+			} else {
+				assertEquals(path.getLength(), search.getPath().getLength());
+			}
+			assertEquals(expected.getOutcome(), stats.getOutcome());
+			assertEquals(expected.getExpanded(), stats.getExpanded());
+			assertEquals(expected.getGenerated(), stats.getGenerated());
+			assertEquals(expected.getPeakOpenSize(), stats.getPeakOpenSize());
+			assertEquals(expected.getReopened(), stats.getReopened());
+			assertEquals(expected.getHeuristicEvaluations(), stats.getHeuristicEvaluations());
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that jump point search finds paths costing the same as the ones of
+ * A*, on both layouts and both movement models
+ */
+public class JumpPointSearchPathFinderTest {
+	/** The size of the maps searched */
+	private static final int SIZE = 64;
+
+	@Test
+	public void mazeMatchesAStar() {
+		checkCosts(GameMap.LAYOUT_MAZE, false, new Random(1));
+	}
+
+	@Test
+	public void diagonalMazeMatchesAStar() {
+		checkCosts(GameMap.LAYOUT_MAZE, true, new Random(2));
+	}
+
+	@Test
+	public void cLayoutMatchesAStar() {
+		checkCosts(GameMap.LAYOUT_C, false, new Random(3));
+	}
+
+	@Test
+	public void diagonalCLayoutMatchesAStar() {
+		checkCosts(GameMap.LAYOUT_C, true, new Random(4));
+	}
+
+	/**
+	 * Compare the cost of the paths found for random queries
+	 *
+	 * @param layout The layout of the map
+	 * @param diagonal True if the finders move diagonally
+	 * @param random The source of the queries
+	 */
+	private void checkCosts(int layout, boolean diagonal, Random random) {
+		GameMap map = new GameMap(SIZE, SIZE, layout);
+		JumpPointSearchPathFinder finder = new JumpPointSearchPathFinder(map, SIZE * SIZE, diagonal);
+		AStarPathFinder astar = new AStarPathFinder(map, SIZE * SIZE, diagonal);
+		// no heuristic, so that A* finds the cheapest paths with diagonal moves too
+		astar.setHeuristicWeight(0);
+		Mover mover = new UnitMover(GameMap.TANK);
+		for (int q=0;q<100;q++) {
+			int sx = random.nextInt(SIZE);
+			int sy = random.nextInt(SIZE);
+			int tx = random.nextInt(SIZE);
+			int ty = random.nextInt(SIZE);
+			if (map.blocked(mover, sx, sy)) {
+				continue;
+			}
+			String query = sx + "," + sy + " -> " + tx + "," + ty;
+			Path expected = astar.findPath(mover, sx, sy, tx, ty);
+			Path path = finder.findPath(mover, sx, sy, tx, ty);
+			if (expected == null) {
+				assertNull(query, path);
+			} else {
+				assertEquals(query, getCost(map, mover, expected), getCost(map, mover, path), 0);
+			}
+		}
+	}
+
+	/**
+	 * Get the cost of a path, the sum of the costs of its moves
+	 *
+	 * @param map The map the path is on
+	 * @param mover The mover following the path
+	 * @param path The path
+	 * @return The cost of the path
+	 */
+	private float getCost(GameMap map, Mover mover, Path path) {
+		float cost = 0;
+		for (int i=1;i<path.getLength();i++) {
+			cost += map.getCost(mover, path.getX(i - 1), path.getY(i - 1), path.getX(i), path.getY(i));
+		}
+		return cost;
+	}
+}
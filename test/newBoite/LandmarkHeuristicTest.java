@@ -0,0 +1,179 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the landmark tables kept up to date as the terrain changes
+ * hold the same distances as tables measured afresh on the edited map, and
+ * that only the landmarks whose distances change are measured again
+ */
+public class LandmarkHeuristicTest {
+	/** The size of the map */
+	private static final int SIZE = 32;
+	/** The number of landmarks kept */
+	private static final int LANDMARKS = 4;
+
+	/** The map edited */
+	private GameMap map;
+	/** The heuristic kept up to date */
+	private LandmarkHeuristic heuristic;
+	/** The mover whose tables are checked */
+	private Mover mover = new UnitMover(GameMap.TANK);
+	/** True if the distances count diagonal moves */
+	private boolean diagonal;
+
+	@Test
+	public void straightEdits() {
+		checkEdits(false, new Random(1));
+	}
+
+	@Test
+	public void diagonalEdits() {
+		checkEdits(true, new Random(2));
+	}
+
+	/**
+	 * Close a landmark, cut a corridor and open it again, then make random
+	 * edits, checking the tables after each one
+	 *
+	 * @param diagonal True if the distances count diagonal moves
+	 * @param random The source of the random edits
+	 */
+	private void checkEdits(boolean diagonal, Random random) {
+		this.diagonal = diagonal;
+		map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		heuristic = new LandmarkHeuristic(map, LANDMARKS, diagonal);
+		assertEquals(LANDMARKS, heuristic.getLandmarkCount(mover));
+		checkTables();
+
+		// closing a landmark measures its replacement alone
+		int landmark = heuristic.getLandmark(mover, 0);
+		int before = heuristic.getRecomputeCount();
+		map.setTerrain(landmark % SIZE, landmark / SIZE, GameMap.TREES);
+		assertEquals(before + 1, heuristic.getRecomputeCount());
+		checkTables();
+
+		// the opening of the inner ring of the maze, the only way in
+		int x = (17 * SIZE) / 30;
+		int y = (9 * SIZE) / 30;
+		edit(x, y, GameMap.TREES);
+		edit(x, y, GameMap.GRASS);
+
+		for (int i=0;i<60;i++) {
+			int tile = random.nextInt(SIZE * SIZE);
+			if (isLandmark(tile)) {
+				continue;
+			}
+			boolean blocked = map.terrainBlocks(GameMap.TANK, tile % SIZE, tile / SIZE);
+			edit(tile % SIZE, tile / SIZE, blocked ? GameMap.GRASS : GameMap.TREES);
+		}
+	}
+
+	/**
+	 * Change the terrain of a tile that is not a landmark, and check that the
+	 * landmarks measured again are those whose distances changed
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @param terrain The terrain to give the tile
+	 */
+	private void edit(int x, int y, int terrain) {
+		int tile = (y * SIZE) + x;
+		int count = heuristic.getLandmarkCount(mover);
+		int[][] old = new int[count][SIZE * SIZE];
+		for (int i=0;i<count;i++) {
+			for (int t=0;t<SIZE*SIZE;t++) {
+				old[i][t] = heuristic.getDistance(mover, i, t);
+			}
+		}
+
+		int before = heuristic.getRecomputeCount();
+		boolean closing = map.terrainBlocks(GameMap.TANK, x, y) != (terrain == GameMap.TREES);
+		map.setTerrain(x, y, terrain);
+		if (closing && (terrain == GameMap.TREES)) {
+			int affected = 0;
+			for (int i=0;i<count;i++) {
+				int[] fresh = measure(heuristic.getLandmark(mover, i));
+				old[i][tile] = fresh[tile];
+				if (!Arrays.equals(old[i], fresh)) {
+					affected++;
+				}
+			}
+			assertEquals("closing " + x + "," + y, before + affected, heuristic.getRecomputeCount());
+		} else {
+			assertEquals("opening " + x + "," + y, before, heuristic.getRecomputeCount());
+		}
+		checkTables();
+	}
+
+	/**
+	 * Check every table against the distances measured afresh from its landmark
+	 */
+	private void checkTables() {
+		for (int i=0;i<heuristic.getLandmarkCount(mover);i++) {
+			int landmark = heuristic.getLandmark(mover, i);
+			int[] fresh = measure(landmark);
+			for (int t=0;t<SIZE*SIZE;t++) {
+				assertEquals("landmark " + landmark + " tile " + t, fresh[t], heuristic.getDistance(mover, i, t));
+			}
+		}
+	}
+
+	/**
+	 * Check if a tile is one of the landmarks
+	 *
+	 * @param tile The tile to check
+	 * @return True if a landmark stands on the tile
+	 */
+	private boolean isLandmark(int tile) {
+		for (int i=0;i<heuristic.getLandmarkCount(mover);i++) {
+			if (heuristic.getLandmark(mover, i) == tile) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Measure the number of moves from a tile to every other with a breadth
+	 * first search over the terrain
+	 *
+	 * @param from The tile measured from
+	 * @return The distance to each tile, Integer.MAX_VALUE for those out of reach
+	 */
+	private int[] measure(int from) {
+		int[] distances = new int[SIZE * SIZE];
+		Arrays.fill(distances, Integer.MAX_VALUE);
+		int[] queue = new int[SIZE * SIZE];
+		int head = 0;
+		int tail = 0;
+		distances[from] = 0;
+		queue[tail++] = from;
+		while (head < tail) {
+			int current = queue[head++];
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if (((dx == 0) && (dy == 0)) || (!diagonal && (dx != 0) && (dy != 0))) {
+						continue;
+					}
+					int x = (current % SIZE) + dx;
+					int y = (current / SIZE) + dy;
+					if ((x < 0) || (y < 0) || (x >= SIZE) || (y >= SIZE) || map.terrainBlocks(GameMap.TANK, x, y)) {
+						continue;
+					}
+					int neighbour = (y * SIZE) + x;
+					if (distances[neighbour] == Integer.MAX_VALUE) {
+						distances[neighbour] = distances[current] + 1;
+						queue[tail++] = neighbour;
+					}
+				}
+			}
+		}
+		return distances;
+	}
+}
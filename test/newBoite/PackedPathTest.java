@@ -0,0 +1,112 @@
+package newBoite;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that a path compressed to its waypoints expands back to the same
+ * steps, and that the plain, compressed and indexed forms contain the same
+ * tiles
+ */
+public class PackedPathTest {
+	/** The size of the map searched */
+	private static final int SIZE = 64;
+
+	@Test
+	public void foundPathsRoundTrip() {
+		checkFoundPaths(false, new Random(1));
+	}
+
+	@Test
+	public void diagonalFoundPathsRoundTrip() {
+		checkFoundPaths(true, new Random(2));
+	}
+
+	@Test
+	public void narrowMapRoundTrip() {
+		// along x then along the diagonal, both moves add 1 to the tile index
+		checkRoundTrip(new PackedPath(2, new int[] { 0, 1, 2, 4, 7 }, false), 10);
+	}
+
+	@Test
+	public void randomWalksRoundTrip() {
+		Random random = new Random(3);
+		for (int width=1;width<5;width++) {
+			for (int w=0;w<50;w++) {
+				int[] tiles = new int[1 + random.nextInt(20)];
+				int x = random.nextInt(width);
+				int y = 0;
+				tiles[0] = x;
+				for (int i=1;i<tiles.length;i++) {
+					// a move to a neighbour on the same row or the row below
+					int nx;
+					int ny;
+					do {
+						nx = x + random.nextInt(3) - 1;
+						ny = y + random.nextInt(2);
+					} while ((nx < 0) || (nx >= width) || ((nx == x) && (ny == y)));
+					x = nx;
+					y = ny;
+					tiles[i] = (y * width) + x;
+				}
+				checkRoundTrip(new PackedPath(width, tiles, false), y + 2);
+			}
+		}
+	}
+
+	/**
+	 * Check the round trip of paths found by A* on the maze
+	 *
+	 * @param diagonal True if the paths have diagonal moves
+	 * @param random The source of the queries
+	 */
+	private void checkFoundPaths(boolean diagonal, Random random) {
+		GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+		AStarPathFinder finder = new AStarPathFinder(map, SIZE * SIZE, diagonal);
+		Mover mover = new UnitMover(GameMap.TANK);
+		for (int q=0;q<30;q++) {
+			Path path = finder.findPath(mover, random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(SIZE));
+			if (path == null) {
+				continue;
+			}
+			PackedPath packed = new PackedPath(path, SIZE);
+			checkRoundTrip(packed, SIZE);
+			Path back = packed.compress().toPath();
+			assertEquals(path.getLength(), back.getLength());
+			for (int i=0;i<path.getLength();i++) {
+				assertEquals(path.getX(i), back.getX(i));
+				assertEquals(path.getY(i), back.getY(i));
+			}
+		}
+	}
+
+	/**
+	 * Check that a path compressed then expanded has the same steps, and that
+	 * all its forms agree on the tiles they contain
+	 *
+	 * @param path The full path to check
+	 * @param height The number of rows of the map checked for contains()
+	 */
+	private void checkRoundTrip(PackedPath path, int height) {
+		PackedPath compressed = path.compress();
+		assertArrayEquals(path.toArray(), compressed.expand().toArray());
+
+		PackedPath indexed = new PackedPath(path.getWidth(), path.toArray(), false);
+		indexed.index();
+		PackedPath indexedCompressed = path.compress();
+		indexedCompressed.index();
+		for (int y=0;y<height;y++) {
+			for (int x=0;x<path.getWidth();x++) {
+				String tile = "tile " + x + "," + y;
+				boolean expected = path.contains(x, y);
+				assertEquals(tile, expected, compressed.contains(x, y));
+				assertEquals(tile, expected, indexed.contains(x, y));
+				assertEquals(tile, expected, indexedCompressed.contains(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package newBoite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks that the service merges identical queries, cancels the queries
+ * superseded by their owner, stops the searches cancelled in their middle and
+ * turns queries down once shut down
+ */
+public class PathfindingServiceTest {
+	/** The size of the map searched */
+	private static final int SIZE = 128;
+	/** The time waited for a result, in seconds */
+	private static final int TIMEOUT = 10;
+
+	/** The map searched */
+	private GameMap map = new GameMap(SIZE, SIZE, GameMap.LAYOUT_MAZE);
+	/** The mover whose searches are gated and counted */
+	private Mover mover = new UnitMover(GameMap.TANK);
+
+	@Test
+	public void duplicatesShareOneSearch() throws Exception {
+		GatedFinder finder = new GatedFinder();
+		PathfindingService service = new PathfindingService(finder, 1);
+		CompletableFuture<Path> first = service.submit(longQuery(), PathfindingService.PRIORITY_AI);
+		// the query is running when the duplicate comes
+		assertTrue(finder.entered.await(TIMEOUT, TimeUnit.SECONDS));
+		CompletableFuture<Path> second = service.submit(longQuery(), PathfindingService.PRIORITY_PLAYER);
+		assertEquals(1, service.getMergedCount());
+
+		finder.gate.countDown();
+		Path path = first.get(TIMEOUT, TimeUnit.SECONDS);
+		assertNotNull(path);
+		assertSame(path, second.get(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(1, service.getCompletedCount());
+		service.shutdown();
+	}
+
+	@Test
+	public void ownerSupersedesItsQuery() throws Exception {
+		GatedFinder finder = new GatedFinder();
+		PathfindingService service = new PathfindingService(finder, 1);
+		Object owner = new Object();
+		CompletableFuture<Path> first = service.submit(owner, longQuery(), PathfindingService.PRIORITY_PLAYER);
+		assertTrue(finder.entered.await(TIMEOUT, TimeUnit.SECONDS));
+		CompletableFuture<Path> second = service.submit(owner, new PathQuery(mover, start(0), start(0), start(1), start(1)),
+				PathfindingService.PRIORITY_PLAYER);
+		assertTrue(first.isCancelled());
+		assertEquals(1, service.getCancelledCount());
+
+		finder.gate.countDown();
+		assertNotNull(second.get(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(1, service.getCompletedCount());
+		service.shutdown();
+	}
+
+	@Test
+	public void cancelledSearchStopsEarly() throws Exception {
+		// no heuristic, so that the search covers the whole maze
+		GatedFinder full = new GatedFinder();
+		full.setHeuristicWeight(0);
+		full.gate.countDown();
+		PathQuery query = longQuery();
+		assertNotNull(full.findPath(mover, query.getStartX(), query.getStartY(), query.getTargetX(), query.getTargetY()));
+
+		GatedFinder finder = new GatedFinder();
+		finder.setHeuristicWeight(0);
+		PathfindingService service = new PathfindingService(finder, 1);
+		CompletableFuture<Path> future = service.submit(query, PathfindingService.PRIORITY_AI);
+		assertTrue(finder.entered.await(TIMEOUT, TimeUnit.SECONDS));
+		future.cancel(false);
+		finder.gate.countDown();
+
+		// the single worker only takes the next query once the cancelled search has returned
+		Mover other = new UnitMover(GameMap.TANK);
+		service.submit(new PathQuery(other, start(0), start(0), start(1), start(1)), PathfindingService.PRIORITY_AI)
+				.get(TIMEOUT, TimeUnit.SECONDS);
+		assertTrue(finder.costs.get() + " of " + full.costs.get(), finder.costs.get() * 10 < full.costs.get());
+		assertEquals(1, service.getCancelledCount());
+		assertEquals(1, service.getCompletedCount());
+		service.shutdown();
+	}
+
+	@Test
+	public void shutdownRejectsQueries() throws Exception {
+		PathfindingService service = new PathfindingService(new AStarPathFinder(map, SIZE * SIZE, false), 1);
+		service.shutdown();
+		CompletableFuture<Path> future = service.submit(longQuery(), PathfindingService.PRIORITY_PLAYER);
+		assertTrue(future.isCompletedExceptionally());
+		try {
+			future.get();
+			fail("The query was accepted");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	/**
+	 * Get a query across the whole maze
+	 *
+	 * @return The query from the first open tile to the last one
+	 */
+	private PathQuery longQuery() {
+		return new PathQuery(mover, start(0), start(0), start(SIZE - 1), start(SIZE - 1));
+	}
+
+	/**
+	 * Get the first open tile on the diagonal of the map from a given tile
+	 *
+	 * @param from The coordinate of the tile on the diagonal to start from
+	 * @return The coordinate of the open tile, the same on both axes
+	 */
+	private int start(int from) {
+		int step = (from < SIZE / 2) ? 1 : -1;
+		int i = from;
+		while (map.blocked(mover, i, i)) {
+			i += step;
+		}
+		return i;
+	}
+
+	/**
+	 * A finder counting the moves costed for the mover of the test, and
+	 * holding its first search until the gate is opened
+	 */
+	private class GatedFinder extends AStarPathFinder {
+		/** Counted down when a search of the mover starts */
+		private CountDownLatch entered = new CountDownLatch(1);
+		/** Counted down to let the searches go on */
+		private CountDownLatch gate = new CountDownLatch(1);
+		/** The number of moves costed for the mover */
+		private AtomicInteger costs = new AtomicInteger();
+
+		/**
+		 * Create a new finder on the map of the test
+		 */
+		public GatedFinder() {
+			super(map, SIZE * SIZE, false);
+		}
+
+		/**
+		 * @see AStarPathFinder#getMovementCost(Mover, int, int, int, int)
+		 */
+		public float getMovementCost(Mover mover, int sx, int sy, int tx, int ty) {
+			if (mover == PathfindingServiceTest.this.mover) {
+				costs.incrementAndGet();
+				entered.countDown();
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.getMovementCost(mover, sx, sy, tx, ty);
+		}
+	}
+}